@@ -0,0 +1,163 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.animation.Animator;
+import android.animation.TimeInterpolator;
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.PixelCopy;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * RenderThread animations keep moving their view while the UI thread is blocked. The window is copied from
+ * the screen in the middle of a UI thread stall, an animation stepped on the UI thread would still be where
+ * it was when the stall began.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RenderThreadStallTest {
+
+    private static final int BOX_SIZE = 100;
+    private static final int DISTANCE = 400;
+    private static final long DURATION = 2000;
+    private static final long STALL = 1500;
+
+    public static class HostActivity extends Activity {
+        View box;
+
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+            super.onCreate(savedInstanceState);
+            FrameLayout root = new FrameLayout(this);
+            root.setBackgroundColor(Color.WHITE);
+            box = new View(this);
+            box.setBackgroundColor(Color.RED);
+            root.addView(box, new FrameLayout.LayoutParams(BOX_SIZE, BOX_SIZE));
+            setContentView(root);
+        }
+    }
+
+    @Test
+    public void keepsMovingWhileTheUiThreadIsBlocked() throws Exception {
+        // copies of a window need O
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.O);
+        assumeTrue(RenderThreadAnimators.isSupported());
+
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(instrumentation.getTargetContext(), HostActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        final HostActivity activity = (HostActivity) instrumentation.startActivitySync(intent);
+        instrumentation.waitForIdleSync();
+        final View box = activity.box;
+        assumeTrue(box.isHardwareAccelerated());
+
+        final int[] origin = new int[2];
+        final Animator[] animator = new Animator[1];
+        HandlerThread copier = new HandlerThread("pixel-copy");
+        copier.start();
+        try {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    box.getLocationInWindow(origin);
+                    animator[0] = RenderThreadAnimators.start(box, RenderThreadTimingPlan.CHANNEL_TRANSLATION_X,
+                            0, 1, DURATION, new TimeInterpolator() {
+                                @Override
+                                public float getInterpolation(float input) {
+                                    return input * DISTANCE;
+                                }
+                            });
+                }
+            });
+            assertNotNull(animator[0]);
+            // the animator is handed over to the RenderThread with the next frame drawn by the UI thread
+            SystemClock.sleep(100);
+
+            View decor = activity.getWindow().getDecorView();
+            final Bitmap frame = Bitmap.createBitmap(decor.getWidth(), decor.getHeight(), Bitmap.Config.ARGB_8888);
+            final int[] result = {-1};
+            final CountDownLatch copied = new CountDownLatch(1);
+            final Handler copyHandler = new Handler(copier.getLooper());
+            copyHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    PixelCopy.request(activity.getWindow(), frame, new PixelCopy.OnPixelCopyFinishedListener() {
+                        @Override
+                        public void onPixelCopyFinished(int copyResult) {
+                            result[0] = copyResult;
+                            copied.countDown();
+                        }
+                    }, copyHandler);
+                }
+            }, STALL / 2);
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    SystemClock.sleep(STALL);
+                }
+            });
+
+            assertTrue(copied.await(5, TimeUnit.SECONDS));
+            assertEquals(PixelCopy.SUCCESS, result[0]);
+            int moved = findBox(frame, origin[1] + BOX_SIZE / 2) - origin[0];
+            // about 40% of the way by then, stepped on the UI thread it wouldn't have made it past 5%
+            assertTrue("moved " + moved + "px during the stall", moved > DISTANCE / 5 && moved < DISTANCE);
+        } finally {
+            copier.quit();
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    if (animator[0] != null) {
+                        animator[0].cancel();
+                    }
+                    activity.finish();
+                }
+            });
+        }
+    }
+
+    private static int findBox(Bitmap frame, int y) {
+        for (int x = 0; x < frame.getWidth(); x++) {
+            int pixel = frame.getPixel(x, y);
+            if (Color.red(pixel) > 200 && Color.green(pixel) < 60 && Color.blue(pixel) < 60) {
+                return x;
+            }
+        }
+        return -1;
+    }
+}
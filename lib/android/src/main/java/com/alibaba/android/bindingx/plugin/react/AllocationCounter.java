@@ -0,0 +1,97 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import java.lang.reflect.Method;
+
+/**
+ * Description:
+ *
+ * Allocation counter of the current thread, shared by {@link BindingXInputReplayer} and the allocation
+ * budgets of the tests. ART counts objects through {@link android.os.Debug}, HotSpot counts bytes through
+ * {@code com.sun.management.ThreadMXBean}, so only differences taken on the same vm are meaningful.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class AllocationCounter {
+
+    private static final int MODE_UNKNOWN = 0;
+    private static final int MODE_ART = 1;
+    private static final int MODE_HOTSPOT = 2;
+    private static final int MODE_NONE = 3;
+
+    private static volatile int sMode = MODE_UNKNOWN;
+    private static Object sThreadBean;
+    private static Method sAllocatedBytes;
+
+    private AllocationCounter() {
+    }
+
+    static boolean isSupported() {
+        return current() >= 0;
+    }
+
+    /**
+     * @return allocations of the current thread so far, or -1 if they can't be counted
+     * */
+    @SuppressWarnings("deprecation")
+    static long current() {
+        if(sMode == MODE_UNKNOWN) {
+            sMode = detect();
+        }
+        try {
+            switch (sMode) {
+                case MODE_ART:
+                    return android.os.Debug.getThreadAllocCount();
+                case MODE_HOTSPOT:
+                    return (long) sAllocatedBytes.invoke(sThreadBean, Thread.currentThread().getId());
+                default:
+                    return -1;
+            }
+        } catch (Throwable e) {
+            sMode = MODE_NONE;
+            return -1;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static synchronized int detect() {
+        if(sMode != MODE_UNKNOWN) {
+            return sMode;
+        }
+        try {
+            Object bean = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean").invoke(null);
+            Class<?> clazz = Class.forName("com.sun.management.ThreadMXBean");
+            if(clazz.isInstance(bean)
+                    && (Boolean) clazz.getMethod("isThreadAllocatedMemorySupported").invoke(bean)
+                    && (Boolean) clazz.getMethod("isThreadAllocatedMemoryEnabled").invoke(bean)) {
+                sThreadBean = bean;
+                sAllocatedBytes = clazz.getMethod("getThreadAllocatedBytes", long.class);
+                return MODE_HOTSPOT;
+            }
+        } catch (Throwable e) {
+            // not a HotSpot vm
+        }
+        try {
+            android.os.Debug.startAllocCounting();
+            return MODE_ART;
+        } catch (Throwable e) {
+            return MODE_NONE;
+        }
+    }
+}
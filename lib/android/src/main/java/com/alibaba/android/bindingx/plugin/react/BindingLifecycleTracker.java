@@ -0,0 +1,588 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+import android.view.View;
+
+import com.facebook.react.bridge.UiThreadUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Description:
+ *
+ * Keeps track of live bindings together with weak references to their anchor and target views.
+ * A binding is considered dropped once its anchor, or all of its targets, have been garbage collected
+ * or detached from the window for good, that is react dropped their tags. Views detached for a while
+ * (screens pushed under another, clipped subviews) keep their bindings.
+ *
+ * Bindings are also indexed by their optional group key and by their anchor, so that they can be
+ * released or paused in bulk. The bindings writing each (tag, property) pair are counted, pairs written
+ * by more than one binding are contended, see {@link #pollContendedWrites()}.
+ *
+ * The targets of live bindings are registered here as well, and go away with their binding. The core hands
+ * copies of their configs back with every update, {@link #findTarget(Map, String, String)} resolves those.
+ * The targets of recyclable bindings come and go with the list cells they are re-pointed to, so only their
+ * anchor counts.
+ *
+ * Not thread safe. All methods except {@link #size()}, {@link #findSlot(String)} and
+ * {@link #findTarget(Map, String, String)} are expected to be called on the bindingX worker thread.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class BindingLifecycleTracker {
+
+    interface OnViewDetachedListener {
+        /**
+         * a tracked view has been dropped. called on the UI thread.
+         * */
+        void onViewDetached();
+
+        /**
+         * whether the detached view is gone for good, as opposed to detached for a while.
+         * called on the UI thread.
+         * */
+        boolean isViewDropped(@NonNull View view);
+    }
+
+    private final Map<String, Record> mRecords = new HashMap<>();
+    private final Map<String, Set<String>> mTokensByGroup = new HashMap<>();
+    private final SparseArray<Set<String>> mTokensByAnchor = new SparseArray<>();
+    private final Map<String, RNBindingDescriptor.TargetConfig> mSlots = new ConcurrentHashMap<>();
+    private final Map<String, RNBindingDescriptor.TargetConfig> mTargetsById = new ConcurrentHashMap<>();
+    // keyed by the ref the core knows the target by and the property
+    private final ConcurrentHashMap<String, RNBindingDescriptor.TargetConfig> mTargetsByWrite = new ConcurrentHashMap<>();
+    private final OnViewDetachedListener mDetachedListener;
+    private volatile int mSize = 0;
+
+    // (tag, property) -> number of live bindings writing it
+    private final Map<String, Integer> mWriteCounts = new HashMap<>();
+    // property -> tags written by more than one binding
+    private final Map<String, SparseBooleanArray> mContendedWrites = new HashMap<>();
+    private boolean isContendedWritesChanged = false;
+
+    BindingLifecycleTracker(@NonNull OnViewDetachedListener listener) {
+        this.mDetachedListener = listener;
+    }
+
+    void track(@NonNull String token,
+               @Nullable String eventType,
+               @Nullable String group,
+               int anchorTag,
+               @Nullable View anchor,
+               @NonNull List<View> targets,
+               @NonNull int[] targetTags,
+               @NonNull String[] targetProperties,
+               @NonNull RNBindingDescriptor.TargetConfig[] targetConfigs,
+               @Nullable BindingParams params) {
+        untrack(token);
+        Record record = new Record(token, eventType, group, anchorTag, anchor, targets,
+                targetTags, targetProperties, targetConfigs, params, mDetachedListener);
+        mRecords.put(token, record);
+        countWrites(record, 1);
+        if(group != null) {
+            obtainIndex(mTokensByGroup, group).add(token);
+        }
+        if(anchorTag != -1) {
+            Set<String> tokens = mTokensByAnchor.get(anchorTag);
+            if(tokens == null) {
+                tokens = new HashSet<>(4);
+                mTokensByAnchor.put(anchorTag, tokens);
+            }
+            tokens.add(token);
+        }
+        mSize = mRecords.size();
+    }
+
+    @Nullable
+    Record untrack(@Nullable String token) {
+        if(token == null) {
+            return null;
+        }
+        Record record = mRecords.remove(token);
+        if(record != null) {
+            record.release();
+            removeTargets(record.targetProperties, record.targetConfigs);
+            countWrites(record, -1);
+            removeFromIndex(record);
+        }
+        mSize = mRecords.size();
+        return record;
+    }
+
+    void clear() {
+        for(Record record : mRecords.values()) {
+            record.release();
+        }
+        mRecords.clear();
+        mSlots.clear();
+        for(RNBindingDescriptor.TargetConfig config : mTargetsById.values()) {
+            config.isReleased = true;
+        }
+        mTargetsById.clear();
+        mTargetsByWrite.clear();
+        mTokensByGroup.clear();
+        mTokensByAnchor.clear();
+        mWriteCounts.clear();
+        isContendedWritesChanged |= !mContendedWrites.isEmpty();
+        mContendedWrites.clear();
+        mSize = 0;
+    }
+
+    /**
+     * remove and return all bindings of the given group.
+     * */
+    @NonNull
+    List<Record> untrackGroup(@NonNull String group) {
+        Set<String> tokens = mTokensByGroup.get(group);
+        return untrackAll(tokens);
+    }
+
+    /**
+     * remove and return all bindings anchored on the given view.
+     * */
+    @NonNull
+    List<Record> untrackAnchor(int anchorTag) {
+        Set<String> tokens = mTokensByAnchor.get(anchorTag);
+        return untrackAll(tokens);
+    }
+
+    @NonNull
+    List<Record> getGroup(@NonNull String group) {
+        Set<String> tokens = mTokensByGroup.get(group);
+        if(tokens == null || tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Record> records = new ArrayList<>(tokens.size());
+        for(String token : tokens) {
+            Record record = mRecords.get(token);
+            if(record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Nullable
+    Record get(@Nullable String token) {
+        return token == null ? null : mRecords.get(token);
+    }
+
+    /**
+     * @return whether any live binding writes the property of the view with the given tag
+     * */
+    boolean isWritten(int tag, @NonNull String property) {
+        return mWriteCounts.containsKey(writeKey(String.valueOf(tag), property));
+    }
+
+    /**
+     * point the slots of a recyclable binding currently on the old tags (keys) at the new tags (values).
+     * @return true if any slot moved
+     * */
+    boolean retarget(@NonNull Record record, @NonNull SparseIntArray tags) {
+        countWrites(record, -1);
+        boolean moved = record.retarget(tags);
+        countWrites(record, 1);
+        return moved;
+    }
+
+    /**
+     * @return the (tag, property) pairs written by more than one binding as a snapshot the caller owns, or
+     * null if they did not change since the last call.
+     * */
+    @Nullable
+    Map<String, SparseBooleanArray> pollContendedWrites() {
+        if(!isContendedWritesChanged) {
+            return null;
+        }
+        isContendedWritesChanged = false;
+        Map<String, SparseBooleanArray> snapshot = new HashMap<>(mContendedWrites.size());
+        for(Map.Entry<String, SparseBooleanArray> entry : mContendedWrites.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().clone());
+        }
+        return snapshot;
+    }
+
+    private void countWrites(@NonNull Record record, int delta) {
+        for(int i = 0; i < record.targetTags.length; i++) {
+            String property = record.targetProperties[i];
+            int tag = record.targetTags[i];
+            String key = writeKey(String.valueOf(tag), property);
+            Integer current = mWriteCounts.get(key);
+            int count = (current == null ? 0 : current) + delta;
+            if(count > 0) {
+                mWriteCounts.put(key, count);
+            } else {
+                mWriteCounts.remove(key);
+            }
+            if(count == 2 && delta > 0) {
+                SparseBooleanArray tags = mContendedWrites.get(property);
+                if(tags == null) {
+                    tags = new SparseBooleanArray();
+                    mContendedWrites.put(property, tags);
+                }
+                tags.put(tag, true);
+                isContendedWritesChanged = true;
+            } else if(count == 1 && delta < 0) {
+                SparseBooleanArray tags = mContendedWrites.get(property);
+                if(tags != null) {
+                    tags.delete(tag);
+                    if(tags.size() == 0) {
+                        mContendedWrites.remove(property);
+                    }
+                }
+                isContendedWritesChanged = true;
+            }
+        }
+    }
+
+    /**
+     * all live bindings, for iteration on the worker thread only.
+     * */
+    @NonNull
+    Collection<Record> getAll() {
+        return mRecords.values();
+    }
+
+    @NonNull
+    private List<Record> untrackAll(@Nullable Set<String> tokens) {
+        if(tokens == null || tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Record> records = new ArrayList<>(tokens.size());
+        for(String token : new ArrayList<>(tokens)) {
+            Record record = untrack(token);
+            if(record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private void removeFromIndex(@NonNull Record record) {
+        if(record.group != null) {
+            Set<String> tokens = mTokensByGroup.get(record.group);
+            if(tokens != null) {
+                tokens.remove(record.token);
+                if(tokens.isEmpty()) {
+                    mTokensByGroup.remove(record.group);
+                }
+            }
+        }
+        if(record.anchorTag != -1) {
+            Set<String> tokens = mTokensByAnchor.get(record.anchorTag);
+            if(tokens != null) {
+                tokens.remove(record.token);
+                if(tokens.isEmpty()) {
+                    mTokensByAnchor.remove(record.anchorTag);
+                }
+            }
+        }
+    }
+
+    @NonNull
+    private static Set<String> obtainIndex(@NonNull Map<String, Set<String>> index, @NonNull String key) {
+        Set<String> tokens = index.get(key);
+        if(tokens == null) {
+            tokens = new HashSet<>(4);
+            index.put(key, tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * remove and return all bindings whose views have been dropped.
+     * */
+    @NonNull
+    List<Record> sweep() {
+        List<Record> dropped = null;
+        Iterator<Record> iterator = mRecords.values().iterator();
+        while (iterator.hasNext()) {
+            Record record = iterator.next();
+            if(record.isDropped()) {
+                if(dropped == null) {
+                    dropped = new ArrayList<>(2);
+                }
+                dropped.add(record);
+                record.release();
+                removeTargets(record.targetProperties, record.targetConfigs);
+                countWrites(record, -1);
+                iterator.remove();
+                removeFromIndex(record);
+            }
+        }
+        mSize = mRecords.size();
+        return dropped == null ? Collections.<Record>emptyList() : dropped;
+    }
+
+    /**
+     * make the targets of a binding resolvable. done ahead of the bind, the core may look them up right away.
+     * */
+    void addTargets(@NonNull String[] properties, @NonNull RNBindingDescriptor.TargetConfig[] configs) {
+        for(int i = 0; i < configs.length; i++) {
+            RNBindingDescriptor.TargetConfig config = configs[i];
+            if(config.slot != null) {
+                mSlots.put(config.slot, config);
+            }
+            mTargetsById.put(config.id, config);
+            mTargetsByWrite.put(writeKey(refOf(config), properties[i]), config);
+        }
+    }
+
+    void removeTargets(@NonNull String[] properties, @NonNull RNBindingDescriptor.TargetConfig[] configs) {
+        for(int i = 0; i < configs.length; i++) {
+            RNBindingDescriptor.TargetConfig config = configs[i];
+            if(config.slot != null) {
+                mSlots.remove(config.slot);
+            }
+            mTargetsById.remove(config.id);
+            mTargetsByWrite.remove(writeKey(refOf(config), properties[i]), config);
+            config.isReleased = true;
+        }
+    }
+
+    /**
+     * the target behind a slot ref, safe to call from any thread.
+     * */
+    @Nullable
+    RNBindingDescriptor.TargetConfig findSlot(@Nullable String ref) {
+        return ref == null ? null : mSlots.get(ref);
+    }
+
+    /**
+     * the target of an update issued by the core, safe to call from any thread.
+     * @param config the copy of the target's config the core keeps, found by the id it carries
+     * @param ref the element the core knows the target by, a react tag or a slot. used together with the
+     *            property when the config has no id, the latest binding wins if several write the same
+     * */
+    @Nullable
+    RNBindingDescriptor.TargetConfig findTarget(@NonNull Map<String, Object> config, @Nullable String ref,
+                                                @NonNull String property) {
+        Object id = config.get(RNBindingDescriptor.KEY_TARGET_ID);
+        RNBindingDescriptor.TargetConfig target = id instanceof String ? mTargetsById.get(id) : null;
+        if(target != null || ref == null) {
+            return target;
+        }
+        ref = ref.trim();
+        if(!mSlots.containsKey(ref)) {
+            int tag = RNUtils.getReactTag(ref, -1);
+            if(tag == -1) {
+                return null;
+            }
+            ref = String.valueOf(tag);
+        }
+        return mTargetsByWrite.get(writeKey(ref, property));
+    }
+
+    @NonNull
+    private static String refOf(@NonNull RNBindingDescriptor.TargetConfig config) {
+        return config.slot != null ? config.slot : String.valueOf(config.tag);
+    }
+
+    @NonNull
+    private static String writeKey(@NonNull String ref, @NonNull String property) {
+        return ref + '|' + property;
+    }
+
+    /**
+     * number of live bindings, safe to read from any thread.
+     * */
+    int size() {
+        return mSize;
+    }
+
+    static final class Record {
+        final String token;
+        final String eventType;
+        final String group;
+        final int anchorTag;
+        // the (tag, property) pairs written by this binding
+        final int[] targetTags;
+        final String[] targetProperties;
+        final RNBindingDescriptor.TargetConfig[] targetConfigs;
+        // null if the handler of the binding does not read params
+        final BindingParams params;
+
+        boolean paused = false;
+        // set while the binding runs on the RenderThread, it has to be moved off once its writes are contended
+        BindingXRenderThreadTimingHandler renderThreadHandler = null;
+
+        private final ViewRef mAnchor;
+        private final List<ViewRef> mTargets;
+        private final OnViewDetachedListener mListener;
+
+        Record(@NonNull String token, @Nullable String eventType, @Nullable String group, int anchorTag,
+               @Nullable View anchor, @NonNull List<View> targets, @NonNull int[] targetTags,
+               @NonNull String[] targetProperties, @NonNull RNBindingDescriptor.TargetConfig[] targetConfigs,
+               @Nullable BindingParams params, @NonNull OnViewDetachedListener listener) {
+            this.token = token;
+            this.eventType = eventType;
+            this.group = group;
+            this.anchorTag = anchorTag;
+            this.targetTags = targetTags;
+            this.targetProperties = targetProperties;
+            this.targetConfigs = targetConfigs;
+            this.params = params;
+            this.mListener = listener;
+            this.mAnchor = anchor == null ? null : new ViewRef(anchor, listener);
+            this.mTargets = new ArrayList<>(targets.size());
+            setTargets(targets);
+        }
+
+        /**
+         * see {@link BindingLifecycleTracker#retarget(Record, SparseIntArray)}, which keeps the counts in sync.
+         * */
+        private boolean retarget(@NonNull SparseIntArray tags) {
+            boolean moved = false;
+            for(int i = 0; i < targetTags.length; i++) {
+                int tag = tags.get(targetTags[i], -1);
+                if(tag == -1 || tag == targetTags[i] || targetConfigs[i].slot == null) {
+                    continue;
+                }
+                targetTags[i] = tag;
+                targetConfigs[i].tag = tag;
+                moved = true;
+            }
+            return moved;
+        }
+
+        boolean isRecyclable() {
+            return targetConfigs.length > 0 && targetConfigs[0].slot != null;
+        }
+
+        void setTargets(@NonNull List<View> targets) {
+            for(ViewRef ref : mTargets) {
+                ref.release();
+            }
+            mTargets.clear();
+            for(View target : targets) {
+                if(target != null) {
+                    mTargets.add(new ViewRef(target, mListener));
+                }
+            }
+        }
+
+        boolean isDropped() {
+            if(mAnchor != null && mAnchor.isDropped()) {
+                return true;
+            }
+            if(mTargets.isEmpty() || isRecyclable()) {
+                return false;
+            }
+            for(ViewRef ref : mTargets) {
+                if(!ref.isDropped()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void release() {
+            if(mAnchor != null) {
+                mAnchor.release();
+            }
+            for(ViewRef ref : mTargets) {
+                ref.release();
+            }
+        }
+    }
+
+    private static final class ViewRef implements View.OnAttachStateChangeListener {
+        private final WeakReference<View> mView;
+        private final OnViewDetachedListener mListener;
+        private volatile boolean isDropped = false;
+        private volatile boolean isReleased = false;
+
+        // views are only touched on the UI thread, refs are created and released on the worker
+        private final Runnable mObserve = new Runnable() {
+            @Override
+            public void run() {
+                View view = mView.get();
+                if(view == null || isReleased) {
+                    return;
+                }
+                view.addOnAttachStateChangeListener(ViewRef.this);
+                if(view.getWindowToken() == null) {
+                    // may have been detached before we got here
+                    UiThreadUtil.runOnUiThread(mCheckDropped);
+                }
+            }
+        };
+        private final Runnable mUnobserve = new Runnable() {
+            @Override
+            public void run() {
+                View view = mView.get();
+                if(view != null) {
+                    view.removeOnAttachStateChangeListener(ViewRef.this);
+                }
+            }
+        };
+        // react detaches views ahead of dropping them, so this runs after the batch which detached the view
+        private final Runnable mCheckDropped = new Runnable() {
+            @Override
+            public void run() {
+                View view = mView.get();
+                if(view == null || isReleased || isDropped || view.getWindowToken() != null) {
+                    return;
+                }
+                if(mListener.isViewDropped(view)) {
+                    isDropped = true;
+                    mListener.onViewDetached();
+                }
+            }
+        };
+
+        ViewRef(@NonNull View view, @NonNull OnViewDetachedListener listener) {
+            this.mView = new WeakReference<>(view);
+            this.mListener = listener;
+            UiThreadUtil.runOnUiThread(mObserve);
+        }
+
+        boolean isDropped() {
+            return isDropped || mView.get() == null;
+        }
+
+        void release() {
+            isReleased = true;
+            UiThreadUtil.runOnUiThread(mUnobserve);
+        }
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            UiThreadUtil.runOnUiThread(mCheckDropped);
+        }
+    }
+}
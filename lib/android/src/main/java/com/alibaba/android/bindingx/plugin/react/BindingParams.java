@@ -0,0 +1,106 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.UiThreadUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * The {@code params} of one binding: values its expressions read like any other variable, e.g. the
+ * offset of the list cell the binding belongs to. They are given at bind time and may be replaced later on
+ * through {@code retarget}, without touching the parsed expressions.
+ *
+ * Params are posted from the worker thread and picked up by the handler right before its next evaluation,
+ * on whatever thread that runs. Variables of the handler itself (x, y, t...) win over params of the same name.
+ *
+ * Handlers also hand in a reevaluation, which evaluates their expressions again with their latest sample. It is
+ * requested once a binding was retargeted, so that the new cell shows the right values before the next event.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class BindingParams {
+
+    private volatile Map<String, Object> mPending = null;
+
+    /**
+     * whether a handler reads these params. handlers of the core don't.
+     * */
+    volatile boolean attached = false;
+
+    private volatile Runnable mReevaluation = null;
+
+    BindingParams(@Nullable Map<String, Object> params) {
+        if(params != null && !params.isEmpty()) {
+            mPending = new HashMap<>(params);
+        }
+    }
+
+    /**
+     * replace the given params, the others are kept.
+     * */
+    void post(@NonNull Map<String, Object> params) {
+        if(params.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            Map<String, Object> pending = mPending == null ? new HashMap<String, Object>() : new HashMap<>(mPending);
+            pending.putAll(params);
+            mPending = pending;
+        }
+    }
+
+    /**
+     * @param reevaluation run on the UI thread, does nothing if the handler has no sample yet
+     * */
+    void setReevaluation(@Nullable Runnable reevaluation) {
+        this.mReevaluation = reevaluation;
+    }
+
+    /**
+     * have the handler evaluate its expressions again, with the params posted so far.
+     * */
+    void requestReevaluation() {
+        Runnable reevaluation = mReevaluation;
+        if(reevaluation != null) {
+            UiThreadUtil.runOnUiThread(reevaluation);
+        }
+    }
+
+    /**
+     * copy the params posted since the last call into the scope of the handler.
+     * */
+    void applyTo(@NonNull Map<String, Object> scope) {
+        if(mPending == null) {
+            return;
+        }
+        Map<String, Object> pending;
+        synchronized (this) {
+            pending = mPending;
+            mPending = null;
+        }
+        if(pending != null) {
+            scope.putAll(pending);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * Keeps the parsed form ({@code transformed}) of binding expressions across launches, so that JS only has
+ * to send the {@code origin} of an expression it has bound before. Entries are keyed by the origin, the
+ * file is memory mapped on load.
+ *
+ * An origin sent alone whose plan is missing or unreadable is reported back as unresolved, JS parses it and
+ * binds again. Such a binding is never handed to the core with an empty expression.
+ *
+ * Plans are only valid for the parser which produced them and the core which runs them. The header carries
+ * a hash of both versions, JS tells the parser version through {@link #getOrigins(String)}, until then no
+ * plan is used or remembered. Decoded plans are kept in memory, a cache hit doesn't parse JSON again.
+ *
+ * File layout, big endian:
+ * <pre>
+ *     header: int magic, int version, long format, int count
+ *     entry:  long hash, int originLength, int transformedLength, byte[] origin, byte[] transformed (UTF-8 JSON)
+ * </pre>
+ * The hash covers both the origin and the transformed bytes.
+ * A file with another magic, version or format is ignored and rewritten.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class BindingPlanCache {
+
+    private static final int MAGIC = 0x42585043; // "BXPC"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 20;
+    private static final int ENTRY_HEADER_SIZE = 16;
+    private static final int MAX_ENTRIES = 256;
+    private static final int MAX_FILE_SIZE = 4 * 1024 * 1024;
+
+    private static final String KEY_EXPRESSION = "expression";
+    private static final String KEY_EXIT_EXPRESSION = "exitExpression";
+    private static final String KEY_ORIGIN = "origin";
+    private static final String KEY_TRANSFORMED = "transformed";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mFile;
+    private final String mCoreVersion;
+
+    // origin -> plan, most recently used last
+    private final LinkedHashMap<String, Plan> mPlans = new LinkedHashMap<>(16, 0.75f, true);
+    // format of the plans in mPlans, as read from the file
+    private long mFormat = 0;
+    private boolean isFormatKnown = false;
+    private boolean isLoaded = false;
+    private boolean isDirty = false;
+
+    /**
+     * @param coreVersion version of the bindingx core which runs the plans
+     * */
+    BindingPlanCache(@NonNull File file, @NonNull String coreVersion) {
+        this.mFile = file;
+        this.mCoreVersion = coreVersion;
+    }
+
+    /**
+     * origins of all cached expressions, plans of another parser or core version are dropped first.
+     * @param parserVersion version of the parser JS transforms expressions with
+     * */
+    @NonNull
+    synchronized List<String> getOrigins(@Nullable String parserVersion) {
+        ensureLoaded();
+        long format = format(mCoreVersion, parserVersion);
+        if (format != mFormat) {
+            if (!mPlans.isEmpty()) {
+                mPlans.clear();
+                isDirty = true;
+            }
+            mFormat = format;
+        }
+        isFormatKnown = true;
+        return new ArrayList<>(mPlans.keySet());
+    }
+
+    /**
+     * fill in the {@code transformed} of every expression of the given bind options which only comes with
+     * its {@code origin}, and remember those which come with both.
+     * @param unresolved receives the origins which came alone and have no usable plan, the options must not
+     *                   be bound then
+     * @return true if new plans have been remembered and {@link #flush()} should be called
+     * */
+    synchronized boolean resolve(@NonNull Map<String, Object> options, @NonNull List<String> unresolved) {
+        ensureLoaded();
+        boolean changed = resolveExpression(options, KEY_EXIT_EXPRESSION, unresolved);
+        Object props = options.get(BindingXConstants.KEY_PROPS);
+        if (props instanceof List) {
+            for (Object prop : (List<?>) props) {
+                if (prop instanceof Map) {
+                    changed |= resolveExpression(asMap(prop), KEY_EXPRESSION, unresolved);
+                }
+            }
+        }
+        isDirty |= changed;
+        return changed;
+    }
+
+    /**
+     * write the cache back if it changed, must not be called on the UI thread.
+     * */
+    synchronized void flush() {
+        if (!isDirty || !isFormatKnown) {
+            return;
+        }
+        isDirty = false;
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            File parent = mFile.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                return;
+            }
+            // keep the most recently used ones
+            List<Map.Entry<String, Plan>> entries = new ArrayList<>(mPlans.entrySet());
+            int from = Math.max(0, entries.size() - MAX_ENTRIES);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(mFormat);
+            out.writeInt(entries.size() - from);
+            for (int i = from; i < entries.size(); i++) {
+                byte[] origin = entries.get(i).getKey().getBytes(UTF_8);
+                byte[] transformed = entries.get(i).getValue().json.getBytes(UTF_8);
+                out.writeLong(hash(origin, transformed));
+                out.writeInt(origin.length);
+                out.writeInt(transformed.length);
+                out.write(origin);
+                out.write(transformed);
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(mFile)) {
+                LogProxy.e("failed to save binding plans");
+            }
+        } catch (IOException e) {
+            LogProxy.e("failed to save binding plans", e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            if (temp.exists() && !temp.delete()) {
+                LogProxy.e("failed to delete " + temp);
+            }
+        }
+    }
+
+    private boolean resolveExpression(@NonNull Map<String, Object> holder, @NonNull String key,
+                                      @NonNull List<String> unresolved) {
+        Object value = holder.get(key);
+        if (!(value instanceof Map)) {
+            return false;
+        }
+        Map<String, Object> expression = asMap(value);
+        Object origin = expression.get(KEY_ORIGIN);
+        if (!(origin instanceof String) || TextUtils.isEmpty((String) origin)) {
+            return false;
+        }
+        Object transformed = expression.get(KEY_TRANSFORMED);
+        if (transformed == null) {
+            Plan plan = isFormatKnown ? mPlans.get(origin) : null;
+            if (plan != null) {
+                try {
+                    if (plan.tree == null) {
+                        plan.tree = fromJson(new JSONObject(plan.json));
+                    }
+                    expression.put(KEY_TRANSFORMED, plan.tree);
+                    return false;
+                } catch (JSONException e) {
+                    mPlans.remove(origin);
+                    isDirty = true;
+                }
+            }
+            unresolved.add((String) origin);
+            return false;
+        }
+        if (!isFormatKnown || !(transformed instanceof Map) || mPlans.containsKey(origin)) {
+            return false;
+        }
+        try {
+            mPlans.put((String) origin, new Plan(toJson(transformed).toString()));
+            return true;
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    private void ensureLoaded() {
+        if (isLoaded) {
+            return;
+        }
+        isLoaded = true;
+        if (!mFile.exists()) {
+            return;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "r");
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > MAX_FILE_SIZE) {
+                return;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                isDirty = true;
+                return;
+            }
+            mFormat = buffer.getLong();
+            int count = buffer.getInt();
+            for (int i = 0; i < count && buffer.remaining() >= ENTRY_HEADER_SIZE; i++) {
+                long hash = buffer.getLong();
+                int originLength = buffer.getInt();
+                int transformedLength = buffer.getInt();
+                if (originLength < 0 || transformedLength < 0
+                        || buffer.remaining() < originLength + transformedLength) {
+                    break;
+                }
+                byte[] origin = new byte[originLength];
+                byte[] transformed = new byte[transformedLength];
+                buffer.get(origin);
+                buffer.get(transformed);
+                if (hash(origin, transformed) != hash) {
+                    // torn write
+                    isDirty = true;
+                    continue;
+                }
+                mPlans.put(new String(origin, UTF_8), new Plan(new String(transformed, UTF_8)));
+            }
+        } catch (Exception e) {
+            LogProxy.e("failed to load binding plans", e);
+            mPlans.clear();
+            isDirty = true;
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the origin, then the transformed bytes
+     * */
+    static long hash(@NonNull byte[] origin, @NonNull byte[] transformed) {
+        return hash(hash(0xcbf29ce484222325L, origin), transformed);
+    }
+
+    /**
+     * hash of the versions plans depend on, never 0 which stands for an empty file
+     * */
+    static long format(@NonNull String coreVersion, @Nullable String parserVersion) {
+        long format = hash(hash(0xcbf29ce484222325L, (VERSION + "/" + coreVersion + "/").getBytes(UTF_8)),
+                String.valueOf(parserVersion).getBytes(UTF_8));
+        return format == 0 ? 1 : format;
+    }
+
+    private static long hash(long hash, @NonNull byte[] bytes) {
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @NonNull
+    private static Object toJson(@Nullable Object value) throws JSONException {
+        if (value instanceof Map) {
+            JSONObject object = new JSONObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                object.put(String.valueOf(entry.getKey()), toJson(entry.getValue()));
+            }
+            return object;
+        } else if (value instanceof List) {
+            JSONArray array = new JSONArray();
+            for (Object item : (List<?>) value) {
+                array.put(toJson(item));
+            }
+            return array;
+        }
+        return value == null ? JSONObject.NULL : value;
+    }
+
+    /**
+     * the inverse of {@link #toJson(Object)}, numbers come back as doubles like they do from the bridge.
+     * maps and lists are read only, the same tree is handed to every binding of the origin.
+     * */
+    @Nullable
+    private static Object fromJson(@Nullable Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            Map<String, Object> map = new HashMap<>();
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                map.put(key, fromJson(object.get(key)));
+            }
+            return Collections.unmodifiableMap(map);
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                list.add(fromJson(array.get(i)));
+            }
+            return Collections.unmodifiableList(list);
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value == JSONObject.NULL ? null : value;
+    }
+
+    private static final class Plan {
+        final String json;
+        // decoded on first use
+        Object tree;
+
+        Plan(@NonNull String json) {
+            this.json = json;
+        }
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(@NonNull Object value) {
+        return (Map<String, Object>) value;
+    }
+}
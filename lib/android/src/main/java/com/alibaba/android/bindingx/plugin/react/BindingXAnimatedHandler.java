@@ -0,0 +1,205 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.AbstractEventHandler;
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.UiThreadUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * Drives bindings with the value of a native-driven {@code Animated} node, the anchor being the tag of the
+ * node ({@code value.__getNativeTag()}). Expressions can read {@code value}.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+public class BindingXAnimatedHandler extends AbstractEventHandler implements RNAnimatedInterop.ValueListener {
+
+    /*package*/ static final String TYPE_ANIMATED = "animated";
+
+    private int mNodeTag = -1;
+    private boolean isListening = false;
+    private BindingXFrameGovernor mFrameGovernor = null;
+    private BindingParams mBindingParams = null;
+    // the latest value, evaluated again once the binding is retargeted
+    private double mLastValue;
+    private boolean hasSample = false;
+    private CompiledBinding mCompiledBinding = null;
+
+    public BindingXAnimatedHandler(Context context, PlatformManager manager, Object... extension) {
+        super(context, manager, extension);
+    }
+
+    /*package*/ void setFrameGovernor(@Nullable BindingXFrameGovernor governor) {
+        this.mFrameGovernor = governor;
+    }
+
+    /*package*/ void setBindingParams(@Nullable BindingParams params) {
+        this.mBindingParams = params;
+        if(params != null) {
+            params.setReevaluation(new Runnable() {
+                @Override
+                public void run() {
+                    if(hasSample) {
+                        onValueUpdate(mLastValue);
+                    }
+                }
+            });
+        }
+    }
+
+    /*package*/ void setCompiledBinding(@Nullable CompiledBinding binding) {
+        this.mCompiledBinding = binding;
+    }
+
+    @Override
+    public boolean onCreate(@NonNull String sourceRef, @NonNull String eventType) {
+        mNodeTag = RNUtils.getReactTag(sourceRef, -1);
+        if(mNodeTag == -1 || !(mContext instanceof ReactContext)) {
+            LogProxy.e("animated binding requires the tag of an animated node as anchor");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void onStart(@NonNull String sourceRef, @NonNull String eventType) {
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if(isListening) {
+                    return;
+                }
+                ReactContext context = (ReactContext) mContext;
+                isListening = RNAnimatedInterop.startListening(context, mNodeTag, BindingXAnimatedHandler.this);
+                if(isListening) {
+                    fireEventByState(BindingXConstants.STATE_START, RNAnimatedInterop.getValue(context, mNodeTag));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onValueUpdate(double value) {
+        mLastValue = value;
+        hasSample = true;
+        long governed = mFrameGovernor == null ? 0 : mFrameGovernor.begin();
+        boolean traced = BindingXTrace.beginSection("BindingX#evaluate:animated");
+        try {
+            if(mBindingParams != null) {
+                mBindingParams.applyTo(mScope);
+            }
+            mScope.put("value", value);
+            if(mCompiledBinding != null && mCompiledBinding.evaluate(mScope)) {
+                mCompiledBinding.dispatch(mPlatformManager);
+                if(mCompiledBinding.mayExit()) {
+                    evaluateExitExpression(mExitExpressionPair, mScope);
+                }
+            } else {
+                consumeExpression(mExpressionHoldersMap, mScope, TYPE_ANIMATED);
+                evaluateExitExpression(mExitExpressionPair, mScope);
+            }
+        } catch (Exception e) {
+            LogProxy.e("runtime error", e);
+        } finally {
+            BindingXTrace.endSection(traced);
+            if(mFrameGovernor != null) {
+                mFrameGovernor.end(governed);
+            }
+        }
+    }
+
+    @Override
+    public boolean onDisable(@NonNull String sourceRef, @NonNull String eventType) {
+        stopListening();
+        clearExpressions();
+        fireEventByState(BindingXConstants.STATE_END, Double.NaN);
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        stopListening();
+    }
+
+    @Override
+    public void onActivityPause() {
+
+    }
+
+    @Override
+    public void onActivityResume() {
+
+    }
+
+    @Override
+    protected void onExit(@NonNull Map<String, Object> scope) {
+        stopListening();
+        Object value = scope.get("value");
+        fireEventByState(BindingXConstants.STATE_EXIT, value instanceof Double ? (Double) value : Double.NaN);
+    }
+
+    @Override
+    protected void onUserIntercept(String interceptor, @NonNull Map<String, Object> result, @NonNull Map<String, Object> scope) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", BindingXConstants.STATE_INTERCEPTOR);
+            param.put("value", scope.get("value"));
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            Map<String, Object> intercept = new HashMap<>();
+            intercept.put(interceptor, result);
+            param.put("interceptor", intercept);
+            mCallback.callback(param);
+        }
+    }
+
+    private void stopListening() {
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if(isListening) {
+                    isListening = false;
+                    RNAnimatedInterop.stopListening((ReactContext) mContext, mNodeTag, BindingXAnimatedHandler.this);
+                }
+            }
+        });
+    }
+
+    private void fireEventByState(@NonNull String state, double value) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", state);
+            if(!Double.isNaN(value)) {
+                param.put("value", value);
+            }
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            mCallback.callback(param);
+        }
+    }
+}
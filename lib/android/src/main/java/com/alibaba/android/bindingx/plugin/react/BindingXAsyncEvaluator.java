@@ -0,0 +1,174 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.uimanager.UIImplementation;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Description:
+ *
+ * Evaluates binding expressions on a dedicated thread instead of the thread which delivered the input.
+ *
+ * Handlers submit {@link Sample}s, which are coalesced and evaluated on the evaluator thread. Every view update
+ * issued during the evaluation is written into a buffer which is published through a lock-free triple buffer,
+ * and applied on the UI thread at the next vsync. Intermediate snapshots the UI thread did not get to see are
+ * merged into the next one, so the latest value of every property is never lost. see {@link UpdateTripleBuffer}
+ *
+ * Once {@link #quit()}, samples are refused and the handlers which still hold the evaluator evaluate on their
+ * own thread again.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class BindingXAsyncEvaluator {
+
+    interface UpdateApplier {
+        void apply(int tag,
+                   @NonNull View targetView,
+                   @NonNull String propertyName,
+                   @NonNull Object propertyValue,
+                   @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                   @NonNull Map<String, Object> config,
+                   @NonNull UIImplementation implementation);
+    }
+
+    /**
+     * a pending input sample. {@link #evaluate()} is called on the evaluator thread.
+     * */
+    static abstract class Sample implements Runnable {
+        private final AtomicBoolean mQueued = new AtomicBoolean(false);
+        private BindingXAsyncEvaluator mEvaluator;
+
+        abstract void evaluate();
+
+        @Override
+        public final void run() {
+            mQueued.set(false);
+            try {
+                evaluate();
+            } catch (Exception e) {
+                LogProxy.e("unexpected error while evaluating", e);
+            }
+            mEvaluator.publish();
+        }
+    }
+
+    private final UpdateApplier mApplier;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // written on the evaluator thread, read on the ui thread
+    private final UpdateTripleBuffer mUpdates = new UpdateTripleBuffer();
+
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean(false);
+    private volatile boolean isQuit = false;
+    private volatile Choreographer mChoreographer;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameScheduled.set(false);
+            mUpdates.applyLatest(mApplier);
+        }
+    };
+
+    private final Runnable mScheduleFrameOnMain = new Runnable() {
+        @Override
+        public void run() {
+            if(mChoreographer == null) {
+                mChoreographer = Choreographer.getInstance();
+            }
+            mChoreographer.postFrameCallback(mFrameCallback);
+        }
+    };
+
+    BindingXAsyncEvaluator(@NonNull UpdateApplier applier) {
+        this.mApplier = applier;
+        mThread = new HandlerThread("bindingX-evaluator", Process.THREAD_PRIORITY_DISPLAY);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    boolean isEvaluatorThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    /**
+     * queue the sample for evaluation, does nothing if it is already queued.
+     * @return false if the evaluator has quit, the caller has to evaluate the sample itself then
+     * */
+    boolean submit(@NonNull Sample sample) {
+        if(isQuit) {
+            return false;
+        }
+        sample.mEvaluator = this;
+        if(sample.mQueued.compareAndSet(false, true)) {
+            mHandler.post(sample);
+        }
+        return true;
+    }
+
+    /**
+     * evaluator thread only.
+     * */
+    void write(int tag,
+               @NonNull View targetView,
+               @NonNull String propertyName,
+               @NonNull Object propertyValue,
+               @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+               @NonNull Map<String, Object> config,
+               @NonNull UIImplementation implementation) {
+        mUpdates.write(tag, targetView, propertyName, propertyValue, translator, config, implementation);
+    }
+
+    void quit() {
+        isQuit = true;
+        mHandler.removeCallbacksAndMessages(null);
+        mThread.quit();
+    }
+
+    private void publish() {
+        if(mUpdates.publish()) {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        if(!mFrameScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Choreographer choreographer = mChoreographer;
+        if(choreographer != null) {
+            choreographer.postFrameCallback(mFrameCallback);
+        } else {
+            mMainHandler.post(mScheduleFrameOnMain);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+
+import com.alibaba.android.bindingx.core.BindingXJSFunctionRegister;
+import com.alibaba.android.bindingx.core.internal.JSFunctionInterface;
+
+import java.util.ArrayList;
+
+/**
+ * Description:
+ *
+ * Easing functions backed by {@link EasingLookupTable}, callable from any expression. They take the same
+ * arguments as the timing functions of the core, {@code (t, b, c, d)} and the control points for bezier:
+ * <pre>
+ *     fastCubicBezier(t, 0, 1, 1000, 0.25, 0.1, 0.25, 1)
+ *     fastEaseOutBounce(t, 0, 300, 1000)
+ * </pre>
+ * Unlike the analytic ones, {@code t} is clamped to [0,d].
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class BindingXEasingFunctions {
+
+    static final String CUBIC_BEZIER = "fastCubicBezier";
+    static final String EASE_IN_ELASTIC = "fastEaseInElastic";
+    static final String EASE_OUT_ELASTIC = "fastEaseOutElastic";
+    static final String EASE_IN_OUT_ELASTIC = "fastEaseInOutElastic";
+    static final String EASE_IN_BOUNCE = "fastEaseInBounce";
+    static final String EASE_OUT_BOUNCE = "fastEaseOutBounce";
+    static final String EASE_IN_OUT_BOUNCE = "fastEaseInOutBounce";
+
+    private BindingXEasingFunctions() {
+    }
+
+    static void registerTo(@NonNull BindingXJSFunctionRegister register) {
+        register.registerJSFunction(CUBIC_BEZIER, new JSFunctionInterface() {
+            @Override
+            public Object execute(ArrayList<Object> arguments) throws NumberFormatException {
+                checkArguments(arguments, 8);
+                EasingLookupTable table = EasingLookupTable.cubicBezier(
+                        doubleAt(arguments, 4), doubleAt(arguments, 5), doubleAt(arguments, 6), doubleAt(arguments, 7));
+                return table.ease(
+                        doubleAt(arguments, 0), doubleAt(arguments, 1), doubleAt(arguments, 2), doubleAt(arguments, 3));
+            }
+        });
+        register.registerJSFunction(EASE_IN_ELASTIC, new TableFunction(EASE_IN_ELASTIC));
+        register.registerJSFunction(EASE_OUT_ELASTIC, new TableFunction(EASE_OUT_ELASTIC));
+        register.registerJSFunction(EASE_IN_OUT_ELASTIC, new TableFunction(EASE_IN_OUT_ELASTIC));
+        register.registerJSFunction(EASE_IN_BOUNCE, new TableFunction(EASE_IN_BOUNCE));
+        register.registerJSFunction(EASE_OUT_BOUNCE, new TableFunction(EASE_OUT_BOUNCE));
+        register.registerJSFunction(EASE_IN_OUT_BOUNCE, new TableFunction(EASE_IN_OUT_BOUNCE));
+    }
+
+    private static void checkArguments(ArrayList<Object> arguments, int count) throws NumberFormatException {
+        if (arguments == null || arguments.size() < count) {
+            throw new NumberFormatException("expected " + count + " arguments");
+        }
+    }
+
+    private static double doubleAt(@NonNull ArrayList<Object> arguments, int index) throws NumberFormatException {
+        Object value = arguments.get(index);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        throw new NumberFormatException("argument " + index + " is not a number: " + value);
+    }
+
+    @NonNull
+    private static EasingLookupTable tableOf(@NonNull String name) {
+        switch (name) {
+            case EASE_IN_ELASTIC:
+                return EasingLookupTable.elasticIn();
+            case EASE_OUT_ELASTIC:
+                return EasingLookupTable.elasticOut();
+            case EASE_IN_OUT_ELASTIC:
+                return EasingLookupTable.elasticInOut();
+            case EASE_IN_BOUNCE:
+                return EasingLookupTable.bounceIn();
+            case EASE_OUT_BOUNCE:
+                return EasingLookupTable.bounceOut();
+            default:
+                return EasingLookupTable.bounceInOut();
+        }
+    }
+
+    /**
+     * the table is only built the first time the function gets called.
+     * */
+    private static final class TableFunction implements JSFunctionInterface {
+        private final String mName;
+        private volatile EasingLookupTable mTable = null;
+
+        TableFunction(@NonNull String name) {
+            this.mName = name;
+        }
+
+        @Override
+        public Object execute(ArrayList<Object> arguments) throws NumberFormatException {
+            checkArguments(arguments, 4);
+            EasingLookupTable table = mTable;
+            if (table == null) {
+                table = tableOf(mName);
+                mTable = table;
+            }
+            return table.ease(
+                    doubleAt(arguments, 0), doubleAt(arguments, 1), doubleAt(arguments, 2), doubleAt(arguments, 3));
+        }
+    }
+}
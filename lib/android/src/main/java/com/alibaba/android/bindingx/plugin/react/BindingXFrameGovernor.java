@@ -0,0 +1,178 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.animation.AnimationUtils;
+
+/**
+ * Description:
+ *
+ * Measures the time BindingX spends on the UI thread per frame (evaluation and view updates) and, when it
+ * keeps going over budget, degrades bindings marked low-priority: at level n they are only written on one
+ * frame out of 2^n. The level goes back down once there is headroom again.
+ *
+ * Usage on the UI thread:
+ * <pre>
+ *     long start = governor.begin();
+ *     ...
+ *     governor.end(start);
+ * </pre>
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class BindingXFrameGovernor {
+
+    interface Listener {
+        /**
+         * called on the UI thread whenever the degradation level changes.
+         * */
+        void onLevelChanged(int level, double frameCostMillis, double budgetMillis);
+    }
+
+    static final int MAX_LEVEL = 3;
+
+    // weight of the latest frame in the moving average
+    private static final double SMOOTHING = 0.2;
+    // frames to wait after a level change before the next one
+    private static final int COOLDOWN_FRAMES = 30;
+    // the level goes down below this share of the budget
+    private static final double RECOVERY_RATIO = 0.5;
+
+    private final Listener mListener;
+
+    private volatile double mBudgetMillis = 0;
+
+    // UI thread only
+    private long mFrameTime = -1;
+    private long mFrameIndex = 0;
+    private long mFrameCostNanos = 0;
+    private double mAverageCostMillis = 0;
+    private int mLevel = 0;
+    private int mFramesSinceChange = 0;
+    // updates applied from within an evaluation are already accounted to it
+    private boolean isMeasuring = false;
+
+    BindingXFrameGovernor(@Nullable Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * @param budgetMillis time BindingX may spend on the UI thread per frame, 0 disables the governor.
+     * */
+    void setBudgetMillis(double budgetMillis) {
+        this.mBudgetMillis = Math.max(0, budgetMillis);
+    }
+
+    /**
+     * @return the start of a measurement, 0 if nothing is measured. measurements do not nest.
+     * */
+    long begin() {
+        if(mBudgetMillis <= 0 || isMeasuring || Looper.myLooper() != Looper.getMainLooper()) {
+            return 0;
+        }
+        isMeasuring = true;
+        return System.nanoTime();
+    }
+
+    void end(long start) {
+        if(start == 0) {
+            return;
+        }
+        isMeasuring = false;
+        account(AnimationUtils.currentAnimationTimeMillis(), System.nanoTime() - start);
+    }
+
+    /**
+     * add the given time to the cost of the frame.
+     * */
+    /*package*/ void account(long frameTime, long costNanos) {
+        syncFrame(frameTime);
+        mFrameCostNanos += costNanos;
+    }
+
+    /**
+     * @return true if a write of a low-priority binding should be held back on the current frame.
+     * UI thread only.
+     * */
+    boolean shouldDefer() {
+        return shouldDefer(AnimationUtils.currentAnimationTimeMillis());
+    }
+
+    /*package*/ boolean shouldDefer(long frameTime) {
+        if(mLevel == 0) {
+            return false;
+        }
+        syncFrame(frameTime);
+        return (mFrameIndex & ((1 << mLevel) - 1)) != 0;
+    }
+
+    int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * all work done within one frame sees the same animation time.
+     * */
+    private void syncFrame(long frameTime) {
+        if(frameTime == mFrameTime) {
+            return;
+        }
+        if(mFrameTime != -1) {
+            onFrameEnd(mFrameCostNanos / 1000000d);
+        }
+        mFrameTime = frameTime;
+        mFrameIndex++;
+        mFrameCostNanos = 0;
+    }
+
+    private void onFrameEnd(double costMillis) {
+        double budget = mBudgetMillis;
+        if(budget <= 0) {
+            if(mLevel != 0) {
+                changeLevel(0, budget);
+            }
+            return;
+        }
+        mAverageCostMillis += SMOOTHING * (costMillis - mAverageCostMillis);
+        mFramesSinceChange++;
+        if(mFramesSinceChange < COOLDOWN_FRAMES) {
+            return;
+        }
+        if(mAverageCostMillis > budget && mLevel < MAX_LEVEL) {
+            changeLevel(mLevel + 1, budget);
+        } else if(mAverageCostMillis < budget * RECOVERY_RATIO && mLevel > 0) {
+            changeLevel(mLevel - 1, budget);
+        }
+    }
+
+    private void changeLevel(int level, double budget) {
+        mLevel = level;
+        mFramesSinceChange = 0;
+        if(mListener != null) {
+            mListener.onLevelChanged(level, mAverageCostMillis, budget);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BindingXFrameGovernor{level=" + mLevel + ", cost=" + mAverageCostMillis + "ms, budget=" + mBudgetMillis + "ms}";
+    }
+}
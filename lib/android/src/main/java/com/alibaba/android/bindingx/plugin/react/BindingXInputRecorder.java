@@ -0,0 +1,138 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Description:
+ *
+ * Captures the raw input stream seen by the event handlers into a compact binary format,
+ * so that it can be fed back later by {@link BindingXInputReplayer}.
+ *
+ * Format (big-endian):
+ * <pre>
+ *     header: int magic, short version
+ *     record: byte type, int deltaMicros, int a, int b, int c
+ * </pre>
+ * Values per type, fractional ones stored as {@link Float#floatToIntBits(float)}:
+ * <pre>
+ *     scroll:      content offset x, y (px)
+ *     pan:         translation x, y (float px)
+ *     pager:       position, offset (float), offset pixels
+ *     keyboard:    height (px), progress (float), fraction (float)
+ *     orientation: alpha, beta, gamma (float degrees, filtered)
+ * </pre>
+ * Records are kept in memory while recording, so that nothing touches the disk on the UI thread.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+public final class BindingXInputRecorder {
+
+    /*package*/ static final int MAGIC = 0x42585231; // "BXR1"
+    /*package*/ static final short VERSION = 2;
+
+    /*package*/ static final int HEADER_SIZE = 6;
+    /*package*/ static final int RECORD_SIZE = 17;
+
+    public static final byte TYPE_SCROLL = 1;
+    public static final byte TYPE_PAN = 2;
+    public static final byte TYPE_PAGER = 3;
+    public static final byte TYPE_KEYBOARD = 4;
+    public static final byte TYPE_ORIENTATION = 5;
+
+    private static final int INITIAL_CAPACITY = RECORD_SIZE * 1024;
+
+    private byte[] mBuffer = new byte[INITIAL_CAPACITY];
+    private int mPosition = 0;
+    private long mLastTimestampNanos = -1;
+    private volatile boolean isRecording = false;
+
+    public synchronized void start() {
+        mPosition = 0;
+        mLastTimestampNanos = -1;
+        writeInt(MAGIC);
+        writeShort(VERSION);
+        isRecording = true;
+    }
+
+    public synchronized void stop() {
+        isRecording = false;
+    }
+
+    public boolean isRecording() {
+        return isRecording;
+    }
+
+    /*package*/ void record(byte type, int a, int b, int c) {
+        if(!isRecording) {
+            return;
+        }
+        recordAt(type, a, b, c, System.nanoTime());
+    }
+
+    /*package*/ synchronized void recordAt(byte type, int a, int b, int c, long timestampNanos) {
+        if(!isRecording) {
+            return;
+        }
+        int deltaMicros = mLastTimestampNanos < 0 ? 0 : (int) ((timestampNanos - mLastTimestampNanos) / 1000);
+        mLastTimestampNanos = timestampNanos;
+
+        ensureCapacity(RECORD_SIZE);
+        mBuffer[mPosition++] = type;
+        writeInt(deltaMicros);
+        writeInt(a);
+        writeInt(b);
+        writeInt(c);
+    }
+
+    /**
+     * number of records captured since last {@link #start()}
+     * */
+    public synchronized int getRecordCount() {
+        return mPosition < HEADER_SIZE ? 0 : (mPosition - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    public synchronized void writeTo(@NonNull OutputStream out) throws IOException {
+        out.write(mBuffer, 0, mPosition);
+        out.flush();
+    }
+
+    private void writeShort(int v) {
+        ensureCapacity(2);
+        mBuffer[mPosition++] = (byte) (v >>> 8);
+        mBuffer[mPosition++] = (byte) v;
+    }
+
+    private void writeInt(int v) {
+        ensureCapacity(4);
+        mBuffer[mPosition++] = (byte) (v >>> 24);
+        mBuffer[mPosition++] = (byte) (v >>> 16);
+        mBuffer[mPosition++] = (byte) (v >>> 8);
+        mBuffer[mPosition++] = (byte) v;
+    }
+
+    private void ensureCapacity(int extra) {
+        if(mPosition + extra > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length << 1, mPosition + extra));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * Feeds a file produced by {@link BindingXInputRecorder} back through the event handlers, as fast as
+ * possible and independent of the recorded timing. Each record is treated as one frame.
+ *
+ * Usage:
+ * <pre>
+ *     CountingViewUpdater updater = new CountingViewUpdater(stubUpdater);
+ *     // build the PlatformManager of the handler with the updater above, then bind expressions
+ *     BindingXInputReplayer replayer = new BindingXInputReplayer(updater);
+ *     replayer.setScrollTarget(scrollHandler); // and/or the pan, pager, keyboard and orientation ones
+ *     Report report = replayer.replay(in);
+ * </pre>
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+public final class BindingXInputReplayer {
+
+    public interface InputSink {
+        void onInput(int a, int b, int c);
+    }
+
+    private final InputSink[] mSinks = new InputSink[256];
+    private final CountingViewUpdater mCounter;
+
+    public BindingXInputReplayer(@Nullable CountingViewUpdater counter) {
+        this.mCounter = counter;
+    }
+
+    public void setSink(byte type, @Nullable InputSink sink) {
+        mSinks[type & 0xFF] = sink;
+    }
+
+    public void setScrollTarget(@NonNull final BindingXScrollHandler handler) {
+        setSink(BindingXInputRecorder.TYPE_SCROLL, new InputSink() {
+            @Override
+            public void onInput(int a, int b, int c) {
+                handler.replayScrollOffset(a, b);
+            }
+        });
+    }
+
+    public void setPanTarget(@NonNull final BindingXPanHandler handler) {
+        setSink(BindingXInputRecorder.TYPE_PAN, new InputSink() {
+            @Override
+            public void onInput(int a, int b, int c) {
+                handler.replayPan(Float.intBitsToFloat(a), Float.intBitsToFloat(b));
+            }
+        });
+    }
+
+    public void setPagerTarget(@NonNull final BindingXPagerHandler handler) {
+        setSink(BindingXInputRecorder.TYPE_PAGER, new InputSink() {
+            @Override
+            public void onInput(int a, int b, int c) {
+                handler.replayPageScroll(a, Float.intBitsToFloat(b), c);
+            }
+        });
+    }
+
+    public void setKeyboardTarget(@NonNull final BindingXKeyboardHandler handler) {
+        setSink(BindingXInputRecorder.TYPE_KEYBOARD, new InputSink() {
+            @Override
+            public void onInput(int a, int b, int c) {
+                handler.replayInset(a, Float.intBitsToFloat(b), Float.intBitsToFloat(c));
+            }
+        });
+    }
+
+    public void setOrientationTarget(@NonNull final BindingXOrientationHandler handler) {
+        setSink(BindingXInputRecorder.TYPE_ORIENTATION, new InputSink() {
+            @Override
+            public void onInput(int a, int b, int c) {
+                handler.replayOrientation(Float.intBitsToFloat(a), Float.intBitsToFloat(b), Float.intBitsToFloat(c));
+            }
+        });
+    }
+
+    @NonNull
+    public Report replay(@NonNull InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(source);
+        if(in.readInt() != BindingXInputRecorder.MAGIC) {
+            throw new IOException("not a bindingx input recording");
+        }
+        short version = in.readShort();
+        if(version != BindingXInputRecorder.VERSION) {
+            throw new IOException("unsupported recording version: " + version);
+        }
+
+        Report report = new Report();
+        while (true) {
+            byte type;
+            try {
+                type = in.readByte();
+            } catch (EOFException e) {
+                break;
+            }
+            int deltaMicros = in.readInt();
+            int a = in.readInt();
+            int b = in.readInt();
+            int c = in.readInt();
+
+            report.recordedDurationMicros += deltaMicros;
+            InputSink sink = mSinks[type & 0xFF];
+            if(sink == null) {
+                report.skippedRecords++;
+                continue;
+            }
+
+            int updatesBefore = mCounter == null ? 0 : mCounter.getCount();
+            long allocBefore = AllocationCounter.current();
+            long start = System.nanoTime();
+
+            sink.onInput(a, b, c);
+
+            long cost = System.nanoTime() - start;
+            long allocAfter = AllocationCounter.current();
+            int updates = mCounter == null ? 0 : mCounter.getCount() - updatesBefore;
+
+            report.frames++;
+            report.totalNanos += cost;
+            report.maxNanos = Math.max(report.maxNanos, cost);
+            report.totalUpdates += updates;
+            report.maxUpdates = Math.max(report.maxUpdates, updates);
+            if(allocBefore >= 0 && allocAfter >= 0) {
+                report.totalAllocations += allocAfter - allocBefore;
+                report.maxAllocations = Math.max(report.maxAllocations, allocAfter - allocBefore);
+            } else {
+                report.totalAllocations = -1;
+                report.maxAllocations = -1;
+            }
+        }
+        return report;
+    }
+
+    public static final class Report {
+        public int frames;
+        public int skippedRecords;
+        public long recordedDurationMicros;
+        public long totalNanos;
+        public long maxNanos;
+        public long totalUpdates;
+        public int maxUpdates;
+        /**
+         * allocated bytes on a JVM, allocated objects on a device, -1 if unknown.
+         * */
+        public long totalAllocations;
+        public long maxAllocations;
+
+        public double avgNanosPerFrame() {
+            return frames == 0 ? 0 : (double) totalNanos / frames;
+        }
+
+        public double avgUpdatesPerFrame() {
+            return frames == 0 ? 0 : (double) totalUpdates / frames;
+        }
+
+        public double avgAllocationsPerFrame() {
+            return frames == 0 || totalAllocations < 0 ? -1 : (double) totalAllocations / frames;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "frames=%d, skipped=%d, avgNanos=%.1f, maxNanos=%d, avgUpdates=%.2f, maxUpdates=%d, avgAllocations=%.2f, maxAllocations=%d",
+                    frames, skippedRecords, avgNanosPerFrame(), maxNanos, avgUpdatesPerFrame(), maxUpdates,
+                    avgAllocationsPerFrame(), maxAllocations);
+        }
+    }
+
+    /**
+     * A view updater which counts every update issued by the handlers before delegating.
+     * */
+    public static final class CountingViewUpdater implements PlatformManager.IViewUpdater {
+
+        private final PlatformManager.IViewUpdater mDelegate;
+        private int mCount = 0;
+
+        public CountingViewUpdater(@Nullable PlatformManager.IViewUpdater delegate) {
+            this.mDelegate = delegate;
+        }
+
+        @Override
+        public void synchronouslyUpdateViewOnUIThread(@NonNull View targetView,
+                                                      @NonNull String propertyName,
+                                                      @NonNull Object propertyValue,
+                                                      @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                                                      @NonNull Map<String, Object> config,
+                                                      Object... extension) {
+            mCount++;
+            if(mDelegate != null) {
+                mDelegate.synchronouslyUpdateViewOnUIThread(targetView, propertyName, propertyValue, translator, config, extension);
+            }
+        }
+
+        public int getCount() {
+            return mCount;
+        }
+    }
+}
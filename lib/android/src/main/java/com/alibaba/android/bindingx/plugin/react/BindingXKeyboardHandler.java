@@ -0,0 +1,564 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.WindowInsets;
+import android.view.WindowInsetsAnimation;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.AbstractEventHandler;
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.UiThreadUtil;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Description:
+ *
+ * Handles the soft keyboard (IME) inset of the window. Expressions can read {@code height} (the current
+ * inset), {@code progress} (visible part of the keyboard, in [0, 1]) and {@code fraction} (how far the
+ * current show/hide transition has gone, in [0, 1]).
+ *
+ * On Android 11 and above the inset is read from the window insets, and followed frame by frame while the
+ * keyboard animates through {@link WindowInsetsAnimation}. Below, it is sampled on every layout of the window
+ * instead, so only the end of each transition is seen. The anchor is optional.
+ *
+ * A view has a single {@link WindowInsetsAnimation.Callback}, so the keyboard bindings of a window share one,
+ * which calls along the callback the app had installed and puts it back once the last of them is gone. If
+ * that callback can't be read, the window is left alone and sampled on layouts like below Android 11.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+public class BindingXKeyboardHandler extends AbstractEventHandler {
+
+    /*package*/ static final String TYPE_KEYBOARD = "keyboard";
+
+    // a keyboard considered hidden does not cover more of the window than this, below Android 11
+    private static final double MAX_HIDDEN_INSET_FRACTION = 0.15;
+
+    private WeakReference<View> mRootViewRef = null;
+    // read on the UI thread, set on the bindingX worker
+    private volatile InnerLayoutListener mLayoutListener = null;
+    private BindingParams mBindingParams = null;
+    private BindingXInputRecorder mInputRecorder = null;
+    // the latest sample, evaluated again once the binding is retargeted
+    private double mLastHeight, mLastProgress, mLastFraction;
+    private boolean hasSample = false;
+    private CompiledBinding mCompiledBinding = null;
+
+    public BindingXKeyboardHandler(Context context, PlatformManager manager, Object... extension) {
+        super(context, manager, extension);
+    }
+
+    /*package*/ void setInputRecorder(@Nullable BindingXInputRecorder recorder) {
+        this.mInputRecorder = recorder;
+    }
+
+    /*package*/ void setBindingParams(@Nullable BindingParams params) {
+        this.mBindingParams = params;
+        if(params != null) {
+            params.setReevaluation(new Runnable() {
+                @Override
+                public void run() {
+                    if(hasSample) {
+                        handleInset(mLastHeight, mLastProgress, mLastFraction);
+                    }
+                }
+            });
+        }
+    }
+
+    /*package*/ void setCompiledBinding(@Nullable CompiledBinding binding) {
+        this.mCompiledBinding = binding;
+    }
+
+    @Override
+    public boolean onCreate(@NonNull String sourceRef, @NonNull String eventType) {
+        final View rootView = findRootView(sourceRef);
+        if(rootView == null) {
+            LogProxy.e("keyboard binding requires an attached window");
+            return false;
+        }
+        ViewTreeObserver observer = rootView.getViewTreeObserver();
+        if(observer == null || !observer.isAlive()) {
+            return false;
+        }
+        final InnerLayoutListener listener = new InnerLayoutListener(rootView);
+        mRootViewRef = new WeakReference<>(rootView);
+        mLayoutListener = listener;
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if(mLayoutListener != listener) {
+                    return;
+                }
+                ViewTreeObserver observer = rootView.getViewTreeObserver();
+                if(observer == null || !observer.isAlive()) {
+                    return;
+                }
+                observer.addOnGlobalLayoutListener(listener);
+                if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    listener.startAnimationTracking();
+                }
+                // the keyboard may already be shown
+                listener.start();
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void onStart(@NonNull String sourceRef, @NonNull String eventType) {
+        // nope
+    }
+
+    @Override
+    public boolean onDisable(@NonNull String sourceRef, @NonNull String eventType) {
+        removeListener();
+        clearExpressions();
+        fireEventByState(BindingXConstants.STATE_END, 0, 0, 0);
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        removeListener();
+    }
+
+    @Override
+    public void onActivityPause() {
+
+    }
+
+    @Override
+    public void onActivityResume() {
+
+    }
+
+    @Override
+    protected void onExit(@NonNull Map<String, Object> scope) {
+        fireEventByState(BindingXConstants.STATE_EXIT, getDouble(scope, "height"),
+                getDouble(scope, "progress"), getDouble(scope, "fraction"));
+    }
+
+    @Override
+    protected void onUserIntercept(String interceptor, @NonNull Map<String, Object> result, @NonNull Map<String, Object> scope) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", BindingXConstants.STATE_INTERCEPTOR);
+            param.put("height", scope.get("height"));
+            param.put("progress", scope.get("progress"));
+            param.put("fraction", scope.get("fraction"));
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            Map<String, Object> intercept = new HashMap<>();
+            intercept.put(interceptor, result);
+            param.put("interceptor", intercept);
+            mCallback.callback(param);
+        }
+    }
+
+    @Nullable
+    private View findRootView(@NonNull String sourceRef) {
+        if(!TextUtils.isEmpty(sourceRef)) {
+            View anchor = mPlatformManager.getViewFinder().findViewBy(sourceRef);
+            if(anchor != null) {
+                return anchor.getRootView();
+            }
+        }
+        if(mContext instanceof ReactContext) {
+            Activity activity = ((ReactContext) mContext).getCurrentActivity();
+            if(activity != null && activity.getWindow() != null) {
+                return activity.getWindow().getDecorView();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * feed a recorded inset through the same path as a real one. see {@link BindingXInputReplayer}
+     * @param height in pixels
+     * */
+    /*package*/ void replayInset(int height, double progress, double fraction) {
+        handleInset(mPlatformManager.getResolutionTranslator().nativeToWeb(height), progress, fraction);
+    }
+
+    private void handleInset(double height, double progress, double fraction) {
+        mLastHeight = height;
+        mLastProgress = progress;
+        mLastFraction = fraction;
+        hasSample = true;
+        boolean traced = BindingXTrace.beginSection("BindingX#evaluate:keyboard");
+        try {
+            if(mBindingParams != null) {
+                mBindingParams.applyTo(mScope);
+            }
+            mScope.put("height", height);
+            mScope.put("progress", progress);
+            mScope.put("fraction", fraction);
+            if(mCompiledBinding != null && mCompiledBinding.evaluate(mScope)) {
+                mCompiledBinding.dispatch(mPlatformManager);
+                if(mCompiledBinding.mayExit()) {
+                    evaluateExitExpression(mExitExpressionPair, mScope);
+                }
+            } else {
+                consumeExpression(mExpressionHoldersMap, mScope, TYPE_KEYBOARD);
+                evaluateExitExpression(mExitExpressionPair, mScope);
+            }
+        } catch (Exception e) {
+            LogProxy.e("runtime error", e);
+        } finally {
+            BindingXTrace.endSection(traced);
+        }
+    }
+
+    private void removeListener() {
+        final WeakReference<View> rootViewRef = mRootViewRef;
+        final InnerLayoutListener listener = mLayoutListener;
+        mLayoutListener = null;
+        mRootViewRef = null;
+        if(rootViewRef == null || listener == null) {
+            return;
+        }
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            @SuppressWarnings("deprecation")
+            public void run() {
+                View rootView = rootViewRef.get();
+                if(rootView == null) {
+                    return;
+                }
+                ViewTreeObserver observer = rootView.getViewTreeObserver();
+                if(observer != null && observer.isAlive()) {
+                    if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                        observer.removeOnGlobalLayoutListener(listener);
+                    } else {
+                        observer.removeGlobalOnLayoutListener(listener);
+                    }
+                }
+                if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    listener.stopAnimationTracking();
+                }
+            }
+        });
+    }
+
+    private void fireEventByState(@NonNull String state, double height, double progress, double fraction) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", state);
+            param.put("height", height);
+            param.put("progress", progress);
+            param.put("fraction", fraction);
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            mCallback.callback(param);
+        }
+    }
+
+    private static double getDouble(@NonNull Map<String, Object> scope, @NonNull String key) {
+        Object value = scope.get(key);
+        return value instanceof Double ? (Double) value : 0;
+    }
+
+    private class InnerLayoutListener implements ViewTreeObserver.OnGlobalLayoutListener {
+
+        private final WeakReference<View> mHostViewRef;
+        private final Rect mVisibleFrame = new Rect();
+
+        // inset of the window while the keyboard is hidden (navigation bar etc.), below Android 11
+        private int mBaseline = 0;
+        private int mShownHeight = 0;
+        private int mLastHeight = 0;
+        // the keyboard animates, samples come from the animation callback then
+        private boolean isAnimating = false;
+        private ImeAnimationTracker mAnimationTracker = null;
+
+        InnerLayoutListener(@NonNull View hostView) {
+            this.mHostViewRef = new WeakReference<>(hostView);
+        }
+
+        @SuppressWarnings("deprecation")
+        void start() {
+            View hostView = mHostViewRef.get();
+            if(hostView == null) {
+                return;
+            }
+            if(Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+                int inset = measureVisibleFrameInset(hostView);
+                if(inset <= hostView.getHeight() * MAX_HIDDEN_INSET_FRACTION) {
+                    mBaseline = inset;
+                } else {
+                    // already shown. the navigation bar is the best guess, corrected once the keyboard hides
+                    WindowInsets insets = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                            ? hostView.getRootWindowInsets() : null;
+                    mBaseline = insets == null ? 0 : Math.min(inset, insets.getStableInsetBottom());
+                }
+            }
+            onGlobalLayout();
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            View hostView = mHostViewRef.get();
+            if(hostView == null || isAnimating || mLayoutListener != this) {
+                return;
+            }
+            int height;
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                height = measureImeHeight(hostView.getRootWindowInsets());
+            } else {
+                int inset = measureVisibleFrameInset(hostView);
+                mBaseline = Math.min(mBaseline, inset);
+                height = inset - mBaseline;
+            }
+            if(height > 0) {
+                mShownHeight = height;
+            }
+            // layouts only see where the transition ends, so each sample completes it
+            dispatch(height, 1);
+        }
+
+        void dispatch(int height, double fraction) {
+            if(height == mLastHeight) {
+                return;
+            }
+            mLastHeight = height;
+            double progress = mShownHeight == 0 ? 0 : Math.min(1, (double) height / mShownHeight);
+            BindingXInputRecorder recorder = mInputRecorder;
+            if(recorder != null) {
+                recorder.record(BindingXInputRecorder.TYPE_KEYBOARD, height, Float.floatToIntBits((float) progress),
+                        Float.floatToIntBits((float) fraction));
+            }
+            handleInset(mPlatformManager.getResolutionTranslator().nativeToWeb(height), progress, fraction);
+        }
+
+        private int measureVisibleFrameInset(@NonNull View hostView) {
+            hostView.getWindowVisibleDisplayFrame(mVisibleFrame);
+            return Math.max(0, hostView.getHeight() - mVisibleFrame.bottom);
+        }
+
+        @TargetApi(Build.VERSION_CODES.R)
+        void startAnimationTracking() {
+            View hostView = mHostViewRef.get();
+            if(hostView != null) {
+                ImeAnimationTracker tracker = new ImeAnimationTracker(this);
+                if(ImeAnimationDispatcher.add(hostView, tracker)) {
+                    mAnimationTracker = tracker;
+                }
+            }
+        }
+
+        @TargetApi(Build.VERSION_CODES.R)
+        void stopAnimationTracking() {
+            View hostView = mHostViewRef.get();
+            if(hostView != null && mAnimationTracker != null) {
+                ImeAnimationDispatcher.remove(hostView, mAnimationTracker);
+            }
+            mAnimationTracker = null;
+        }
+    }
+
+    /**
+     * the part of the window covered by the keyboard, beyond the navigation bar.
+     * */
+    @TargetApi(Build.VERSION_CODES.R)
+    private static int measureImeHeight(@Nullable WindowInsets insets) {
+        if(insets == null) {
+            return 0;
+        }
+        int ime = insets.getInsets(WindowInsets.Type.ime()).bottom;
+        int bars = insets.getInsets(WindowInsets.Type.systemBars()).bottom;
+        return Math.max(0, ime - bars);
+    }
+
+    /**
+     * the callback of a host view, shared by all keyboard bindings of its window. UI thread only.
+     * */
+    @TargetApi(Build.VERSION_CODES.R)
+    private static final class ImeAnimationDispatcher extends WindowInsetsAnimation.Callback {
+
+        private static final WeakHashMap<View, ImeAnimationDispatcher> sDispatchers = new WeakHashMap<>();
+        private static Field sListenerInfoField;
+        private static Field sCallbackField;
+
+        @Nullable private final WindowInsetsAnimation.Callback mPrevious;
+        private final List<ImeAnimationTracker> mTrackers = new ArrayList<>(2);
+
+        private ImeAnimationDispatcher(@Nullable WindowInsetsAnimation.Callback previous) {
+            super(previous == null ? DISPATCH_MODE_CONTINUE_ON_SUBTREE : previous.getDispatchMode());
+            this.mPrevious = previous;
+        }
+
+        /**
+         * @return false if the callback the view already has is unknown, the view is left untouched then
+         * */
+        static boolean add(@NonNull View hostView, @NonNull ImeAnimationTracker tracker) {
+            ImeAnimationDispatcher dispatcher = sDispatchers.get(hostView);
+            if(dispatcher == null) {
+                WindowInsetsAnimation.Callback previous;
+                try {
+                    previous = readCallback(hostView);
+                } catch (Exception e) {
+                    LogProxy.w("keyboard animations are not followed, the inset animation callback is unreadable");
+                    return false;
+                }
+                dispatcher = new ImeAnimationDispatcher(previous);
+                hostView.setWindowInsetsAnimationCallback(dispatcher);
+                sDispatchers.put(hostView, dispatcher);
+            }
+            dispatcher.mTrackers.add(tracker);
+            return true;
+        }
+
+        static void remove(@NonNull View hostView, @NonNull ImeAnimationTracker tracker) {
+            ImeAnimationDispatcher dispatcher = sDispatchers.get(hostView);
+            if(dispatcher == null || !dispatcher.mTrackers.remove(tracker) || !dispatcher.mTrackers.isEmpty()) {
+                return;
+            }
+            sDispatchers.remove(hostView);
+            try {
+                WindowInsetsAnimation.Callback current = readCallback(hostView);
+                if(current != null && current != dispatcher) {
+                    // replaced by someone else meanwhile, theirs now
+                    return;
+                }
+            } catch (Exception e) {
+                // read once already, put the previous one back anyway
+            }
+            hostView.setWindowInsetsAnimationCallback(dispatcher.mPrevious);
+        }
+
+        @Nullable
+        private static synchronized WindowInsetsAnimation.Callback readCallback(@NonNull View view) throws Exception {
+            if(sCallbackField == null) {
+                Field listenerInfo = View.class.getDeclaredField("mListenerInfo");
+                listenerInfo.setAccessible(true);
+                Field callback = listenerInfo.getType().getDeclaredField("mWindowInsetsAnimationCallback");
+                callback.setAccessible(true);
+                sListenerInfoField = listenerInfo;
+                sCallbackField = callback;
+            }
+            Object info = sListenerInfoField.get(view);
+            return info == null ? null : (WindowInsetsAnimation.Callback) sCallbackField.get(info);
+        }
+
+        @Override
+        public void onPrepare(@NonNull WindowInsetsAnimation animation) {
+            if(mPrevious != null) {
+                mPrevious.onPrepare(animation);
+            }
+            for(int i = 0; i < mTrackers.size(); i++) {
+                mTrackers.get(i).onPrepare(animation);
+            }
+        }
+
+        @NonNull
+        @Override
+        public WindowInsetsAnimation.Bounds onStart(@NonNull WindowInsetsAnimation animation,
+                                                    @NonNull WindowInsetsAnimation.Bounds bounds) {
+            for(int i = 0; i < mTrackers.size(); i++) {
+                mTrackers.get(i).onStart(animation);
+            }
+            return mPrevious == null ? bounds : mPrevious.onStart(animation, bounds);
+        }
+
+        @NonNull
+        @Override
+        public WindowInsets onProgress(@NonNull WindowInsets insets,
+                                       @NonNull List<WindowInsetsAnimation> runningAnimations) {
+            for(int i = 0; i < mTrackers.size(); i++) {
+                mTrackers.get(i).onProgress(insets, runningAnimations);
+            }
+            return mPrevious == null ? insets : mPrevious.onProgress(insets, runningAnimations);
+        }
+
+        @Override
+        public void onEnd(@NonNull WindowInsetsAnimation animation) {
+            // trackers may stop tracking from here
+            for(ImeAnimationTracker tracker : new ArrayList<>(mTrackers)) {
+                tracker.onEnd(animation);
+            }
+            if(mPrevious != null) {
+                mPrevious.onEnd(animation);
+            }
+        }
+    }
+
+    /**
+     * follows the keyboard animations of one binding.
+     * */
+    @TargetApi(Build.VERSION_CODES.R)
+    private static final class ImeAnimationTracker {
+
+        private final InnerLayoutListener mListener;
+        private WindowInsetsAnimation mAnimation = null;
+
+        ImeAnimationTracker(@NonNull InnerLayoutListener listener) {
+            this.mListener = listener;
+        }
+
+        void onPrepare(@NonNull WindowInsetsAnimation animation) {
+            if((animation.getTypeMask() & WindowInsets.Type.ime()) != 0) {
+                mAnimation = animation;
+                mListener.isAnimating = true;
+            }
+        }
+
+        void onStart(@NonNull WindowInsetsAnimation animation) {
+            if(animation == mAnimation) {
+                // the root insets are those of the end state by now
+                View hostView = mListener.mHostViewRef.get();
+                int height = hostView == null ? 0 : measureImeHeight(hostView.getRootWindowInsets());
+                if(height > 0) {
+                    mListener.mShownHeight = height;
+                }
+            }
+        }
+
+        void onProgress(@NonNull WindowInsets insets, @NonNull List<WindowInsetsAnimation> runningAnimations) {
+            if(mAnimation != null && runningAnimations.contains(mAnimation)) {
+                mListener.dispatch(measureImeHeight(insets), mAnimation.getInterpolatedFraction());
+            }
+        }
+
+        void onEnd(@NonNull WindowInsetsAnimation animation) {
+            if(animation == mAnimation) {
+                mAnimation = null;
+                mListener.isAnimating = false;
+                mListener.onGlobalLayout();
+            }
+        }
+    }
+}
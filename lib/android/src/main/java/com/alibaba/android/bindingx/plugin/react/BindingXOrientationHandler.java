@@ -0,0 +1,368 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.AbstractEventHandler;
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * Handles device orientation with a bounded sampling rate. Expressions can read {@code alpha}, {@code beta}
+ * and {@code gamma} in degrees, with the same meaning as the DeviceOrientationEvent of the web, and
+ * {@code dalpha}, {@code dbeta} and {@code dgamma}, their change since the binding started.
+ *
+ * Like the orientation bindings of the core and of iOS, {@code x} and {@code y} (and {@code z}) depend on the
+ * scene type, see {@link OrientationEvaluator}:
+ * <pre>
+ *     2d: the tilt in degrees around each axis of the screen, on its own
+ *     3d: x, y and z of the quaternion of a camera looking out of the back of the device
+ * </pre>
+ *
+ * Options (all optional):
+ * <pre>
+ *     sceneType:    "2d" (default) or "3d"
+ *     samplingRate: samples per second, 30 by default
+ *     filter:       "lowpass" (default) or "none"
+ *     smoothing:    weight of a new sample of the low-pass filter in (0, 1], 0.3 by default
+ *     deadZone:     changes below this many degrees are not evaluated, 0.5 by default
+ * </pre>
+ * The sensor is released while the host is paused.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+public class BindingXOrientationHandler extends AbstractEventHandler implements SensorEventListener {
+
+    /*package*/ static final String TYPE_ORIENTATION = "orientation";
+
+    private static final double DEFAULT_SAMPLING_RATE = 30;
+    private static final double DEFAULT_SMOOTHING = 0.3;
+    private static final double DEFAULT_DEAD_ZONE = 0.5;
+
+    private static final String SCENE_TYPE_3D = "3d";
+
+    private final float[] mRotationMatrix = new float[9];
+    private final float[] mOrientation = new float[3];
+    private final double[] mVector = new double[3];
+
+    // the 2d scene pins the other axes, one evaluator per axis. the 3d scene only uses the first one
+    private OrientationEvaluator mEvaluatorX = null;
+    private OrientationEvaluator mEvaluatorY = null;
+    private boolean is3d = false;
+    private double mStartAlpha, mStartBeta, mStartGamma;
+    // alpha without its wrap arounds, relative to the start it may exceed a full turn
+    private double mLastAlpha, mAlphaTurns;
+
+    private SensorManager mSensorManager = null;
+    private Sensor mSensor = null;
+    private Map<String, Object> mOptions = null;
+    private OrientationSampleFilter mFilter = null;
+    private BindingXFrameGovernor mFrameGovernor = null;
+    private BindingParams mBindingParams = null;
+    private BindingXInputRecorder mInputRecorder = null;
+    private CompiledBinding mCompiledBinding = null;
+    private int mSamplingPeriodUs;
+    private boolean isRegistered = false;
+    private boolean isEnabled = false;
+    private boolean isStarted = false;
+
+    public BindingXOrientationHandler(Context context, PlatformManager manager, Object... extension) {
+        super(context, manager, extension);
+    }
+
+    /*package*/ void setBindingOptions(@Nullable Map<String, Object> options) {
+        this.mOptions = options;
+    }
+
+    /*package*/ void setFrameGovernor(@Nullable BindingXFrameGovernor governor) {
+        this.mFrameGovernor = governor;
+    }
+
+    /*package*/ void setInputRecorder(@Nullable BindingXInputRecorder recorder) {
+        this.mInputRecorder = recorder;
+    }
+
+    /*package*/ void setBindingParams(@Nullable BindingParams params) {
+        this.mBindingParams = params;
+        if(params != null) {
+            params.setReevaluation(new Runnable() {
+                @Override
+                public void run() {
+                    OrientationSampleFilter filter = mFilter;
+                    if(isStarted && filter != null) {
+                        evaluate(filter.getAlpha(), filter.getBeta(), filter.getGamma());
+                    }
+                }
+            });
+        }
+    }
+
+    /*package*/ void setCompiledBinding(@Nullable CompiledBinding binding) {
+        this.mCompiledBinding = binding;
+    }
+
+    @Override
+    public boolean onCreate(@NonNull String sourceRef, @NonNull String eventType) {
+        mSensorManager = (SensorManager) mContext.getSystemService(Context.SENSOR_SERVICE);
+        if(mSensorManager == null) {
+            return false;
+        }
+        mSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
+        if(mSensor == null) {
+            LogProxy.e("rotation vector sensor is not available");
+            return false;
+        }
+        Map<String, Object> options = mOptions == null ? new HashMap<String, Object>() : mOptions;
+        double samplingRate = Math.max(1, getDouble(options, "samplingRate", DEFAULT_SAMPLING_RATE));
+        double smoothing = "none".equals(options.get("filter")) ? 1 : getDouble(options, "smoothing", DEFAULT_SMOOTHING);
+        mSamplingPeriodUs = (int) (1000000 / samplingRate);
+        // the sensor is only a hint of the rate, so samples are rate limited again on arrival
+        mFilter = new OrientationSampleFilter((long) (1000 / samplingRate) - 1, smoothing,
+                getDouble(options, "deadZone", DEFAULT_DEAD_ZONE));
+        Object sceneType = options.get("sceneType");
+        is3d = sceneType instanceof String && SCENE_TYPE_3D.equalsIgnoreCase((String) sceneType);
+        if(is3d) {
+            mEvaluatorX = new OrientationEvaluator(Double.NaN, Double.NaN, Double.NaN);
+            mEvaluatorY = null;
+        } else {
+            mEvaluatorX = new OrientationEvaluator(Double.NaN, 90, Double.NaN);
+            mEvaluatorY = new OrientationEvaluator(0, Double.NaN, 90);
+        }
+        return true;
+    }
+
+    @Override
+    public void onStart(@NonNull String sourceRef, @NonNull String eventType) {
+        isEnabled = true;
+        registerSensor();
+    }
+
+    @Override
+    public boolean onDisable(@NonNull String sourceRef, @NonNull String eventType) {
+        isEnabled = false;
+        unregisterSensor();
+        clearExpressions();
+        isStarted = false;
+        fireEventByState(BindingXConstants.STATE_END, 0, 0, 0);
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        unregisterSensor();
+        mSensorManager = null;
+    }
+
+    @Override
+    public void onActivityPause() {
+        unregisterSensor();
+    }
+
+    @Override
+    public void onActivityResume() {
+        if(isEnabled && mFilter != null) {
+            // values drifted while paused, don't smooth towards them
+            mFilter.reset();
+            registerSensor();
+        }
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if(mFilter == null || event.sensor.getType() != Sensor.TYPE_ROTATION_VECTOR) {
+            return;
+        }
+        long timeMillis = event.timestamp / 1000000;
+        SensorManager.getRotationMatrixFromVector(mRotationMatrix, event.values);
+        SensorManager.getOrientation(mRotationMatrix, mOrientation);
+        double alpha = OrientationSampleFilter.normalize(Math.toDegrees(-mOrientation[0]), 0);
+        double beta = Math.toDegrees(-mOrientation[1]);
+        double gamma = Math.toDegrees(mOrientation[2]);
+        if(!mFilter.offer(timeMillis, alpha, beta, gamma)) {
+            return;
+        }
+        alpha = mFilter.getAlpha();
+        beta = mFilter.getBeta();
+        gamma = mFilter.getGamma();
+        BindingXInputRecorder recorder = mInputRecorder;
+        if(recorder != null) {
+            recorder.record(BindingXInputRecorder.TYPE_ORIENTATION, Float.floatToIntBits((float) alpha),
+                    Float.floatToIntBits((float) beta), Float.floatToIntBits((float) gamma));
+        }
+        dispatchOrientation(alpha, beta, gamma);
+    }
+
+    /**
+     * feed recorded, already filtered angles through the same path as real ones. see {@link BindingXInputReplayer}
+     * */
+    /*package*/ void replayOrientation(double alpha, double beta, double gamma) {
+        dispatchOrientation(alpha, beta, gamma);
+    }
+
+    private void dispatchOrientation(double alpha, double beta, double gamma) {
+        if(!isStarted) {
+            isStarted = true;
+            mStartAlpha = alpha;
+            mStartBeta = beta;
+            mStartGamma = gamma;
+            mLastAlpha = alpha;
+            mAlphaTurns = 0;
+            fireEventByState(BindingXConstants.STATE_START, alpha, beta, gamma);
+        }
+        evaluate(alpha, beta, gamma);
+    }
+
+    private void evaluate(double alpha, double beta, double gamma) {
+        long governed = mFrameGovernor == null ? 0 : mFrameGovernor.begin();
+        boolean traced = BindingXTrace.beginSection("BindingX#evaluate:orientation");
+        try {
+            if(mBindingParams != null) {
+                mBindingParams.applyTo(mScope);
+            }
+            mScope.put("alpha", alpha);
+            mScope.put("beta", beta);
+            mScope.put("gamma", gamma);
+            mScope.put("dalpha", alpha - mStartAlpha);
+            mScope.put("dbeta", beta - mStartBeta);
+            mScope.put("dgamma", gamma - mStartGamma);
+            putSceneVariables(alpha, beta, gamma);
+            if(mCompiledBinding != null && mCompiledBinding.evaluate(mScope)) {
+                mCompiledBinding.dispatch(mPlatformManager);
+                if(mCompiledBinding.mayExit()) {
+                    evaluateExitExpression(mExitExpressionPair, mScope);
+                }
+            } else {
+                consumeExpression(mExpressionHoldersMap, mScope, TYPE_ORIENTATION);
+                evaluateExitExpression(mExitExpressionPair, mScope);
+            }
+        } catch (Exception e) {
+            LogProxy.e("runtime error", e);
+        } finally {
+            BindingXTrace.endSection(traced);
+            if(mFrameGovernor != null) {
+                mFrameGovernor.end(governed);
+            }
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // nope
+    }
+
+    @Override
+    protected void onExit(@NonNull Map<String, Object> scope) {
+        isEnabled = false;
+        unregisterSensor();
+        fireEventByState(BindingXConstants.STATE_EXIT, getDouble(scope, "alpha", 0),
+                getDouble(scope, "beta", 0), getDouble(scope, "gamma", 0));
+    }
+
+    @Override
+    protected void onUserIntercept(String interceptor, @NonNull Map<String, Object> result, @NonNull Map<String, Object> scope) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", BindingXConstants.STATE_INTERCEPTOR);
+            param.put("alpha", scope.get("alpha"));
+            param.put("beta", scope.get("beta"));
+            param.put("gamma", scope.get("gamma"));
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            Map<String, Object> intercept = new HashMap<>();
+            intercept.put(interceptor, result);
+            param.put("interceptor", intercept);
+            mCallback.callback(param);
+        }
+    }
+
+    private void putSceneVariables(double alpha, double beta, double gamma) {
+        if(alpha - mLastAlpha > 180) {
+            mAlphaTurns -= 360;
+        } else if(alpha - mLastAlpha < -180) {
+            mAlphaTurns += 360;
+        }
+        mLastAlpha = alpha;
+        double relativeAlpha = (alpha + mAlphaTurns - mStartAlpha) % 360;
+
+        double x, y, z = 0;
+        if(is3d) {
+            mEvaluatorX.calculate(relativeAlpha, beta, gamma);
+            x = mEvaluatorX.getX();
+            y = mEvaluatorX.getY();
+            z = mEvaluatorX.getZ();
+        } else {
+            mEvaluatorX.calculate(relativeAlpha, beta, gamma);
+            mEvaluatorX.rotate(0, 0, 1, mVector);
+            x = 90 - Math.toDegrees(Math.acos(clamp(mVector[0])));
+            // (0, 1, 1) as the core and iOS do
+            mEvaluatorY.calculate(relativeAlpha, beta, gamma);
+            mEvaluatorY.rotate(0, 1, 1, mVector);
+            y = 90 - Math.toDegrees(Math.acos(clamp(mVector[1])));
+        }
+        mScope.put("x", x);
+        mScope.put("y", y);
+        mScope.put("z", z);
+    }
+
+    private static double clamp(double cos) {
+        return Math.max(-1, Math.min(1, cos));
+    }
+
+    private void registerSensor() {
+        if(isRegistered || mSensorManager == null || mSensor == null) {
+            return;
+        }
+        isRegistered = mSensorManager.registerListener(this, mSensor, mSamplingPeriodUs);
+    }
+
+    private void unregisterSensor() {
+        if(isRegistered && mSensorManager != null) {
+            mSensorManager.unregisterListener(this);
+        }
+        isRegistered = false;
+    }
+
+    private void fireEventByState(@NonNull String state, double alpha, double beta, double gamma) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", state);
+            param.put("alpha", alpha);
+            param.put("beta", beta);
+            param.put("gamma", gamma);
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            mCallback.callback(param);
+        }
+    }
+
+    private static double getDouble(@NonNull Map<String, Object> options, @NonNull String key, double defaultValue) {
+        Object value = options.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.alibaba.android.bindingx.plugin.react;
 
+import android.support.annotation.NonNull;
+
 import com.facebook.react.ReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
@@ -22,6 +24,7 @@ import com.facebook.react.uimanager.ViewManager;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Description:
@@ -33,6 +36,18 @@ import java.util.List;
 
 public class BindingXPackage implements ReactPackage{
 
+    public BindingXPackage() {
+    }
+
+    /**
+     * @param customUpdaters updaters of app specific properties, see {@link RNViewUpdaterRegistry}
+     * */
+    public BindingXPackage(@NonNull Map<String, IRNViewUpdater> customUpdaters) {
+        for (Map.Entry<String, IRNViewUpdater> entry : customUpdaters.entrySet()) {
+            RNViewUpdaterRegistry.register(entry.getKey(), entry.getValue());
+        }
+    }
+
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
         return Collections.<NativeModule>singletonList(new ReactBindingXModule(reactContext));
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.view.ViewPager;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.AbstractEventHandler;
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+import com.facebook.react.bridge.UiThreadUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * Handles page scroll events of React Native's view pager. Expressions can read {@code position} (index of
+ * the first visible page), {@code offset} (fraction of it scrolled out, in [0, 1)) and {@code pixels}.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+public class BindingXPagerHandler extends AbstractEventHandler {
+
+    /*package*/ static final String TYPE_PAGER = "pager";
+
+    private WeakReference<ViewPager> mPagerRef = null;
+    // read on the UI thread, callbacks still queued when the listener is removed are dropped
+    private volatile InnerPageChangeListener mPageChangeListener = null;
+    private BindingXFrameGovernor mFrameGovernor = null;
+    private BindingParams mBindingParams = null;
+    private BindingXInputRecorder mInputRecorder = null;
+    // the latest sample, evaluated again once the binding is retargeted
+    private int mLastPosition, mLastPixels;
+    private float mLastOffset;
+    private boolean hasSample = false;
+    private CompiledBinding mCompiledBinding = null;
+
+    public BindingXPagerHandler(Context context, PlatformManager manager, Object... extension) {
+        super(context, manager, extension);
+    }
+
+    /*package*/ void setFrameGovernor(@Nullable BindingXFrameGovernor governor) {
+        this.mFrameGovernor = governor;
+    }
+
+    /*package*/ void setInputRecorder(@Nullable BindingXInputRecorder recorder) {
+        this.mInputRecorder = recorder;
+    }
+
+    /*package*/ void setBindingParams(@Nullable BindingParams params) {
+        this.mBindingParams = params;
+        if(params != null) {
+            params.setReevaluation(new Runnable() {
+                @Override
+                public void run() {
+                    if(hasSample) {
+                        handlePageScroll(mLastPosition, mLastOffset, mLastPixels);
+                    }
+                }
+            });
+        }
+    }
+
+    /*package*/ void setCompiledBinding(@Nullable CompiledBinding binding) {
+        this.mCompiledBinding = binding;
+    }
+
+    @Override
+    public boolean onCreate(@NonNull String sourceRef, @NonNull String eventType) {
+        View targetView = mPlatformManager.getViewFinder().findViewBy(sourceRef);
+        if(!(targetView instanceof ViewPager)) {
+            LogProxy.e("pager binding requires a ViewPager as anchor");
+            return false;
+        }
+        final ViewPager pager = (ViewPager) targetView;
+        final InnerPageChangeListener listener = new InnerPageChangeListener();
+        mPagerRef = new WeakReference<>(pager);
+        mPageChangeListener = listener;
+        // the pager iterates its listeners on the UI thread
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                pager.addOnPageChangeListener(listener);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void onStart(@NonNull String sourceRef, @NonNull String eventType) {
+        // nope
+    }
+
+    @Override
+    public boolean onDisable(@NonNull String sourceRef, @NonNull String eventType) {
+        removeListener();
+        clearExpressions();
+        fireEventByState(BindingXConstants.STATE_END, 0, 0, 0);
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        removeListener();
+    }
+
+    @Override
+    public void onActivityPause() {
+
+    }
+
+    @Override
+    public void onActivityResume() {
+
+    }
+
+    @Override
+    protected void onExit(@NonNull Map<String, Object> scope) {
+        fireEventByState(BindingXConstants.STATE_EXIT, getInt(scope, "position"), getDouble(scope, "offset"), getInt(scope, "pixels"));
+    }
+
+    @Override
+    protected void onUserIntercept(String interceptor, @NonNull Map<String, Object> result, @NonNull Map<String, Object> scope) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", BindingXConstants.STATE_INTERCEPTOR);
+            param.put("position", scope.get("position"));
+            param.put("offset", scope.get("offset"));
+            param.put("pixels", scope.get("pixels"));
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            Map<String, Object> intercept = new HashMap<>();
+            intercept.put(interceptor, result);
+            param.put("interceptor", intercept);
+            mCallback.callback(param);
+        }
+    }
+
+    /**
+     * feed a recorded page scroll through the same path as a real one. see {@link BindingXInputReplayer}
+     * */
+    /*package*/ void replayPageScroll(int position, float offset, int pixels) {
+        handlePageScroll(position, offset, pixels);
+    }
+
+    private void handlePageScroll(int position, float offset, int pixels) {
+        mLastPosition = position;
+        mLastOffset = offset;
+        mLastPixels = pixels;
+        hasSample = true;
+        long governed = mFrameGovernor == null ? 0 : mFrameGovernor.begin();
+        boolean traced = BindingXTrace.beginSection("BindingX#evaluate:pager");
+        try {
+            if(mBindingParams != null) {
+                mBindingParams.applyTo(mScope);
+            }
+            mScope.put("position", (double) position);
+            mScope.put("offset", (double) offset);
+            mScope.put("pixels", (double) pixels);
+            if(mCompiledBinding != null && mCompiledBinding.evaluate(mScope)) {
+                mCompiledBinding.dispatch(mPlatformManager);
+                if(mCompiledBinding.mayExit()) {
+                    evaluateExitExpression(mExitExpressionPair, mScope);
+                }
+            } else {
+                consumeExpression(mExpressionHoldersMap, mScope, TYPE_PAGER);
+                evaluateExitExpression(mExitExpressionPair, mScope);
+            }
+        } catch (Exception e) {
+            LogProxy.e("runtime error", e);
+        } finally {
+            BindingXTrace.endSection(traced);
+            if(mFrameGovernor != null) {
+                mFrameGovernor.end(governed);
+            }
+        }
+    }
+
+    private void removeListener() {
+        final WeakReference<ViewPager> pagerRef = mPagerRef;
+        final InnerPageChangeListener listener = mPageChangeListener;
+        mPageChangeListener = null;
+        mPagerRef = null;
+        if(pagerRef == null || listener == null) {
+            return;
+        }
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                ViewPager pager = pagerRef.get();
+                if(pager != null) {
+                    pager.removeOnPageChangeListener(listener);
+                }
+            }
+        });
+    }
+
+    private void fireEventByState(@NonNull String state, int position, double offset, int pixels) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", state);
+            param.put("position", position);
+            param.put("offset", offset);
+            param.put("pixels", pixels);
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            mCallback.callback(param);
+        }
+    }
+
+    private static int getInt(@NonNull Map<String, Object> scope, @NonNull String key) {
+        Object value = scope.get(key);
+        return value instanceof Double ? (int) (double) (Double) value : 0;
+    }
+
+    private static double getDouble(@NonNull Map<String, Object> scope, @NonNull String key) {
+        Object value = scope.get(key);
+        return value instanceof Double ? (Double) value : 0;
+    }
+
+    private class InnerPageChangeListener implements ViewPager.OnPageChangeListener {
+
+        private int mPosition = 0;
+        private float mOffset = 0;
+        private int mPixels = 0;
+        private boolean isScrolling = false;
+
+        @Override
+        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+            if(mPageChangeListener != this) {
+                return;
+            }
+            mPosition = position;
+            mOffset = positionOffset;
+            mPixels = positionOffsetPixels;
+            BindingXInputRecorder recorder = mInputRecorder;
+            if(recorder != null) {
+                recorder.record(BindingXInputRecorder.TYPE_PAGER, position, Float.floatToIntBits(positionOffset),
+                        positionOffsetPixels);
+            }
+            handlePageScroll(position, positionOffset, positionOffsetPixels);
+        }
+
+        @Override
+        public void onPageSelected(int position) {
+            // nope
+        }
+
+        @Override
+        public void onPageScrollStateChanged(int state) {
+            if(mPageChangeListener != this) {
+                return;
+            }
+            if(state != ViewPager.SCROLL_STATE_IDLE && !isScrolling) {
+                isScrolling = true;
+                fireEventByState(BindingXConstants.STATE_START, mPosition, mOffset, mPixels);
+            } else if(state == ViewPager.SCROLL_STATE_IDLE && isScrolling) {
+                isScrolling = false;
+                fireEventByState(BindingXConstants.STATE_END, mPosition, mOffset, mPixels);
+            }
+        }
+    }
+}
@@ -0,0 +1,478 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewParent;
+
+import com.alibaba.android.bindingx.core.BindingXEventType;
+import com.alibaba.android.bindingx.core.LogProxy;
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.AbstractEventHandler;
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.uimanager.RootView;
+import com.facebook.react.uimanager.RootViewUtil;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Description:
+ *
+ * Pan handler which takes part in React Native's touch handling. The gesture is recognized natively from
+ * rules given at bind time, in the binding's {@code options}:
+ * <pre>
+ *     axis:      'x', 'y' or 'both' (default). a single axis pan gives up once the finger
+ *                moves further along the other axis
+ *     threshold: distance to move before the pan starts, the system touch slop by default
+ * </pre>
+ * Once recognized, the pan is claimed right away: the parents may not intercept the gesture anymore (e.g.
+ * a {@code ScrollView}) and the JS responder gets cancelled, without a round trip through JS.
+ *
+ * Expressions can read {@code x} and {@code y}, the translation since the finger went down.
+ *
+ * Pan bindings anchored to the same view share its touch listener. The listener the view had before is
+ * called along if it can be read, and put back once the last of them is gone.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+public class BindingXPanHandler extends AbstractEventHandler implements View.OnTouchListener {
+
+    /*package*/ static final int AXIS_BOTH = 0;
+    /*package*/ static final int AXIS_X = 1;
+    /*package*/ static final int AXIS_Y = 2;
+
+    private Map<String, Object> mOptions = null;
+    private GestureVelocityStore mVelocityStore = null;
+    private BindingXFrameGovernor mFrameGovernor = null;
+    private BindingParams mBindingParams = null;
+    private BindingXInputRecorder mInputRecorder = null;
+    // the latest sample, evaluated again once the binding is retargeted
+    private float mLastDx, mLastDy;
+    private boolean hasSample = false;
+    private CompiledBinding mCompiledBinding = null;
+
+    private WeakReference<View> mViewRef = null;
+    private int mAxis = AXIS_BOTH;
+    private float mThreshold;
+
+    // UI thread only
+    private float mDownX, mDownY;
+    private float mLastX, mLastY;
+    private boolean isTracking = false;
+    private boolean isPanning = false;
+    private VelocityTracker mVelocityTracker = null;
+
+    public BindingXPanHandler(Context context, PlatformManager manager, Object... extension) {
+        super(context, manager, extension);
+    }
+
+    /*package*/ void setBindingOptions(@Nullable Map<String, Object> options) {
+        this.mOptions = options;
+    }
+
+    /*package*/ void setVelocityStore(@Nullable GestureVelocityStore store) {
+        this.mVelocityStore = store;
+    }
+
+    /*package*/ void setFrameGovernor(@Nullable BindingXFrameGovernor governor) {
+        this.mFrameGovernor = governor;
+    }
+
+    /*package*/ void setInputRecorder(@Nullable BindingXInputRecorder recorder) {
+        this.mInputRecorder = recorder;
+    }
+
+    /*package*/ void setBindingParams(@Nullable BindingParams params) {
+        this.mBindingParams = params;
+        if(params != null) {
+            params.setReevaluation(new Runnable() {
+                @Override
+                public void run() {
+                    if(hasSample) {
+                        handlePan(mLastDx, mLastDy);
+                    }
+                }
+            });
+        }
+    }
+
+    /*package*/ void setCompiledBinding(@Nullable CompiledBinding binding) {
+        this.mCompiledBinding = binding;
+    }
+
+    @Override
+    public boolean onCreate(@NonNull String sourceRef, @NonNull String eventType) {
+        final View view = mPlatformManager.getViewFinder().findViewBy(sourceRef);
+        if(view == null) {
+            LogProxy.e("pan binding requires an anchor view");
+            return false;
+        }
+        Object axis = mOptions == null ? null : mOptions.get("axis");
+        if("x".equals(axis)) {
+            mAxis = AXIS_X;
+        } else if("y".equals(axis)) {
+            mAxis = AXIS_Y;
+        } else {
+            mAxis = AXIS_BOTH;
+        }
+        Object threshold = mOptions == null ? null : mOptions.get("threshold");
+        mThreshold = threshold instanceof Number
+                ? (float) mPlatformManager.getResolutionTranslator().webToNative(((Number) threshold).doubleValue())
+                : ViewConfiguration.get(view.getContext()).getScaledTouchSlop();
+
+        mViewRef = new WeakReference<>(view);
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                TouchDispatcher.add(view, BindingXPanHandler.this);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void onStart(@NonNull String sourceRef, @NonNull String eventType) {
+        // nope
+    }
+
+    @Override
+    public boolean onDisable(@NonNull String sourceRef, @NonNull String eventType) {
+        removeListener();
+        clearExpressions();
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        removeListener();
+    }
+
+    @Override
+    public void onActivityPause() {
+
+    }
+
+    @Override
+    public void onActivityResume() {
+
+    }
+
+    @Override
+    public boolean onTouch(View view, MotionEvent event) {
+        return onGesture(view, event, event.getActionMasked(), event.getRawX(), event.getRawY(), event.getEventTime());
+    }
+
+    /**
+     * the gesture of {@link #onTouch}. the event itself only feeds the velocity and cancels the JS responder.
+     * */
+    /*package*/ boolean onGesture(@NonNull View view, @Nullable MotionEvent event, int action,
+                                  float rawX, float rawY, long eventTime) {
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                mDownX = mLastX = rawX;
+                mDownY = mLastY = rawY;
+                isTracking = true;
+                isPanning = false;
+                if(mVelocityTracker == null) {
+                    mVelocityTracker = VelocityTracker.obtain();
+                } else {
+                    mVelocityTracker.clear();
+                }
+                trackMovement(event);
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if(!isTracking) {
+                    return false;
+                }
+                trackMovement(event);
+                float dx = rawX - mDownX;
+                float dy = rawY - mDownY;
+                if(!isPanning) {
+                    int recognized = recognize(mAxis, mThreshold, dx, dy);
+                    if(recognized < 0) {
+                        // leave the gesture to whoever wants it
+                        isTracking = false;
+                        return false;
+                    }
+                    if(recognized == 0) {
+                        return true;
+                    }
+                    claimGesture(view, event);
+                    isPanning = true;
+                    fireNativeEventByState(BindingXConstants.STATE_START, dx, dy);
+                }
+                if(mVelocityStore != null) {
+                    mVelocityStore.onMove((int) (rawX - mLastX), (int) (rawY - mLastY), eventTime);
+                }
+                mLastX = rawX;
+                mLastY = rawY;
+                BindingXInputRecorder recorder = mInputRecorder;
+                if(recorder != null) {
+                    recorder.record(BindingXInputRecorder.TYPE_PAN, Float.floatToIntBits(dx), Float.floatToIntBits(dy), 0);
+                }
+                handlePan(dx, dy);
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if(isPanning) {
+                    trackMovement(event);
+                    if(mVelocityStore != null && mVelocityTracker != null) {
+                        mVelocityTracker.computeCurrentVelocity(1000);
+                        mVelocityStore.onRelease(mVelocityTracker.getXVelocity(), mVelocityTracker.getYVelocity(),
+                                eventTime);
+                    }
+                    fireNativeEventByState(BindingXConstants.STATE_END, rawX - mDownX, rawY - mDownY);
+                }
+                isTracking = false;
+                isPanning = false;
+                if(mVelocityTracker != null) {
+                    mVelocityTracker.recycle();
+                    mVelocityTracker = null;
+                }
+                return true;
+            default:
+                return isTracking;
+        }
+    }
+
+    private void trackMovement(@Nullable MotionEvent event) {
+        if(mVelocityTracker != null && event != null) {
+            mVelocityTracker.addMovement(event);
+        }
+    }
+
+    /**
+     * @return 1 if the pan is recognized, -1 if it never will be in this gesture, 0 if undecided yet.
+     * */
+    /*package*/ static int recognize(int axis, float threshold, float dx, float dy) {
+        float adx = Math.abs(dx);
+        float ady = Math.abs(dy);
+        switch (axis) {
+            case AXIS_X:
+                if(adx > threshold && adx > ady) {
+                    return 1;
+                }
+                return ady > threshold ? -1 : 0;
+            case AXIS_Y:
+                if(ady > threshold && ady > adx) {
+                    return 1;
+                }
+                return adx > threshold ? -1 : 0;
+            default:
+                return adx * adx + ady * ady > threshold * threshold ? 1 : 0;
+        }
+    }
+
+    /**
+     * keep the gesture away from the parents and from the JS responder.
+     * */
+    private void claimGesture(@NonNull View view, @Nullable MotionEvent event) {
+        ViewParent parent = view.getParent();
+        if(parent != null) {
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+        RootView rootView = event == null ? null : RootViewUtil.getRootView(view);
+        if(rootView != null) {
+            rootView.onChildStartedNativeGesture(event);
+        }
+    }
+
+    /**
+     * feed a recorded translation through the same path as a real move. see {@link BindingXInputReplayer}
+     * */
+    /*package*/ void replayPan(float dx, float dy) {
+        handlePan(dx, dy);
+    }
+
+    private void handlePan(float dx, float dy) {
+        mLastDx = dx;
+        mLastDy = dy;
+        hasSample = true;
+        long governed = mFrameGovernor == null ? 0 : mFrameGovernor.begin();
+        boolean traced = BindingXTrace.beginSection("BindingX#evaluate:pan");
+        try {
+            if(mBindingParams != null) {
+                mBindingParams.applyTo(mScope);
+            }
+            PlatformManager.IDeviceResolutionTranslator translator = mPlatformManager.getResolutionTranslator();
+            mScope.put("x", translator.nativeToWeb(dx));
+            mScope.put("y", translator.nativeToWeb(dy));
+            if(mCompiledBinding != null && mCompiledBinding.evaluate(mScope)) {
+                mCompiledBinding.dispatch(mPlatformManager);
+                if(mCompiledBinding.mayExit()) {
+                    evaluateExitExpression(mExitExpressionPair, mScope);
+                }
+            } else {
+                consumeExpression(mExpressionHoldersMap, mScope, BindingXEventType.TYPE_PAN);
+                evaluateExitExpression(mExitExpressionPair, mScope);
+            }
+        } catch (Exception e) {
+            LogProxy.e("runtime error", e);
+        } finally {
+            BindingXTrace.endSection(traced);
+            if(mFrameGovernor != null) {
+                mFrameGovernor.end(governed);
+            }
+        }
+    }
+
+    private void removeListener() {
+        final WeakReference<View> viewRef = mViewRef;
+        mViewRef = null;
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                View view = viewRef == null ? null : viewRef.get();
+                if(view != null) {
+                    TouchDispatcher.remove(view, BindingXPanHandler.this);
+                }
+                isTracking = false;
+                isPanning = false;
+            }
+        });
+    }
+
+    @Override
+    protected void onExit(@NonNull Map<String, Object> scope) {
+        removeListener();
+        fireEventByState(BindingXConstants.STATE_EXIT, getDouble(scope, "x"), getDouble(scope, "y"));
+    }
+
+    @Override
+    protected void onUserIntercept(String interceptor, @NonNull Map<String, Object> result, @NonNull Map<String, Object> scope) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", BindingXConstants.STATE_INTERCEPTOR);
+            param.put("deltaX", scope.get("x"));
+            param.put("deltaY", scope.get("y"));
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            Map<String, Object> intercept = new HashMap<>();
+            intercept.put(interceptor, result);
+            param.put("interceptor", intercept);
+            mCallback.callback(param);
+        }
+    }
+
+    private void fireEventByState(@NonNull String state, double deltaX, double deltaY) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", state);
+            param.put("deltaX", deltaX);
+            param.put("deltaY", deltaY);
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            mCallback.callback(param);
+        }
+    }
+
+    private void fireNativeEventByState(@NonNull String state, float dx, float dy) {
+        PlatformManager.IDeviceResolutionTranslator translator = mPlatformManager.getResolutionTranslator();
+        fireEventByState(state, translator.nativeToWeb(dx), translator.nativeToWeb(dy));
+    }
+
+    private static double getDouble(@NonNull Map<String, Object> scope, @NonNull String key) {
+        Object value = scope.get(key);
+        return value instanceof Double ? (Double) value : 0;
+    }
+
+    /**
+     * the touch listener of an anchor, shared by the pan bindings anchored to it. UI thread only.
+     * */
+    private static final class TouchDispatcher implements View.OnTouchListener {
+
+        private static final WeakHashMap<View, TouchDispatcher> sDispatchers = new WeakHashMap<>();
+        private static Field sListenerInfoField;
+        private static Field sTouchListenerField;
+
+        @Nullable private final View.OnTouchListener mPrevious;
+        // a binding may exit, and leave, while a touch is dispatched
+        private final CopyOnWriteArrayList<BindingXPanHandler> mHandlers = new CopyOnWriteArrayList<>();
+
+        private TouchDispatcher(@Nullable View.OnTouchListener previous) {
+            this.mPrevious = previous;
+        }
+
+        static void add(@NonNull View view, @NonNull BindingXPanHandler handler) {
+            TouchDispatcher dispatcher = sDispatchers.get(view);
+            if(dispatcher == null) {
+                View.OnTouchListener previous = null;
+                try {
+                    previous = readListener(view);
+                } catch (Exception e) {
+                    LogProxy.w("the touch listener of the anchor is unreadable, it is replaced");
+                }
+                dispatcher = new TouchDispatcher(previous);
+                view.setOnTouchListener(dispatcher);
+                sDispatchers.put(view, dispatcher);
+            }
+            dispatcher.mHandlers.addIfAbsent(handler);
+        }
+
+        static void remove(@NonNull View view, @NonNull BindingXPanHandler handler) {
+            TouchDispatcher dispatcher = sDispatchers.get(view);
+            if(dispatcher == null || !dispatcher.mHandlers.remove(handler) || !dispatcher.mHandlers.isEmpty()) {
+                return;
+            }
+            sDispatchers.remove(view);
+            try {
+                View.OnTouchListener current = readListener(view);
+                if(current != null && current != dispatcher) {
+                    // replaced by someone else meanwhile, theirs now
+                    return;
+                }
+            } catch (Exception e) {
+                // unknown, ours as far as we know
+            }
+            view.setOnTouchListener(dispatcher.mPrevious);
+        }
+
+        @Nullable
+        private static synchronized View.OnTouchListener readListener(@NonNull View view) throws Exception {
+            if(sTouchListenerField == null) {
+                Field listenerInfo = View.class.getDeclaredField("mListenerInfo");
+                listenerInfo.setAccessible(true);
+                Field touchListener = listenerInfo.getType().getDeclaredField("mOnTouchListener");
+                touchListener.setAccessible(true);
+                sListenerInfoField = listenerInfo;
+                sTouchListenerField = touchListener;
+            }
+            Object info = sListenerInfoField.get(view);
+            return info == null ? null : (View.OnTouchListener) sTouchListenerField.get(info);
+        }
+
+        @Override
+        public boolean onTouch(View view, MotionEvent event) {
+            boolean handled = mPrevious != null && mPrevious.onTouch(view, event);
+            for(BindingXPanHandler handler : mHandlers) {
+                handled |= handler.onTouch(view, event);
+            }
+            return handled;
+        }
+    }
+}
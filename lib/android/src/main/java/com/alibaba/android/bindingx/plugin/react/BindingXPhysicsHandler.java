@@ -0,0 +1,311 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+import android.view.animation.AnimationUtils;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.AbstractEventHandler;
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * Drives bindings with a spring or decay motion stepped on vsync. Expressions can read
+ * {@code t} (milliseconds since start), {@code value} and {@code velocity}.
+ *
+ * Options (all optional):
+ * <pre>
+ *     spring: from, to, velocity, stiffness, damping, mass, restDisplacementThreshold, restSpeedThreshold
+ *     decay:  from, velocity, deceleration, restSpeedThreshold
+ * </pre>
+ * {@code velocity} is in units per second. When it is omitted, the velocity of the last gesture on the axis
+ * given by {@code velocityAxis} ("x" or "y", default "y") is used, if that gesture has just ended.
+ * {@code deceleration} must be within (0, 1), the default of 0.998 is used otherwise.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+public class BindingXPhysicsHandler extends AbstractEventHandler implements Choreographer.FrameCallback {
+
+    /*package*/ static final String TYPE_SPRING = "spring";
+    /*package*/ static final String TYPE_DECAY = "decay";
+
+    private static final double DEFAULT_STIFFNESS = 100;
+    private static final double DEFAULT_DAMPING = 10;
+    private static final double DEFAULT_MASS = 1;
+    private static final double DEFAULT_DECELERATION = 0.998;
+    private static final double DEFAULT_REST_DISPLACEMENT = 0.001;
+    private static final double DEFAULT_SPRING_REST_SPEED = 0.001;
+
+    private final boolean isSpring;
+    private Map<String, Object> mOptions = null;
+    private GestureVelocityStore mVelocityStore = null;
+    private BindingXFrameGovernor mFrameGovernor = null;
+    private BindingParams mBindingParams = null;
+    private CompiledBinding mCompiledBinding = null;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private PhysicsMotion mMotion = null;
+    private long mStartTime = 0;
+    // the time of the latest frame, evaluated again once the binding is retargeted
+    private long mLastTime = 0;
+    private boolean isRunning = false;
+    private boolean isPaused = false;
+
+    private final Runnable mStartOnMain = new Runnable() {
+        @Override
+        public void run() {
+            if(isRunning) {
+                Choreographer.getInstance().postFrameCallback(BindingXPhysicsHandler.this);
+            }
+        }
+    };
+
+    public BindingXPhysicsHandler(Context context, PlatformManager manager, boolean isSpring, Object... extension) {
+        super(context, manager, extension);
+        this.isSpring = isSpring;
+    }
+
+    /*package*/ void setBindingOptions(@Nullable Map<String, Object> options) {
+        this.mOptions = options;
+    }
+
+    /*package*/ void setVelocityStore(@Nullable GestureVelocityStore store) {
+        this.mVelocityStore = store;
+    }
+
+    /*package*/ void setFrameGovernor(@Nullable BindingXFrameGovernor governor) {
+        this.mFrameGovernor = governor;
+    }
+
+    /*package*/ void setBindingParams(@Nullable BindingParams params) {
+        this.mBindingParams = params;
+        if(params != null) {
+            params.setReevaluation(new Runnable() {
+                @Override
+                public void run() {
+                    // a running motion evaluates again on its next frame anyway
+                    if(mMotion != null && mStartTime != 0 && (!isRunning || isPaused)) {
+                        evaluate(mLastTime);
+                    }
+                }
+            });
+        }
+    }
+
+    /*package*/ void setCompiledBinding(@Nullable CompiledBinding binding) {
+        this.mCompiledBinding = binding;
+    }
+
+    @Override
+    public boolean onCreate(@NonNull String sourceRef, @NonNull String eventType) {
+        return true;
+    }
+
+    @Override
+    public void onStart(@NonNull String sourceRef, @NonNull String eventType) {
+        mMotion = createMotion();
+        mStartTime = 0;
+        isRunning = true;
+        fireEventByState(BindingXConstants.STATE_START, 0);
+        // the first frame is scheduled from the main thread, expressions are bound by then
+        mMainHandler.post(mStartOnMain);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if(!isRunning || isPaused || mMotion == null) {
+            return;
+        }
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        if(mStartTime == 0) {
+            mStartTime = now;
+        }
+        long t = now - mStartTime;
+        boolean atRest = mMotion.computeAt(t);
+        if(evaluate(t)) {
+            return;
+        }
+        if(atRest) {
+            isRunning = false;
+            fireEventByState(BindingXConstants.STATE_END, t);
+            return;
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * @return true if the binding exited
+     * */
+    private boolean evaluate(long t) {
+        mLastTime = t;
+        long governed = mFrameGovernor == null ? 0 : mFrameGovernor.begin();
+        boolean traced = BindingXTrace.beginSection(isSpring ? "BindingX#evaluate:spring" : "BindingX#evaluate:decay");
+        try {
+            if(mBindingParams != null) {
+                mBindingParams.applyTo(mScope);
+            }
+            mScope.put("t", (double) t);
+            mScope.put("value", mMotion.value);
+            mScope.put("velocity", mMotion.velocity);
+            boolean compiled = mCompiledBinding != null && mCompiledBinding.evaluate(mScope);
+            if(compiled) {
+                mCompiledBinding.dispatch(mPlatformManager);
+            } else {
+                consumeExpression(mExpressionHoldersMap, mScope, isSpring ? TYPE_SPRING : TYPE_DECAY);
+            }
+            if((!compiled || mCompiledBinding.mayExit()) && evaluateExitExpression(mExitExpressionPair, mScope)) {
+                return true;
+            }
+        } catch (Exception e) {
+            LogProxy.e("runtime error", e);
+        } finally {
+            BindingXTrace.endSection(traced);
+            if(mFrameGovernor != null) {
+                mFrameGovernor.end(governed);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onDisable(@NonNull String sourceRef, @NonNull String eventType) {
+        stop();
+        fireEventByState(BindingXConstants.STATE_END, currentTime());
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        stop();
+        clearExpressions();
+    }
+
+    @Override
+    public void onActivityPause() {
+        isPaused = true;
+    }
+
+    @Override
+    public void onActivityResume() {
+        if(isPaused) {
+            isPaused = false;
+            mMainHandler.post(mStartOnMain);
+        }
+    }
+
+    @Override
+    protected void onExit(@NonNull Map<String, Object> scope) {
+        Object t = scope.get("t");
+        stop();
+        fireEventByState(BindingXConstants.STATE_EXIT, t instanceof Double ? (long) (double) (Double) t : 0);
+    }
+
+    @Override
+    protected void onUserIntercept(String interceptor, @NonNull Map<String, Object> result, @NonNull Map<String, Object> scope) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", BindingXConstants.STATE_INTERCEPTOR);
+            param.put("t", scope.get("t"));
+            param.put("value", scope.get("value"));
+            param.put("velocity", scope.get("velocity"));
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            Map<String, Object> intercept = new HashMap<>();
+            intercept.put(interceptor, result);
+            param.put("interceptor", intercept);
+            mCallback.callback(param);
+        }
+    }
+
+    private void stop() {
+        isRunning = false;
+        mMainHandler.removeCallbacks(mStartOnMain);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().removeFrameCallback(BindingXPhysicsHandler.this);
+            }
+        });
+    }
+
+    private long currentTime() {
+        return mStartTime == 0 ? 0 : AnimationUtils.currentAnimationTimeMillis() - mStartTime;
+    }
+
+    private void fireEventByState(@NonNull String state, long t) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", state);
+            param.put("t", t);
+            if(mMotion != null) {
+                param.put("value", mMotion.value);
+                param.put("velocity", mMotion.velocity);
+            }
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            mCallback.callback(param);
+        }
+    }
+
+    @NonNull
+    private PhysicsMotion createMotion() {
+        Map<String, Object> options = mOptions == null ? new HashMap<String, Object>() : mOptions;
+        double velocity;
+        if(options.get("velocity") instanceof Number) {
+            velocity = ((Number) options.get("velocity")).doubleValue();
+        } else if(mVelocityStore != null) {
+            long now = SystemClock.uptimeMillis();
+            velocity = "x".equals(options.get("velocityAxis")) ? mVelocityStore.getVelocityX(now) : mVelocityStore.getVelocityY(now);
+        } else {
+            velocity = 0;
+        }
+        double from = getDouble(options, "from", 0);
+        if(isSpring) {
+            return new PhysicsMotion.Spring(from,
+                    getDouble(options, "to", 1),
+                    velocity,
+                    getDouble(options, "stiffness", DEFAULT_STIFFNESS),
+                    getDouble(options, "damping", DEFAULT_DAMPING),
+                    getDouble(options, "mass", DEFAULT_MASS),
+                    getDouble(options, "restDisplacementThreshold", DEFAULT_REST_DISPLACEMENT),
+                    getDouble(options, "restSpeedThreshold", DEFAULT_SPRING_REST_SPEED));
+        }
+        double deceleration = getDouble(options, "deceleration", DEFAULT_DECELERATION);
+        if(!PhysicsMotion.Decay.isValidDeceleration(deceleration)) {
+            LogProxy.e("deceleration must be within (0, 1), " + deceleration + " given");
+            deceleration = DEFAULT_DECELERATION;
+        }
+        return new PhysicsMotion.Decay(from, velocity, deceleration,
+                getDouble(options, "restSpeedThreshold", PhysicsMotion.Decay.DEFAULT_REST_SPEED));
+    }
+
+    private static double getDouble(@NonNull Map<String, Object> options, @NonNull String key, double defaultValue) {
+        Object value = options.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
+}
@@ -0,0 +1,404 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.animation.Animator;
+import android.animation.TimeInterpolator;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.animation.AnimationUtils;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.AbstractEventHandler;
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * Runs a timing binding as RenderThread animations (see {@link RenderThreadAnimators}), one per animated
+ * view property, each driven by the curve sampled in its {@link RenderThreadTimingPlan}. They keep running
+ * while the UI thread is busy.
+ *
+ * Targets which can't be animated on the RenderThread (e.g. not hardware accelerated) are stepped through
+ * the sampled curve on the UI thread instead. So is the whole binding once {@link #stepOnUiThread()} has been
+ * called, which is done when another binding starts writing one of its targets: those writes are merged on
+ * the UI thread (see {@link RNWriteMerger}), which RenderThread animations would bypass.
+ *
+ * The final values are written through the regular updaters once the duration passed, which keeps the
+ * shadow tree in sync. Unbinding cancels the animations, leaving the targets where they are.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class BindingXRenderThreadTimingHandler extends AbstractEventHandler {
+
+    private final RenderThreadTimingPlan mPlan;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // main thread only
+    private final List<Target> mTargets = new ArrayList<>();
+    private boolean isStepping = false;
+    private boolean isStepScheduled = false;
+
+    private volatile long mStartTime = 0;
+    private volatile boolean isRunning = false;
+
+    private final Runnable mStartOnMain = new Runnable() {
+        @Override
+        public void run() {
+            if(isRunning) {
+                startAnimations();
+            }
+        }
+    };
+
+    private final Runnable mFinishOnMain = new Runnable() {
+        @Override
+        public void run() {
+            if(!isRunning) {
+                return;
+            }
+            isRunning = false;
+            cancelStep();
+            applyFinalValues();
+            mTargets.clear();
+            fireEventByState(BindingXConstants.STATE_EXIT, mPlan.duration);
+        }
+    };
+
+    private final Runnable mStepOnMain = new Runnable() {
+        @Override
+        public void run() {
+            isStepping = true;
+            if(!isRunning) {
+                return;
+            }
+            long t = currentTime();
+            for(Target target : mTargets) {
+                if(target.animators != null) {
+                    target.cancelAnimators();
+                    write(target, t);
+                }
+            }
+            scheduleStep();
+        }
+    };
+
+    private final Choreographer.FrameCallback mStep = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            isStepScheduled = false;
+            if(!isRunning) {
+                return;
+            }
+            boolean traced = BindingXTrace.beginSection("BindingX#renderThreadTiming.step");
+            try {
+                long t = currentTime();
+                for(Target target : mTargets) {
+                    if(target.animators == null) {
+                        write(target, t);
+                    }
+                }
+                if(t < mPlan.duration) {
+                    scheduleStep();
+                }
+            } finally {
+                BindingXTrace.endSection(traced);
+            }
+        }
+    };
+
+    public BindingXRenderThreadTimingHandler(Context context, PlatformManager manager,
+                                             @NonNull RenderThreadTimingPlan plan, Object... extension) {
+        super(context, manager, extension);
+        this.mPlan = plan;
+    }
+
+    /**
+     * @return whether timing bindings can be run on the RenderThread at all
+     * */
+    static boolean isSupported() {
+        return RenderThreadAnimators.isSupported();
+    }
+
+    /**
+     * move all targets over to the UI thread for the rest of the binding, may be called from any thread.
+     * */
+    void stepOnUiThread() {
+        mMainHandler.post(mStepOnMain);
+    }
+
+    @Override
+    public boolean onCreate(@NonNull String sourceRef, @NonNull String eventType) {
+        return true;
+    }
+
+    @Override
+    public void onStart(@NonNull String sourceRef, @NonNull String eventType) {
+        mStartTime = 0;
+        isRunning = true;
+        fireEventByState(BindingXConstants.STATE_START, 0);
+        mMainHandler.post(mStartOnMain);
+    }
+
+    @Override
+    public boolean onDisable(@NonNull String sourceRef, @NonNull String eventType) {
+        long t = currentTime();
+        stop();
+        fireEventByState(BindingXConstants.STATE_END, t);
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        stop();
+        clearExpressions();
+    }
+
+    @Override
+    public void onActivityPause() {
+        // RenderThread animations follow the window
+    }
+
+    @Override
+    public void onActivityResume() {
+        // RenderThread animations follow the window
+    }
+
+    @Override
+    protected void onExit(@NonNull Map<String, Object> scope) {
+        // the exit expression has been resolved into the duration of the plan
+    }
+
+    @Override
+    protected void onUserIntercept(String interceptor, @NonNull Map<String, Object> result, @NonNull Map<String, Object> scope) {
+        // bindings with interceptors are never planned
+    }
+
+    private void startAnimations() {
+        boolean traced = BindingXTrace.beginSection("BindingX#renderThreadTiming");
+        try {
+            PlatformManager.IViewFinder viewFinder = mPlatformManager.getViewFinder();
+            PlatformManager.IDeviceResolutionTranslator translator = mPlatformManager.getResolutionTranslator();
+            boolean hasStepped = false;
+            for(RenderThreadTimingPlan.Track track : mPlan.tracks) {
+                View targetView = viewFinder.findViewBy(track.element);
+                if(targetView == null) {
+                    continue;
+                }
+                if(track.channels[0] != RenderThreadTimingPlan.CHANNEL_ALPHA) {
+                    RNViewUpdateService.prepareTransform(targetView, track.config);
+                }
+                Target target = new Target(targetView, track);
+                if(!isStepping) {
+                    target.animators = animate(targetView, track, translator);
+                }
+                hasStepped |= target.animators == null;
+                mTargets.add(target);
+            }
+            mStartTime = AnimationUtils.currentAnimationTimeMillis();
+            if(hasStepped) {
+                for(Target target : mTargets) {
+                    if(target.animators == null) {
+                        write(target, 0);
+                    }
+                }
+                scheduleStep();
+            }
+            mMainHandler.postDelayed(mFinishOnMain, mPlan.duration);
+        } finally {
+            BindingXTrace.endSection(traced);
+        }
+    }
+
+    /**
+     * each channel starts at the first sample and moves by one unit, scaled by the curve of deltas.
+     * @return the started animators, or null if the track has to be stepped on the UI thread
+     * */
+    private Animator[] animate(@NonNull View targetView, @NonNull RenderThreadTimingPlan.Track track,
+                               @NonNull PlatformManager.IDeviceResolutionTranslator translator) {
+        double[] samples = track.samples;
+        Animator[] animators = new Animator[track.channels.length];
+        for(int c = 0; c < animators.length; c++) {
+            int channel = track.channels[c];
+            float[] deltas = new float[samples.length];
+            double first = toNative(channel, samples[0], translator);
+            for(int i = 0; i < samples.length; i++) {
+                deltas[i] = (float) (toNative(channel, samples[i], translator) - first);
+            }
+            animators[c] = RenderThreadAnimators.start(targetView, channel, (float) first, (float) first + 1,
+                    mPlan.duration, new SampledCurve(deltas));
+            if(animators[c] == null) {
+                for(int i = 0; i < c; i++) {
+                    animators[i].cancel();
+                }
+                return null;
+            }
+        }
+        return animators;
+    }
+
+    private static double toNative(int channel, double value, @NonNull PlatformManager.IDeviceResolutionTranslator translator) {
+        if(channel == RenderThreadTimingPlan.CHANNEL_TRANSLATION_X || channel == RenderThreadTimingPlan.CHANNEL_TRANSLATION_Y) {
+            return translator.webToNative(value);
+        }
+        return value;
+    }
+
+    private void applyFinalValues() {
+        PlatformManager.IViewFinder viewFinder = mPlatformManager.getViewFinder();
+        PlatformManager.IViewUpdater viewUpdater = mPlatformManager.getViewUpdater();
+        PlatformManager.IDeviceResolutionTranslator translator = mPlatformManager.getResolutionTranslator();
+        for(RenderThreadTimingPlan.Track track : mPlan.tracks) {
+            View targetView = viewFinder.findViewBy(track.element);
+            if(targetView == null) {
+                continue;
+            }
+            viewUpdater.synchronouslyUpdateViewOnUIThread(targetView, track.property,
+                    track.samples[track.samples.length - 1], translator, track.config, track.element);
+        }
+    }
+
+    private void stop() {
+        isRunning = false;
+        mMainHandler.removeCallbacks(mStartOnMain);
+        mMainHandler.removeCallbacks(mStepOnMain);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mMainHandler.removeCallbacks(mFinishOnMain);
+                cancelStep();
+                long t = currentTime();
+                for(Target target : mTargets) {
+                    if(target.animators != null) {
+                        // the view still holds the start values, RenderThread ones are dropped on cancel
+                        target.cancelAnimators();
+                        write(target, t);
+                    }
+                }
+                mTargets.clear();
+            }
+        });
+    }
+
+    private void write(@NonNull Target target, long t) {
+        RenderThreadTimingPlan.Track track = target.track;
+        mPlatformManager.getViewUpdater().synchronouslyUpdateViewOnUIThread(target.view, track.property,
+                sampleAt(track.samples, t, mPlan.duration), mPlatformManager.getResolutionTranslator(),
+                track.config, track.element);
+    }
+
+    private void scheduleStep() {
+        if(!isStepScheduled) {
+            isStepScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mStep);
+        }
+    }
+
+    private void cancelStep() {
+        if(isStepScheduled) {
+            isStepScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mStep);
+        }
+    }
+
+    // the samples are spread evenly from 0 to the duration, see RenderThreadTimingPlan#sample
+    static double sampleAt(@NonNull double[] samples, long t, long duration) {
+        int last = samples.length - 1;
+        double position = duration <= 0 ? last : (double) t * last / duration;
+        if(position <= 0) {
+            return samples[0];
+        }
+        if(position >= last) {
+            return samples[last];
+        }
+        int index = (int) position;
+        return samples[index] + (samples[index + 1] - samples[index]) * (position - index);
+    }
+
+    private long currentTime() {
+        long start = mStartTime;
+        return start == 0 ? 0 : Math.min(AnimationUtils.currentAnimationTimeMillis() - start, mPlan.duration);
+    }
+
+    private void fireEventByState(@NonNull String state, long t) {
+        if(mCallback != null) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("state", state);
+            param.put("t", t);
+            param.put(BindingXConstants.KEY_TOKEN, mToken);
+            mCallback.callback(param);
+        }
+    }
+
+    private static final class Target {
+        @NonNull final View view;
+        @NonNull final RenderThreadTimingPlan.Track track;
+        // null while stepped on the UI thread
+        Animator[] animators;
+
+        Target(@NonNull View view, @NonNull RenderThreadTimingPlan.Track track) {
+            this.view = view;
+            this.track = track;
+        }
+
+        void cancelAnimators() {
+            for(Animator animator : animators) {
+                animator.cancel();
+            }
+            animators = null;
+        }
+    }
+
+    /**
+     * linear interpolation between the sampled deltas, baked once more into a lookup table by the platform
+     * before the animation is handed to the RenderThread.
+     * */
+    private static final class SampledCurve implements TimeInterpolator {
+        private final float[] mDeltas;
+
+        SampledCurve(@NonNull float[] deltas) {
+            this.mDeltas = deltas;
+        }
+
+        @Override
+        public float getInterpolation(float input) {
+            int last = mDeltas.length - 1;
+            float position = input * last;
+            if(position <= 0) {
+                return mDeltas[0];
+            }
+            if(position >= last) {
+                return mDeltas[last];
+            }
+            int index = (int) position;
+            return mDeltas[index] + (mDeltas[index + 1] - mDeltas[index]) * (position - index);
+        }
+    }
+}
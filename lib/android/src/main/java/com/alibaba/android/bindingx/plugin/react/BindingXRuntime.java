@@ -0,0 +1,234 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.BindingXCore;
+import com.alibaba.android.bindingx.core.BindingXJSFunctionRegister;
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.JSFunctionInterface;
+import com.facebook.react.bridge.ReactContext;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * The parts of the module which outlive a React context, so that a module created after a bundle reload or
+ * context switch starts warm:
+ * <pre>
+ *     - the worker thread, started once per process and never quit
+ *     - the plan cache, loaded once per file
+ *     - one {@link BindingXCore} with its {@link PlatformManager}, leased to one module at a time. The view
+ *       finder and updater of the manager forward to those of the module holding the lease, and find or
+ *       update nothing in between. Modules which find it leased build their own.
+ *     - the JS functions of BindingX, registered once per process. They must not hold on to a module:
+ *       {@code animatedValue} reads the nodes of the context prepared last, which is only weakly referenced.
+ * </pre>
+ * It also keeps the release and rebuild time of the last context switch.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class BindingXRuntime {
+
+    private static final String WORKER_THREAD_NAME = "bindingX-thread";
+
+    /**
+     * {@code animatedValue(tag)} reads the value of a native-driven Animated node from any expression.
+     * */
+    private static final String FUNCTION_ANIMATED_VALUE = "animatedValue";
+
+    private static BindingXRuntime sInstance = null;
+
+    private ReactBindingXModule.InternalWorkerThread mWorkerThread = null;
+    private BindingPlanCache mPlanCache = null;
+    private File mPlanCacheFile = null;
+
+    private final PlatformManager mPlatformManager;
+    private BindingXCore mCore = null;
+    private Object mOwner = null;
+    private volatile PlatformManager.IViewFinder mViewFinder = null;
+    private volatile PlatformManager.IViewUpdater mViewUpdater = null;
+
+    private boolean isJSFunctionsRegistered = false;
+    private volatile WeakReference<ReactContext> mAnimatedContext = null;
+
+    private volatile double mLastReleaseMillis = -1;
+    private volatile double mLastRebuildMillis = -1;
+    private volatile boolean isLastRebuildWarm = false;
+
+    private BindingXRuntime() {
+        mPlatformManager = new PlatformManager.Builder()
+                .withViewFinder(new PlatformManager.IViewFinder() {
+                    @Nullable
+                    @Override
+                    public View findViewBy(String ref, Object... extension) {
+                        PlatformManager.IViewFinder viewFinder = mViewFinder;
+                        return viewFinder == null ? null : viewFinder.findViewBy(ref, extension);
+                    }
+                })
+                .withViewUpdater(new PlatformManager.IViewUpdater() {
+                    @Override
+                    public void synchronouslyUpdateViewOnUIThread(@NonNull View targetView,
+                                                                  @NonNull String propertyName,
+                                                                  @NonNull Object propertyValue,
+                                                                  @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                                                                  @NonNull Map<String, Object> config,
+                                                                  Object... extension) {
+                        PlatformManager.IViewUpdater viewUpdater = mViewUpdater;
+                        if (viewUpdater != null) {
+                            viewUpdater.synchronouslyUpdateViewOnUIThread(targetView, propertyName, propertyValue,
+                                    translator, config, extension);
+                        }
+                    }
+                })
+                .withDeviceResolutionTranslator(ReactBindingXModule.RESOLUTION_TRANSLATOR)
+                .build();
+    }
+
+    @NonNull
+    static synchronized BindingXRuntime get() {
+        if (sInstance == null) {
+            sInstance = new BindingXRuntime();
+        }
+        return sInstance;
+    }
+
+    @NonNull
+    synchronized ReactBindingXModule.InternalWorkerThread getWorkerThread() {
+        if (mWorkerThread == null || !mWorkerThread.isAlive()) {
+            mWorkerThread = new ReactBindingXModule.InternalWorkerThread(WORKER_THREAD_NAME);
+        }
+        return mWorkerThread;
+    }
+
+    @NonNull
+    synchronized BindingPlanCache getPlanCache(@NonNull File file) {
+        if (mPlanCache == null || !file.equals(mPlanCacheFile)) {
+            mPlanCache = new BindingPlanCache(file, BuildConfig.BINDINGX_CORE_VERSION);
+            mPlanCacheFile = file;
+        }
+        return mPlanCache;
+    }
+
+    /**
+     * lease the warm core to the given module, its view finder and updater are used until {@link #release(Object)}.
+     * @return false if another module holds it
+     * */
+    synchronized boolean acquire(@NonNull Object owner, @NonNull PlatformManager.IViewFinder viewFinder,
+                                 @NonNull PlatformManager.IViewUpdater viewUpdater) {
+        if (mOwner != null && mOwner != owner) {
+            return false;
+        }
+        mOwner = owner;
+        mViewFinder = viewFinder;
+        mViewUpdater = viewUpdater;
+        return true;
+    }
+
+    /**
+     * give the warm core back, all its bindings must have been released by now.
+     * */
+    synchronized void release(@NonNull Object owner) {
+        if (mOwner != owner) {
+            return;
+        }
+        mOwner = null;
+        mViewFinder = null;
+        mViewUpdater = null;
+    }
+
+    synchronized void registerJSFunctions() {
+        if (isJSFunctionsRegistered) {
+            return;
+        }
+        isJSFunctionsRegistered = true;
+        BindingXJSFunctionRegister.getInstance().registerJSFunction(FUNCTION_ANIMATED_VALUE,
+                new JSFunctionInterface() {
+                    @Override
+                    public Object execute(ArrayList<Object> arguments) throws NumberFormatException, JSONException {
+                        if (arguments == null || arguments.isEmpty()) {
+                            return Double.NaN;
+                        }
+                        return RNAnimatedInterop.getValue(getAnimatedContext(), RNUtils.getReactTag(arguments.get(0), -1));
+                    }
+                });
+        BindingXEasingFunctions.registerTo(BindingXJSFunctionRegister.getInstance());
+    }
+
+    /**
+     * the context {@code animatedValue} reads from, until {@link #clearAnimatedContext(ReactContext)}.
+     * */
+    synchronized void setAnimatedContext(@Nullable ReactContext context) {
+        mAnimatedContext = context == null ? null : new WeakReference<>(context);
+    }
+
+    @Nullable
+    ReactContext getAnimatedContext() {
+        WeakReference<ReactContext> ref = mAnimatedContext;
+        return ref == null ? null : ref.get();
+    }
+
+    synchronized void clearAnimatedContext(@Nullable ReactContext context) {
+        WeakReference<ReactContext> ref = mAnimatedContext;
+        if (ref != null && ref.get() == context) {
+            mAnimatedContext = null;
+        }
+    }
+
+    @NonNull
+    PlatformManager getPlatformManager() {
+        return mPlatformManager;
+    }
+
+    @NonNull
+    synchronized BindingXCore getCore() {
+        if (mCore == null) {
+            mCore = new BindingXCore(mPlatformManager);
+        }
+        return mCore;
+    }
+
+    void reportRelease(double millis) {
+        mLastReleaseMillis = millis;
+    }
+
+    void reportRebuild(double millis, boolean warm) {
+        mLastRebuildMillis = millis;
+        isLastRebuildWarm = warm;
+    }
+
+    double getLastReleaseMillis() {
+        return mLastReleaseMillis;
+    }
+
+    double getLastRebuildMillis() {
+        return mLastRebuildMillis;
+    }
+
+    boolean isLastRebuildWarm() {
+        return isLastRebuildWarm;
+    }
+}
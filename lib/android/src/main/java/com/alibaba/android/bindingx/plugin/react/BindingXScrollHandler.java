@@ -16,14 +16,23 @@
 package com.alibaba.android.bindingx.plugin.react;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.widget.ScrollView;
 
+import com.alibaba.android.bindingx.core.BindingXCore;
+import com.alibaba.android.bindingx.core.LogProxy;
 import com.alibaba.android.bindingx.core.PlatformManager;
 import com.alibaba.android.bindingx.core.internal.AbstractScrollEventHandler;
 import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+import com.alibaba.android.bindingx.core.internal.ExpressionPair;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Description:
@@ -31,12 +40,31 @@ import com.alibaba.android.bindingx.core.internal.BindingXConstants;
  * A built-in implementation of {@link com.alibaba.android.bindingx.core.IEventHandler} which handle
  * scroll events.
  *
+ * Expressions are evaluated on the UI thread, or on the thread of the {@link BindingXAsyncEvaluator}, while
+ * the core binds and clears them on the bindingX worker. Both sides hold {@link #mExpressionLock}, since the
+ * expression maps of the core are not thread safe.
+ *
  * Created by rowandjj(chuyi)<br/>
  */
 
 public class BindingXScrollHandler extends AbstractScrollEventHandler {
 
     private InnerScrollViewListener mScrollViewListener = null;
+    private BindingXInputRecorder mInputRecorder = null;
+    private BindingXAsyncEvaluator mAsyncEvaluator = null;
+    private boolean isFlingPredictionEnabled = false;
+    private GestureVelocityStore mVelocityStore = null;
+    private BindingXFrameGovernor mFrameGovernor = null;
+    private BindingParams mBindingParams = null;
+    private CompiledBinding mCompiledBinding = null;
+    // guards the expressions and the scope of the core, see the class doc
+    private final Object mExpressionLock = new Object();
+
+    /**
+     * fired once a fling starts, and again whenever its predicted final offset changes.
+     * x and y of the event are the predicted final content offset.
+     * */
+    /*package*/ static final String STATE_SCROLL_END = "scrollEnd";
 
     public BindingXScrollHandler(Context context, PlatformManager manager, Object... extension) {
         super(context, manager, extension);
@@ -51,7 +79,8 @@ public class BindingXScrollHandler extends AbstractScrollEventHandler {
         ScrollView scrollView = (ScrollView) targetView;
         ViewTreeObserver observer = scrollView.getViewTreeObserver();
         if(observer != null && observer.isAlive()) {
-            mScrollViewListener = new InnerScrollViewListener(scrollView);
+            mScrollViewListener = new InnerScrollViewListener(scrollView, mAsyncEvaluator,
+                    isFlingPredictionEnabled ? new ScrollFlingPredictor() : null);
             observer.addOnScrollChangedListener(mScrollViewListener);
             return true;
         } else {
@@ -75,9 +104,21 @@ public class BindingXScrollHandler extends AbstractScrollEventHandler {
 
     }
 
+    @Override
+    public void onBindExpression(@NonNull String eventType, @Nullable Map<String, Object> globalConfig,
+                                 @Nullable ExpressionPair exitExpressionPair,
+                                 @NonNull List<Map<String, Object>> expressionArgs,
+                                 @Nullable BindingXCore.JavaScriptCallback callback) {
+        synchronized (mExpressionLock) {
+            super.onBindExpression(eventType, globalConfig, exitExpressionPair, expressionArgs, callback);
+        }
+    }
+
     @Override
     public boolean onDisable(@NonNull String sourceRef, @NonNull String eventType) {
-        super.onDisable(sourceRef,eventType);
+        synchronized (mExpressionLock) {
+            super.onDisable(sourceRef,eventType);
+        }
 
         View targetView = mPlatformManager.getViewFinder().findViewBy(sourceRef);
         if(targetView instanceof ScrollView) {
@@ -96,66 +137,246 @@ public class BindingXScrollHandler extends AbstractScrollEventHandler {
 
     @Override
     public void onDestroy() {
-        super.onDestroy();
+        synchronized (mExpressionLock) {
+            super.onDestroy();
+        }
         mScrollViewListener = null;
     }
 
-    private class InnerScrollViewListener implements ViewTreeObserver.OnScrollChangedListener{
+    /*package*/ void setInputRecorder(@Nullable BindingXInputRecorder recorder) {
+        this.mInputRecorder = recorder;
+    }
 
-        private int mContentOffsetX=0;
-        private int mContentOffsetY=0;
+    /**
+     * evaluate expressions on the evaluator thread instead of the UI thread, see {@link BindingXAsyncEvaluator}
+     * */
+    /*package*/ void setAsyncEvaluator(@Nullable BindingXAsyncEvaluator evaluator) {
+        this.mAsyncEvaluator = evaluator;
+    }
 
-        private int mTx=0,mTy=0; // 拐点
-        private int mLastDx=0,mLastDy=0;
+    /**
+     * evaluate bindings against the offset of the upcoming frame while flinging, see {@link ScrollFlingPredictor}
+     * */
+    /*package*/ void setFlingPredictionEnabled(boolean enabled) {
+        this.isFlingPredictionEnabled = enabled;
+    }
 
-        private ScrollView mHostView;
-        InnerScrollViewListener(ScrollView hostView) {
-            this.mHostView = hostView;
+    /*package*/ void setVelocityStore(@Nullable GestureVelocityStore store) {
+        this.mVelocityStore = store;
+    }
+
+    /**
+     * account the time spent evaluating to the frame budget, see {@link BindingXFrameGovernor}
+     * */
+    /*package*/ void setFrameGovernor(@Nullable BindingXFrameGovernor governor) {
+        this.mFrameGovernor = governor;
+    }
+
+    /**
+     * extra variables of the expressions, picked up on the evaluating thread, see {@link BindingParams}
+     * */
+    /*package*/ void setBindingParams(@Nullable BindingParams params) {
+        this.mBindingParams = params;
+        if(params != null) {
+            params.setReevaluation(new Runnable() {
+                @Override
+                public void run() {
+                    InnerScrollViewListener listener = mScrollViewListener;
+                    if(listener != null) {
+                        listener.reevaluate();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * evaluate the props without the tree walk of the core whenever possible, see {@link CompiledBinding}
+     * */
+    /*package*/ void setCompiledBinding(@Nullable CompiledBinding binding) {
+        this.mCompiledBinding = binding;
+    }
+
+    /**
+     * feed a recorded content offset through the same path as a real scroll event.
+     * used by {@link BindingXInputReplayer} when no {@link ScrollView} is attached.
+     * */
+    /*package*/ void replayScrollOffset(int contentOffsetX, int contentOffsetY) {
+        if(mScrollViewListener == null) {
+            mScrollViewListener = new InnerScrollViewListener(null, null, null);
         }
+        mScrollViewListener.dispatchScrollOffset(contentOffsetX, contentOffsetY);
+    }
+
+    private class InnerScrollViewListener implements ViewTreeObserver.OnScrollChangedListener{
 
-        private boolean isSameDirection(int currentValue, int lastValue) {
-            return (currentValue > 0 && lastValue > 0) || (currentValue < 0 && lastValue < 0);
+        private final ScrollDeltaTracker mDeltaTracker = new ScrollDeltaTracker();
+
+        // the listener is owned by the view tree observer, never keep the scroll view alive from here
+        private final WeakReference<ScrollView> mHostViewRef;
+        private final BindingXAsyncEvaluator mEvaluator;
+        private final AsyncSample mAsyncSample;
+        private final AsyncReevaluation mAsyncReevaluation;
+        private final ScrollFlingPredictor mFlingPredictor;
+
+        InnerScrollViewListener(@Nullable ScrollView hostView, @Nullable BindingXAsyncEvaluator evaluator,
+                                @Nullable ScrollFlingPredictor flingPredictor) {
+            this.mHostViewRef = new WeakReference<>(hostView);
+            this.mEvaluator = evaluator;
+            this.mAsyncSample = evaluator == null ? null : new AsyncSample();
+            this.mAsyncReevaluation = evaluator == null ? null : new AsyncReevaluation();
+            this.mFlingPredictor = flingPredictor;
         }
 
         @Override
         public void onScrollChanged() {
-            int curContentOffsetX = mHostView.getScrollX();
-            int curContentOffsetY = mHostView.getScrollY();
+            boolean traced = BindingXTrace.beginSection("BindingX#onScrollChanged");
+            try {
+                onScrollChangedInternal();
+            } finally {
+                BindingXTrace.endSection(traced);
+            }
+        }
 
-            if(curContentOffsetX == mContentOffsetX && curContentOffsetY == mContentOffsetY) {
+        private void onScrollChangedInternal() {
+            ScrollView hostView = mHostViewRef.get();
+            if(hostView == null) {
                 return;
             }
+            int curContentOffsetX = hostView.getScrollX();
+            int curContentOffsetY = hostView.getScrollY();
 
-            final int dx = curContentOffsetX - mContentOffsetX;
-            final int dy = curContentOffsetY - mContentOffsetY;
+            BindingXInputRecorder recorder = mInputRecorder;
+            if(recorder != null) {
+                recorder.record(BindingXInputRecorder.TYPE_SCROLL, curContentOffsetX, curContentOffsetY, 0);
+            }
+            if(mFlingPredictor != null) {
+                if(mFlingPredictor.update(hostView)) {
+                    int finalX = mFlingPredictor.getFinalX();
+                    int finalY = mFlingPredictor.getFinalY();
+                    if(mFlingPredictor.takeFinalChange()) {
+                        BindingXScrollHandler.super.fireEventByState(STATE_SCROLL_END, finalX, finalY,
+                                finalX - curContentOffsetX, finalY - curContentOffsetY, 0, 0);
+                    }
+                    // bound views are applied a frame later than the content, so aim at where the content will be
+                    curContentOffsetX = mFlingPredictor.predictNextFrame(curContentOffsetX, finalX);
+                    curContentOffsetY = mFlingPredictor.predictNextFrame(curContentOffsetY, finalY);
+                }
+            }
+            if(mEvaluator != null) {
+                // only the latest offset matters if the evaluator falls behind
+                mAsyncSample.offset = ((long) curContentOffsetX << 32) | (curContentOffsetY & 0xFFFFFFFFL);
+                if(mEvaluator.submit(mAsyncSample)) {
+                    return;
+                }
+                // the evaluator has quit, back to the UI thread
+            }
+            dispatchScrollOffset(curContentOffsetX, curContentOffsetY);
+        }
+
+        private final class AsyncSample extends BindingXAsyncEvaluator.Sample {
+            // x and y packed, so that they are always read as a pair
+            volatile long offset;
 
-            mContentOffsetX = curContentOffsetX;
-            mContentOffsetY = curContentOffsetY;
+            @Override
+            void evaluate() {
+                long packed = offset;
+                dispatchScrollOffset((int) (packed >> 32), (int) packed);
+            }
+        }
 
-            if(dx == 0 && dy == 0) {
+        private final class AsyncReevaluation extends BindingXAsyncEvaluator.Sample {
+            @Override
+            void evaluate() {
+                if(mDeltaTracker.hasOffset()) {
+                    evaluateOffset();
+                }
+            }
+        }
+
+        /**
+         * evaluate the latest offset again, on the thread which evaluates the offsets.
+         * */
+        void reevaluate() {
+            if(mEvaluator != null && mEvaluator.submit(mAsyncReevaluation)) {
                 return;
             }
+            if(mDeltaTracker.hasOffset()) {
+                evaluateOffset();
+            }
+        }
 
-            boolean isTurning = false;
-            if(!isSameDirection(dy, mLastDy)) {// 发现拐点 只可能是纵向的
-                mTy = mContentOffsetY;
-                isTurning = true;
+        /**
+         * same as the core does for scroll bindings, with the compiled props.
+         * @return false if the core has to evaluate this offset
+         * */
+        private boolean evaluateCompiled(@NonNull ScrollDeltaTracker tracker) {
+            CompiledBinding binding = mCompiledBinding;
+            if(binding == null) {
+                return false;
             }
+            PlatformManager.IDeviceResolutionTranslator translator = mPlatformManager.getResolutionTranslator();
+            mScope.put("x", translator.nativeToWeb(tracker.getContentOffsetX()));
+            mScope.put("y", translator.nativeToWeb(tracker.getContentOffsetY()));
+            mScope.put("dx", translator.nativeToWeb(tracker.getDx()));
+            mScope.put("dy", translator.nativeToWeb(tracker.getDy()));
+            mScope.put("tdx", translator.nativeToWeb(tracker.getTdx()));
+            mScope.put("tdy", translator.nativeToWeb(tracker.getTdy()));
+            if(!binding.evaluate(mScope)) {
+                return false;
+            }
+            try {
+                if(binding.mayExit() && evaluateExitExpression(mExitExpressionPair, mScope)) {
+                    return true;
+                }
+            } catch (Exception e) {
+                LogProxy.e("runtime error", e);
+            }
+            binding.dispatch(mPlatformManager);
+            return true;
+        }
 
-            // 计算delta拐点
-            final int tdx = mContentOffsetX - mTx;
-            final int tdy = mContentOffsetY - mTy;
+        void dispatchScrollOffset(int curContentOffsetX, int curContentOffsetY) {
+            ScrollDeltaTracker tracker = mDeltaTracker;
+            if(!tracker.offer(curContentOffsetX, curContentOffsetY)) {
+                return;
+            }
+            final int dx = tracker.getDx();
+            final int dy = tracker.getDy();
 
-            mLastDx = dx;
-            mLastDy = dy;
+            GestureVelocityStore velocityStore = mVelocityStore;
+            if(velocityStore != null) {
+                velocityStore.onMove(dx, dy, SystemClock.uptimeMillis());
+            }
 
-            if(isTurning) {
+            if(tracker.isTurning()) {
                 // 通知
-                BindingXScrollHandler.super.fireEventByState(BindingXConstants.STATE_TURNING,mContentOffsetX,mContentOffsetY,
-                        dx,dy,tdx,tdy);
+                BindingXScrollHandler.super.fireEventByState(BindingXConstants.STATE_TURNING,
+                        tracker.getContentOffsetX(),tracker.getContentOffsetY(),dx,dy,tracker.getTdx(),tracker.getTdy());
             }
+            evaluateOffset();
+        }
 
-            BindingXScrollHandler.super.handleScrollEvent(mContentOffsetX,mContentOffsetY,dx,dy,tdx,tdy);
+        private void evaluateOffset() {
+            ScrollDeltaTracker tracker = mDeltaTracker;
+            long governed = mFrameGovernor == null ? 0 : mFrameGovernor.begin();
+            boolean traced = BindingXTrace.beginSection("BindingX#evaluate:scroll");
+            try {
+                synchronized (mExpressionLock) {
+                    if(mBindingParams != null) {
+                        mBindingParams.applyTo(mScope);
+                    }
+                    if(!evaluateCompiled(tracker)) {
+                        BindingXScrollHandler.super.handleScrollEvent(tracker.getContentOffsetX(),tracker.getContentOffsetY(),
+                                tracker.getDx(),tracker.getDy(),tracker.getTdx(),tracker.getTdy());
+                    }
+                }
+            } finally {
+                BindingXTrace.endSection(traced);
+                if(mFrameGovernor != null) {
+                    mFrameGovernor.end(governed);
+                }
+            }
         }
     }
 }
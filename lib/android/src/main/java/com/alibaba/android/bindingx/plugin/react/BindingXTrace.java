@@ -0,0 +1,120 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.os.Build;
+import android.os.Trace;
+import android.support.annotation.NonNull;
+
+import java.lang.reflect.Method;
+
+/**
+ * Description:
+ *
+ * Trace sections and counters of the binding pipeline, visible in systrace and perfetto under the
+ * {@code app} category. Everything is a single volatile read while disabled, section names are only
+ * built by callers after {@link #isEnabled()} returned true.
+ *
+ * Usage:
+ * <pre>
+ *     boolean traced = BindingXTrace.beginSection("BindingX#bind");
+ *     try {
+ *         ...
+ *     } finally {
+ *         BindingXTrace.endSection(traced);
+ *     }
+ * </pre>
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class BindingXTrace {
+
+    // android.os.Trace.TRACE_TAG_APP
+    private static final long TRACE_TAG_APP = 1L << 12;
+    // atrace truncates longer names
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    private static volatile boolean sEnabled = false;
+
+    // hidden before API 29, where Trace#setCounter and Trace#isEnabled are used instead
+    private static final Method sTraceCounter = Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+            ? resolve("traceCounter", long.class, String.class, int.class) : null;
+    private static final Method sIsTagEnabled = Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+            ? resolve("isTagEnabled", long.class) : null;
+
+    private BindingXTrace() {
+    }
+
+    static void setEnabled(boolean enabled) {
+        sEnabled = enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @return whether a section has been opened, which must then be closed by {@link #endSection(boolean)}
+     * on the same thread.
+     * */
+    static boolean beginSection(@NonNull String name) {
+        if(!sEnabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return false;
+        }
+        Trace.beginSection(name.length() > MAX_SECTION_NAME_LENGTH ? name.substring(0, MAX_SECTION_NAME_LENGTH) : name);
+        return true;
+    }
+
+    static void endSection(boolean traced) {
+        if(traced && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * only emitted while a trace is being recorded.
+     * */
+    static void counter(@NonNull String name, int value) {
+        if(!sEnabled) {
+            return;
+        }
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            if(Trace.isEnabled()) {
+                Trace.setCounter(name, value);
+            }
+            return;
+        }
+        if(sTraceCounter == null || sIsTagEnabled == null) {
+            return;
+        }
+        try {
+            if((Boolean) sIsTagEnabled.invoke(null, TRACE_TAG_APP)) {
+                sTraceCounter.invoke(null, TRACE_TAG_APP, name, value);
+            }
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    private static Method resolve(@NonNull String name, Class<?>... parameterTypes) {
+        try {
+            return Trace.class.getMethod(name, parameterTypes);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * The props of a binding compiled into one {@link ExpressionProgram} at bind time. Handlers evaluate it in
+ * place of the tree walk of the core ({@code consumeExpression}), and fall back to the core whenever it
+ * can't be used:
+ * <pre>
+ *     - at bind time, if any prop expression is outside the supported subset, targets a property unknown to
+ *       BindingX (custom property interceptors of the core), or the binding has interceptors
+ *     - at runtime, if a variable of the scope is missing or not a number
+ * </pre>
+ * The exit expression is compiled as well when possible, the core only evaluates it (and exits) once the
+ * compiled one turned true.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class CompiledBinding {
+
+    private static final String KEY_EXPRESSION = "expression";
+    private static final String KEY_EXIT_EXPRESSION = "exitExpression";
+    private static final String KEY_TRANSFORMED = "transformed";
+    private static final String KEY_CONFIG = "config";
+    private static final String KEY_INTERCEPTORS = "interceptors";
+
+    private final ExpressionProgram mProgram;
+    // the refs the core knows the targets by, slots included
+    private final String[] mElements;
+    private final String[] mProperties;
+    private final RNBindingDescriptor.TargetConfig[] mConfigs;
+    private final int[] mOutputs;
+    private final boolean hasExitExpression;
+    private final int mExitOutput;
+
+    private CompiledBinding(@NonNull ExpressionProgram program, @NonNull String[] elements,
+                            @NonNull String[] properties, @NonNull RNBindingDescriptor.TargetConfig[] configs,
+                            @NonNull int[] outputs, boolean hasExitExpression, int exitOutput) {
+        this.mProgram = program;
+        this.mElements = elements;
+        this.mProperties = properties;
+        this.mConfigs = configs;
+        this.mOutputs = outputs;
+        this.hasExitExpression = hasExitExpression;
+        this.mExitOutput = exitOutput;
+    }
+
+    /**
+     * @return null if the props of the binding have to be evaluated by the core
+     * */
+    @Nullable
+    static CompiledBinding compile(@NonNull RNBindingDescriptor descriptor) {
+        Map<String, Object> options = descriptor.coreOptions;
+        Object props = options.get(BindingXConstants.KEY_PROPS);
+        if (!(props instanceof List) || ((List<?>) props).isEmpty() || options.get(KEY_INTERCEPTORS) != null) {
+            return null;
+        }
+        List<?> list = (List<?>) props;
+        String[] elements = new String[list.size()];
+        String[] properties = new String[list.size()];
+        RNBindingDescriptor.TargetConfig[] configs = new RNBindingDescriptor.TargetConfig[list.size()];
+        int[] outputs = new int[list.size()];
+
+        ExpressionProgram.Builder builder = new ExpressionProgram.Builder();
+        for (int i = 0; i < outputs.length; i++) {
+            if (!(list.get(i) instanceof Map)) {
+                return null;
+            }
+            Map<?, ?> prop = (Map<?, ?>) list.get(i);
+            Object element = prop.get(BindingXConstants.KEY_ELEMENT);
+            Object property = prop.get(BindingXConstants.KEY_PROPERTY);
+            Object config = prop.get(KEY_CONFIG);
+            if (element == null || !(property instanceof String) || !(config instanceof RNBindingDescriptor.TargetConfig)
+                    || RNViewUpdateService.isNop(((RNBindingDescriptor.TargetConfig) config).updater)) {
+                return null;
+            }
+            outputs[i] = builder.addNumber(transformedOf(prop.get(KEY_EXPRESSION)));
+            if (outputs[i] == -1) {
+                return null;
+            }
+            elements[i] = element.toString();
+            properties[i] = (String) property;
+            configs[i] = (RNBindingDescriptor.TargetConfig) config;
+        }
+
+        Object exitExpression = options.get(KEY_EXIT_EXPRESSION);
+        boolean hasExitExpression = exitExpression != null;
+        int exitOutput = hasExitExpression ? builder.addCondition(transformedOf(exitExpression)) : -1;
+        return new CompiledBinding(builder.build(), elements, properties, configs, outputs,
+                hasExitExpression, exitOutput);
+    }
+
+    @Nullable
+    private static Object transformedOf(@Nullable Object expression) {
+        return expression instanceof Map ? ((Map<?, ?>) expression).get(KEY_TRANSFORMED) : null;
+    }
+
+    /**
+     * evaluate all props, and the exit expression if compiled.
+     * @return false if the core has to evaluate the binding this time
+     * */
+    boolean evaluate(@NonNull Map<String, Object> scope) {
+        return mProgram.run(scope);
+    }
+
+    /**
+     * write the values of the last {@link #evaluate(Map)} to their targets.
+     * */
+    void dispatch(@NonNull PlatformManager manager) {
+        PlatformManager.IViewFinder viewFinder = manager.getViewFinder();
+        PlatformManager.IViewUpdater viewUpdater = manager.getViewUpdater();
+        PlatformManager.IDeviceResolutionTranslator translator = manager.getResolutionTranslator();
+        for (int i = 0; i < mOutputs.length; i++) {
+            View targetView = viewFinder.findViewBy(mElements[i]);
+            if (targetView == null) {
+                continue;
+            }
+            viewUpdater.synchronouslyUpdateViewOnUIThread(targetView, mProperties[i], mProgram.valueOf(mOutputs[i]),
+                    translator, mConfigs[i], mElements[i]);
+        }
+    }
+
+    /**
+     * @return false if the exit expression can't be true after the last {@link #evaluate(Map)}, in which case
+     * the core doesn't have to evaluate it
+     * */
+    boolean mayExit() {
+        if (!hasExitExpression) {
+            return false;
+        }
+        return mExitOutput == -1 || mProgram.valueOf(mExitOutput) != 0;
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * An easing curve sampled once over progress [0,1] and evaluated by linear interpolation afterwards, which
+ * makes every evaluation constant time whatever the curve. Bezier curves are cached by their control points,
+ * elastic and bounce curves are built once on first use.
+ *
+ * Tables are immutable once built and can be shared between threads.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class EasingLookupTable {
+
+    /*package*/ static final int SIZE = 512;
+
+    private static final int MAX_BEZIER_TABLES = 32;
+
+    // Penner's elastic curves with the default period (0.3 of the duration, 0.45 for in-out)
+    private static final double ELASTIC_PERIOD = 0.3;
+    private static final double ELASTIC_IN_OUT_PERIOD = 0.45;
+
+    interface Curve {
+        double valueAt(double progress);
+    }
+
+    private final float[] mSamples = new float[SIZE];
+
+    private EasingLookupTable(@NonNull Curve curve) {
+        for (int i = 0; i < SIZE; i++) {
+            mSamples[i] = (float) curve.valueAt((double) i / (SIZE - 1));
+        }
+    }
+
+    /**
+     * @param progress clamped to [0,1]
+     * */
+    double valueAt(double progress) {
+        if (!(progress > 0)) {
+            return mSamples[0];
+        }
+        if (progress >= 1) {
+            return mSamples[SIZE - 1];
+        }
+        double position = progress * (SIZE - 1);
+        int index = (int) position;
+        double fraction = position - index;
+        return mSamples[index] + (mSamples[index + 1] - mSamples[index]) * fraction;
+    }
+
+    /**
+     * the usual {@code b + c * easing(t / d)} of timing functions.
+     * */
+    double ease(double t, double b, double c, double d) {
+        return b + c * valueAt(d == 0 ? 1 : t / d);
+    }
+
+    // ----------------------------------------------------------------------------------------------------
+
+    private static final Map<BezierKey, EasingLookupTable> sBezierTables =
+            new LinkedHashMap<BezierKey, EasingLookupTable>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<BezierKey, EasingLookupTable> eldest) {
+                    return size() > MAX_BEZIER_TABLES;
+                }
+            };
+
+    // most recently used bezier table, expressions usually keep calling with the same control points.
+    // key and table are published together, a reader never sees the table of another key
+    private static volatile BezierEntry sLastBezier = null;
+
+    private static EasingLookupTable sElasticIn, sElasticOut, sElasticInOut;
+    private static EasingLookupTable sBounceIn, sBounceOut, sBounceInOut;
+
+    @NonNull
+    static EasingLookupTable cubicBezier(double x1, double y1, double x2, double y2) {
+        BezierEntry last = sLastBezier;
+        if (last != null && last.key.matches(x1, y1, x2, y2)) {
+            return last.table;
+        }
+        BezierKey key = new BezierKey(x1, y1, x2, y2);
+        EasingLookupTable table;
+        synchronized (sBezierTables) {
+            table = sBezierTables.get(key);
+            if (table == null) {
+                table = new EasingLookupTable(new CubicBezierCurve(x1, y1, x2, y2));
+                sBezierTables.put(key, table);
+            }
+        }
+        sLastBezier = new BezierEntry(key, table);
+        return table;
+    }
+
+    @NonNull
+    static synchronized EasingLookupTable elasticIn() {
+        if (sElasticIn == null) {
+            sElasticIn = new EasingLookupTable(new Curve() {
+                @Override
+                public double valueAt(double x) {
+                    return elasticInValue(x, ELASTIC_PERIOD);
+                }
+            });
+        }
+        return sElasticIn;
+    }
+
+    @NonNull
+    static synchronized EasingLookupTable elasticOut() {
+        if (sElasticOut == null) {
+            sElasticOut = new EasingLookupTable(new Curve() {
+                @Override
+                public double valueAt(double x) {
+                    return 1 - elasticInValue(1 - x, ELASTIC_PERIOD);
+                }
+            });
+        }
+        return sElasticOut;
+    }
+
+    @NonNull
+    static synchronized EasingLookupTable elasticInOut() {
+        if (sElasticInOut == null) {
+            sElasticInOut = new EasingLookupTable(new Curve() {
+                @Override
+                public double valueAt(double x) {
+                    return x < 0.5
+                            ? elasticInValue(x * 2, ELASTIC_IN_OUT_PERIOD) / 2
+                            : 1 - elasticInValue(2 - x * 2, ELASTIC_IN_OUT_PERIOD) / 2;
+                }
+            });
+        }
+        return sElasticInOut;
+    }
+
+    @NonNull
+    static synchronized EasingLookupTable bounceIn() {
+        if (sBounceIn == null) {
+            sBounceIn = new EasingLookupTable(new Curve() {
+                @Override
+                public double valueAt(double x) {
+                    return 1 - bounceOutValue(1 - x);
+                }
+            });
+        }
+        return sBounceIn;
+    }
+
+    @NonNull
+    static synchronized EasingLookupTable bounceOut() {
+        if (sBounceOut == null) {
+            sBounceOut = new EasingLookupTable(new Curve() {
+                @Override
+                public double valueAt(double x) {
+                    return bounceOutValue(x);
+                }
+            });
+        }
+        return sBounceOut;
+    }
+
+    @NonNull
+    static synchronized EasingLookupTable bounceInOut() {
+        if (sBounceInOut == null) {
+            sBounceInOut = new EasingLookupTable(new Curve() {
+                @Override
+                public double valueAt(double x) {
+                    return x < 0.5
+                            ? (1 - bounceOutValue(1 - x * 2)) / 2
+                            : bounceOutValue(x * 2 - 1) / 2 + 0.5;
+                }
+            });
+        }
+        return sBounceInOut;
+    }
+
+    /*package*/ static double elasticInValue(double x, double period) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double s = period / 4;
+        return -(Math.pow(2, 10 * (x - 1)) * Math.sin((x - 1 - s) * (2 * Math.PI) / period));
+    }
+
+    /*package*/ static double bounceOutValue(double x) {
+        if (x < 1 / 2.75) {
+            return 7.5625 * x * x;
+        } else if (x < 2 / 2.75) {
+            x -= 1.5 / 2.75;
+            return 7.5625 * x * x + 0.75;
+        } else if (x < 2.5 / 2.75) {
+            x -= 2.25 / 2.75;
+            return 7.5625 * x * x + 0.9375;
+        }
+        x -= 2.625 / 2.75;
+        return 7.5625 * x * x + 0.984375;
+    }
+
+    /**
+     * y as a function of x of the CSS cubic-bezier(x1, y1, x2, y2), solved for every sample at build time.
+     * */
+    /*package*/ static final class CubicBezierCurve implements Curve {
+        private final double ax, bx, cx;
+        private final double ay, by, cy;
+
+        CubicBezierCurve(double x1, double y1, double x2, double y2) {
+            cx = 3 * x1;
+            bx = 3 * (x2 - x1) - cx;
+            ax = 1 - cx - bx;
+            cy = 3 * y1;
+            by = 3 * (y2 - y1) - cy;
+            ay = 1 - cy - by;
+        }
+
+        @Override
+        public double valueAt(double x) {
+            double s = solveCurveX(x);
+            return ((ay * s + by) * s + cy) * s;
+        }
+
+        private double curveX(double s) {
+            return ((ax * s + bx) * s + cx) * s;
+        }
+
+        private double solveCurveX(double x) {
+            // newton first, bisection when the slope is too flat
+            double s = x;
+            for (int i = 0; i < 8; i++) {
+                double error = curveX(s) - x;
+                if (Math.abs(error) < 1e-7) {
+                    return s;
+                }
+                double slope = (3 * ax * s + 2 * bx) * s + cx;
+                if (Math.abs(slope) < 1e-6) {
+                    break;
+                }
+                s -= error / slope;
+            }
+            double low = 0, high = 1;
+            s = x;
+            while (low < high) {
+                double value = curveX(s);
+                if (Math.abs(value - x) < 1e-7) {
+                    return s;
+                }
+                if (x > value) {
+                    low = s;
+                } else {
+                    high = s;
+                }
+                s = (high - low) / 2 + low;
+                if (high - low < 1e-9) {
+                    break;
+                }
+            }
+            return s;
+        }
+    }
+
+    private static final class BezierEntry {
+        final BezierKey key;
+        final EasingLookupTable table;
+
+        BezierEntry(@NonNull BezierKey key, @NonNull EasingLookupTable table) {
+            this.key = key;
+            this.table = table;
+        }
+    }
+
+    private static final class BezierKey {
+        final double x1, y1, x2, y2;
+
+        BezierKey(double x1, double y1, double x2, double y2) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+        }
+
+        boolean matches(double x1, double y1, double x2, double y2) {
+            return this.x1 == x1 && this.y1 == y1 && this.x2 == x2 && this.y2 == y2;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BezierKey)) {
+                return false;
+            }
+            BezierKey key = (BezierKey) o;
+            return matches(key.x1, key.y1, key.x2, key.y2);
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(x1);
+            bits = 31 * bits + Double.doubleToLongBits(y1);
+            bits = 31 * bits + Double.doubleToLongBits(x2);
+            bits = 31 * bits + Double.doubleToLongBits(y2);
+            return (int) (bits ^ (bits >>> 32));
+        }
+    }
+}
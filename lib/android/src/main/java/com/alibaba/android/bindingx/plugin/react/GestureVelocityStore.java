@@ -0,0 +1,78 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+/**
+ * Description:
+ *
+ * Latest velocity observed by the gesture-like handlers, in pixels per second. Physics handlers use it
+ * as their initial velocity, so that a motion started right after a gesture continues it seamlessly.
+ *
+ * A velocity is only handed out for a short while after the gesture last moved or was released, a motion
+ * started later on starts at rest. Times are {@link android.os.SystemClock#uptimeMillis()}.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class GestureVelocityStore {
+
+    // weight of the newest sample, smooths out uneven event intervals
+    private static final double SMOOTHING = 0.6;
+    // covers the round trip of the release event through JS, which then starts the motion
+    static final long MAX_AGE_MILLIS = 300;
+
+    private volatile double mVelocityX = 0;
+    private volatile double mVelocityY = 0;
+
+    private volatile long mUpdateTimeMillis = Long.MIN_VALUE;
+
+    private long mLastTimeMillis = -1;
+
+    void onMove(int dx, int dy, long timeMillis) {
+        if(mLastTimeMillis < 0 || timeMillis <= mLastTimeMillis) {
+            mLastTimeMillis = timeMillis;
+            return;
+        }
+        double dt = (timeMillis - mLastTimeMillis) / 1000d;
+        mLastTimeMillis = timeMillis;
+        mVelocityX = SMOOTHING * (dx / dt) + (1 - SMOOTHING) * mVelocityX;
+        mVelocityY = SMOOTHING * (dy / dt) + (1 - SMOOTHING) * mVelocityY;
+        mUpdateTimeMillis = timeMillis;
+    }
+
+    /**
+     * the gesture has been released with the given velocity.
+     * */
+    void onRelease(double velocityX, double velocityY, long timeMillis) {
+        mVelocityX = velocityX;
+        mVelocityY = velocityY;
+        mUpdateTimeMillis = timeMillis;
+        mLastTimeMillis = -1;
+    }
+
+    double getVelocityX(long nowMillis) {
+        return isExpired(nowMillis) ? 0 : mVelocityX;
+    }
+
+    double getVelocityY(long nowMillis) {
+        return isExpired(nowMillis) ? 0 : mVelocityY;
+    }
+
+    private boolean isExpired(long nowMillis) {
+        long updateTime = mUpdateTimeMillis;
+        return updateTime == Long.MIN_VALUE || nowMillis - updateTime > MAX_AGE_MILLIS;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+/**
+ * Description:
+ *
+ * Turns device orientation (alpha, beta and gamma in degrees) into the orientation of a camera looking out of
+ * the screen, as a quaternion. Same as the DeviceOrientationControls of three.js with the screen kept in
+ * portrait, and as EBGyroOrientationEvaluator on iOS, so that {@code x}, {@code y} and {@code z} of orientation
+ * bindings agree across platforms.
+ *
+ * Any of the angles can be pinned to a constant, which is how the 2d scene isolates one axis per evaluator.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class OrientationEvaluator {
+
+    private static final double HALF_SQRT = Math.sqrt(0.5);
+
+    // NaN if not pinned
+    private final double mConstraintAlpha, mConstraintBeta, mConstraintGamma;
+
+    // the latest result
+    private double mX, mY, mZ, mW = 1;
+
+    OrientationEvaluator(double constraintAlpha, double constraintBeta, double constraintGamma) {
+        this.mConstraintAlpha = constraintAlpha;
+        this.mConstraintBeta = constraintBeta;
+        this.mConstraintGamma = constraintGamma;
+    }
+
+    void calculate(double alpha, double beta, double gamma) {
+        alpha = Double.isNaN(mConstraintAlpha) ? alpha : mConstraintAlpha;
+        beta = Double.isNaN(mConstraintBeta) ? beta : mConstraintBeta;
+        gamma = Double.isNaN(mConstraintGamma) ? gamma : mConstraintGamma;
+
+        // euler (beta, alpha, -gamma) in YXZ order
+        double c1 = Math.cos(Math.toRadians(beta) / 2);
+        double c2 = Math.cos(Math.toRadians(alpha) / 2);
+        double c3 = Math.cos(-Math.toRadians(gamma) / 2);
+        double s1 = Math.sin(Math.toRadians(beta) / 2);
+        double s2 = Math.sin(Math.toRadians(alpha) / 2);
+        double s3 = Math.sin(-Math.toRadians(gamma) / 2);
+        double x = s1 * c2 * c3 + c1 * s2 * s3;
+        double y = c1 * s2 * c3 - s1 * c2 * s3;
+        double z = c1 * c2 * s3 - s1 * s2 * c3;
+        double w = c1 * c2 * c3 + s1 * s2 * s3;
+
+        // the camera looks out of the back of the device, not up: rotate by PI/2 around x
+        mX = HALF_SQRT * (x + w);
+        mY = HALF_SQRT * (y + z);
+        mZ = HALF_SQRT * (z - y);
+        mW = HALF_SQRT * (w - x);
+    }
+
+    double getX() {
+        return mX;
+    }
+
+    double getY() {
+        return mY;
+    }
+
+    double getZ() {
+        return mZ;
+    }
+
+    double getW() {
+        return mW;
+    }
+
+    /**
+     * the given vector rotated by the latest result.
+     * @param out receives x, y and z
+     * */
+    void rotate(double vx, double vy, double vz, double[] out) {
+        double ix = mW * vx + mY * vz - mZ * vy;
+        double iy = mW * vy + mZ * vx - mX * vz;
+        double iz = mW * vz + mX * vy - mY * vx;
+        double iw = -mX * vx - mY * vy - mZ * vz;
+        out[0] = ix * mW - iw * mX - iy * mZ + iz * mY;
+        out[1] = iy * mW - iw * mY - iz * mX + ix * mZ;
+        out[2] = iz * mW - iw * mZ - ix * mY + iy * mX;
+    }
+}
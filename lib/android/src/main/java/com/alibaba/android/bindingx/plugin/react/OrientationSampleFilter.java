@@ -0,0 +1,119 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+/**
+ * Description:
+ *
+ * Rate limits, low-pass filters and dead-zones orientation samples (alpha, beta and gamma in degrees),
+ * so that only samples which make a visible difference reach expression evaluation.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class OrientationSampleFilter {
+
+    private final long mMinIntervalMillis;
+    private final double mSmoothing;
+    private final double mDeadZone;
+
+    private boolean hasSample = false;
+    private boolean hasEmitted = false;
+    private long mLastSampleTime;
+
+    private double mAlpha, mBeta, mGamma;
+    private double mEmittedAlpha, mEmittedBeta, mEmittedGamma;
+
+    /**
+     * @param minIntervalMillis samples closer than this to the previous accepted one are dropped
+     * @param smoothing weight of a new sample in [0, 1], 1 disables filtering
+     * @param deadZone minimal change in degrees, on any axis, for a sample to be emitted
+     * */
+    OrientationSampleFilter(long minIntervalMillis, double smoothing, double deadZone) {
+        this.mMinIntervalMillis = Math.max(0, minIntervalMillis);
+        this.mSmoothing = Math.max(0.01, Math.min(1, smoothing));
+        this.mDeadZone = Math.max(0, deadZone);
+    }
+
+    /**
+     * @return true if the filtered sample should be evaluated
+     * */
+    boolean offer(long timeMillis, double alpha, double beta, double gamma) {
+        if(hasSample && timeMillis - mLastSampleTime < mMinIntervalMillis) {
+            return false;
+        }
+        mLastSampleTime = timeMillis;
+        if(!hasSample) {
+            hasSample = true;
+            mAlpha = alpha;
+            mBeta = beta;
+            mGamma = gamma;
+        } else {
+            mAlpha = normalize(mAlpha + mSmoothing * angleDiff(alpha, mAlpha), 0);
+            mBeta = normalize(mBeta + mSmoothing * angleDiff(beta, mBeta), -180);
+            mGamma = mGamma + mSmoothing * angleDiff(gamma, mGamma);
+        }
+        if(hasEmitted
+                && Math.abs(angleDiff(mAlpha, mEmittedAlpha)) < mDeadZone
+                && Math.abs(angleDiff(mBeta, mEmittedBeta)) < mDeadZone
+                && Math.abs(angleDiff(mGamma, mEmittedGamma)) < mDeadZone) {
+            return false;
+        }
+        hasEmitted = true;
+        mEmittedAlpha = mAlpha;
+        mEmittedBeta = mBeta;
+        mEmittedGamma = mGamma;
+        return true;
+    }
+
+    /**
+     * forget the filter state, the next sample is taken as is.
+     * */
+    void reset() {
+        hasSample = false;
+        hasEmitted = false;
+    }
+
+    double getAlpha() {
+        return mAlpha;
+    }
+
+    double getBeta() {
+        return mBeta;
+    }
+
+    double getGamma() {
+        return mGamma;
+    }
+
+    /**
+     * shortest signed difference between two angles, in [-180, 180).
+     * */
+    static double angleDiff(double to, double from) {
+        return normalize(to - from, -180);
+    }
+
+    /**
+     * wrap the angle into [lowerBound, lowerBound + 360).
+     * */
+    static double normalize(double angle, double lowerBound) {
+        double result = (angle - lowerBound) % 360;
+        if(result < 0) {
+            result += 360;
+        }
+        return result + lowerBound;
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+/**
+ * Description:
+ *
+ * Closed-form spring and decay motions. Both are evaluated directly at a given time instead of being
+ * integrated step by step, so the result does not depend on the frame rate.
+ *
+ * Time is in milliseconds, velocity in units per second.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+abstract class PhysicsMotion {
+
+    double value;
+    double velocity;
+
+    /**
+     * compute {@link #value} and {@link #velocity} at the given time since the start of the motion.
+     * @return true if the motion has come to rest
+     * */
+    abstract boolean computeAt(double timeMillis);
+
+    /**
+     * damped harmonic oscillator, see https://en.wikipedia.org/wiki/Harmonic_oscillator#Damped_harmonic_oscillator
+     * */
+    static final class Spring extends PhysicsMotion {
+        private final double mFrom;
+        private final double mTo;
+        private final double mInitialVelocity;
+        private final double mOmega0;
+        private final double mZeta;
+        private final double mRestDisplacement;
+        private final double mRestVelocity;
+
+        Spring(double from, double to, double initialVelocity,
+               double stiffness, double damping, double mass,
+               double restDisplacement, double restVelocity) {
+            this.mFrom = from;
+            this.mTo = to;
+            this.mInitialVelocity = initialVelocity;
+            this.mOmega0 = Math.sqrt(stiffness / mass);
+            this.mZeta = damping / (2 * Math.sqrt(stiffness * mass));
+            this.mRestDisplacement = restDisplacement;
+            this.mRestVelocity = restVelocity;
+            this.value = from;
+            this.velocity = initialVelocity;
+        }
+
+        @Override
+        boolean computeAt(double timeMillis) {
+            double t = timeMillis / 1000d;
+            double x0 = mFrom - mTo; // displacement from rest
+            double v0 = mInitialVelocity;
+            double w0 = mOmega0;
+            double x;
+            double v;
+            if(mZeta < 1) {
+                // under damped
+                double wd = w0 * Math.sqrt(1 - mZeta * mZeta);
+                double envelope = Math.exp(-mZeta * w0 * t);
+                double a = x0;
+                double b = (v0 + mZeta * w0 * x0) / wd;
+                double cos = Math.cos(wd * t);
+                double sin = Math.sin(wd * t);
+                x = envelope * (a * cos + b * sin);
+                v = envelope * ((b * wd - mZeta * w0 * a) * cos - (a * wd + mZeta * w0 * b) * sin);
+            } else if(mZeta == 1) {
+                // critically damped
+                double envelope = Math.exp(-w0 * t);
+                double b = v0 + w0 * x0;
+                x = envelope * (x0 + b * t);
+                v = envelope * (b - w0 * (x0 + b * t));
+            } else {
+                // over damped
+                double s = w0 * Math.sqrt(mZeta * mZeta - 1);
+                double r1 = -mZeta * w0 + s;
+                double r2 = -mZeta * w0 - s;
+                double c2 = (v0 - r1 * x0) / (r2 - r1);
+                double c1 = x0 - c2;
+                double e1 = Math.exp(r1 * t);
+                double e2 = Math.exp(r2 * t);
+                x = c1 * e1 + c2 * e2;
+                v = c1 * r1 * e1 + c2 * r2 * e2;
+            }
+            boolean atRest = Math.abs(x) <= mRestDisplacement && Math.abs(v) <= mRestVelocity;
+            value = atRest ? mTo : mTo + x;
+            velocity = atRest ? 0 : v;
+            return atRest;
+        }
+    }
+
+    /**
+     * exponential decay of velocity, the same model as the decay animation of React Native.
+     * */
+    static final class Decay extends PhysicsMotion {
+        /**
+         * React Native stops a decay once it moves less than 0.1 in a frame, that is 6 per second at 60fps.
+         * */
+        static final double DEFAULT_REST_SPEED = 6;
+
+        private final double mFrom;
+        private final double mInitialVelocity;
+        private final double mDecelerationPerMillis;
+        private final double mRestVelocity;
+
+        /**
+         * @param deceleration velocity multiplier per millisecond, 0.998 by default in React Native.
+         *                     must be within (0, 1), see {@link #isValidDeceleration(double)}
+         * */
+        Decay(double from, double initialVelocity, double deceleration, double restVelocity) {
+            this.mFrom = from;
+            this.mInitialVelocity = initialVelocity;
+            this.mDecelerationPerMillis = 1 - deceleration;
+            this.mRestVelocity = restVelocity;
+            this.value = from;
+            this.velocity = initialVelocity;
+        }
+
+        static boolean isValidDeceleration(double deceleration) {
+            return deceleration > 0 && deceleration < 1;
+        }
+
+        @Override
+        boolean computeAt(double timeMillis) {
+            double velocityPerMillis = mInitialVelocity / 1000d;
+            double factor = Math.exp(-mDecelerationPerMillis * timeMillis);
+            value = mFrom + velocityPerMillis / mDecelerationPerMillis * (1 - factor);
+            velocity = mInitialVelocity * factor;
+            return Math.abs(velocity) <= mRestVelocity;
+        }
+    }
+}
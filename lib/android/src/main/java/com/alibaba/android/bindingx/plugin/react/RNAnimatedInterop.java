@@ -0,0 +1,290 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+import com.facebook.react.animated.NativeAnimatedModule;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.UiThreadUtil;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Description:
+ *
+ * Access to the value nodes of React Native's native-driven {@code Animated}. The nodes manager is not
+ * exposed by {@link NativeAnimatedModule}, everything here goes through reflection and degrades to a
+ * no-op when the internals don't match.
+ *
+ * The nodes manager is confined to the UI thread, so are all methods but {@link #getValue(ReactContext, int)}.
+ * Off the UI thread, e.g. on the {@link BindingXAsyncEvaluator}, values are read best-effort: a read racing the
+ * UI thread falls back to the value last read on the UI thread.
+ *
+ * A node has a single value listener, the one JS adds through {@code Animated.Value#addListener} included.
+ * The listener found when the first binding starts listening keeps receiving every value, and is put back
+ * once the last binding stops.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class RNAnimatedInterop {
+
+    interface ValueListener {
+        void onValueUpdate(double value);
+    }
+
+    private static final String NODES_MANAGER_CLASS = "com.facebook.react.animated.NativeAnimatedNodesManager";
+    private static final String VALUE_NODE_CLASS = "com.facebook.react.animated.ValueAnimatedNode";
+    private static final String VALUE_LISTENER_CLASS = "com.facebook.react.animated.AnimatedNodeValueListener";
+
+    private static boolean isResolved = false;
+    private static Field sNodesManagerField;
+    private static Method sGetNodeById;
+    private static Method sGetValue;
+    private static Method sSetNodeValue;
+    private static Method sRunUpdates;
+    private static Method sStartListening;
+    private static Method sStopListening;
+    private static Field sValueListenerField;
+    private static Class<?> sValueListenerClass;
+
+    // node tag -> the listener installed on it, UI thread only
+    private static final Map<Integer, NodeListener> sNodeListeners = new HashMap<>();
+    // node tag -> the value last read on the UI thread
+    private static final Map<Integer, Double> sLastValues = new ConcurrentHashMap<>();
+
+    private RNAnimatedInterop() {
+    }
+
+    /**
+     * @return the current value of the node, or NaN if there is no such value node.
+     * best-effort off the UI thread, see the class doc.
+     * */
+    static double getValue(@Nullable ReactContext context, int nodeTag) {
+        boolean isOnUiThread = UiThreadUtil.isOnUiThread();
+        Object nodesManager = getNodesManager(context);
+        if(nodesManager == null || sGetNodeById == null || sGetValue == null) {
+            return Double.NaN;
+        }
+        try {
+            Object node = sGetNodeById.invoke(nodesManager, nodeTag);
+            if(node == null || !sGetValue.getDeclaringClass().isInstance(node)) {
+                if(isOnUiThread) {
+                    sLastValues.remove(nodeTag);
+                    return Double.NaN;
+                }
+                return getLastValue(nodeTag);
+            }
+            double value = (Double) sGetValue.invoke(node);
+            if(isOnUiThread) {
+                sLastValues.put(nodeTag, value);
+            }
+            return value;
+        } catch (Exception e) {
+            // the nodes of the UI thread changed under our feet
+            return isOnUiThread ? Double.NaN : getLastValue(nodeTag);
+        }
+    }
+
+    private static double getLastValue(int nodeTag) {
+        Double value = sLastValues.get(nodeTag);
+        return value == null ? Double.NaN : value;
+    }
+
+    /**
+     * set the value of the node and propagate it to the views it drives right away.
+     * */
+    static boolean setValue(@Nullable ReactContext context, int nodeTag, double value) {
+        Object nodesManager = getNodesManager(context);
+        if(nodesManager == null || sSetNodeValue == null || sRunUpdates == null) {
+            return false;
+        }
+        try {
+            sSetNodeValue.invoke(nodesManager, nodeTag, value);
+            sRunUpdates.invoke(nodesManager, System.nanoTime());
+            return true;
+        } catch (Exception e) {
+            LogProxy.e("failed to update animated node " + nodeTag, e);
+            return false;
+        }
+    }
+
+    /**
+     * the listener the node had so far keeps receiving its values, see the class doc.
+     * */
+    static boolean startListening(@Nullable ReactContext context, int nodeTag, @NonNull ValueListener listener) {
+        NodeListener nodeListener = sNodeListeners.get(nodeTag);
+        if(nodeListener != null) {
+            nodeListener.listeners.add(listener);
+            return true;
+        }
+        Object nodesManager = getNodesManager(context);
+        if(nodesManager == null || sStartListening == null || sValueListenerClass == null || sValueListenerField == null) {
+            return false;
+        }
+        try {
+            Object node = sGetNodeById.invoke(nodesManager, nodeTag);
+            if(node == null || !sValueListenerField.getDeclaringClass().isInstance(node)) {
+                LogProxy.e("no animated value node " + nodeTag);
+                return false;
+            }
+            nodeListener = new NodeListener(sValueListenerField.get(node));
+            nodeListener.listeners.add(listener);
+            nodeListener.proxy = Proxy.newProxyInstance(sValueListenerClass.getClassLoader(),
+                    new Class<?>[]{sValueListenerClass}, nodeListener);
+            sStartListening.invoke(nodesManager, nodeTag, nodeListener.proxy);
+            sNodeListeners.put(nodeTag, nodeListener);
+            return true;
+        } catch (Exception e) {
+            LogProxy.e("failed to listen to animated node " + nodeTag, e);
+            return false;
+        }
+    }
+
+    static void stopListening(@Nullable ReactContext context, int nodeTag, @NonNull ValueListener listener) {
+        NodeListener nodeListener = sNodeListeners.get(nodeTag);
+        if(nodeListener == null || !nodeListener.listeners.remove(listener) || !nodeListener.listeners.isEmpty()) {
+            return;
+        }
+        sNodeListeners.remove(nodeTag);
+        Object nodesManager = getNodesManager(context);
+        if(nodesManager == null || sStopListening == null) {
+            return;
+        }
+        try {
+            Object node = sGetNodeById.invoke(nodesManager, nodeTag);
+            if(node == null || sValueListenerField.get(node) != nodeListener.proxy) {
+                // gone, or JS has set a listener of its own meanwhile
+                return;
+            }
+            if(nodeListener.previous != null) {
+                sStartListening.invoke(nodesManager, nodeTag, nodeListener.previous);
+            } else {
+                sStopListening.invoke(nodesManager, nodeTag);
+            }
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    @Nullable
+    private static Object getNodesManager(@Nullable ReactContext context) {
+        if(context == null || !context.hasActiveCatalystInstance()) {
+            return null;
+        }
+        resolve();
+        if(sNodesManagerField == null) {
+            return null;
+        }
+        try {
+            NativeAnimatedModule module = context.getNativeModule(NativeAnimatedModule.class);
+            return module == null ? null : sNodesManagerField.get(module);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static synchronized void resolve() {
+        if(isResolved) {
+            return;
+        }
+        isResolved = true;
+        try {
+            Field field = NativeAnimatedModule.class.getDeclaredField("mNodesManager");
+            field.setAccessible(true);
+            Class<?> nodesManagerClass = Class.forName(NODES_MANAGER_CLASS);
+            Class<?> valueNodeClass = Class.forName(VALUE_NODE_CLASS);
+            Class<?> valueListenerClass = Class.forName(VALUE_LISTENER_CLASS);
+
+            Method getNodeById = nodesManagerClass.getDeclaredMethod("getNodeById", int.class);
+            getNodeById.setAccessible(true);
+            Method getValue = valueNodeClass.getDeclaredMethod("getValue");
+            getValue.setAccessible(true);
+            Method setNodeValue = nodesManagerClass.getDeclaredMethod("setAnimatedNodeValue", int.class, double.class);
+            setNodeValue.setAccessible(true);
+            Method runUpdates = nodesManagerClass.getDeclaredMethod("runUpdates", long.class);
+            runUpdates.setAccessible(true);
+            Method startListening = nodesManagerClass.getDeclaredMethod("startListeningToAnimatedNodeValue",
+                    int.class, valueListenerClass);
+            startListening.setAccessible(true);
+            Method stopListening = nodesManagerClass.getDeclaredMethod("stopListeningToAnimatedNodeValue", int.class);
+            stopListening.setAccessible(true);
+            Field valueListenerField = valueNodeClass.getDeclaredField("mValueListener");
+            valueListenerField.setAccessible(true);
+
+            sNodesManagerField = field;
+            sGetNodeById = getNodeById;
+            sGetValue = getValue;
+            sSetNodeValue = setNodeValue;
+            sRunUpdates = runUpdates;
+            sStartListening = startListening;
+            sStopListening = stopListening;
+            sValueListenerField = valueListenerField;
+            sValueListenerClass = valueListenerClass;
+        } catch (Exception e) {
+            LogProxy.e("Animated interop is not available", e);
+        }
+    }
+
+    /**
+     * dispatches the values of a node to the bindings listening to it, and to the listener it had before.
+     * */
+    private static final class NodeListener implements InvocationHandler {
+        @Nullable final Object previous;
+        final List<ValueListener> listeners = new CopyOnWriteArrayList<>();
+        Object proxy;
+
+        NodeListener(@Nullable Object previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if("onValueUpdate".equals(method.getName()) && args != null && args.length == 1) {
+                double value = (Double) args[0];
+                for(ValueListener listener : listeners) {
+                    listener.onValueUpdate(value);
+                }
+                if(previous != null) {
+                    try {
+                        method.invoke(previous, args);
+                    } catch (Exception e) {
+                        LogProxy.e("failed to forward the value of an animated node", e);
+                    }
+                }
+                return null;
+            }
+            if("equals".equals(method.getName())) {
+                return proxy == args[0];
+            }
+            if("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description:
+ *
+ * The description of one binding, decoded in a single pass from the options given to
+ * {@code bind}. Every target carries its react tag, its resolved {@link IRNViewUpdater} and its parsed
+ * config, so that none of them has to be looked up again while the binding is running.
+ *
+ * Options only the plugin knows about (priority, blend, lowPriority, recyclable, group and params) are read
+ * straight from the {@link ReadableMap} and left out of {@link #coreOptions}.
+ *
+ * The {@link TargetConfig} of a target is handed to the core as the {@code config} of its prop, and comes
+ * back with every update of that target.
+ *
+ * The core keeps copies of the configs it is given (rebuilt through {@code JSONObject}), so every config also
+ * carries the id of its target under {@link #KEY_TARGET_ID}, a string which survives the copy. The copies
+ * are resolved back to their {@link TargetConfig} by {@link BindingLifecycleTracker#findTarget}.
+ *
+ * Targets of a binding bound with {@code recyclable: true} are handed to the core as slots instead of react
+ * tags. A slot resolves to the current tag of its {@link TargetConfig}, which may be re-pointed to another
+ * view later on (e.g. when the list cell owning the binding gets recycled).
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class RNBindingDescriptor {
+
+    private static final String KEY_CONFIG = "config";
+    private static final String KEY_GROUP = "group";
+    private static final String KEY_OPTIONS = "options";
+    private static final String KEY_PRIORITY = "priority";
+    private static final String KEY_BLEND = "blend";
+    private static final String KEY_LOW_PRIORITY = "lowPriority";
+    private static final String KEY_RECYCLABLE = "recyclable";
+    private static final String KEY_PARAMS = "params";
+
+    private static final String SLOT_PREFIX = "bindingx-slot:";
+    private static final AtomicInteger sSlotIds = new AtomicInteger(0);
+
+    static final String KEY_TARGET_ID = "bindingx:target";
+    private static final String TARGET_ID_PREFIX = "bindingx-target:";
+    private static final AtomicInteger sTargetIds = new AtomicInteger(0);
+
+    private static final String PERSPECTIVE = "perspective";
+    private static final String TRANSFORM_ORIGIN = "transformOrigin";
+
+    @Nullable final String eventType;
+    @Nullable final String anchor;
+    final int anchorTag;
+    @Nullable final String group;
+    @Nullable final Map<String, Object> options;
+    @Nullable final Map<String, Object> params;
+
+    /**
+     * targets with a valid react tag and property, in declaration order.
+     * */
+    @NonNull final Target[] targets;
+    @NonNull final int[] targetTags;
+    @NonNull final String[] targetProperties;
+    @NonNull final TargetConfig[] targetConfigs;
+
+    /**
+     * the options in the shape expected by {@link com.alibaba.android.bindingx.core.BindingXCore#doBind}.
+     * owned by the core once handed over, so it is left mutable.
+     * */
+    @NonNull final Map<String, Object> coreOptions;
+
+    private RNBindingDescriptor(@NonNull Map<String, Object> coreOptions, @NonNull List<Target> targets,
+                                @Nullable String group, @Nullable Map<String, Object> params) {
+        this.coreOptions = coreOptions;
+        this.eventType = stringOf(coreOptions.get(BindingXConstants.KEY_EVENT_TYPE));
+        this.anchor = stringOf(coreOptions.get(BindingXConstants.KEY_ANCHOR));
+        this.anchorTag = RNUtils.getReactTag(anchor, -1);
+        this.group = group;
+        this.options = mapOf(coreOptions.get(KEY_OPTIONS));
+        this.params = params;
+
+        this.targets = targets.toArray(new Target[targets.size()]);
+        int[] tags = new int[this.targets.length];
+        String[] properties = new String[this.targets.length];
+        TargetConfig[] configs = new TargetConfig[this.targets.length];
+        int count = 0;
+        for (Target target : this.targets) {
+            if (target.tag != -1 && target.property != null) {
+                tags[count] = target.tag;
+                properties[count] = target.property;
+                configs[count] = target.config;
+                count++;
+            }
+        }
+        this.targetTags = Arrays.copyOf(tags, count);
+        this.targetProperties = Arrays.copyOf(properties, count);
+        this.targetConfigs = Arrays.copyOf(configs, count);
+    }
+
+    @NonNull
+    static RNBindingDescriptor decode(@Nullable ReadableMap params) {
+        Map<String, Object> coreOptions = new HashMap<>();
+        List<Target> targets = new ArrayList<>(4);
+        String group = null;
+        Map<String, Object> bindingParams = null;
+        if (params != null) {
+            // needed by every target, read ahead of the props
+            int priority = params.hasKey(KEY_PRIORITY) && params.getType(KEY_PRIORITY) == ReadableType.Number
+                    ? params.getInt(KEY_PRIORITY) : 0;
+            int blendMode = params.hasKey(KEY_BLEND) && params.getType(KEY_BLEND) == ReadableType.String
+                    ? RNWriteMerger.parseBlendMode(params.getString(KEY_BLEND)) : RNWriteMerger.BLEND_OVERRIDE;
+            boolean lowPriority = params.hasKey(KEY_LOW_PRIORITY)
+                    && params.getType(KEY_LOW_PRIORITY) == ReadableType.Boolean && params.getBoolean(KEY_LOW_PRIORITY);
+            boolean recyclable = params.hasKey(KEY_RECYCLABLE)
+                    && params.getType(KEY_RECYCLABLE) == ReadableType.Boolean && params.getBoolean(KEY_RECYCLABLE);
+            if (params.hasKey(KEY_GROUP)) {
+                group = stringOf(valueOf(params, KEY_GROUP));
+            }
+            if (params.hasKey(KEY_PARAMS) && params.getType(KEY_PARAMS) == ReadableType.Map) {
+                bindingParams = toMap(params.getMap(KEY_PARAMS));
+            }
+            ReadableMapKeySetIterator iterator = params.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String key = iterator.nextKey();
+                if (isPluginOption(key)) {
+                    continue;
+                }
+                if (BindingXConstants.KEY_PROPS.equals(key) && params.getType(key) == ReadableType.Array) {
+                    coreOptions.put(key, decodeProps(params.getArray(key), targets, priority, blendMode,
+                            lowPriority, recyclable));
+                } else {
+                    coreOptions.put(key, valueOf(params, key));
+                }
+            }
+        }
+        return new RNBindingDescriptor(coreOptions, targets, group, bindingParams);
+    }
+
+    private static boolean isPluginOption(@NonNull String key) {
+        return KEY_PRIORITY.equals(key) || KEY_BLEND.equals(key) || KEY_LOW_PRIORITY.equals(key)
+                || KEY_RECYCLABLE.equals(key) || KEY_GROUP.equals(key) || KEY_PARAMS.equals(key);
+    }
+
+    @NonNull
+    private static List<Object> decodeProps(@NonNull ReadableArray props, @NonNull List<Target> targets,
+                                            int priority, int blendMode, boolean lowPriority,
+                                            boolean recyclable) {
+        List<Object> result = new ArrayList<>(props.size());
+        for (int i = 0, size = props.size(); i < size; i++) {
+            switch (props.getType(i)) {
+                case Map:
+                    result.add(decodeProp(props.getMap(i), targets, priority, blendMode, lowPriority, recyclable));
+                    break;
+                default:
+                    result.add(valueOf(props, i));
+                    break;
+            }
+        }
+        return result;
+    }
+
+    @NonNull
+    private static Map<String, Object> decodeProp(@NonNull ReadableMap prop, @NonNull List<Target> targets,
+                                                  int priority, int blendMode, boolean lowPriority,
+                                                  boolean recyclable) {
+        Map<String, Object> result = new HashMap<>();
+        ReadableMap config = null;
+        ReadableMapKeySetIterator iterator = prop.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            if (KEY_CONFIG.equals(key)) {
+                config = prop.getType(key) == ReadableType.Map ? prop.getMap(key) : null;
+            } else {
+                result.put(key, valueOf(prop, key));
+            }
+        }
+        Object element = result.get(BindingXConstants.KEY_ELEMENT);
+        String property = stringOf(result.get(BindingXConstants.KEY_PROPERTY));
+        int tag = RNUtils.getReactTag(element, -1);
+        String slot = recyclable && tag != -1 && property != null ? SLOT_PREFIX + sSlotIds.incrementAndGet() : null;
+        TargetConfig targetConfig = new TargetConfig(config, TARGET_ID_PREFIX + sTargetIds.incrementAndGet(), tag,
+                property == null ? null : RNViewUpdateService.findUpdater(property), priority, blendMode,
+                lowPriority, slot);
+        result.put(KEY_CONFIG, targetConfig);
+        if (slot != null) {
+            result.put(BindingXConstants.KEY_ELEMENT, slot);
+        }
+        targets.add(new Target(element == null ? null : element.toString(), tag, property, targetConfig));
+        return result;
+    }
+
+    @Nullable
+    private static Object valueOf(@NonNull ReadableMap map, @NonNull String key) {
+        switch (map.getType(key)) {
+            case Boolean:
+                return map.getBoolean(key);
+            case Number:
+                return map.getDouble(key);
+            case String:
+                return map.getString(key);
+            case Map:
+                return toMap(map.getMap(key));
+            case Array:
+                return toList(map.getArray(key));
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static Object valueOf(@NonNull ReadableArray array, int index) {
+        switch (array.getType(index)) {
+            case Boolean:
+                return array.getBoolean(index);
+            case Number:
+                return array.getDouble(index);
+            case String:
+                return array.getString(index);
+            case Map:
+                return toMap(array.getMap(index));
+            case Array:
+                return toList(array.getArray(index));
+            default:
+                return null;
+        }
+    }
+
+    @NonNull
+    private static Map<String, Object> toMap(@NonNull ReadableMap map) {
+        Map<String, Object> result = new HashMap<>();
+        ReadableMapKeySetIterator iterator = map.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            result.put(key, valueOf(map, key));
+        }
+        return result;
+    }
+
+    @NonNull
+    private static List<Object> toList(@NonNull ReadableArray array) {
+        List<Object> result = new ArrayList<>(array.size());
+        for (int i = 0, size = array.size(); i < size; i++) {
+            result.add(valueOf(array, i));
+        }
+        return result;
+    }
+
+    @Nullable
+    private static String stringOf(@Nullable Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mapOf(@Nullable Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    static final class Target {
+        @Nullable final String element;
+        final int tag;
+        @Nullable final String property;
+        @NonNull final TargetConfig config;
+
+        Target(@Nullable String element, int tag, @Nullable String property, @NonNull TargetConfig config) {
+            this.element = element;
+            this.tag = tag;
+            this.property = property;
+            this.config = config;
+        }
+    }
+
+    /**
+     * the config of a target as a read-only map, with the values used on every update parsed up front.
+     * only the tag of a slot may change once bound.
+     * */
+    static final class TargetConfig extends AbstractMap<String, Object> {
+        private final Map<String, Object> mEntries;
+
+        @NonNull final String id;
+        volatile int tag;
+        @Nullable final IRNViewUpdater updater;
+        final double perspective;
+        @Nullable final String transformOrigin;
+        /**
+         * how writes of this target are merged with those of other bindings, see {@link RNWriteMerger}
+         * */
+        final int priority;
+        final int blendMode;
+        /**
+         * writes of this target may be thinned out under load, see {@link BindingXFrameGovernor}
+         * */
+        final boolean lowPriority;
+        /**
+         * the ref the core knows this target by, if the binding is recyclable
+         * */
+        @Nullable final String slot;
+        /**
+         * set once the binding of this target is gone, see {@link BindingLifecycleTracker#removeTargets}
+         * */
+        volatile boolean isReleased = false;
+
+        TargetConfig(@Nullable ReadableMap config, @NonNull String id, int tag,
+                     @Nullable IRNViewUpdater updater, int priority, int blendMode, boolean lowPriority,
+                     @Nullable String slot) {
+            Map<String, Object> entries = config == null ? new HashMap<String, Object>(2) : toMap(config);
+            entries.put(KEY_TARGET_ID, id);
+            this.mEntries = Collections.unmodifiableMap(entries);
+            this.id = id;
+            this.tag = tag;
+            this.updater = updater;
+            this.perspective = RNUtils.getDouble(mEntries.get(PERSPECTIVE), 0);
+            this.transformOrigin = RNUtils.getString(mEntries.get(TRANSFORM_ORIGIN), null);
+            this.priority = priority;
+            this.blendMode = blendMode;
+            this.lowPriority = lowPriority;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return mEntries.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return mEntries.containsKey(key);
+        }
+
+        @NonNull
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return mEntries.entrySet();
+        }
+    }
+}
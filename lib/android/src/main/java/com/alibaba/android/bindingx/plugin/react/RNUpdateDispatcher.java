@@ -0,0 +1,415 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.view.ViewCompat;
+import android.text.TextUtils;
+import android.util.SparseBooleanArray;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.uimanager.UIImplementation;
+import com.facebook.react.uimanager.UIManagerModule;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * The {@link PlatformManager.IViewUpdater} of React Native. Resolves the react tag of every update issued
+ * by the handlers and hands it over to {@link RNViewUpdateService} on the UI thread.
+ *
+ * The handlers of the core only hold copies of the target configs, those are resolved back to the
+ * {@link RNBindingDescriptor.TargetConfig} of their binding through the {@link BindingLifecycleTracker}.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class RNUpdateDispatcher implements PlatformManager.IViewUpdater, BindingXAsyncEvaluator.UpdateApplier {
+
+    private final ReactApplicationContext mReactContext;
+    private final BindingLifecycleTracker mLifecycleTracker;
+    // catch-up writes of views which became visible again are applied like live ones
+    private final RNVisibilityCuller mVisibilityCuller = new RNVisibilityCuller(new RNVisibilityCuller.Writer() {
+        @Override
+        public void write(int tag,
+                          @NonNull View targetView,
+                          @NonNull String propertyName,
+                          @NonNull Object propertyValue,
+                          @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                          @NonNull Map<String, Object> config,
+                          @NonNull UIImplementation implementation) {
+            update(tag, targetView, propertyName, propertyValue, translator, config, implementation);
+        }
+    });
+
+    private volatile BindingXAsyncEvaluator mAsyncEvaluator = null;
+    private volatile BindingXFrameGovernor mFrameGovernor = null;
+    private volatile UIManagerModule mUIManagerModule = null;
+
+    // property -> tags whose writes are suppressed. replaced as a whole, never mutated once published.
+    private volatile Map<String, SparseBooleanArray> mPausedWrites = Collections.emptyMap();
+
+    // property -> tags written by more than one binding. replaced as a whole, never mutated once published.
+    private volatile Map<String, SparseBooleanArray> mContendedWrites = Collections.emptyMap();
+
+    // UI thread only
+    private final RNWriteMerger mWriteMerger = new RNWriteMerger();
+    private ViewTreeObserver mMergeObserver = null;
+    private final ViewTreeObserver.OnPreDrawListener mMergeFlushListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            flushMergedWrites();
+            return true;
+        }
+    };
+    private final RNWriteMerger.Sink mMergeSink = new RNWriteMerger.Sink() {
+        @Override
+        public void write(int tag,
+                          @NonNull View targetView,
+                          @NonNull String propertyName,
+                          @NonNull Object propertyValue,
+                          @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                          @NonNull Map<String, Object> config,
+                          @NonNull UIImplementation implementation) {
+            writeOnUiThread(mVisibilityCuller.nextSequence(), tag, targetView, propertyName, propertyValue,
+                    translator, config, implementation);
+        }
+    };
+
+    // UI thread only. latest writes of low-priority bindings held back by the governor
+    private final RNWriteMerger mDeferredWrites = new RNWriteMerger();
+    private View mDeferredFlushView = null;
+    private final Runnable mDeferredFlush = new Runnable() {
+        @Override
+        public void run() {
+            View view = mDeferredFlushView;
+            mDeferredFlushView = null;
+            BindingXFrameGovernor governor = mFrameGovernor;
+            if (view != null && governor != null && governor.shouldDefer()) {
+                scheduleDeferredFlush(view);
+                return;
+            }
+            if (mDeferredWrites.hasPending()) {
+                mDeferredWrites.flush(mMergeSink);
+            }
+        }
+    };
+
+    // UI thread only
+    private long mTracedFrameTime = -1;
+    private int mTracedFrameUpdates = 0;
+
+    RNUpdateDispatcher(@NonNull ReactApplicationContext reactContext,
+                       @NonNull BindingLifecycleTracker lifecycleTracker) {
+        this.mReactContext = reactContext;
+        this.mLifecycleTracker = lifecycleTracker;
+    }
+
+    void setAsyncEvaluator(@Nullable BindingXAsyncEvaluator evaluator) {
+        this.mAsyncEvaluator = evaluator;
+    }
+
+    void setFrameGovernor(@Nullable BindingXFrameGovernor governor) {
+        this.mFrameGovernor = governor;
+    }
+
+    void setPausedWrites(@NonNull Map<String, SparseBooleanArray> pausedWrites) {
+        this.mPausedWrites = pausedWrites;
+    }
+
+    void setContendedWrites(@NonNull Map<String, SparseBooleanArray> contendedWrites) {
+        this.mContendedWrites = contendedWrites;
+    }
+
+    /**
+     * drop all state kept for views. must be called on the UI thread.
+     * */
+    void clear() {
+        mVisibilityCuller.clear();
+        mWriteMerger.clear();
+        removeMergeFlushListener();
+        mDeferredWrites.clear();
+        mDeferredFlushView = null;
+    }
+
+    @Override
+    public void synchronouslyUpdateViewOnUIThread(@NonNull final View targetView,
+                                                  @NonNull final String propertyName,
+                                                  @NonNull final Object propertyValue,
+                                                  @NonNull final PlatformManager.IDeviceResolutionTranslator translator,
+                                                  @NonNull final Map<String, Object> config,
+                                                  Object... extension) {
+        boolean traced = BindingXTrace.beginSection("BindingX#synchronouslyUpdateViewOnUIThread");
+        try {
+            dispatchUpdate(targetView, propertyName, propertyValue, translator, config, extension);
+        } finally {
+            BindingXTrace.endSection(traced);
+        }
+    }
+
+    private void dispatchUpdate(@NonNull final View targetView,
+                                @NonNull final String propertyName,
+                                @NonNull final Object propertyValue,
+                                @NonNull final PlatformManager.IDeviceResolutionTranslator translator,
+                                @NonNull Map<String, Object> targetConfig,
+                                Object... extension) {
+        int tag = -1;
+        String ref = null;
+        if (extension != null && extension.length >= 1 && extension[0] instanceof String) {
+            ref = (String) extension[0];
+        }
+        if (!(targetConfig instanceof RNBindingDescriptor.TargetConfig)) {
+            // the handlers of the core hold copies, find the original
+            RNBindingDescriptor.TargetConfig resolved = mLifecycleTracker.findTarget(targetConfig, ref, propertyName);
+            if (resolved != null) {
+                targetConfig = resolved;
+            }
+        }
+        final Map<String, Object> config = targetConfig;
+        if (config instanceof RNBindingDescriptor.TargetConfig) {
+            // resolved once at bind time
+            tag = ((RNBindingDescriptor.TargetConfig) config).tag;
+        } else {
+            if (TextUtils.isEmpty(ref)) {
+                return;
+            }
+            tag = RNUtils.getReactTag(ref, -1);
+        }
+        UIManagerModule module = getUIManagerModule();
+        if (module == null || tag == -1) {
+            return;
+        }
+        final UIImplementation implementation = module.getUIImplementation();
+        if (implementation == null) {
+            return;
+        }
+        Map<String, SparseBooleanArray> pausedWrites = mPausedWrites;
+        if (!pausedWrites.isEmpty()) {
+            SparseBooleanArray pausedTags = pausedWrites.get(propertyName);
+            if (pausedTags != null && pausedTags.get(tag)) {
+                return;
+            }
+        }
+        final int finalTag = tag;
+
+        BindingXAsyncEvaluator evaluator = mAsyncEvaluator;
+        if (evaluator != null && evaluator.isEvaluatorThread()) {
+            // applied all at once on next vsync
+            evaluator.write(finalTag, targetView, propertyName, propertyValue, translator, config, implementation);
+            return;
+        }
+
+        final long sequence = mVisibilityCuller.nextSequence();
+        if (UiThreadUtil.isOnUiThread()) {
+            // most handlers evaluate on the UI thread, posting would cost a message and a runnable per update
+            applyOnUiThread(sequence, finalTag, targetView, propertyName, propertyValue, translator, config, implementation);
+            return;
+        }
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                applyOnUiThread(sequence, finalTag, targetView, propertyName, propertyValue, translator, config, implementation);
+            }
+        });
+    }
+
+    @Override
+    public void apply(int tag,
+                      @NonNull View targetView,
+                      @NonNull String propertyName,
+                      @NonNull Object propertyValue,
+                      @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                      @NonNull Map<String, Object> config,
+                      @NonNull UIImplementation implementation) {
+        applyOnUiThread(mVisibilityCuller.nextSequence(), tag, targetView, propertyName, propertyValue,
+                translator, config, implementation);
+    }
+
+    private void applyOnUiThread(long sequence,
+                                 int tag,
+                                 @NonNull View targetView,
+                                 @NonNull String propertyName,
+                                 @NonNull Object propertyValue,
+                                 @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                                 @NonNull Map<String, Object> config,
+                                 @NonNull UIImplementation implementation) {
+        if (isContended(tag, propertyName)) {
+            int priority = 0;
+            int blendMode = RNWriteMerger.BLEND_OVERRIDE;
+            if (config instanceof RNBindingDescriptor.TargetConfig) {
+                priority = ((RNBindingDescriptor.TargetConfig) config).priority;
+                blendMode = ((RNBindingDescriptor.TargetConfig) config).blendMode;
+            }
+            if (mWriteMerger.offer(tag, targetView, propertyName, propertyValue, translator, config, implementation,
+                    priority, blendMode)) {
+                scheduleMergeFlush(targetView);
+            }
+            return;
+        }
+        BindingXFrameGovernor governor = mFrameGovernor;
+        if (governor != null && governor.getLevel() > 0 && config instanceof RNBindingDescriptor.TargetConfig
+                && ((RNBindingDescriptor.TargetConfig) config).lowPriority) {
+            // only the latest value is written, on the frames the governor lets through
+            mDeferredWrites.offer(tag, targetView, propertyName, propertyValue, translator, config, implementation,
+                    0, RNWriteMerger.BLEND_OVERRIDE);
+            if (governor.shouldDefer()) {
+                scheduleDeferredFlush(targetView);
+            } else {
+                mDeferredWrites.flush(mMergeSink);
+            }
+            return;
+        }
+        writeOnUiThread(sequence, tag, targetView, propertyName, propertyValue, translator, config, implementation);
+    }
+
+    private void writeOnUiThread(long sequence,
+                                 int tag,
+                                 @NonNull View targetView,
+                                 @NonNull String propertyName,
+                                 @NonNull Object propertyValue,
+                                 @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                                 @NonNull Map<String, Object> config,
+                                 @NonNull UIImplementation implementation) {
+        if (mVisibilityCuller.shouldCull(targetView, propertyName)) {
+            mVisibilityCuller.defer(sequence, tag, targetView, propertyName, propertyValue, translator, config, implementation);
+            return;
+        }
+        if (!mVisibilityCuller.onApply(sequence, targetView, propertyName)) {
+            return;
+        }
+        update(tag, targetView, propertyName, propertyValue, translator, config, implementation);
+    }
+
+    /**
+     * the updater of the target config, or the registered one of the property, accounted to the frame budget.
+     * */
+    private void update(int tag,
+                        @NonNull View targetView,
+                        @NonNull String propertyName,
+                        @NonNull Object propertyValue,
+                        @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                        @NonNull Map<String, Object> config,
+                        @NonNull UIImplementation implementation) {
+        if (BindingXTrace.isEnabled()) {
+            countFrameUpdate();
+        }
+        BindingXFrameGovernor governor = mFrameGovernor;
+        long governed = governor == null ? 0 : governor.begin();
+        boolean traced = BindingXTrace.isEnabled() && BindingXTrace.beginSection("BindingX#update:" + propertyName);
+        try {
+            IRNViewUpdater updater = config instanceof RNBindingDescriptor.TargetConfig
+                    ? ((RNBindingDescriptor.TargetConfig) config).updater : null;
+            if (updater == null) {
+                updater = RNViewUpdateService.findUpdater(propertyName);
+            }
+            updater.update(
+                    tag,
+                    targetView,
+                    propertyValue,
+                    translator,
+                    config,
+                    implementation
+            );
+        } finally {
+            BindingXTrace.endSection(traced);
+            if (governor != null) {
+                governor.end(governed);
+            }
+        }
+    }
+
+    private boolean isContended(int tag, @NonNull String propertyName) {
+        Map<String, SparseBooleanArray> contendedWrites = mContendedWrites;
+        if (contendedWrites.isEmpty()) {
+            return false;
+        }
+        SparseBooleanArray tags = contendedWrites.get(propertyName);
+        return tags != null && tags.get(tag);
+    }
+
+    /**
+     * merged writes are applied right before the frame they were offered in is drawn.
+     * */
+    private void scheduleMergeFlush(@NonNull View targetView) {
+        ViewTreeObserver observer = targetView.getViewTreeObserver();
+        if (observer == null || !observer.isAlive() || targetView.getWindowToken() == null) {
+            flushMergedWrites();
+            return;
+        }
+        if (mMergeObserver != observer) {
+            removeMergeFlushListener();
+            mMergeObserver = observer;
+            observer.addOnPreDrawListener(mMergeFlushListener);
+        }
+        // make sure a traversal, hence a pre-draw, happens
+        targetView.invalidate();
+    }
+
+    private void flushMergedWrites() {
+        removeMergeFlushListener();
+        if (mWriteMerger.hasPending()) {
+            mWriteMerger.flush(mMergeSink);
+        }
+    }
+
+    private void removeMergeFlushListener() {
+        if (mMergeObserver != null && mMergeObserver.isAlive()) {
+            mMergeObserver.removeOnPreDrawListener(mMergeFlushListener);
+        }
+        mMergeObserver = null;
+    }
+
+    /**
+     * retry on every frame until the governor lets the held back writes through.
+     * */
+    private void scheduleDeferredFlush(@NonNull View targetView) {
+        if (mDeferredFlushView != null) {
+            return;
+        }
+        mDeferredFlushView = targetView;
+        ViewCompat.postOnAnimation(targetView, mDeferredFlush);
+    }
+
+    @Nullable
+    private UIManagerModule getUIManagerModule() {
+        UIManagerModule module = mUIManagerModule;
+        if (module == null) {
+            module = mReactContext.getNativeModule(UIManagerModule.class);
+            mUIManagerModule = module;
+        }
+        return module;
+    }
+
+    /**
+     * all updates applied within one frame share the same animation time.
+     * */
+    private void countFrameUpdate() {
+        long frameTime = AnimationUtils.currentAnimationTimeMillis();
+        if (frameTime != mTracedFrameTime) {
+            mTracedFrameTime = frameTime;
+            mTracedFrameUpdates = 0;
+        }
+        BindingXTrace.counter("BindingX.updatesPerFrame", ++mTracedFrameUpdates);
+    }
+}
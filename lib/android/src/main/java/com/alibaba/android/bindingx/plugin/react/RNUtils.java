@@ -28,6 +28,40 @@ public class RNUtils {
         }
     }
 
+    /**
+     * a number given either as a number or as a string, e.g. 850.5 or "850.5"
+     * */
+    public static double getDouble(Object value, double defaultValue) {
+        if(value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if(!(value instanceof String)) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(((String) value).trim());
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * parse a react tag which may come as "12" or "12.0"
+     * */
+    public static int getReactTag(Object ref, int defaultValue) {
+        if(ref == null) {
+            return defaultValue;
+        }
+        if(ref instanceof Number) {
+            return ((Number) ref).intValue();
+        }
+        try {
+            return (int) (double) Double.valueOf(ref.toString().trim());
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
     public static String getString(Object value, String defaultValue) {
         if(value == null) {
             return defaultValue;
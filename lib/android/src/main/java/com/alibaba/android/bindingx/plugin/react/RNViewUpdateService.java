@@ -16,6 +16,8 @@
 package com.alibaba.android.bindingx.plugin.react;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.util.Pair;
 import android.view.View;
 import android.view.ViewGroup;
@@ -25,13 +27,19 @@ import android.widget.TextView;
 import com.alibaba.android.bindingx.core.LogProxy;
 import com.alibaba.android.bindingx.core.PlatformManager;
 import com.alibaba.android.bindingx.core.internal.Utils;
-import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.uimanager.MatrixMathHelper;
 import com.facebook.react.uimanager.ReactStylesDiffMap;
 import com.facebook.react.uimanager.UIImplementation;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Description:
@@ -41,10 +49,17 @@ import java.util.Map;
 
 final class RNViewUpdateService {
     private static final Map<String,IRNViewUpdater> sExpressionUpdaterMap;
+    // updaters wrapped with the shadow sync, built once per property rather than once per update
+    private static final Map<String,IRNViewUpdater> sSyncedUpdaterMap;
+    private static final Set<String> sGeometryProperties;
     private static final NopUpdater EMPTY_INVOKER = new NopUpdater();
+    // passed explicitly so the varargs translator does not allocate an empty array per update
+    private static final Object[] NO_EXTENSION = new Object[0];
 
     private static final String PERSPECTIVE = "perspective";
     private static final String TRANSFORM_ORIGIN = "transformOrigin";
+    private static final String ANIMATED_VALUE = "animatedValue";
+    private static final String ANIMATED_NODE = "animatedNode";
 
     static {
         sExpressionUpdaterMap = new HashMap<>();
@@ -62,6 +77,8 @@ final class RNViewUpdateService {
         sExpressionUpdaterMap.put("transform.rotateX",new RotateXUpdater());
         sExpressionUpdaterMap.put("transform.rotateY",new RotateYUpdater());
 
+        sExpressionUpdaterMap.put("transform",new TransformUpdater());
+
         sExpressionUpdaterMap.put("background-color",new BackgroundUpdater());
         sExpressionUpdaterMap.put("color", new ColorUpdater());
 
@@ -69,30 +86,181 @@ final class RNViewUpdateService {
         sExpressionUpdaterMap.put("scroll.contentOffsetX", new ContentOffsetXUpdater());
         sExpressionUpdaterMap.put("scroll.contentOffsetY", new ContentOffsetYUpdater());
 
+        sExpressionUpdaterMap.put(ANIMATED_VALUE, new AnimatedValueUpdater());
+
         // dangerous. Not Recommended.
         sExpressionUpdaterMap.put("width",new WidthUpdater());
         sExpressionUpdaterMap.put("height",new HeightUpdater());
+
+        // properties which are able to move a view back into sight
+        sGeometryProperties = new HashSet<>();
+        sGeometryProperties.add("transform");
+        sGeometryProperties.add("transform.translate");
+        sGeometryProperties.add("transform.translateX");
+        sGeometryProperties.add("transform.translateY");
+        sGeometryProperties.add("transform.scale");
+        sGeometryProperties.add("transform.scaleX");
+        sGeometryProperties.add("transform.scaleY");
+        sGeometryProperties.add("transform.rotate");
+        sGeometryProperties.add("transform.rotateZ");
+        sGeometryProperties.add("transform.rotateX");
+        sGeometryProperties.add("transform.rotateY");
+        sGeometryProperties.add("width");
+        sGeometryProperties.add("height");
+
+        sSyncedUpdaterMap = new ConcurrentHashMap<>();
+        for(Map.Entry<String,IRNViewUpdater> entry : sExpressionUpdaterMap.entrySet()) {
+            sSyncedUpdaterMap.put(entry.getKey(), new ShadowSyncUpdater(entry.getValue()));
+        }
+    }
+
+    /**
+     * register an updater for a custom property, or replace a built-in one.
+     * */
+    static void registerUpdater(@NonNull String prop, @NonNull IRNViewUpdater updater) {
+        sSyncedUpdaterMap.put(prop, new ShadowSyncUpdater(updater));
+    }
+
+    static void unregisterUpdater(@NonNull String prop) {
+        IRNViewUpdater builtIn = sExpressionUpdaterMap.get(prop);
+        if(builtIn != null) {
+            sSyncedUpdaterMap.put(prop, new ShadowSyncUpdater(builtIn));
+        } else {
+            sSyncedUpdaterMap.remove(prop);
+        }
+    }
+
+    static boolean isGeometryProperty(@NonNull String prop) {
+        return sGeometryProperties.contains(prop);
     }
 
     @NonNull
     static IRNViewUpdater findUpdater(@NonNull String prop) {
-        final IRNViewUpdater updater = sExpressionUpdaterMap.get(prop);
+        final IRNViewUpdater updater = sSyncedUpdaterMap.get(prop);
         if(updater == null) {
             LogProxy.e("unknown property [" + prop + "]");
             return EMPTY_INVOKER;
         }
-        return new IRNViewUpdater() {
-            @Override
-            public void update(int tag,
-                               @NonNull View targetView,
-                               @NonNull Object cmd,
-                               @NonNull PlatformManager.IDeviceResolutionTranslator translator,
-                               @NonNull Map<String, Object> config,
-                               @NonNull UIImplementation implementation) {
-                updater.update(tag,targetView,cmd,translator,config,implementation);
-                implementation.synchronouslyUpdateViewOnUIThread(tag, new ReactStylesDiffMap(Arguments.createMap()));
-            }
-        };
+        return updater;
+    }
+
+    /**
+     * @return true if the updater was found for a property unknown to BindingX, and does nothing
+     * */
+    static boolean isNop(@Nullable IRNViewUpdater updater) {
+        return updater == null || updater == EMPTY_INVOKER;
+    }
+
+    /**
+     * @return true if the updater is the one BindingX ships for the property, and hasn't been replaced
+     * */
+    static boolean isBuiltIn(@NonNull String prop, @Nullable IRNViewUpdater updater) {
+        return updater instanceof ShadowSyncUpdater
+                && ((ShadowSyncUpdater) updater).mUpdater == sExpressionUpdaterMap.get(prop);
+    }
+
+    /**
+     * apply the perspective and transform origin of a target like the transform updaters do before each write.
+     * */
+    static void prepareTransform(@NonNull View targetView, @NonNull Map<String, Object> config) {
+        applyPerspective(targetView, config);
+        applyTransformOrigin(targetView, config);
+    }
+
+    private static double getPerspective(@NonNull Map<String, Object> config) {
+        if(config instanceof RNBindingDescriptor.TargetConfig) {
+            return ((RNBindingDescriptor.TargetConfig) config).perspective;
+        }
+        return RNUtils.getDouble(config.get(PERSPECTIVE), 0);
+    }
+
+    @Nullable
+    private static String getTransformOrigin(@NonNull Map<String, Object> config) {
+        if(config instanceof RNBindingDescriptor.TargetConfig) {
+            return ((RNBindingDescriptor.TargetConfig) config).transformOrigin;
+        }
+        return RNUtils.getString(config.get(TRANSFORM_ORIGIN), null);
+    }
+
+    private static void applyPerspective(@NonNull View targetView, @NonNull Map<String, Object> config) {
+        double perspective = getPerspective(config);
+        if(perspective != 0) {
+            // the core takes whole pixels
+            targetView.setCameraDistance(Utils.normalizedPerspectiveValue(targetView.getContext(),
+                    (int) Math.round(perspective)));
+        }
+    }
+
+    // the last resolved transform origin, UI thread only. bindings keep writing the same view for a while
+    private static String sLastOrigin = null;
+    private static int sLastOriginWidth, sLastOriginHeight;
+    private static Pair<Float,Float> sLastPivot = null;
+
+    private static void applyTransformOrigin(@NonNull View targetView, @NonNull Map<String, Object> config) {
+        String transformOrigin = getTransformOrigin(config);
+        if(transformOrigin == null) {
+            return;
+        }
+        int width = targetView.getWidth();
+        int height = targetView.getHeight();
+        Pair<Float,Float> pivot;
+        if(transformOrigin.equals(sLastOrigin) && width == sLastOriginWidth && height == sLastOriginHeight) {
+            pivot = sLastPivot;
+        } else {
+            pivot = Utils.parseTransformOrigin(transformOrigin, targetView);
+            sLastOrigin = transformOrigin;
+            sLastOriginWidth = width;
+            sLastOriginHeight = height;
+            sLastPivot = pivot;
+        }
+        if(pivot != null) {
+            targetView.setPivotX(pivot.first);
+            targetView.setPivotY(pivot.second);
+        }
+    }
+
+    /**
+     * writes an updated view back to the shadow tree. replaceable for tests only.
+     * */
+    interface ShadowSync {
+        void sync(int tag, @NonNull UIImplementation implementation);
+    }
+
+    private static final ShadowSync UI_IMPLEMENTATION_SYNC = new ShadowSync() {
+        // the props are always empty and never modified downstream, one instance serves all updates
+        private final ReactStylesDiffMap mEmptyProps = new ReactStylesDiffMap(new JavaOnlyMap());
+
+        @Override
+        public void sync(int tag, @NonNull UIImplementation implementation) {
+            implementation.synchronouslyUpdateViewOnUIThread(tag, mEmptyProps);
+        }
+    };
+
+    private static volatile ShadowSync sShadowSync = UI_IMPLEMENTATION_SYNC;
+
+    @VisibleForTesting
+    static void setShadowSync(@Nullable ShadowSync shadowSync) {
+        sShadowSync = shadowSync == null ? UI_IMPLEMENTATION_SYNC : shadowSync;
+    }
+
+    private static final class ShadowSyncUpdater implements IRNViewUpdater {
+
+        private final IRNViewUpdater mUpdater;
+
+        ShadowSyncUpdater(@NonNull IRNViewUpdater updater) {
+            this.mUpdater = updater;
+        }
+
+        @Override
+        public void update(int tag,
+                           @NonNull View targetView,
+                           @NonNull Object cmd,
+                           @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                           @NonNull Map<String, Object> config,
+                           @NonNull UIImplementation implementation) {
+            mUpdater.update(tag,targetView,cmd,translator,config,implementation);
+            sShadowSync.sync(tag, implementation);
+        }
     }
 
     private static final class NopUpdater implements IRNViewUpdater {
@@ -195,19 +363,8 @@ final class RNViewUpdateService {
                            @NonNull Map<String,Object> config,
                            @NonNull UIImplementation implementation) {
 
-            int perspective = RNUtils.getInt(config.get(PERSPECTIVE),0);
-            perspective = Utils.normalizedPerspectiveValue(targetView.getContext(),perspective);
-
-            Pair<Float,Float> pivot = Utils.parseTransformOrigin(
-                    RNUtils.getString(config.get(TRANSFORM_ORIGIN),null),targetView);
-
-            if(perspective != 0) {
-                targetView.setCameraDistance(perspective);
-            }
-            if(pivot != null) {
-                targetView.setPivotX(pivot.first);
-                targetView.setPivotY(pivot.second);
-            }
+            applyPerspective(targetView, config);
+            applyTransformOrigin(targetView, config);
 
             if(cmd instanceof Double) {
                 final double val = (double) cmd;
@@ -238,13 +395,7 @@ final class RNViewUpdateService {
             if(!(cmd instanceof Double)) {
                 return;
             }
-            Pair<Float,Float> pivot = Utils.parseTransformOrigin(
-                    RNUtils.getString(config.get(TRANSFORM_ORIGIN),null),targetView);
-
-            if(pivot != null) {
-                targetView.setPivotX(pivot.first);
-                targetView.setPivotY(pivot.second);
-            }
+            applyTransformOrigin(targetView, config);
 
             final double d3 = (double) cmd;
             targetView.setScaleX((float) d3);
@@ -263,13 +414,7 @@ final class RNViewUpdateService {
             if(!(cmd instanceof Double)) {
                 return;
             }
-            Pair<Float,Float> pivot = Utils.parseTransformOrigin(
-                    RNUtils.getString(config.get(TRANSFORM_ORIGIN),null),targetView);
-
-            if(pivot != null) {
-                targetView.setPivotX(pivot.first);
-                targetView.setPivotY(pivot.second);
-            }
+            applyTransformOrigin(targetView, config);
 
             final double d4 = (double) cmd;
             targetView.setScaleY((float) d4);
@@ -290,19 +435,8 @@ final class RNViewUpdateService {
                 return;
             }
 
-            int perspective = RNUtils.getInt(config.get(PERSPECTIVE), 0);
-            perspective = Utils.normalizedPerspectiveValue(targetView.getContext(),perspective);
-
-            Pair<Float,Float> pivot = Utils.parseTransformOrigin(
-                    RNUtils.getString(config.get(TRANSFORM_ORIGIN),null),targetView);
-
-            if(perspective != 0) {
-                targetView.setCameraDistance(perspective);
-            }
-            if(pivot != null) {
-                targetView.setPivotX(pivot.first);
-                targetView.setPivotY(pivot.second);
-            }
+            applyPerspective(targetView, config);
+            applyTransformOrigin(targetView, config);
 
             final double d5 = (double) cmd;
             targetView.setRotation((float) d5);
@@ -321,19 +455,8 @@ final class RNViewUpdateService {
             if(!(cmd instanceof Double)) {
                 return;
             }
-            int perspective = RNUtils.getInt(config.get(PERSPECTIVE),0);
-            perspective = Utils.normalizedPerspectiveValue(targetView.getContext(),perspective);
-
-            Pair<Float,Float> pivot = Utils.parseTransformOrigin(
-                    RNUtils.getString(config.get(TRANSFORM_ORIGIN),null),targetView);
-
-            if(perspective != 0) {
-                targetView.setCameraDistance(perspective);
-            }
-            if(pivot != null) {
-                targetView.setPivotX(pivot.first);
-                targetView.setPivotY(pivot.second);
-            }
+            applyPerspective(targetView, config);
+            applyTransformOrigin(targetView, config);
 
             final double d6 = (double) cmd;
             targetView.setRotationX((float) d6);
@@ -353,25 +476,86 @@ final class RNViewUpdateService {
             if(!(cmd instanceof Double)) {
                 return;
             }
-            int perspective = RNUtils.getInt(config.get(PERSPECTIVE), 0);
-            perspective = Utils.normalizedPerspectiveValue(targetView.getContext(),perspective);
+            applyPerspective(targetView, config);
+            applyTransformOrigin(targetView, config);
 
-            Pair<Float,Float> pivot = Utils.parseTransformOrigin(
-                    RNUtils.getString(config.get(TRANSFORM_ORIGIN),null),targetView);
+            final double d7 = (double) cmd;
+            targetView.setRotationY((float) d7);
+        }
+    }
+
+
+    /**
+     * applies a full transform in one go. the value is either a 4x4 matrix (16 numbers, column-major like
+     * css matrix3d) or the components [translateX, translateY, scaleX, scaleY, rotate, rotateX, rotateY],
+     * where trailing components may be omitted.
+     *
+     * a matrix is decomposed like the transform prop of RN. skew and translateZ can't be shown by a view and
+     * are dropped, a perspective in the matrix sets the camera distance in place of the configured one.
+     * */
+    private static final class TransformUpdater implements IRNViewUpdater {
+
+        private static final int MATRIX_SIZE = 16;
+
+        // only touched on the UI thread
+        private final double[] mMatrix = new double[MATRIX_SIZE];
+        private final MatrixMathHelper.MatrixDecompositionContext mDecomposition =
+                new MatrixMathHelper.MatrixDecompositionContext();
 
-            if(perspective != 0) {
-                targetView.setCameraDistance(perspective);
+        @Override
+        public void update(int tag,
+                           @NonNull final View targetView,
+                           @NonNull Object cmd,
+                           @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                           @NonNull Map<String,Object> config,
+                           @NonNull UIImplementation implementation) {
+            if(!(cmd instanceof List)) {
+                return;
             }
-            if(pivot != null) {
-                targetView.setPivotX(pivot.first);
-                targetView.setPivotY(pivot.second);
+            List<?> values = (List<?>) cmd;
+            int size = values.size();
+            for(int i = 0; i < size; i++) {
+                if(!(values.get(i) instanceof Double)) {
+                    return;
+                }
             }
 
-            final double d7 = (double) cmd;
-            targetView.setRotationY((float) d7);
+            applyPerspective(targetView, config);
+            applyTransformOrigin(targetView, config);
+
+            if(size == MATRIX_SIZE) {
+                for(int i = 0; i < MATRIX_SIZE; i++) {
+                    mMatrix[i] = (double) values.get(i);
+                }
+                MatrixMathHelper.decomposeMatrix(mMatrix, mDecomposition);
+                targetView.setTranslationX((float) getRealSize(mDecomposition.translation[0],translator));
+                targetView.setTranslationY((float) getRealSize(mDecomposition.translation[1],translator));
+                targetView.setScaleX((float) mDecomposition.scale[0]);
+                targetView.setScaleY((float) mDecomposition.scale[1]);
+                targetView.setRotation((float) mDecomposition.rotationDegrees[2]);
+                targetView.setRotationX((float) mDecomposition.rotationDegrees[0]);
+                targetView.setRotationY((float) mDecomposition.rotationDegrees[1]);
+                double invertedCameraDistance = mDecomposition.perspective[2];
+                if(invertedCameraDistance != 0) {
+                    targetView.setCameraDistance(Utils.normalizedPerspectiveValue(targetView.getContext(),
+                            (int) Math.round(-1 / invertedCameraDistance)));
+                }
+                return;
+            }
+
+            targetView.setTranslationX((float) getRealSize(component(values, 0, 0),translator));
+            targetView.setTranslationY((float) getRealSize(component(values, 1, 0),translator));
+            targetView.setScaleX((float) component(values, 2, 1));
+            targetView.setScaleY((float) component(values, 3, 1));
+            targetView.setRotation((float) component(values, 4, 0));
+            targetView.setRotationX((float) component(values, 5, 0));
+            targetView.setRotationY((float) component(values, 6, 0));
         }
-    }
 
+        private static double component(@NonNull List<?> values, int index, double defaultValue) {
+            return index < values.size() ? (double) values.get(index) : defaultValue;
+        }
+    }
 
     private static final class WidthUpdater implements IRNViewUpdater {
 
@@ -527,8 +711,32 @@ final class RNViewUpdateService {
         }
     }
 
+    /**
+     * drives the value node of a native-driven Animated given by {@code config.animatedNode}. The element
+     * only serves as a carrier and is left untouched.
+     * */
+    private static final class AnimatedValueUpdater implements IRNViewUpdater {
+
+        @Override
+        public void update(int tag,
+                           @NonNull final View targetView,
+                           @NonNull Object cmd,
+                           @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                           @NonNull Map<String,Object> config,
+                           @NonNull UIImplementation implementation) {
+            if(!(cmd instanceof Double) || !(targetView.getContext() instanceof ReactContext)) {
+                return;
+            }
+            int nodeTag = RNUtils.getReactTag(config.get(ANIMATED_NODE), -1);
+            if(nodeTag == -1) {
+                return;
+            }
+            RNAnimatedInterop.setValue((ReactContext) targetView.getContext(), nodeTag, (double) cmd);
+        }
+    }
+
     private static double getRealSize(double size,@NonNull PlatformManager.IDeviceResolutionTranslator translator) {
-        return translator.webToNative(size);
+        return translator.webToNative(size, NO_EXTENSION);
     }
 
 }
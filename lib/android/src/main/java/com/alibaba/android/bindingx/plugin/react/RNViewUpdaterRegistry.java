@@ -0,0 +1,53 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+/**
+ * Description:
+ *
+ * Lets the host app drive properties of its own native views with BindingX. Once registered, a property
+ * can be used in {@code props} like any built-in one, e.g. {@code {element: lottieRef, property: 'lottie.progress'}}.
+ *
+ * Updaters are invoked on the UI thread, and the shadow view of the target is synchronized afterwards.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+public final class RNViewUpdaterRegistry {
+
+    private RNViewUpdaterRegistry() {
+    }
+
+    /**
+     * register an updater for the given property. registering a built-in property replaces it.
+     * */
+    public static void register(@NonNull String property, @NonNull IRNViewUpdater updater) {
+        if (TextUtils.isEmpty(property)) {
+            throw new IllegalArgumentException("property must not be empty");
+        }
+        RNViewUpdateService.registerUpdater(property, updater);
+    }
+
+    /**
+     * remove a custom updater, built-in properties fall back to their default updater.
+     * */
+    public static void unregister(@NonNull String property) {
+        RNViewUpdateService.unregisterUpdater(property);
+    }
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.uimanager.UIImplementation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Description:
+ *
+ * Skips updates of target views which nobody can see: detached, not shown, or completely clipped out of
+ * their scroll container. The latest skipped value of every property is kept and applied once the view
+ * becomes visible again.
+ *
+ * Deferred updates are caught up right before the windows of their views draw, every window on its own since a
+ * Modal is not part of the activity's window. They are handed to the {@link Writer}, the same one live updates
+ * go through once they passed the culling. Views deferred while detached are watched until attached again.
+ *
+ * Geometry properties (translate, scale, width...) may move a view back into sight, so they are only culled
+ * when the view itself is hidden or its parent clips children and is clipped out.
+ *
+ * Must be used on the UI thread only.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class RNVisibilityCuller {
+
+    interface Writer {
+        void write(int tag,
+                   @NonNull View targetView,
+                   @NonNull String propertyName,
+                   @NonNull Object propertyValue,
+                   @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                   @NonNull Map<String, Object> config,
+                   @NonNull UIImplementation implementation);
+    }
+
+    private final Writer mWriter;
+    private final WeakHashMap<View, VisibilityEntry> mVisibilityCache = new WeakHashMap<>();
+    private final WeakHashMap<View, Map<String, PendingUpdate>> mPendingUpdates = new WeakHashMap<>();
+    private final Rect mTempRect = new Rect();
+    private final AtomicLong mSequence = new AtomicLong();
+
+    // one per window with deferred views
+    private final List<ViewTreeObserver> mTreeObservers = new ArrayList<>(2);
+    private final ViewTreeObserver.OnPreDrawListener mCatchUpListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            catchUp();
+            return true;
+        }
+    };
+
+    // deferred views without a window, there is no draw to catch them up before they are attached
+    private final WeakHashMap<View, Boolean> mDetachedViews = new WeakHashMap<>();
+    private final View.OnAttachStateChangeListener mAttachListener = new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            v.removeOnAttachStateChangeListener(this);
+            mDetachedViews.remove(v);
+            if(mPendingUpdates.containsKey(v)) {
+                observe(v);
+            }
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            // nope
+        }
+    };
+
+    RNVisibilityCuller(@NonNull Writer writer) {
+        this.mWriter = writer;
+    }
+
+    /**
+     * updates may be dispatched from any thread and either applied in place or posted,
+     * the sequence is used to tell which of a deferred and an applied value is the latest one.
+     * */
+    long nextSequence() {
+        return mSequence.incrementAndGet();
+    }
+
+    /**
+     * @return true if the update of the given property should be skipped
+     * */
+    boolean shouldCull(@NonNull View targetView, @NonNull String propertyName) {
+        VisibilityEntry entry = obtainEntry(targetView);
+        if(entry.hidden) {
+            return true;
+        }
+        return entry.clipped && (!RNViewUpdateService.isGeometryProperty(propertyName) || entry.parentClipped);
+    }
+
+    void defer(long sequence,
+               int tag,
+               @NonNull View targetView,
+               @NonNull String propertyName,
+               @NonNull Object propertyValue,
+               @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+               @NonNull Map<String, Object> config,
+               @NonNull UIImplementation implementation) {
+        Map<String, PendingUpdate> pending = mPendingUpdates.get(targetView);
+        if(pending == null) {
+            pending = new HashMap<>(4);
+            mPendingUpdates.put(targetView, pending);
+        }
+        PendingUpdate update = pending.get(propertyName);
+        if(update == null) {
+            update = new PendingUpdate();
+            pending.put(propertyName, update);
+        } else if(update.sequence > sequence) {
+            return;
+        }
+        update.sequence = sequence;
+        update.tag = tag;
+        update.value = propertyValue;
+        update.translator = translator;
+        update.config = config;
+        update.implementation = implementation;
+
+        observe(targetView);
+    }
+
+    /**
+     * called right before a value is applied.
+     *
+     * @return false if a newer value has been deferred meanwhile, in which case the given one must be dropped
+     * */
+    boolean onApply(long sequence, @NonNull View targetView, @NonNull String propertyName) {
+        if(mPendingUpdates.isEmpty()) {
+            return true;
+        }
+        Map<String, PendingUpdate> pending = mPendingUpdates.get(targetView);
+        if(pending == null) {
+            return true;
+        }
+        PendingUpdate update = pending.get(propertyName);
+        if(update == null) {
+            return true;
+        }
+        if(update.sequence > sequence) {
+            return false;
+        }
+        pending.remove(propertyName);
+        if(pending.isEmpty()) {
+            mPendingUpdates.remove(targetView);
+        }
+        return true;
+    }
+
+    void clear() {
+        mPendingUpdates.clear();
+        mVisibilityCache.clear();
+        stopObserving();
+    }
+
+    private void catchUp() {
+        Iterator<Map.Entry<View, Map<String, PendingUpdate>>> iterator = mPendingUpdates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<View, Map<String, PendingUpdate>> entry = iterator.next();
+            View view = entry.getKey();
+            if(view == null) {
+                iterator.remove();
+                continue;
+            }
+            boolean applied = false;
+            Iterator<Map.Entry<String, PendingUpdate>> updates = entry.getValue().entrySet().iterator();
+            while (updates.hasNext()) {
+                Map.Entry<String, PendingUpdate> update = updates.next();
+                if(shouldCull(view, update.getKey())) {
+                    continue;
+                }
+                PendingUpdate p = update.getValue();
+                mWriter.write(p.tag, view, update.getKey(), p.value, p.translator, p.config, p.implementation);
+                updates.remove();
+                applied = true;
+            }
+            if(entry.getValue().isEmpty()) {
+                iterator.remove();
+            } else {
+                // the view may have been detached, or moved to another window, since deferred
+                observe(view);
+            }
+            if(applied) {
+                // geometry changed, visibility of the others has to be re-evaluated
+                mVisibilityCache.clear();
+            }
+        }
+        if(mPendingUpdates.isEmpty()) {
+            stopObserving();
+        }
+    }
+
+    private void observe(@NonNull View targetView) {
+        if(targetView.getWindowToken() == null) {
+            if(!mDetachedViews.containsKey(targetView)) {
+                mDetachedViews.put(targetView, Boolean.TRUE);
+                targetView.addOnAttachStateChangeListener(mAttachListener);
+            }
+            return;
+        }
+        // the observer of the window once attached
+        ViewTreeObserver observer = targetView.getViewTreeObserver();
+        if(observer == null || !observer.isAlive()) {
+            return;
+        }
+        for(int i = mTreeObservers.size() - 1; i >= 0; i--) {
+            ViewTreeObserver observing = mTreeObservers.get(i);
+            if(observing == observer) {
+                return;
+            }
+            if(!observing.isAlive()) {
+                mTreeObservers.remove(i);
+            }
+        }
+        observer.addOnPreDrawListener(mCatchUpListener);
+        mTreeObservers.add(observer);
+    }
+
+    private void stopObserving() {
+        for(ViewTreeObserver observer : mTreeObservers) {
+            if(observer.isAlive()) {
+                observer.removeOnPreDrawListener(mCatchUpListener);
+            }
+        }
+        mTreeObservers.clear();
+        for(View view : mDetachedViews.keySet()) {
+            if(view != null) {
+                view.removeOnAttachStateChangeListener(mAttachListener);
+            }
+        }
+        mDetachedViews.clear();
+    }
+
+    @NonNull
+    private VisibilityEntry obtainEntry(@NonNull View view) {
+        // stable during a frame, so the hierarchy is walked at most once per view per frame
+        long frameTime = AnimationUtils.currentAnimationTimeMillis();
+        VisibilityEntry entry = mVisibilityCache.get(view);
+        if(entry == null) {
+            entry = new VisibilityEntry();
+            mVisibilityCache.put(view, entry);
+        } else if(entry.frameTime == frameTime) {
+            return entry;
+        }
+        entry.frameTime = frameTime;
+        entry.hidden = view.getWindowToken() == null || !view.isShown();
+        if(entry.hidden) {
+            entry.clipped = true;
+            entry.parentClipped = true;
+            return entry;
+        }
+        entry.clipped = !view.getGlobalVisibleRect(mTempRect);
+        entry.parentClipped = entry.clipped && isParentClippedOut(view);
+        return entry;
+    }
+
+    private boolean isParentClippedOut(@NonNull View view) {
+        ViewParent parent = view.getParent();
+        if(!(parent instanceof ViewGroup)) {
+            return false;
+        }
+        ViewGroup group = (ViewGroup) parent;
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2 || !group.getClipChildren()) {
+            return false;
+        }
+        return !group.getGlobalVisibleRect(mTempRect);
+    }
+
+    private static final class VisibilityEntry {
+        long frameTime = -1;
+        boolean hidden;
+        boolean clipped;
+        boolean parentClipped;
+    }
+
+    private static final class PendingUpdate {
+        long sequence;
+        int tag;
+        Object value;
+        PlatformManager.IDeviceResolutionTranslator translator;
+        Map<String, Object> config;
+        UIImplementation implementation;
+    }
+}
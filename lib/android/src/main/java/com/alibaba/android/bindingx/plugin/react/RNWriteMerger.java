@@ -0,0 +1,284 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.uimanager.UIImplementation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description:
+ *
+ * Merges the writes of several bindings to the same (tag, property) into a single write per frame.
+ *
+ * The latest value of every contributing target is kept, so bindings which are idle in a frame still count.
+ * Contributors are told apart by their config, a {@link RNBindingDescriptor.TargetConfig} leaves once its
+ * binding is released or its slot moved to another tag.
+ *
+ * Among the {@code override} values, the one with the highest priority wins (the latest one on ties).
+ * {@code add} and {@code multiply} values are then blended into it as {@code base * product + sum}.
+ * When no binding overrides the property anymore, the last overriding value is used as base.
+ * Blending only applies to numbers, other values are written as overridden.
+ *
+ * Must be used on the UI thread only.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class RNWriteMerger {
+
+    static final int BLEND_OVERRIDE = 0;
+    static final int BLEND_ADD = 1;
+    static final int BLEND_MULTIPLY = 2;
+
+    interface Sink {
+        void write(int tag,
+                   @NonNull View targetView,
+                   @NonNull String propertyName,
+                   @NonNull Object propertyValue,
+                   @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                   @NonNull Map<String, Object> config,
+                   @NonNull UIImplementation implementation);
+    }
+
+    // property -> slots of its contended tags, few enough to be scanned
+    private final Map<String, List<Slot>> mSlots = new HashMap<>();
+    private final List<Slot> mPending = new ArrayList<>();
+    private long mSequence = 0;
+
+    static int parseBlendMode(@Nullable Object value) {
+        if("add".equals(value)) {
+            return BLEND_ADD;
+        } else if("multiply".equals(value)) {
+            return BLEND_MULTIPLY;
+        }
+        return BLEND_OVERRIDE;
+    }
+
+    /**
+     * @param config the config of the writing target, identifies its contribution
+     * @return true if this is the first write pending for the current frame, a {@link #flush(Sink)} must
+     * be scheduled then.
+     * */
+    boolean offer(int tag,
+                  @NonNull View targetView,
+                  @NonNull String propertyName,
+                  @NonNull Object propertyValue,
+                  @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                  @NonNull Map<String, Object> config,
+                  @NonNull UIImplementation implementation,
+                  int priority,
+                  int blendMode) {
+        List<Slot> slots = mSlots.get(propertyName);
+        if(slots == null) {
+            slots = new ArrayList<>(2);
+            mSlots.put(propertyName, slots);
+        }
+        Slot slot = findSlot(slots, tag);
+        if(slot == null) {
+            slot = new Slot(tag, propertyName);
+            slots.add(slot);
+        }
+        boolean isFirst = false;
+        if(!slot.isPending) {
+            slot.isPending = true;
+            mPending.add(slot);
+            isFirst = mPending.size() == 1;
+        }
+
+        Contribution contribution = slot.obtain(config);
+        contribution.priority = priority;
+        contribution.blendMode = propertyValue instanceof Double ? blendMode : BLEND_OVERRIDE;
+        contribution.value = propertyValue;
+        contribution.sequence = ++mSequence;
+        slot.setTarget(targetView, translator, implementation);
+        return isFirst;
+    }
+
+    boolean hasPending() {
+        return !mPending.isEmpty();
+    }
+
+    void flush(@NonNull Sink sink) {
+        // writes may be offered again from the sink
+        Slot[] pending = mPending.toArray(new Slot[mPending.size()]);
+        mPending.clear();
+        for(Slot slot : pending) {
+            Object value = slot.merge();
+            View targetView = slot.targetView;
+            PlatformManager.IDeviceResolutionTranslator translator = slot.translator;
+            Map<String, Object> config = slot.config;
+            UIImplementation implementation = slot.implementation;
+            slot.reset();
+            if(slot.contributions.isEmpty()) {
+                List<Slot> slots = mSlots.get(slot.propertyName);
+                if(slots != null) {
+                    slots.remove(slot);
+                }
+            }
+            if(value != null && targetView != null && translator != null && config != null && implementation != null) {
+                sink.write(slot.tag, targetView, slot.propertyName, value, translator, config, implementation);
+            }
+        }
+    }
+
+    @Nullable
+    private static Slot findSlot(@NonNull List<Slot> slots, int tag) {
+        for(int i = 0, size = slots.size(); i < size; i++) {
+            Slot slot = slots.get(i);
+            if(slot.tag == tag) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * forget all state, including the last overriding values.
+     * */
+    void clear() {
+        mSlots.clear();
+        mPending.clear();
+    }
+
+    private static final class Contribution {
+        @NonNull final Map<String, Object> config;
+        int priority;
+        int blendMode;
+        Object value;
+        long sequence;
+
+        Contribution(@NonNull Map<String, Object> config) {
+            this.config = config;
+        }
+    }
+
+    private static final class Slot {
+        final int tag;
+        @NonNull final String propertyName;
+        final List<Contribution> contributions = new ArrayList<>(2);
+
+        boolean isPending = false;
+        // the base once nobody overrides anymore
+        Object lastBase = null;
+
+        View targetView;
+        PlatformManager.IDeviceResolutionTranslator translator;
+        Map<String, Object> config;
+        UIImplementation implementation;
+
+        Slot(int tag, @NonNull String propertyName) {
+            this.tag = tag;
+            this.propertyName = propertyName;
+        }
+
+        @NonNull
+        Contribution obtain(@NonNull Map<String, Object> config) {
+            for(int i = 0, size = contributions.size(); i < size; i++) {
+                Contribution contribution = contributions.get(i);
+                if(contribution.config == config) {
+                    return contribution;
+                }
+            }
+            Contribution contribution = new Contribution(config);
+            contributions.add(contribution);
+            return contribution;
+        }
+
+        void setTarget(@NonNull View targetView,
+                       @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                       @NonNull UIImplementation implementation) {
+            this.targetView = targetView;
+            this.translator = translator;
+            this.implementation = implementation;
+        }
+
+        @Nullable
+        Object merge() {
+            Contribution override = null;
+            Contribution latest = null;
+            boolean hasBlend = false;
+            boolean hasSum = false;
+            double sum = 0;
+            double product = 1;
+            for(int i = contributions.size() - 1; i >= 0; i--) {
+                Contribution contribution = contributions.get(i);
+                if(isGone(contribution)) {
+                    contributions.remove(i);
+                    continue;
+                }
+                if(latest == null || contribution.sequence > latest.sequence) {
+                    latest = contribution;
+                }
+                if(contribution.blendMode == BLEND_OVERRIDE) {
+                    if(override == null || contribution.priority > override.priority
+                            || (contribution.priority == override.priority && contribution.sequence > override.sequence)) {
+                        override = contribution;
+                    }
+                } else if(contribution.blendMode == BLEND_ADD) {
+                    sum += (Double) contribution.value;
+                    hasSum = true;
+                    hasBlend = true;
+                } else {
+                    product *= (Double) contribution.value;
+                    hasBlend = true;
+                }
+            }
+            if(latest == null) {
+                return null;
+            }
+            // written through the overriding target, it decides how the value is applied
+            config = override != null ? override.config : latest.config;
+
+            Object base = override != null ? override.value : lastBase;
+            if(override != null) {
+                lastBase = override.value;
+            }
+            if(!hasBlend) {
+                return base;
+            }
+            if(base != null && !(base instanceof Double)) {
+                return base;
+            }
+            double b = base != null ? (Double) base : (hasSum ? 0 : 1);
+            return b * product + sum;
+        }
+
+        private boolean isGone(@NonNull Contribution contribution) {
+            if(!(contribution.config instanceof RNBindingDescriptor.TargetConfig)) {
+                return false;
+            }
+            RNBindingDescriptor.TargetConfig target = (RNBindingDescriptor.TargetConfig) contribution.config;
+            return target.isReleased || target.tag != tag;
+        }
+
+        void reset() {
+            isPending = false;
+            targetView = null;
+            translator = null;
+            config = null;
+            implementation = null;
+        }
+    }
+}
@@ -18,11 +18,14 @@ package com.alibaba.android.bindingx.plugin.react;
 import android.app.Activity;
 import android.content.Context;
 import android.graphics.Color;
+import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
 import android.view.View;
 import android.widget.TextView;
 
@@ -32,6 +35,7 @@ import com.alibaba.android.bindingx.core.IEventHandler;
 import com.alibaba.android.bindingx.core.LogProxy;
 import com.alibaba.android.bindingx.core.PlatformManager;
 import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+import com.alibaba.android.bindingx.core.internal.BindingXTimingHandler;
 import com.alibaba.android.bindingx.core.internal.Utils;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.LifecycleEventListener;
@@ -44,10 +48,14 @@ import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.module.annotations.ReactModule;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
-import com.facebook.react.uimanager.UIImplementation;
 import com.facebook.react.uimanager.UIManagerModule;
 import com.facebook.react.views.view.ReactViewBackgroundDrawable;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -57,6 +65,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Description:
@@ -71,13 +80,134 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
 
     /*package*/ static final String NAME = "bindingx";
 
+    private static final long SWEEP_DELAY_MILLIS = 100;
+
+    private static final String PLAN_CACHE_FILE = "bindingx/plans.bin";
+    private static final long PLAN_CACHE_FLUSH_DELAY_MILLIS = 1000;
+
+    private static final String KEY_OPTIONS = "options";
+    private static final String KEY_ELEMENTS = "elements";
+    private static final String KEY_PARAMS = "params";
+    private static final String KEY_UNRESOLVED = "unresolved";
+
+    private static final String EVENT_DEGRADATION = "bindingx:degradation";
+
+    /*package*/ static final PlatformManager.IDeviceResolutionTranslator RESOLUTION_TRANSLATOR =
+            new PlatformManager.IDeviceResolutionTranslator() {
+                @Override
+                public double webToNative(double rawSize, Object... extension) {
+                    return rawSize;
+                }
+
+                @Override
+                public double nativeToWeb(double rawSize, Object... extension) {
+                    return rawSize;
+                }
+            };
+
+    // every type a creator is registered for, they are taken off the warm core on release
+    private static final String[] EVENT_TYPES = {
+            BindingXEventType.TYPE_SCROLL,
+            BindingXEventType.TYPE_PAN,
+            BindingXOrientationHandler.TYPE_ORIENTATION,
+            BindingXAnimatedHandler.TYPE_ANIMATED,
+            BindingXPagerHandler.TYPE_PAGER,
+            BindingXKeyboardHandler.TYPE_KEYBOARD,
+            BindingXEventType.TYPE_TIMING,
+            BindingXPhysicsHandler.TYPE_SPRING,
+            BindingXPhysicsHandler.TYPE_DECAY
+    };
+
     private BindingXCore mBindingXCore;
     private PlatformManager mPlatformManager;
 
-    private InternalWorkerThread mWorkerThread = null;
+    private final BindingXRuntime mRuntime = BindingXRuntime.get();
+    private final PlatformManager.IViewFinder mViewFinder;
+    private volatile boolean isReleased = false;
+
+    private final GestureVelocityStore mGestureVelocityStore = new GestureVelocityStore();
+    // worker thread only
+    private Map<String, Object> mPendingBindOptions = null;
+    private BindingParams mPendingBindParams = null;
+    private CompiledBinding mPendingCompiledBinding = null;
+    private RenderThreadTimingPlan mPendingTimingPlan = null;
+    private BindingXRenderThreadTimingHandler mPendingRenderThreadHandler = null;
+
+    private final BindingLifecycleTracker mLifecycleTracker = new BindingLifecycleTracker(
+            new BindingLifecycleTracker.OnViewDetachedListener() {
+                @Override
+                public void onViewDetached() {
+                    // views are dropped in batches during unmount, sweep once they are done
+                    executeAsynchronouslyDelayed(new Runnable() {
+                        @Override
+                        public void run() {
+                            releaseDroppedBindings();
+                        }
+                    }, SWEEP_DELAY_MILLIS);
+                }
+
+                @Override
+                public boolean isViewDropped(@NonNull View view) {
+                    ReactApplicationContext context = getReactApplicationContext();
+                    UIManagerModule module = context == null || !context.hasActiveCatalystInstance()
+                            ? null : context.getNativeModule(UIManagerModule.class);
+                    if (module == null) {
+                        // released along with the context
+                        return false;
+                    }
+                    try {
+                        return module.resolveView(view.getId()) != view;
+                    } catch (RuntimeException e) {
+                        // the tag is gone
+                        return true;
+                    }
+                }
+            });
+
+    private final BindingXInputRecorder mInputRecorder = new BindingXInputRecorder();
+
+    private final RNUpdateDispatcher mUpdateDispatcher;
+
+    private final BindingXFrameGovernor mFrameGovernor = new BindingXFrameGovernor(
+            new BindingXFrameGovernor.Listener() {
+                @Override
+                public void onLevelChanged(int level, double frameCostMillis, double budgetMillis) {
+                    LogProxy.d("frame budget level changed. [" + level + "," + frameCostMillis + "ms]");
+                    ReactApplicationContext context = getReactApplicationContext();
+                    if (context == null || !context.hasActiveCatalystInstance()) {
+                        return;
+                    }
+                    WritableMap event = Arguments.createMap();
+                    event.putInt("level", level);
+                    event.putDouble("frameCost", frameCostMillis);
+                    event.putDouble("budget", budgetMillis);
+                    context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                            .emit(EVENT_DEGRADATION, event);
+                }
+            });
+
+    private volatile BindingXAsyncEvaluator mAsyncEvaluator = null;
+    private volatile boolean isFlingPredictionEnabled = false;
+    private volatile boolean isExpressionCompilationEnabled = true;
+    private volatile boolean isRenderThreadTimingEnabled = false;
+
+    private final BindingPlanCache mPlanCache;
+    // worker thread only, a single flush is pending at a time however many binds add plans meanwhile
+    private boolean isPlanCacheFlushScheduled = false;
+    private final Runnable mFlushPlanCache = new Runnable() {
+        @Override
+        public void run() {
+            isPlanCacheFlushScheduled = false;
+            mPlanCache.flush();
+        }
+    };
 
     /*package*/ ReactBindingXModule(ReactApplicationContext reactContext) {
         super(reactContext);
+        mUpdateDispatcher = new RNUpdateDispatcher(reactContext, mLifecycleTracker);
+        mUpdateDispatcher.setFrameGovernor(mFrameGovernor);
+        mPlanCache = mRuntime.getPlanCache(new File(reactContext.getFilesDir(), PLAN_CACHE_FILE));
+        mViewFinder = createViewFinder(reactContext, mLifecycleTracker);
     }
 
     @Override
@@ -94,11 +224,21 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
     }
 
     private void prepareInternal() {
-        if (mPlatformManager == null) {
-            mPlatformManager = createPlatformManager(getReactApplicationContext());
-        }
         if (mBindingXCore == null) {
-            mBindingXCore = new BindingXCore(mPlatformManager);
+            long start = System.nanoTime();
+            // the core of the previous context is taken over, unless another context still holds it
+            boolean warm = mRuntime.acquire(this, mViewFinder, mUpdateDispatcher);
+            if (warm) {
+                mPlatformManager = mRuntime.getPlatformManager();
+                mBindingXCore = mRuntime.getCore();
+            } else {
+                mPlatformManager = new PlatformManager.Builder()
+                        .withViewFinder(mViewFinder)
+                        .withViewUpdater(mUpdateDispatcher)
+                        .withDeviceResolutionTranslator(RESOLUTION_TRANSLATOR)
+                        .build();
+                mBindingXCore = new BindingXCore(mPlatformManager);
+            }
 
             mBindingXCore.registerEventHandler(BindingXEventType.TYPE_SCROLL,
                     new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
@@ -106,10 +246,176 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
                         public IEventHandler createWith(@NonNull Context context,
                                                         @NonNull PlatformManager manager,
                                                         Object... extension) {
-                            return new BindingXScrollHandler(context, manager, extension);
+                            BindingXScrollHandler handler = new BindingXScrollHandler(context, manager, extension);
+                            handler.setInputRecorder(mInputRecorder);
+                            handler.setAsyncEvaluator(mAsyncEvaluator);
+                            handler.setFlingPredictionEnabled(isFlingPredictionEnabled);
+                            handler.setVelocityStore(mGestureVelocityStore);
+                            handler.setFrameGovernor(mFrameGovernor);
+                            handler.setBindingParams(attachPendingBindParams());
+                            handler.setCompiledBinding(mPendingCompiledBinding);
+                            return handler;
+                        }
+                    });
+
+            mBindingXCore.registerEventHandler(BindingXEventType.TYPE_PAN,
+                    new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
+                        @Override
+                        public IEventHandler createWith(@NonNull Context context,
+                                                        @NonNull PlatformManager manager,
+                                                        Object... extension) {
+                            BindingXPanHandler handler = new BindingXPanHandler(context, manager, extension);
+                            handler.setInputRecorder(mInputRecorder);
+                            handler.setBindingOptions(getPendingBindOptions());
+                            handler.setVelocityStore(mGestureVelocityStore);
+                            handler.setFrameGovernor(mFrameGovernor);
+                            handler.setBindingParams(attachPendingBindParams());
+                            handler.setCompiledBinding(mPendingCompiledBinding);
+                            return handler;
+                        }
+                    });
+
+            mBindingXCore.registerEventHandler(BindingXOrientationHandler.TYPE_ORIENTATION,
+                    new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
+                        @Override
+                        public IEventHandler createWith(@NonNull Context context,
+                                                        @NonNull PlatformManager manager,
+                                                        Object... extension) {
+                            BindingXOrientationHandler handler = new BindingXOrientationHandler(context, manager, extension);
+                            handler.setInputRecorder(mInputRecorder);
+                            handler.setBindingOptions(getPendingBindOptions());
+                            handler.setFrameGovernor(mFrameGovernor);
+                            handler.setBindingParams(attachPendingBindParams());
+                            handler.setCompiledBinding(mPendingCompiledBinding);
+                            return handler;
+                        }
+                    });
+
+            mBindingXCore.registerEventHandler(BindingXAnimatedHandler.TYPE_ANIMATED,
+                    new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
+                        @Override
+                        public IEventHandler createWith(@NonNull Context context,
+                                                        @NonNull PlatformManager manager,
+                                                        Object... extension) {
+                            BindingXAnimatedHandler handler = new BindingXAnimatedHandler(context, manager, extension);
+                            handler.setFrameGovernor(mFrameGovernor);
+                            handler.setBindingParams(attachPendingBindParams());
+                            handler.setCompiledBinding(mPendingCompiledBinding);
+                            return handler;
+                        }
+                    });
+
+            mRuntime.registerJSFunctions();
+            mRuntime.setAnimatedContext(getReactApplicationContext());
+
+            mBindingXCore.registerEventHandler(BindingXPagerHandler.TYPE_PAGER,
+                    new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
+                        @Override
+                        public IEventHandler createWith(@NonNull Context context,
+                                                        @NonNull PlatformManager manager,
+                                                        Object... extension) {
+                            BindingXPagerHandler handler = new BindingXPagerHandler(context, manager, extension);
+                            handler.setInputRecorder(mInputRecorder);
+                            handler.setFrameGovernor(mFrameGovernor);
+                            handler.setBindingParams(attachPendingBindParams());
+                            handler.setCompiledBinding(mPendingCompiledBinding);
+                            return handler;
+                        }
+                    });
+
+            mBindingXCore.registerEventHandler(BindingXKeyboardHandler.TYPE_KEYBOARD,
+                    new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
+                        @Override
+                        public IEventHandler createWith(@NonNull Context context,
+                                                        @NonNull PlatformManager manager,
+                                                        Object... extension) {
+                            BindingXKeyboardHandler handler = new BindingXKeyboardHandler(context, manager, extension);
+                            handler.setInputRecorder(mInputRecorder);
+                            handler.setBindingParams(attachPendingBindParams());
+                            handler.setCompiledBinding(mPendingCompiledBinding);
+                            return handler;
+                        }
+                    });
+
+            mBindingXCore.registerEventHandler(BindingXEventType.TYPE_TIMING,
+                    new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
+                        @Override
+                        public IEventHandler createWith(@NonNull Context context,
+                                                        @NonNull PlatformManager manager,
+                                                        Object... extension) {
+                            RenderThreadTimingPlan plan = mPendingTimingPlan;
+                            if (plan != null) {
+                                mPendingRenderThreadHandler =
+                                        new BindingXRenderThreadTimingHandler(context, manager, plan, extension);
+                                return mPendingRenderThreadHandler;
+                            }
+                            return new BindingXTimingHandler(context, manager, extension);
+                        }
+                    });
+
+            mBindingXCore.registerEventHandler(BindingXPhysicsHandler.TYPE_SPRING,
+                    new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
+                        @Override
+                        public IEventHandler createWith(@NonNull Context context,
+                                                        @NonNull PlatformManager manager,
+                                                        Object... extension) {
+                            return createPhysicsHandler(context, manager, true, extension);
+                        }
+                    });
+
+            mBindingXCore.registerEventHandler(BindingXPhysicsHandler.TYPE_DECAY,
+                    new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
+                        @Override
+                        public IEventHandler createWith(@NonNull Context context,
+                                                        @NonNull PlatformManager manager,
+                                                        Object... extension) {
+                            return createPhysicsHandler(context, manager, false, extension);
                         }
                     });
+
+            double millis = (System.nanoTime() - start) / 1e6;
+            mRuntime.reportRebuild(millis, warm);
+            LogProxy.d("core prepared in " + millis + "ms. [" + (warm ? "warm" : "cold") + "]");
+        }
+    }
+
+    @NonNull
+    private BindingXPhysicsHandler createPhysicsHandler(@NonNull Context context, @NonNull PlatformManager manager,
+                                                       boolean isSpring, Object... extension) {
+        BindingXPhysicsHandler handler = new BindingXPhysicsHandler(context, manager, isSpring, extension);
+        handler.setBindingOptions(getPendingBindOptions());
+        handler.setVelocityStore(mGestureVelocityStore);
+        handler.setFrameGovernor(mFrameGovernor);
+        handler.setBindingParams(attachPendingBindParams());
+        handler.setCompiledBinding(mPendingCompiledBinding);
+        return handler;
+    }
+
+    /**
+     * the {@code options} of the binding being created. handlers are created synchronously within
+     * {@link BindingXCore#doBind}, which gives them a chance to read their own options.
+     * */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getPendingBindOptions() {
+        Map<String, Object> options = mPendingBindOptions;
+        if (options == null) {
+            return null;
+        }
+        Object value = options.get(KEY_OPTIONS);
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    /**
+     * the {@code params} of the binding being created, for handlers which read them. see {@link BindingParams}
+     * */
+    @Nullable
+    private BindingParams attachPendingBindParams() {
+        BindingParams params = mPendingBindParams;
+        if (params != null) {
+            params.attached = true;
         }
+        return params;
     }
 
     @ReactMethod
@@ -124,19 +430,46 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
     }
 
     @ReactMethod(isBlockingSynchronousMethod = true)
-    @SuppressWarnings("unchecked")
     public WritableMap bind(final ReadableMap params) {
+        boolean traced = BindingXTrace.beginSection("BindingX#bind");
+        try {
+            return bindInternal(params);
+        } finally {
+            BindingXTrace.endSection(traced);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private WritableMap bindInternal(final ReadableMap params) {
         final CountDownLatch latch = new CountDownLatch(1);
         final List<String> resultHolder = new ArrayList<>(2);
+        final List<String> unresolved = new ArrayList<>(0);
         executeAsynchronously(new Runnable() {
             @Override
             public void run() {
+                boolean traced = BindingXTrace.beginSection("BindingX#doBind");
                 try {
                     prepareInternal();
+                    RNBindingDescriptor descriptor = RNBindingDescriptor.decode(params);
+                    Map<String, Object> options = descriptor.coreOptions;
+                    if (mPlanCache.resolve(options, unresolved) && !isPlanCacheFlushScheduled) {
+                        isPlanCacheFlushScheduled = true;
+                        executeAsynchronouslyDelayed(mFlushPlanCache, PLAN_CACHE_FLUSH_DELAY_MILLIS);
+                    }
+                    if (!unresolved.isEmpty()) {
+                        // JS took these for cached, it parses them and binds again
+                        LogProxy.e("bind failed, expressions are not cached anymore. " + unresolved);
+                        return;
+                    }
+                    mPendingBindOptions = options;
+                    mPendingBindParams = new BindingParams(descriptor.params);
+                    mPendingCompiledBinding = isExpressionCompilationEnabled ? compileBinding(descriptor) : null;
+                    mPendingTimingPlan = isRenderThreadTimingEnabled ? planTiming(descriptor) : null;
+                    mLifecycleTracker.addTargets(descriptor.targetProperties, descriptor.targetConfigs);
                     String token = mBindingXCore.doBind(
                             getReactApplicationContext(),
                             null,// react native don't need it
-                            params == null ? Collections.<String, Object>emptyMap() : params.toHashMap(),
+                            options,
                             new BindingXCore.JavaScriptCallback() {
                                 @Override
                                 public void callback(Object params) {
@@ -147,22 +480,71 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
                                     }
                                 }
                             });
+                    trackBinding(token, descriptor, mPendingBindParams);
+                    BindingLifecycleTracker.Record record = mLifecycleTracker.get(token);
+                    if (record != null) {
+                        record.renderThreadHandler = mPendingRenderThreadHandler;
+                    }
                     resultHolder.add(token);
                 }finally {
+                    mPendingBindOptions = null;
+                    mPendingBindParams = null;
+                    mPendingCompiledBinding = null;
+                    mPendingTimingPlan = null;
+                    mPendingRenderThreadHandler = null;
                     latch.countDown();
+                    BindingXTrace.endSection(traced);
                 }
             }
         });
+        boolean traced = BindingXTrace.beginSection("BindingX#bind.await");
         try {
             latch.await(2000, TimeUnit.MILLISECONDS);
         }catch (Exception e) {
             //ignore
+        }finally {
+            BindingXTrace.endSection(traced);
         }
 
         String token = resultHolder.size() > 0 ? resultHolder.get(0) : null;
+        if (token == null && !unresolved.isEmpty()) {
+            Map<String, Object> result = new HashMap<>(4);
+            result.put(BindingXConstants.KEY_TOKEN, null);
+            result.put(KEY_UNRESOLVED, new ArrayList<>(unresolved));
+            return Arguments.makeNativeMap(result);
+        }
         return Arguments.makeNativeMap(Collections.<String,Object>singletonMap(BindingXConstants.KEY_TOKEN, token));
     }
 
+    @Nullable
+    private static CompiledBinding compileBinding(@NonNull RNBindingDescriptor descriptor) {
+        boolean traced = BindingXTrace.beginSection("BindingX#compile");
+        try {
+            return CompiledBinding.compile(descriptor);
+        } finally {
+            BindingXTrace.endSection(traced);
+        }
+    }
+
+    /**
+     * timing bindings which only move render-only properties nobody else writes can leave the UI thread,
+     * from Lollipop on where views can be animated on the RenderThread.
+     * */
+    @Nullable
+    private RenderThreadTimingPlan planTiming(@NonNull RNBindingDescriptor descriptor) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP
+                || !BindingXEventType.TYPE_TIMING.equals(descriptor.eventType)
+                || !BindingXRenderThreadTimingHandler.isSupported()) {
+            return null;
+        }
+        boolean traced = BindingXTrace.beginSection("BindingX#planTiming");
+        try {
+            return RenderThreadTimingPlan.create(descriptor, mLifecycleTracker);
+        } finally {
+            BindingXTrace.endSection(traced);
+        }
+    }
+
     @ReactMethod
     public void unbind(final ReadableMap params) {
         if (params == null) {
@@ -172,7 +554,16 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
             @Override
             public void run() {
                 if (mBindingXCore != null) {
-                    mBindingXCore.doUnbind(params.toHashMap());
+                    Map<String, Object> options = params.toHashMap();
+                    mBindingXCore.doUnbind(options);
+                    BindingLifecycleTracker.Record record =
+                            mLifecycleTracker.untrack(Utils.getStringValue(options, BindingXConstants.KEY_TOKEN));
+                    if (record != null && record.paused) {
+                        publishPausedWrites();
+                    }
+                    if (record != null) {
+                        publishContendedWrites();
+                    }
                 }
             }
         });
@@ -183,20 +574,467 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
         executeAsynchronously(new Runnable() {
             @Override
             public void run() {
-                if (mBindingXCore != null) {
-                    mBindingXCore.doRelease();
+                releaseAllBindings();
+            }
+        });
+    }
+
+    /**
+     * release all bindings created with the given {@code group} option, in one call.
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void unbindGroup(final String group) {
+        if (TextUtils.isEmpty(group)) {
+            return;
+        }
+        executeAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                unbindRecords(mLifecycleTracker.untrackGroup(group));
+            }
+        });
+    }
+
+    /**
+     * release all bindings anchored on the given view, in one call.
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void unbindAnchor(final int anchor) {
+        executeAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                unbindRecords(mLifecycleTracker.untrackAnchor(anchor));
+            }
+        });
+    }
+
+    /**
+     * re-point a binding bound with {@code recyclable: true} at other views, e.g. once the list cell it
+     * was bound for gets recycled. its parsed expressions and its handler are kept as they are.
+     * <pre>
+     *     elements: {[tag currently written]: new tag, ...}
+     *     params:   values replacing the params of the binding, see {@link BindingParams}
+     * </pre>
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void retarget(final String token, final ReadableMap options) {
+        if (TextUtils.isEmpty(token) || options == null) {
+            return;
+        }
+        executeAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                boolean traced = BindingXTrace.beginSection("BindingX#retarget");
+                try {
+                    retargetInternal(token, options.toHashMap());
+                } finally {
+                    BindingXTrace.endSection(traced);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void retargetInternal(@NonNull String token, @NonNull Map<String, Object> options) {
+        BindingLifecycleTracker.Record record = mLifecycleTracker.get(token);
+        if (record == null) {
+            LogProxy.e("retarget failed, binding not found. [" + token + "]");
+            return;
+        }
+        boolean changed = false;
+        Object elements = options.get(KEY_ELEMENTS);
+        if (elements instanceof Map) {
+            changed = retargetElements(record, (Map<String, Object>) elements);
+        }
+        Object params = options.get(KEY_PARAMS);
+        if (params instanceof Map) {
+            if (record.params == null) {
+                LogProxy.e("bindings of type " + record.eventType + " don't take params. [" + token + "]");
+            } else {
+                record.params.post((Map<String, Object>) params);
+                changed = true;
+            }
+        }
+        // the new cell shows the latest sample right away, rather than on the next event of the source
+        if (changed && record.params != null) {
+            record.params.requestReevaluation();
+        }
+    }
+
+    /**
+     * @return true if any target moved
+     * */
+    private boolean retargetElements(@NonNull BindingLifecycleTracker.Record record,
+                                     @NonNull Map<String, Object> elements) {
+        if (!record.isRecyclable()) {
+            LogProxy.e("retarget failed, binding is not recyclable. [" + record.token + "]");
+            return false;
+        }
+        SparseIntArray tags = new SparseIntArray(elements.size());
+        for (Map.Entry<String, Object> entry : elements.entrySet()) {
+            int from = RNUtils.getReactTag(entry.getKey(), -1);
+            int to = RNUtils.getReactTag(entry.getValue(), -1);
+            if (from != -1 && to != -1) {
+                tags.put(from, to);
+            }
+        }
+        if (!mLifecycleTracker.retarget(record, tags)) {
+            return false;
+        }
+
+        // the new views take over the lifecycle of the old ones
+        PlatformManager.IViewFinder viewFinder = mPlatformManager.getViewFinder();
+        SparseBooleanArray seen = new SparseBooleanArray(record.targetTags.length);
+        List<View> targets = new ArrayList<>(record.targetTags.length);
+        for (int tag : record.targetTags) {
+            if (seen.get(tag)) {
+                continue;
+            }
+            seen.put(tag, true);
+            View view = viewFinder.findViewBy(String.valueOf(tag));
+            if (view != null) {
+                targets.add(view);
+            }
+        }
+        record.setTargets(targets);
+        if (record.paused) {
+            publishPausedWrites();
+        }
+        publishContendedWrites();
+        return true;
+    }
+
+    /**
+     * stop applying the updates of all bindings in the given group until {@link #resumeGroup(String)}.
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void pauseGroup(final String group) {
+        setGroupPaused(group, true);
+    }
+
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void resumeGroup(final String group) {
+        setGroupPaused(group, false);
+    }
+
+    private void setGroupPaused(final String group, final boolean paused) {
+        if (TextUtils.isEmpty(group)) {
+            return;
+        }
+        executeAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                boolean changed = false;
+                for (BindingLifecycleTracker.Record record : mLifecycleTracker.getGroup(group)) {
+                    changed |= record.paused != paused;
+                    record.paused = paused;
+                }
+                if (changed) {
+                    publishPausedWrites();
+                }
+            }
+        });
+    }
+
+    private void unbindRecords(@NonNull List<BindingLifecycleTracker.Record> records) {
+        if (mBindingXCore == null || records.isEmpty()) {
+            return;
+        }
+        boolean hasPaused = false;
+        for (BindingLifecycleTracker.Record record : records) {
+            mBindingXCore.doUnbind(record.token, record.eventType);
+            hasPaused |= record.paused;
+        }
+        if (hasPaused) {
+            publishPausedWrites();
+        }
+        publishContendedWrites();
+    }
+
+    /**
+     * hand the (tag, property) pairs of all paused bindings over to the dispatcher as an immutable snapshot.
+     * */
+    private void publishPausedWrites() {
+        Map<String, SparseBooleanArray> pausedWrites = new HashMap<>();
+        for (BindingLifecycleTracker.Record record : mLifecycleTracker.getAll()) {
+            if (!record.paused) {
+                continue;
+            }
+            for (int i = 0; i < record.targetTags.length; i++) {
+                SparseBooleanArray tags = pausedWrites.get(record.targetProperties[i]);
+                if (tags == null) {
+                    tags = new SparseBooleanArray();
+                    pausedWrites.put(record.targetProperties[i], tags);
+                }
+                tags.put(record.targetTags[i], true);
+            }
+        }
+        mUpdateDispatcher.setPausedWrites(pausedWrites.isEmpty()
+                ? Collections.<String, SparseBooleanArray>emptyMap() : pausedWrites);
+    }
+
+    /**
+     * hand the (tag, property) pairs written by more than one binding over to the dispatcher as an immutable
+     * snapshot, if they changed. their writes are merged, see {@link RNWriteMerger}
+     * */
+    private void publishContendedWrites() {
+        Map<String, SparseBooleanArray> contendedWrites = mLifecycleTracker.pollContendedWrites();
+        if (contendedWrites == null) {
+            return;
+        }
+        mUpdateDispatcher.setContendedWrites(contendedWrites.isEmpty()
+                ? Collections.<String, SparseBooleanArray>emptyMap() : contendedWrites);
+        stepContendedRenderThreadBindings(contendedWrites);
+    }
+
+    /**
+     * contended writes are merged on the UI thread, RenderThread bindings writing them have to move there.
+     * */
+    private void stepContendedRenderThreadBindings(@NonNull Map<String, SparseBooleanArray> contendedWrites) {
+        if (contendedWrites.isEmpty()) {
+            return;
+        }
+        for (BindingLifecycleTracker.Record record : mLifecycleTracker.getAll()) {
+            if (record.renderThreadHandler == null) {
+                continue;
+            }
+            for (int i = 0; i < record.targetTags.length; i++) {
+                SparseBooleanArray tags = contendedWrites.get(record.targetProperties[i]);
+                if (tags != null && tags.get(record.targetTags[i])) {
+                    record.renderThreadHandler.stepOnUiThread();
+                    record.renderThreadHandler = null;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * evaluate expressions of scroll bindings created from now on on a dedicated thread.
+     * see {@link BindingXAsyncEvaluator}
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void setAsyncEvaluationEnabled(final boolean enabled) {
+        executeAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                if (enabled && mAsyncEvaluator == null) {
+                    mAsyncEvaluator = new BindingXAsyncEvaluator(mUpdateDispatcher);
+                    mUpdateDispatcher.setAsyncEvaluator(mAsyncEvaluator);
+                } else if (!enabled && mAsyncEvaluator != null) {
+                    // bindings created before go back to evaluating on the UI thread
+                    BindingXAsyncEvaluator evaluator = mAsyncEvaluator;
+                    mAsyncEvaluator = null;
+                    mUpdateDispatcher.setAsyncEvaluator(null);
+                    evaluator.quit();
                 }
             }
         });
     }
 
+    /**
+     * let scroll bindings created from now on follow the predicted fling trajectory.
+     * see {@link ScrollFlingPredictor}
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void setFlingPredictionEnabled(boolean enabled) {
+        isFlingPredictionEnabled = enabled;
+    }
+
+    /**
+     * compile the props of bindings created from now on instead of walking their expression trees on every
+     * update, on by default. see {@link CompiledBinding}
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void setExpressionCompilationEnabled(boolean enabled) {
+        isExpressionCompilationEnabled = enabled;
+    }
+
+    /**
+     * let timing bindings created from now on run on the RenderThread when they qualify, off by default since
+     * it goes through a hidden platform API (see {@link RenderThreadAnimators}). see {@link RenderThreadTimingPlan}
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void setRenderThreadTimingEnabled(boolean enabled) {
+        isRenderThreadTimingEnabled = enabled;
+    }
+
+    /**
+     * emit trace sections and counters of the binding pipeline. see {@link BindingXTrace}
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void setTracingEnabled(boolean enabled) {
+        BindingXTrace.setEnabled(enabled);
+    }
+
+    /**
+     * time in milliseconds BindingX may spend on the UI thread per frame before updates of bindings bound with
+     * {@code lowPriority: true} get thinned out, 0 (the default) disables it. level changes are reported
+     * through the {@code bindingx:degradation} event. see {@link BindingXFrameGovernor}
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void setFrameBudget(double budgetMillis) {
+        mFrameGovernor.setBudgetMillis(budgetMillis);
+    }
+
+    /**
+     * origins of the expressions whose parsed form is cached on native side. JS may bind those with
+     * their origin only. origins bound alone whose parsed form is gone meanwhile fail the bind, they are
+     * listed in {@code unresolved} of its result. see {@link BindingPlanCache}
+     * @param parserVersion version of bindingx-parser, plans of another version are dropped
+     * */
     @ReactMethod(isBlockingSynchronousMethod = true)
     @SuppressWarnings("unused")
-    public WritableMap getComputedStyle(int ref) {
-        prepareInternal();
-        PlatformManager.IDeviceResolutionTranslator resolutionTranslator = mPlatformManager.getResolutionTranslator();
+    public WritableArray getCachedExpressions(@Nullable String parserVersion) {
+        return Arguments.makeNativeArray(mPlanCache.getOrigins(parserVersion));
+    }
+
+    /**
+     * time spent releasing the bindings of the last destroyed context, and preparing the core of the current
+     * one, in milliseconds (-1 if it didn't happen yet). {@code warm} tells whether the core was reused.
+     * */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @SuppressWarnings("unused")
+    public WritableMap getReloadStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("releaseTime", mRuntime.getLastReleaseMillis());
+        stats.putDouble("rebuildTime", mRuntime.getLastRebuildMillis());
+        stats.putBoolean("warm", mRuntime.isLastRebuildWarm());
+        return stats;
+    }
+
+    /**
+     * number of bindings which are still alive on native side.
+     * */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @SuppressWarnings("unused")
+    public int getLiveBindingCount() {
+        return mLifecycleTracker.size();
+    }
+
+    private void releaseAllBindings() {
+        if (mBindingXCore != null) {
+            mBindingXCore.doRelease();
+        }
+        mLifecycleTracker.clear();
+        mUpdateDispatcher.setPausedWrites(Collections.<String, SparseBooleanArray>emptyMap());
+        mUpdateDispatcher.setContendedWrites(Collections.<String, SparseBooleanArray>emptyMap());
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mUpdateDispatcher.clear();
+            }
+        });
+    }
+
+    private void trackBinding(@Nullable String token, @NonNull RNBindingDescriptor descriptor,
+                              @NonNull BindingParams params) {
+        if (TextUtils.isEmpty(token)) {
+            mLifecycleTracker.removeTargets(descriptor.targetProperties, descriptor.targetConfigs);
+            return;
+        }
+        // drop whatever has been leaked since the last bind
+        releaseDroppedBindings();
+
         PlatformManager.IViewFinder viewFinder = mPlatformManager.getViewFinder();
-        View sourceView = viewFinder.findViewBy(String.valueOf(ref));
+        View anchor = TextUtils.isEmpty(descriptor.anchor) ? null : viewFinder.findViewBy(descriptor.anchor);
+
+        List<View> targets = new ArrayList<>(descriptor.targets.length);
+        for (RNBindingDescriptor.Target target : descriptor.targets) {
+            if (target.element == null) {
+                continue;
+            }
+            View view = viewFinder.findViewBy(target.element);
+            if (view != null) {
+                targets.add(view);
+            }
+        }
+        mLifecycleTracker.track(token,
+                descriptor.eventType,
+                descriptor.group,
+                descriptor.anchorTag,
+                anchor,
+                targets,
+                descriptor.targetTags,
+                descriptor.targetProperties,
+                descriptor.targetConfigs,
+                params.attached ? params : null);
+        publishContendedWrites();
+    }
+
+    private void releaseDroppedBindings() {
+        if (mBindingXCore == null) {
+            return;
+        }
+        List<BindingLifecycleTracker.Record> dropped = mLifecycleTracker.sweep();
+        for (BindingLifecycleTracker.Record record : dropped) {
+            LogProxy.d("auto unbind dropped binding. [" + record.token + "," + record.eventType + "]");
+        }
+        unbindRecords(dropped);
+    }
+
+    /**
+     * start capturing the raw input of all handlers. see {@link BindingXInputRecorder}
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void startInputRecording() {
+        mInputRecorder.start();
+    }
+
+    /**
+     * stop capturing and write the recording to the given file path.
+     * */
+    @ReactMethod
+    @SuppressWarnings("unused")
+    public void stopInputRecording(final String path) {
+        mInputRecorder.stop();
+        if (TextUtils.isEmpty(path)) {
+            return;
+        }
+        executeAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                OutputStream out = null;
+                try {
+                    out = new BufferedOutputStream(new FileOutputStream(path));
+                    mInputRecorder.writeTo(out);
+                    LogProxy.d("input recording saved. [" + mInputRecorder.getRecordCount() + " records," + path + "]");
+                } catch (IOException e) {
+                    LogProxy.e("failed to save input recording", e);
+                } finally {
+                    if (out != null) {
+                        try {
+                            out.close();
+                        } catch (IOException e) {
+                            //ignore
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @SuppressWarnings("unused")
+    public WritableMap getComputedStyle(int ref) {
+        // called on the JS thread, the core is left alone: it is only ever touched on the worker
+        if (isReleased) {
+            return Arguments.makeNativeMap(Collections.<String,Object>emptyMap());
+        }
+        PlatformManager.IDeviceResolutionTranslator resolutionTranslator = RESOLUTION_TRANSLATOR;
+        View sourceView = mViewFinder.findViewBy(String.valueOf(ref));
         if (sourceView == null) {
             return Arguments.makeNativeMap(Collections.<String,Object>emptyMap());
         }
@@ -247,7 +1085,10 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
     @ReactMethod(isBlockingSynchronousMethod = true)
     @SuppressWarnings("unused")
     public WritableArray supportFeatures() {
-        return Arguments.makeNativeArray(Arrays.asList("pan", "orientation", "timing", "scroll"));
+        return Arguments.makeNativeArray(Arrays.asList("pan", "orientation", "timing", "scroll",
+                BindingXPagerHandler.TYPE_PAGER, BindingXKeyboardHandler.TYPE_KEYBOARD,
+                BindingXAnimatedHandler.TYPE_ANIMATED,
+                BindingXPhysicsHandler.TYPE_SPRING, BindingXPhysicsHandler.TYPE_DECAY));
     }
 
     @Override
@@ -273,116 +1114,108 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
                     LogProxy.d("host paused");
                     mBindingXCore.onActivityPause();
                 }
+                mPlanCache.flush();
             }
         });
     }
 
     @Override
     public void onHostDestroy() {
-        // no-op
+        executeAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                LogProxy.d("host destroyed");
+                releaseAllBindings();
+            }
+        });
     }
 
     @NonNull
-    private static PlatformManager createPlatformManager(final ReactApplicationContext reactContext) {
-        return new PlatformManager.Builder()
-                .withViewFinder(new PlatformManager.IViewFinder() {
-                    @Nullable
-                    @Override
-                    public View findViewBy(String ref, Object... extension) {
-                        Activity host = reactContext.getCurrentActivity();
-                        if (host == null || TextUtils.isEmpty(ref)) {
-                            return null;
-                        }
-                        try {
-                            ref = ref.trim();
-                            double value = Double.valueOf(ref);
-                            return host.findViewById((int) value);
-                        } catch (NumberFormatException e) {
-                            LogProxy.e("number format error", e);
-                            return null;
-                        }
-                    }
-                })
-                .withViewUpdater(new PlatformManager.IViewUpdater() {
-                    @Override
-                    public void synchronouslyUpdateViewOnUIThread(@NonNull final View targetView,
-                                                                  @NonNull final String propertyName,
-                                                                  @NonNull final Object propertyValue,
-                                                                  @NonNull final PlatformManager.IDeviceResolutionTranslator translator,
-                                                                  @NonNull final Map<String, Object> config,
-                                                                  Object... extension) {
-                        String ref = null;
-                        if (extension != null && extension.length >= 1 && extension[0] instanceof String) {
-                            ref = (String) extension[0];
-                        }
-                        if (reactContext != null && !TextUtils.isEmpty(ref)) {
-                            int tag = -1;
-                            ref = ref.trim();
-                            try {
-                                double value = Double.valueOf(ref);
-                                tag = (int) value;
-                            } catch (Exception e) {
-                                //ignore
-                            }
-                            final int finalTag = tag;
-                            UIManagerModule module = reactContext.getNativeModule(UIManagerModule.class);
-                            if (module != null && tag != -1) {
-                                final UIImplementation implementation = module.getUIImplementation();
-                                if (implementation != null) {
-                                    UiThreadUtil.runOnUiThread(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            RNViewUpdateService.findUpdater(propertyName).update(
-                                                    finalTag,
-                                                    targetView,
-                                                    propertyValue,
-                                                    translator,
-                                                    config,
-                                                    implementation
-
-                                            );
-                                        }
-                                    });
-                                }
-                            }
-                        }
-                    }
-                })
-                .withDeviceResolutionTranslator(new PlatformManager.IDeviceResolutionTranslator() {
-                    @Override
-                    public double webToNative(double rawSize, Object... extension) {
-                        return rawSize;
-                    }
-
-                    @Override
-                    public double nativeToWeb(double rawSize, Object... extension) {
-                        return rawSize;
-                    }
-                })
-                .build();
+    private static PlatformManager.IViewFinder createViewFinder(final ReactApplicationContext reactContext,
+                                                                final BindingLifecycleTracker lifecycleTracker) {
+        return new PlatformManager.IViewFinder() {
+            @Nullable
+            @Override
+            public View findViewBy(String ref, Object... extension) {
+                Activity host = reactContext.getCurrentActivity();
+                if (host == null || TextUtils.isEmpty(ref)) {
+                    return null;
+                }
+                RNBindingDescriptor.TargetConfig slot = lifecycleTracker.findSlot(ref);
+                if (slot != null) {
+                    return host.findViewById(slot.tag);
+                }
+                try {
+                    ref = ref.trim();
+                    double value = Double.valueOf(ref);
+                    return host.findViewById((int) value);
+                } catch (NumberFormatException e) {
+                    LogProxy.e("number format error", e);
+                    return null;
+                }
+            }
+        };
     }
 
 
+    /**
+     * releases all bindings on the worker thread without waiting for it, the JS thread goes on tearing down
+     * the context. the worker thread and the core stay warm for the module of the next context, which can't
+     * prepare before they are given back as tasks run in order. see {@link BindingXRuntime}
+     * */
     @Override
     public void onCatalystInstanceDestroy() {
         super.onCatalystInstanceDestroy();
-        if (mWorkerThread != null) {
-            mWorkerThread.quit();
-            mWorkerThread = null;
+        isReleased = true;
+        final long start = System.nanoTime();
+        // tasks posted before run first
+        mRuntime.getWorkerThread().postRunnableGuarded(new Runnable() {
+            @Override
+            public void run() {
+                releaseAllBindings();
+                if (mBindingXCore != null) {
+                    // the creators hold on to this module, and through it to the dead context
+                    for (String type : EVENT_TYPES) {
+                        mBindingXCore.unregisterEventHandler(type);
+                    }
+                }
+                mBindingXCore = null;
+                mPlatformManager = null;
+                mRuntime.release(ReactBindingXModule.this);
+                mRuntime.clearAnimatedContext(getReactApplicationContext());
+                double millis = (System.nanoTime() - start) / 1e6;
+                mRuntime.reportRelease(millis);
+                LogProxy.d("bindings released in " + millis + "ms");
+            }
+        });
+        // not part of the release, the next module may prepare meanwhile
+        mRuntime.getWorkerThread().postRunnableGuarded(mFlushPlanCache);
+
+        BindingXAsyncEvaluator evaluator = mAsyncEvaluator;
+        mAsyncEvaluator = null;
+        mUpdateDispatcher.setAsyncEvaluator(null);
+        if (evaluator != null) {
+            evaluator.quit();
         }
     }
 
     private void executeAsynchronously(@Nullable final Runnable runnable) {
-        if (mWorkerThread == null) {
-            mWorkerThread = new InternalWorkerThread("bindingX-thread");
+        executeAsynchronouslyDelayed(runnable, 0);
+    }
+
+    private void executeAsynchronouslyDelayed(@Nullable final Runnable runnable, long delayMillis) {
+        // the worker outlives this module, nothing new is queued once it has been released
+        if (isReleased) {
+            return;
         }
-        mWorkerThread.postRunnableGuarded(runnable);
+        mRuntime.getWorkerThread().postRunnableGuardedDelayed(runnable, delayMillis);
     }
 
 
     static class InternalWorkerThread extends HandlerThread {
 
         private Handler mHandler;
+        private final AtomicInteger mQueueDepth = new AtomicInteger(0);
 
         /*package*/ InternalWorkerThread(String name) {
             super(name);
@@ -391,17 +1224,26 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
         }
 
         /*package*/ void postRunnableGuarded(final Runnable runnable) {
+            postRunnableGuardedDelayed(runnable, 0);
+        }
+
+        /*package*/ void postRunnableGuardedDelayed(final Runnable runnable, long delayMillis) {
             if (runnable != null && mHandler != null && isAlive()) {
-                mHandler.post(new Runnable() {
+                BindingXTrace.counter("BindingX.workerQueue", mQueueDepth.incrementAndGet());
+                mHandler.postDelayed(new Runnable() {
                     @Override
                     public void run() {
+                        BindingXTrace.counter("BindingX.workerQueue", mQueueDepth.decrementAndGet());
+                        boolean traced = BindingXTrace.beginSection("BindingX#worker");
                         try {
                             runnable.run();
                         } catch (Exception e) {
                             LogProxy.e("unexpected internal error", e);
+                        } finally {
+                            BindingXTrace.endSection(traced);
                         }
                     }
-                });
+                }, delayMillis);
             }
         }
 
@@ -410,6 +1252,7 @@ public final class ReactBindingXModule extends ReactContextBaseJavaModule implem
             if (mHandler != null) {
                 mHandler.removeCallbacksAndMessages(null);
             }
+            mQueueDepth.set(0);
             return super.quit();
         }
     }
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.animation.Animator;
+import android.animation.TimeInterpolator;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Description:
+ *
+ * Access to the platform's {@code android.view.RenderNodeAnimator}, the animator behind ripples and circular
+ * reveals. It animates a property of the view's RenderNode on the RenderThread, which keeps producing frames
+ * while the UI thread is blocked. {@link android.view.ViewPropertyAnimator} does not: it is stepped by the
+ * UI thread's Choreographer like any other {@link android.animation.ValueAnimator}.
+ *
+ * The class is hidden, everything here goes through reflection and reports itself unsupported when the
+ * internals don't match (or non-SDK interfaces are blocked). Since that can change with any release, apps
+ * opt in through {@link ReactBindingXModule#setRenderThreadTimingEnabled(boolean)}. Custom interpolators are baked into a lookup
+ * table by the platform before the animator is handed to the RenderThread.
+ *
+ * Animators are started and cancelled on the UI thread, on attached, hardware accelerated views only.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class RenderThreadAnimators {
+
+    private static final String ANIMATOR_CLASS = "android.view.RenderNodeAnimator";
+
+    private static boolean isResolved = false;
+    private static Constructor<?> sConstructor;
+    private static Method sSetTarget;
+    private static Method sSetStartValue;
+    // indexed by RenderThreadTimingPlan#CHANNEL_*
+    private static int[] sProperties;
+
+    private RenderThreadAnimators() {
+    }
+
+    static boolean isSupported() {
+        return resolve();
+    }
+
+    /**
+     * animate a channel of the view from {@code from} to {@code to}, the progress in between given by the
+     * interpolator.
+     * @return the started animator, or null if the view can't be animated on the RenderThread
+     * */
+    @Nullable
+    static Animator start(@NonNull View view, int channel, float from, float to, long duration,
+                          @NonNull TimeInterpolator interpolator) {
+        if(!resolve() || channel < 0 || channel >= sProperties.length
+                || !view.isHardwareAccelerated() || view.getWindowToken() == null) {
+            return null;
+        }
+        try {
+            Animator animator = (Animator) sConstructor.newInstance(sProperties[channel], to);
+            sSetStartValue.invoke(animator, from);
+            animator.setDuration(duration);
+            animator.setInterpolator(interpolator);
+            sSetTarget.invoke(animator, view);
+            animator.start();
+            return animator;
+        } catch (Exception e) {
+            LogProxy.e("failed to start RenderThread animation", e);
+            return null;
+        }
+    }
+
+    private static synchronized boolean resolve() {
+        if(isResolved) {
+            return sProperties != null;
+        }
+        isResolved = true;
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+        try {
+            Class<?> animatorClass = Class.forName(ANIMATOR_CLASS);
+            Constructor<?> constructor = animatorClass.getConstructor(int.class, float.class);
+            Method setTarget = animatorClass.getMethod("setTarget", View.class);
+            Method setStartValue = animatorClass.getMethod("setStartValue", float.class);
+            int[] properties = new int[RenderThreadTimingPlan.CHANNEL_ROTATION_Y + 1];
+            properties[RenderThreadTimingPlan.CHANNEL_ALPHA] = animatorClass.getField("ALPHA").getInt(null);
+            properties[RenderThreadTimingPlan.CHANNEL_TRANSLATION_X] = animatorClass.getField("TRANSLATION_X").getInt(null);
+            properties[RenderThreadTimingPlan.CHANNEL_TRANSLATION_Y] = animatorClass.getField("TRANSLATION_Y").getInt(null);
+            properties[RenderThreadTimingPlan.CHANNEL_SCALE_X] = animatorClass.getField("SCALE_X").getInt(null);
+            properties[RenderThreadTimingPlan.CHANNEL_SCALE_Y] = animatorClass.getField("SCALE_Y").getInt(null);
+            properties[RenderThreadTimingPlan.CHANNEL_ROTATION] = animatorClass.getField("ROTATION").getInt(null);
+            properties[RenderThreadTimingPlan.CHANNEL_ROTATION_X] = animatorClass.getField("ROTATION_X").getInt(null);
+            properties[RenderThreadTimingPlan.CHANNEL_ROTATION_Y] = animatorClass.getField("ROTATION_Y").getInt(null);
+            sConstructor = constructor;
+            sSetTarget = setTarget;
+            sSetStartValue = setStartValue;
+            sProperties = properties;
+            return true;
+        } catch (Throwable e) {
+            LogProxy.w("RenderThread animations are not available: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.alibaba.android.bindingx.core.internal.BindingXConstants;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Description:
+ *
+ * A timing binding sampled ahead of time, for bindings which can run on the RenderThread instead of being
+ * stepped on the UI thread. see {@link BindingXRenderThreadTimingHandler}. A binding qualifies if
+ * <pre>
+ *     - every prop targets a render-only property (opacity, translateX/Y, scale/X/Y, rotate/Z/X/Y) with the
+ *       updater BindingX ships for it, written in override blend mode
+ *     - no (tag, property) pair it writes is written by another prop or a live binding as well, such writes
+ *       are merged on the UI thread (see {@link RNWriteMerger})
+ *     - every prop expression and the exit expression only read {@code t}
+ *     - the exit expression turns true within {@link #MAX_DURATION_MILLIS}, which fixes the duration
+ *     - it has neither interceptors nor a group (which can be paused), and isn't recyclable
+ * </pre>
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class RenderThreadTimingPlan {
+
+    static final long MAX_DURATION_MILLIS = 30000;
+    // exit expressions other than t >= C are sampled a frame apart, then bisected
+    static final long EXIT_SEARCH_STEP_MILLIS = 16;
+    private static final long UNSOLVED = Long.MIN_VALUE;
+    // a bit finer than a frame, the platform samples the curve once more per frame
+    static final long SAMPLE_INTERVAL_MILLIS = 8;
+
+    static final int CHANNEL_ALPHA = 0;
+    static final int CHANNEL_TRANSLATION_X = 1;
+    static final int CHANNEL_TRANSLATION_Y = 2;
+    static final int CHANNEL_SCALE_X = 3;
+    static final int CHANNEL_SCALE_Y = 4;
+    static final int CHANNEL_ROTATION = 5;
+    static final int CHANNEL_ROTATION_X = 6;
+    static final int CHANNEL_ROTATION_Y = 7;
+
+    private static final String KEY_EXPRESSION = "expression";
+    private static final String KEY_EXIT_EXPRESSION = "exitExpression";
+    private static final String KEY_TRANSFORMED = "transformed";
+    private static final String KEY_CONFIG = "config";
+    private static final String KEY_INTERCEPTORS = "interceptors";
+    private static final String VARIABLE_TIME = "t";
+    private static final String KEY_TYPE = "type";
+    private static final String KEY_VALUE = "value";
+    private static final String KEY_CHILDREN = "children";
+    private static final String TYPE_IDENTIFIER = "Identifier";
+    private static final String TYPE_NUMERIC_LITERAL = "NumericLiteral";
+
+    private static final Map<String, int[]> sChannels = new HashMap<>();
+
+    static {
+        sChannels.put("opacity", new int[]{CHANNEL_ALPHA});
+        sChannels.put("transform.translateX", new int[]{CHANNEL_TRANSLATION_X});
+        sChannels.put("transform.translateY", new int[]{CHANNEL_TRANSLATION_Y});
+        sChannels.put("transform.scale", new int[]{CHANNEL_SCALE_X, CHANNEL_SCALE_Y});
+        sChannels.put("transform.scaleX", new int[]{CHANNEL_SCALE_X});
+        sChannels.put("transform.scaleY", new int[]{CHANNEL_SCALE_Y});
+        sChannels.put("transform.rotate", new int[]{CHANNEL_ROTATION});
+        sChannels.put("transform.rotateZ", new int[]{CHANNEL_ROTATION});
+        sChannels.put("transform.rotateX", new int[]{CHANNEL_ROTATION_X});
+        sChannels.put("transform.rotateY", new int[]{CHANNEL_ROTATION_Y});
+    }
+
+    final long duration;
+    @NonNull final Track[] tracks;
+
+    private RenderThreadTimingPlan(long duration, @NonNull Track[] tracks) {
+        this.duration = duration;
+        this.tracks = tracks;
+    }
+
+    /**
+     * one prop of the binding, its values sampled every {@link #SAMPLE_INTERVAL_MILLIS} up to and including
+     * the duration, in web units like the expressions yield them.
+     * */
+    static final class Track {
+        @NonNull final String element;
+        @NonNull final String property;
+        @NonNull final int[] channels;
+        @NonNull final RNBindingDescriptor.TargetConfig config;
+        @NonNull final double[] samples;
+
+        Track(@NonNull String element, @NonNull String property, @NonNull int[] channels,
+              @NonNull RNBindingDescriptor.TargetConfig config, @NonNull double[] samples) {
+            this.element = element;
+            this.property = property;
+            this.channels = channels;
+            this.config = config;
+            this.samples = samples;
+        }
+    }
+
+    /**
+     * @param tracker the live bindings, whose writes must not overlap those of the plan
+     * @return null if the binding has to be stepped on the UI thread
+     * */
+    @Nullable
+    static RenderThreadTimingPlan create(@NonNull RNBindingDescriptor descriptor,
+                                         @NonNull BindingLifecycleTracker tracker) {
+        Map<String, Object> options = descriptor.coreOptions;
+        Object props = options.get(BindingXConstants.KEY_PROPS);
+        if (!(props instanceof List) || ((List<?>) props).isEmpty() || descriptor.group != null
+                || options.get(KEY_INTERCEPTORS) != null) {
+            return null;
+        }
+        List<?> list = (List<?>) props;
+        String[] elements = new String[list.size()];
+        String[] properties = new String[list.size()];
+        RNBindingDescriptor.TargetConfig[] configs = new RNBindingDescriptor.TargetConfig[list.size()];
+        int[] outputs = new int[list.size()];
+        Set<String> written = new HashSet<>();
+
+        ExpressionProgram.Builder builder = new ExpressionProgram.Builder();
+        for (int i = 0; i < outputs.length; i++) {
+            if (!(list.get(i) instanceof Map)) {
+                return null;
+            }
+            Map<?, ?> prop = (Map<?, ?>) list.get(i);
+            Object element = prop.get(BindingXConstants.KEY_ELEMENT);
+            Object property = prop.get(BindingXConstants.KEY_PROPERTY);
+            Object config = prop.get(KEY_CONFIG);
+            if (element == null || !(property instanceof String) || !sChannels.containsKey(property)
+                    || !(config instanceof RNBindingDescriptor.TargetConfig)) {
+                return null;
+            }
+            RNBindingDescriptor.TargetConfig targetConfig = (RNBindingDescriptor.TargetConfig) config;
+            if (targetConfig.slot != null || targetConfig.blendMode != RNWriteMerger.BLEND_OVERRIDE
+                    || !RNViewUpdateService.isBuiltIn((String) property, targetConfig.updater)) {
+                return null;
+            }
+            if (!written.add(targetConfig.tag + ":" + property) || tracker.isWritten(targetConfig.tag, (String) property)) {
+                return null;
+            }
+            outputs[i] = builder.addNumber(transformedOf(prop.get(KEY_EXPRESSION)));
+            if (outputs[i] == -1) {
+                return null;
+            }
+            elements[i] = element.toString();
+            properties[i] = (String) property;
+            configs[i] = targetConfig;
+        }
+        Object exit = transformedOf(options.get(KEY_EXIT_EXPRESSION));
+        int exitOutput = builder.addCondition(exit);
+        if (exitOutput == -1) {
+            return null;
+        }
+        ExpressionProgram program = builder.build();
+        if (!program.readsOnly(VARIABLE_TIME)) {
+            return null;
+        }
+
+        long duration = findDuration(program, exitOutput, exit);
+        if (duration <= 0) {
+            return null;
+        }
+        double[][] samples = sample(program, outputs, duration);
+        Track[] tracks = new Track[outputs.length];
+        for (int i = 0; i < tracks.length; i++) {
+            tracks[i] = new Track(elements[i], properties[i], sChannels.get(properties[i]), configs[i], samples[i]);
+        }
+        return new RenderThreadTimingPlan(duration, tracks);
+    }
+
+    @Nullable
+    private static Object transformedOf(@Nullable Object expression) {
+        return expression instanceof Map ? ((Map<?, ?>) expression).get(KEY_TRANSFORMED) : null;
+    }
+
+    /**
+     * this runs on the worker thread while the JS thread waits for the bind, so it is solved directly for
+     * {@code t >= C} and alike, and looked up coarsely otherwise: sampled every {@link #EXIT_SEARCH_STEP_MILLIS}
+     * and bisected in the first step it turns true in. an exit which is true for less than a step only may
+     * be missed.
+     *
+     * @param exit the transformed exit expression the output was compiled from
+     * @return the first millisecond the exit expression is true at, or -1 if it isn't within
+     * {@link #MAX_DURATION_MILLIS}
+     * */
+    static long findDuration(@NonNull ExpressionProgram program, int exitOutput, @Nullable Object exit) {
+        long solved = solveTimeComparison(exit);
+        if (solved != UNSOLVED) {
+            return solved <= MAX_DURATION_MILLIS ? solved : -1;
+        }
+        long previous = -1;
+        for (long t = 0; ; t += EXIT_SEARCH_STEP_MILLIS) {
+            t = Math.min(t, MAX_DURATION_MILLIS);
+            if (isExited(program, exitOutput, t)) {
+                // false at previous (if any), true at t
+                long low = previous;
+                long high = t;
+                while (high - low > 1) {
+                    long middle = (low + high) >>> 1;
+                    if (isExited(program, exitOutput, middle)) {
+                        high = middle;
+                    } else {
+                        low = middle;
+                    }
+                }
+                return high;
+            }
+            if (t == MAX_DURATION_MILLIS) {
+                return -1;
+            }
+            previous = t;
+        }
+    }
+
+    private static boolean isExited(@NonNull ExpressionProgram program, int exitOutput, long t) {
+        program.run((double) t);
+        return program.valueOf(exitOutput) != 0;
+    }
+
+    /**
+     * @return the first millisecond {@code t >= C}, {@code t > C}, {@code C <= t} or {@code C < t} holds at,
+     * or {@link #UNSOLVED} if the expression is none of these
+     * */
+    private static long solveTimeComparison(@Nullable Object exit) {
+        if (!(exit instanceof Map)) {
+            return UNSOLVED;
+        }
+        Object type = ((Map<?, ?>) exit).get(KEY_TYPE);
+        Object children = ((Map<?, ?>) exit).get(KEY_CHILDREN);
+        if (!(type instanceof String) || !(children instanceof List) || ((List<?>) children).size() != 2) {
+            return UNSOLVED;
+        }
+        Object left = ((List<?>) children).get(0);
+        Object right = ((List<?>) children).get(1);
+        boolean inclusive;
+        double bound;
+        if (isTime(left) && !Double.isNaN(bound = literalOf(right))) {
+            if (">=".equals(type)) {
+                inclusive = true;
+            } else if (">".equals(type)) {
+                inclusive = false;
+            } else {
+                return UNSOLVED;
+            }
+        } else if (isTime(right) && !Double.isNaN(bound = literalOf(left))) {
+            if ("<=".equals(type)) {
+                inclusive = true;
+            } else if ("<".equals(type)) {
+                inclusive = false;
+            } else {
+                return UNSOLVED;
+            }
+        } else {
+            return UNSOLVED;
+        }
+        if (bound > MAX_DURATION_MILLIS) {
+            return MAX_DURATION_MILLIS + 1;
+        }
+        long first = inclusive ? (long) Math.ceil(bound) : (long) Math.floor(bound) + 1;
+        return Math.max(0, first);
+    }
+
+    private static boolean isTime(@Nullable Object node) {
+        return node instanceof Map && TYPE_IDENTIFIER.equals(((Map<?, ?>) node).get(KEY_TYPE))
+                && VARIABLE_TIME.equals(((Map<?, ?>) node).get(KEY_VALUE));
+    }
+
+    private static double literalOf(@Nullable Object node) {
+        if (node instanceof Map && TYPE_NUMERIC_LITERAL.equals(((Map<?, ?>) node).get(KEY_TYPE))) {
+            Object value = ((Map<?, ?>) node).get(KEY_VALUE);
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * @return the values of every output, sampled evenly from 0 to the duration
+     * */
+    @NonNull
+    static double[][] sample(@NonNull ExpressionProgram program, @NonNull int[] outputs, long duration) {
+        int count = (int) ((duration + SAMPLE_INTERVAL_MILLIS - 1) / SAMPLE_INTERVAL_MILLIS) + 1;
+        double[][] samples = new double[outputs.length][count];
+        for (int k = 0; k < count; k++) {
+            program.run((double) duration * k / (count - 1));
+            for (int i = 0; i < outputs.length; i++) {
+                samples[i][k] = program.valueOf(outputs[i]);
+            }
+        }
+        return samples;
+    }
+}
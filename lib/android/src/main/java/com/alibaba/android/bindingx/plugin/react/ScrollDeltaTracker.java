@@ -0,0 +1,108 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+/**
+ * Description:
+ *
+ * The per-frame math of scroll bindings: the delta since the last offset, and the delta since the last
+ * turning point (where the vertical direction changed).
+ *
+ * Runs on every scroll frame, must not allocate.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class ScrollDeltaTracker {
+
+    private int mContentOffsetX = 0;
+    private int mContentOffsetY = 0;
+
+    private int mTx = 0, mTy = 0; // 拐点
+    private int mLastDy = 0;
+
+    private int mDx, mDy;
+    private int mTdx, mTdy;
+    private boolean isTurning = false;
+    private boolean hasOffset = false;
+
+    /**
+     * @return false if the offset did not change, in which case nothing has to be evaluated
+     * */
+    boolean offer(int contentOffsetX, int contentOffsetY) {
+        if(contentOffsetX == mContentOffsetX && contentOffsetY == mContentOffsetY) {
+            return false;
+        }
+        mDx = contentOffsetX - mContentOffsetX;
+        mDy = contentOffsetY - mContentOffsetY;
+        mContentOffsetX = contentOffsetX;
+        mContentOffsetY = contentOffsetY;
+
+        isTurning = false;
+        if(!isSameDirection(mDy, mLastDy)) {// 发现拐点 只可能是纵向的
+            mTy = mContentOffsetY;
+            isTurning = true;
+        }
+        // 计算delta拐点
+        mTdx = mContentOffsetX - mTx;
+        mTdy = mContentOffsetY - mTy;
+        mLastDy = mDy;
+        hasOffset = true;
+        return true;
+    }
+
+    private static boolean isSameDirection(int currentValue, int lastValue) {
+        return (currentValue > 0 && lastValue > 0) || (currentValue < 0 && lastValue < 0);
+    }
+
+    int getContentOffsetX() {
+        return mContentOffsetX;
+    }
+
+    int getContentOffsetY() {
+        return mContentOffsetY;
+    }
+
+    int getDx() {
+        return mDx;
+    }
+
+    int getDy() {
+        return mDy;
+    }
+
+    int getTdx() {
+        return mTdx;
+    }
+
+    int getTdy() {
+        return mTdy;
+    }
+
+    /**
+     * @return true once an offset was accepted
+     * */
+    boolean hasOffset() {
+        return hasOffset;
+    }
+
+    /**
+     * @return true if the last offer changed the vertical direction
+     * */
+    boolean isTurning() {
+        return isTurning;
+    }
+}
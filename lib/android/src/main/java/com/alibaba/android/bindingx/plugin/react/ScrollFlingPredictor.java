@@ -0,0 +1,166 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Display;
+import android.view.View;
+import android.widget.OverScroller;
+import android.widget.ScrollView;
+
+import com.alibaba.android.bindingx.core.LogProxy;
+
+import java.lang.reflect.Field;
+
+/**
+ * Description:
+ *
+ * Reads the fling trajectory of a {@link ScrollView} from its internal {@link OverScroller}, so that
+ * bindings can be evaluated against where the content will be on the upcoming frame rather than where it
+ * was on the current one.
+ *
+ * The frame interval comes from the display the scroll view is attached to, 60Hz until it is known.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class ScrollFlingPredictor {
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private static Field sScrollerField;
+    private static boolean sScrollerFieldResolved = false;
+
+    private float mFrameIntervalSeconds = 1f / DEFAULT_REFRESH_RATE;
+    private boolean isRefreshRateResolved = false;
+
+    private boolean isFlinging = false;
+    private int mFinalX;
+    private int mFinalY;
+    private float mVelocity;
+    private boolean isFinalReported = false;
+
+    /**
+     * @return true if the scroll view is flinging. in which case {@link #getFinalX()}, {@link #getFinalY()}
+     * and {@link #predictNextFrame(int, int)} are meaningful.
+     * */
+    boolean update(@NonNull ScrollView scrollView) {
+        if(!isRefreshRateResolved) {
+            resolveRefreshRate(scrollView);
+        }
+        OverScroller scroller = getScroller(scrollView);
+        if(scroller == null || scroller.isFinished()) {
+            return update(false, 0, 0, 0);
+        }
+        return update(true, scroller.getFinalX(), scroller.getFinalY(), scroller.getCurrVelocity());
+    }
+
+    /*package*/ boolean update(boolean flinging, int finalX, int finalY, float velocity) {
+        if(!flinging) {
+            isFlinging = false;
+            isFinalReported = false;
+            return false;
+        }
+        if(isFinalReported && (finalX != mFinalX || finalY != mFinalY)) {
+            isFinalReported = false;
+        }
+        isFlinging = true;
+        mFinalX = finalX;
+        mFinalY = finalY;
+        mVelocity = velocity;
+        return true;
+    }
+
+    /**
+     * @return true once per fling and again whenever its final offset changes, that's when
+     * {@link BindingXScrollHandler#STATE_SCROLL_END} is fired.
+     * */
+    boolean takeFinalChange() {
+        if(!isFlinging || isFinalReported) {
+            return false;
+        }
+        isFinalReported = true;
+        return true;
+    }
+
+    boolean isFlinging() {
+        return isFlinging;
+    }
+
+    int getFinalX() {
+        return mFinalX;
+    }
+
+    int getFinalY() {
+        return mFinalY;
+    }
+
+    /**
+     * extrapolate the offset on the given axis one frame ahead, never overshooting the final offset.
+     * */
+    int predictNextFrame(int current, int finalOffset) {
+        if(!isFlinging || current == finalOffset) {
+            return current;
+        }
+        int step = Math.round(mVelocity * mFrameIntervalSeconds);
+        if(finalOffset > current) {
+            return Math.min(current + step, finalOffset);
+        } else {
+            return Math.max(current - step, finalOffset);
+        }
+    }
+
+    private void resolveRefreshRate(@NonNull View view) {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            isRefreshRateResolved = true;
+            return;
+        }
+        // null until the view is attached
+        Display display = view.getDisplay();
+        if(display == null) {
+            return;
+        }
+        isRefreshRateResolved = true;
+        if(display.getRefreshRate() > 1f) {
+            mFrameIntervalSeconds = 1f / display.getRefreshRate();
+        }
+    }
+
+    @Nullable
+    private static OverScroller getScroller(@NonNull ScrollView scrollView) {
+        if(!sScrollerFieldResolved) {
+            sScrollerFieldResolved = true;
+            try {
+                Field field = ScrollView.class.getDeclaredField("mScroller");
+                field.setAccessible(true);
+                sScrollerField = field;
+            } catch (Exception e) {
+                LogProxy.e("fling prediction is not available", e);
+            }
+        }
+        if(sScrollerField == null) {
+            return null;
+        }
+        try {
+            Object scroller = sScrollerField.get(scrollView);
+            return scroller instanceof OverScroller ? (OverScroller) scroller : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.uimanager.UIImplementation;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description:
+ *
+ * Lock-free triple buffer of view updates between a single writing thread and a single reading thread, used by
+ * {@link BindingXAsyncEvaluator}. The writer fills its buffer and publishes it, the reader picks up the latest
+ * published one. A snapshot the reader skipped is merged in front of the next one, so the latest value of every
+ * property is never lost and updates are applied in the order they were written.
+ *
+ * Created by rowandjj(chuyi)<br/>
+ */
+
+final class UpdateTripleBuffer {
+
+    private static final int DIRTY = 0x4;
+    private static final int INDEX_MASK = 0x3;
+
+    private final UpdateBuffer[] mBuffers = {new UpdateBuffer(), new UpdateBuffer(), new UpdateBuffer()};
+    // index of the published buffer, or'ed with DIRTY if the reader has not picked it up yet
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+    private int mWriteIndex = 0; // writer only
+    private int mReadIndex = 2; // reader only
+
+    /**
+     * writer only.
+     * */
+    void write(int tag,
+               @NonNull View targetView,
+               @NonNull String propertyName,
+               @NonNull Object propertyValue,
+               @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+               @NonNull Map<String, Object> config,
+               @NonNull UIImplementation implementation) {
+        mBuffers[mWriteIndex].add(tag, targetView, propertyName, propertyValue, translator, config, implementation);
+    }
+
+    /**
+     * writer only.
+     * @return false if nothing has been written since the last publish
+     * */
+    boolean publish() {
+        UpdateBuffer written = mBuffers[mWriteIndex];
+        if(written.size == 0) {
+            return false;
+        }
+        int previous = mMiddle.getAndSet(mWriteIndex | DIRTY);
+        mWriteIndex = previous & INDEX_MASK;
+        if((previous & DIRTY) != 0) {
+            // the reader skipped the previous snapshot. republish it merged with the current one.
+            UpdateBuffer merged = mBuffers[mWriteIndex];
+            merged.addAll(written);
+            previous = mMiddle.getAndSet(mWriteIndex | DIRTY);
+            mWriteIndex = previous & INDEX_MASK;
+        }
+        mBuffers[mWriteIndex].clear();
+        return true;
+    }
+
+    /**
+     * reader only. applies the latest published snapshot, if the reader has not seen it yet.
+     * */
+    void applyLatest(@NonNull BindingXAsyncEvaluator.UpdateApplier applier) {
+        if((mMiddle.get() & DIRTY) == 0) {
+            return;
+        }
+        int previous = mMiddle.getAndSet(mReadIndex);
+        mReadIndex = previous & INDEX_MASK;
+
+        UpdateBuffer buffer = mBuffers[mReadIndex];
+        for(int i = 0; i < buffer.size; i++) {
+            Entry e = buffer.entries[i];
+            applier.apply(e.tag, e.view, e.property, e.value, e.translator, e.config, e.implementation);
+        }
+    }
+
+    private static final class Entry {
+        int tag;
+        View view;
+        String property;
+        Object value;
+        PlatformManager.IDeviceResolutionTranslator translator;
+        Map<String, Object> config;
+        UIImplementation implementation;
+    }
+
+    private static final class UpdateBuffer {
+        Entry[] entries = new Entry[16];
+        int size = 0;
+
+        void add(int tag, View view, String property, Object value,
+                 PlatformManager.IDeviceResolutionTranslator translator,
+                 Map<String, Object> config, UIImplementation implementation) {
+            if(size == entries.length) {
+                Entry[] grown = new Entry[size << 1];
+                System.arraycopy(entries, 0, grown, 0, size);
+                entries = grown;
+            }
+            Entry e = entries[size];
+            if(e == null) {
+                e = new Entry();
+                entries[size] = e;
+            }
+            e.tag = tag;
+            e.view = view;
+            e.property = property;
+            e.value = value;
+            e.translator = translator;
+            e.config = config;
+            e.implementation = implementation;
+            size++;
+        }
+
+        void addAll(UpdateBuffer other) {
+            for(int i = 0; i < other.size; i++) {
+                Entry e = other.entries[i];
+                add(e.tag, e.view, e.property, e.value, e.translator, e.config, e.implementation);
+            }
+        }
+
+        void clear() {
+            for(int i = 0; i < size; i++) {
+                Entry e = entries[i];
+                e.view = null;
+                e.value = null;
+                e.config = null;
+            }
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.BindingXCore;
+import com.alibaba.android.bindingx.core.IEventHandler;
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.alibaba.android.bindingx.core.internal.AbstractEventHandler;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class BindingLifecycleTrackerTest {
+
+    private static final String TYPE_TEST = "test";
+
+    private final List<Map<String, Object>> mConfigs = new ArrayList<>();
+    private final List<String> mRefs = new ArrayList<>();
+    // views react dropped the tags of
+    private final List<View> mDroppedViews = new ArrayList<>();
+    private BindingLifecycleTracker mTracker;
+    private BindingXCore mCore;
+
+    @Before
+    public void setUp() {
+        mTracker = new BindingLifecycleTracker(new BindingLifecycleTracker.OnViewDetachedListener() {
+            @Override
+            public void onViewDetached() {
+            }
+
+            @Override
+            public boolean isViewDropped(View view) {
+                return mDroppedViews.contains(view);
+            }
+        });
+        final View view = new View(null);
+        PlatformManager platformManager = new PlatformManager.Builder()
+                .withViewFinder(new PlatformManager.IViewFinder() {
+                    @Override
+                    public View findViewBy(String ref, Object... extension) {
+                        return view;
+                    }
+                })
+                .withViewUpdater(new PlatformManager.IViewUpdater() {
+                    @Override
+                    public void synchronouslyUpdateViewOnUIThread(@NonNull View targetView,
+                                                                  @NonNull String propertyName,
+                                                                  @NonNull Object propertyValue,
+                                                                  @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                                                                  @NonNull Map<String, Object> config,
+                                                                  Object... extension) {
+                        mConfigs.add(config);
+                        mRefs.add((String) extension[0]);
+                    }
+                })
+                .build();
+        mCore = new BindingXCore(platformManager);
+        mCore.registerEventHandler(TYPE_TEST, new BindingXCore.ObjectCreator<IEventHandler, Context, PlatformManager>() {
+            @Override
+            public IEventHandler createWith(@NonNull Context context, @NonNull PlatformManager manager, Object... extension) {
+                return new EvaluateOnStartHandler(context, manager, extension);
+            }
+        });
+    }
+
+    @Test
+    public void resolvesTheConfigsCopiedByTheCore() throws Exception {
+        RNBindingDescriptor blended = bind(binding("12", false, 2, "add"));
+        RNBindingDescriptor recycled = bind(binding("13", true, 1, null));
+        assertEquals(2, mConfigs.size());
+
+        // what the core hands back went through JSONObject, the options on the originals are gone
+        assertFalse(mConfigs.get(0) instanceof RNBindingDescriptor.TargetConfig);
+        RNBindingDescriptor.TargetConfig target = mTracker.findTarget(mConfigs.get(0), mRefs.get(0), "opacity");
+        assertSame(blended.targetConfigs[0], target);
+        assertEquals(2, target.priority);
+        assertEquals(RNWriteMerger.BLEND_ADD, target.blendMode);
+
+        // recyclable targets are known to the core by their slot only
+        assertEquals(recycled.targetConfigs[0].slot, mRefs.get(1));
+        target = mTracker.findTarget(mConfigs.get(1), mRefs.get(1), "opacity");
+        assertSame(recycled.targetConfigs[0], target);
+        assertEquals(13, target.tag);
+
+        // configs without an id fall back to the element and the property
+        Map<String, Object> noId = Collections.emptyMap();
+        assertSame(blended.targetConfigs[0], mTracker.findTarget(noId, "12", "opacity"));
+        assertSame(recycled.targetConfigs[0], mTracker.findTarget(noId, mRefs.get(1), "opacity"));
+        assertNull(mTracker.findTarget(noId, "12", "transform.translateX"));
+
+        mTracker.removeTargets(blended.targetProperties, blended.targetConfigs);
+        assertNull(mTracker.findTarget(mConfigs.get(0), mRefs.get(0), "opacity"));
+        assertNull(mTracker.findTarget(noId, "12", "opacity"));
+    }
+
+    @Test
+    public void keepsBindingsOfViewsDetachedForAWhile() throws Exception {
+        // views of this test are never attached
+        View parked = new View(null);
+        View dropped = new View(null);
+        mDroppedViews.add(dropped);
+        RNBindingDescriptor descriptor = RNBindingDescriptor.decode(binding("12", false, 0, null));
+        mTracker.track("parked", TYPE_TEST, null, 1, parked, Collections.<View>emptyList(),
+                descriptor.targetTags, descriptor.targetProperties, descriptor.targetConfigs, null);
+        mTracker.track("dropped", TYPE_TEST, null, 2, dropped, Collections.<View>emptyList(),
+                descriptor.targetTags, descriptor.targetProperties, descriptor.targetConfigs, null);
+
+        List<BindingLifecycleTracker.Record> swept = mTracker.sweep();
+        assertEquals(1, swept.size());
+        assertEquals("dropped", swept.get(0).token);
+        assertEquals(1, mTracker.size());
+    }
+
+    private RNBindingDescriptor bind(JavaOnlyMap params) {
+        RNBindingDescriptor descriptor = RNBindingDescriptor.decode(params);
+        mTracker.addTargets(descriptor.targetProperties, descriptor.targetConfigs);
+        mCore.doBind(null, null, descriptor.coreOptions, new BindingXCore.JavaScriptCallback() {
+            @Override
+            public void callback(Object params) {
+            }
+        });
+        return descriptor;
+    }
+
+    private static JavaOnlyMap binding(String element, boolean recyclable, int priority, String blend) {
+        JavaOnlyMap transformed = new JavaOnlyMap();
+        transformed.putString("type", "NumericLiteral");
+        transformed.putDouble("value", 1);
+        JavaOnlyMap expression = new JavaOnlyMap();
+        expression.putMap("transformed", transformed);
+        JavaOnlyMap config = new JavaOnlyMap();
+        config.putString("perspective", "100");
+        JavaOnlyMap prop = new JavaOnlyMap();
+        prop.putString("element", element);
+        prop.putString("property", "opacity");
+        prop.putMap("expression", expression);
+        prop.putMap("config", config);
+        JavaOnlyArray props = new JavaOnlyArray();
+        props.pushMap(prop);
+
+        JavaOnlyMap params = new JavaOnlyMap();
+        params.putString("eventType", TYPE_TEST);
+        params.putArray("props", props);
+        params.putBoolean("recyclable", recyclable);
+        params.putInt("priority", priority);
+        if (blend != null) {
+            params.putString("blend", blend);
+        }
+        return params;
+    }
+
+    // evaluates its expressions once, right when started
+    private static final class EvaluateOnStartHandler extends AbstractEventHandler {
+
+        EvaluateOnStartHandler(Context context, PlatformManager manager, Object... extension) {
+            super(context, manager, extension);
+        }
+
+        @Override
+        public boolean onCreate(@NonNull String sourceRef, @NonNull String eventType) {
+            return true;
+        }
+
+        @Override
+        public void onStart(@NonNull String sourceRef, @NonNull String eventType) {
+            try {
+                consumeExpression(mExpressionHoldersMap, new HashMap<String, Object>(), eventType);
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean onDisable(@NonNull String sourceRef, @NonNull String eventType) {
+            return true;
+        }
+
+        @Override
+        public void onActivityPause() {
+        }
+
+        @Override
+        public void onActivityResume() {
+        }
+
+        @Override
+        protected void onExit(@NonNull Map<String, Object> scope) {
+        }
+
+        @Override
+        protected void onUserIntercept(String interceptor, @NonNull Map<String, Object> result,
+                                       @NonNull Map<String, Object> scope) {
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BindingParamsTest {
+
+    @Test
+    public void appliesBindTimeParamsOnce() throws Exception {
+        BindingParams params = new BindingParams(Collections.<String, Object>singletonMap("top", 120d));
+        Map<String, Object> scope = new HashMap<>();
+        params.applyTo(scope);
+        assertEquals(120d, scope.get("top"));
+
+        scope.put("top", 0d);
+        params.applyTo(scope);
+        assertEquals(0d, scope.get("top"));
+    }
+
+    @Test
+    public void mergesPostsUntilApplied() throws Exception {
+        BindingParams params = new BindingParams(null);
+        Map<String, Object> scope = new HashMap<>();
+        params.applyTo(scope);
+        assertTrue(scope.isEmpty());
+
+        params.post(Collections.<String, Object>singletonMap("top", 120d));
+        params.post(Collections.<String, Object>singletonMap("height", 80d));
+        params.post(Collections.<String, Object>singletonMap("top", 480d));
+        params.applyTo(scope);
+        assertEquals(480d, scope.get("top"));
+        assertEquals(80d, scope.get("height"));
+    }
+
+    @Test
+    public void reevaluatesWithThePostedParams() throws Exception {
+        final BindingParams params = new BindingParams(null);
+        final Map<String, Object> scope = new HashMap<>();
+        params.requestReevaluation();
+
+        params.setReevaluation(new Runnable() {
+            @Override
+            public void run() {
+                params.applyTo(scope);
+            }
+        });
+        params.post(Collections.<String, Object>singletonMap("top", 480d));
+        params.requestReevaluation();
+        assertEquals(480d, scope.get("top"));
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BindingPlanCacheTest {
+
+    private static final String ORIGIN = "x+1";
+    private static final String CORE = "1.0.5";
+    private static final String PARSER = "0.0.2";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void resolvesOriginsAcrossLaunches() throws Exception {
+        File file = new File(mFolder.getRoot(), "plans.bin");
+        BindingPlanCache cache = new BindingPlanCache(file, CORE);
+        cache.getOrigins(PARSER);
+        List<String> unresolved = new ArrayList<>();
+        assertTrue(cache.resolve(options(ORIGIN, transformed()), unresolved));
+        assertFalse(cache.resolve(options(ORIGIN, transformed()), unresolved));
+        cache.flush();
+
+        cache = new BindingPlanCache(file, CORE);
+        assertEquals(Collections.singletonList(ORIGIN), cache.getOrigins(PARSER));
+        Map<String, Object> options = options(ORIGIN, null);
+        assertFalse(cache.resolve(options, unresolved));
+        assertTrue(unresolved.isEmpty());
+        assertEquals(transformed(), expressionOf(options).get("transformed"));
+    }
+
+    @Test
+    public void reportsOriginsWithoutPlan() throws Exception {
+        BindingPlanCache cache = new BindingPlanCache(new File(mFolder.getRoot(), "plans.bin"), CORE);
+        cache.getOrigins(PARSER);
+        List<String> unresolved = new ArrayList<>();
+        Map<String, Object> options = options(ORIGIN, null);
+        assertFalse(cache.resolve(options, unresolved));
+        assertEquals(Collections.singletonList(ORIGIN), unresolved);
+        assertNull(expressionOf(options).get("transformed"));
+    }
+
+    @Test
+    public void dropsEntriesWithCorruptedPlans() throws Exception {
+        File file = new File(mFolder.getRoot(), "plans.bin");
+        BindingPlanCache cache = new BindingPlanCache(file, CORE);
+        cache.getOrigins(PARSER);
+        cache.resolve(options(ORIGIN, transformed()), new ArrayList<String>());
+        cache.flush();
+
+        // the last byte belongs to the transformed JSON of the only entry
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.seek(raw.length() - 1);
+            raw.writeByte(']');
+        } finally {
+            raw.close();
+        }
+
+        cache = new BindingPlanCache(file, CORE);
+        assertTrue(cache.getOrigins(PARSER).isEmpty());
+        List<String> unresolved = new ArrayList<>();
+        cache.resolve(options(ORIGIN, null), unresolved);
+        assertEquals(Collections.singletonList(ORIGIN), unresolved);
+    }
+
+    @Test
+    public void dropsPlansOfAnotherParserOrCore() throws Exception {
+        File file = new File(mFolder.getRoot(), "plans.bin");
+        BindingPlanCache cache = new BindingPlanCache(file, CORE);
+        cache.getOrigins(PARSER);
+        cache.resolve(options(ORIGIN, transformed()), new ArrayList<String>());
+        cache.flush();
+
+        assertEquals(Collections.singletonList(ORIGIN), new BindingPlanCache(file, CORE).getOrigins(PARSER));
+        assertTrue(new BindingPlanCache(file, "1.0.6").getOrigins(PARSER).isEmpty());
+
+        cache = new BindingPlanCache(file, CORE);
+        assertTrue(cache.getOrigins("0.0.3").isEmpty());
+        cache.flush();
+        assertTrue(new BindingPlanCache(file, CORE).getOrigins(PARSER).isEmpty());
+    }
+
+    @Test
+    public void usesNoPlanBeforeTheParserIsKnown() throws Exception {
+        File file = new File(mFolder.getRoot(), "plans.bin");
+        BindingPlanCache cache = new BindingPlanCache(file, CORE);
+        cache.getOrigins(PARSER);
+        cache.resolve(options(ORIGIN, transformed()), new ArrayList<String>());
+        cache.flush();
+
+        cache = new BindingPlanCache(file, CORE);
+        List<String> unresolved = new ArrayList<>();
+        assertFalse(cache.resolve(options(ORIGIN, null), unresolved));
+        assertEquals(Collections.singletonList(ORIGIN), unresolved);
+        assertFalse(cache.resolve(options(ORIGIN, transformed()), unresolved));
+    }
+
+    @Test
+    public void decodesEachPlanOnce() throws Exception {
+        File file = new File(mFolder.getRoot(), "plans.bin");
+        BindingPlanCache cache = new BindingPlanCache(file, CORE);
+        cache.getOrigins(PARSER);
+        cache.resolve(options(ORIGIN, transformed()), new ArrayList<String>());
+
+        Map<String, Object> first = options(ORIGIN, null);
+        Map<String, Object> second = options(ORIGIN, null);
+        cache.resolve(first, new ArrayList<String>());
+        cache.resolve(second, new ArrayList<String>());
+        assertEquals(transformed(), expressionOf(first).get("transformed"));
+        assertSame(expressionOf(first).get("transformed"), expressionOf(second).get("transformed"));
+    }
+
+    private static Map<String, Object> transformed() {
+        Map<String, Object> x = new HashMap<>();
+        x.put("type", "Identifier");
+        x.put("value", "x");
+        Map<String, Object> one = new HashMap<>();
+        one.put("type", "NumericLiteral");
+        one.put("value", 1d);
+        List<Object> children = new ArrayList<>();
+        children.add(x);
+        children.add(one);
+        Map<String, Object> transformed = new HashMap<>();
+        transformed.put("type", "+");
+        transformed.put("children", children);
+        return transformed;
+    }
+
+    private static Map<String, Object> options(String origin, Map<String, Object> transformed) {
+        Map<String, Object> expression = new HashMap<>();
+        expression.put("origin", origin);
+        if (transformed != null) {
+            expression.put("transformed", transformed);
+        }
+        Map<String, Object> prop = new HashMap<>();
+        prop.put("element", "12");
+        prop.put("property", "opacity");
+        prop.put("expression", expression);
+        List<Object> props = new ArrayList<>();
+        props.add(prop);
+        Map<String, Object> options = new HashMap<>();
+        options.put("eventType", "pan");
+        options.put("props", props);
+        return options;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> expressionOf(Map<String, Object> options) {
+        Map<String, Object> prop = (Map<String, Object>) ((List<Object>) options.get("props")).get(0);
+        return (Map<String, Object>) prop.get("expression");
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BindingXFrameGovernorTest {
+
+    private static final long FRAME_MILLIS = 16;
+    private static final long MILLIS = 1000000;
+
+    private final List<Integer> mLevels = new ArrayList<>();
+    private final BindingXFrameGovernor mGovernor = new BindingXFrameGovernor(new BindingXFrameGovernor.Listener() {
+        @Override
+        public void onLevelChanged(int level, double frameCostMillis, double budgetMillis) {
+            mLevels.add(level);
+        }
+    });
+    private long mFrameTime = 0;
+
+    @Test
+    public void degradesStepByStepWhileOverBudget() throws Exception {
+        mGovernor.setBudgetMillis(4);
+        runFrames(200, 10 * MILLIS);
+        assertEquals(Arrays.asList(1, 2, 3), mLevels);
+        assertEquals(BindingXFrameGovernor.MAX_LEVEL, mGovernor.getLevel());
+    }
+
+    @Test
+    public void waitsForTheCooldownBetweenLevels() throws Exception {
+        mGovernor.setBudgetMillis(4);
+        runFrames(25, 10 * MILLIS);
+        assertEquals(0, mGovernor.getLevel());
+        runFrames(10, 10 * MILLIS);
+        assertEquals(1, mGovernor.getLevel());
+        runFrames(25, 10 * MILLIS);
+        assertEquals(1, mGovernor.getLevel());
+    }
+
+    @Test
+    public void letsOneFrameOutOfTwoToTheLevelThrough() throws Exception {
+        mGovernor.setBudgetMillis(4);
+        assertFalse(mGovernor.shouldDefer(mFrameTime));
+        int level = 0;
+        while (level < BindingXFrameGovernor.MAX_LEVEL) {
+            runFrames(1, 10 * MILLIS);
+            if (mGovernor.getLevel() == level) {
+                continue;
+            }
+            level = mGovernor.getLevel();
+            int period = 1 << level;
+            int written = -1;
+            for (int i = 0; i < period * 4; i++) {
+                long frameTime = nextFrame();
+                // asked several times per frame, the answer doesn't change within a frame
+                boolean deferred = mGovernor.shouldDefer(frameTime);
+                assertEquals(deferred, mGovernor.shouldDefer(frameTime));
+                if (!deferred) {
+                    if (written >= 0) {
+                        assertEquals("frames between writes at level " + level, period, i - written);
+                    }
+                    written = i;
+                }
+                mGovernor.account(frameTime, 10 * MILLIS);
+            }
+            assertTrue(written >= 0);
+        }
+    }
+
+    @Test
+    public void recoversOnceThereIsHeadroom() throws Exception {
+        mGovernor.setBudgetMillis(4);
+        runFrames(200, 10 * MILLIS);
+        runFrames(200, MILLIS);
+        assertEquals(Arrays.asList(1, 2, 3, 2, 1, 0), mLevels);
+        assertFalse(mGovernor.shouldDefer(nextFrame()));
+    }
+
+    @Test
+    public void goesBackToFullRateWhenDisabled() throws Exception {
+        mGovernor.setBudgetMillis(4);
+        runFrames(200, 10 * MILLIS);
+        mGovernor.setBudgetMillis(0);
+        runFrames(2, 10 * MILLIS);
+        assertEquals(0, mGovernor.getLevel());
+        assertEquals(0, mGovernor.begin());
+    }
+
+    private void runFrames(int count, long costNanos) {
+        for (int i = 0; i < count; i++) {
+            mGovernor.account(nextFrame(), costNanos);
+        }
+    }
+
+    private long nextFrame() {
+        mFrameTime += FRAME_MILLIS;
+        return mFrameTime;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.BindingXEventType;
+import com.alibaba.android.bindingx.core.PlatformManager;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class BindingXInputReplayerTest {
+
+    @Test
+    public void replayRecordedStream() throws Exception {
+        BindingXInputRecorder recorder = new BindingXInputRecorder();
+        recorder.start();
+        recorder.recordAt(BindingXInputRecorder.TYPE_SCROLL, 0, 10, 0, 1000000L);
+        recorder.recordAt(BindingXInputRecorder.TYPE_SCROLL, 0, 25, 0, 17000000L);
+        recorder.recordAt((byte) 99, 1, 2, 3, 33000000L);
+        recorder.stop();
+        recorder.recordAt(BindingXInputRecorder.TYPE_SCROLL, 0, 40, 0, 49000000L);
+
+        assertEquals(3, recorder.getRecordCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.writeTo(out);
+        assertEquals(BindingXInputRecorder.HEADER_SIZE + 3 * BindingXInputRecorder.RECORD_SIZE, out.size());
+
+        final List<Integer> received = new ArrayList<>();
+        BindingXInputReplayer replayer = new BindingXInputReplayer(null);
+        replayer.setSink(BindingXInputRecorder.TYPE_SCROLL, new BindingXInputReplayer.InputSink() {
+            @Override
+            public void onInput(int a, int b, int c) {
+                received.add(b);
+            }
+        });
+
+        BindingXInputReplayer.Report report = replayer.replay(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, report.frames);
+        assertEquals(1, report.skippedRecords);
+        assertEquals(32000, report.recordedDurationMicros);
+        assertEquals(10, (int) received.get(0));
+        assertEquals(25, (int) received.get(1));
+    }
+
+    @Test
+    public void replayThroughScrollHandler() throws Exception {
+        final List<Object> written = new ArrayList<>();
+        BindingXInputReplayer.CountingViewUpdater counter = new BindingXInputReplayer.CountingViewUpdater(
+                new PlatformManager.IViewUpdater() {
+                    @Override
+                    public void synchronouslyUpdateViewOnUIThread(@NonNull View targetView,
+                                                                  @NonNull String propertyName,
+                                                                  @NonNull Object propertyValue,
+                                                                  @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                                                                  @NonNull Map<String, Object> config,
+                                                                  Object... extension) {
+                        written.add(propertyValue);
+                    }
+                });
+        final View view = new View(null);
+        PlatformManager manager = new PlatformManager.Builder()
+                .withViewFinder(new PlatformManager.IViewFinder() {
+                    @Override
+                    public View findViewBy(String ref, Object... extension) {
+                        return view;
+                    }
+                })
+                .withViewUpdater(counter)
+                .withDeviceResolutionTranslator(new PlatformManager.IDeviceResolutionTranslator() {
+                    @Override
+                    public double webToNative(double rawSize, Object... extension) {
+                        return rawSize;
+                    }
+
+                    @Override
+                    public double nativeToWeb(double rawSize, Object... extension) {
+                        return rawSize;
+                    }
+                })
+                .build();
+        BindingXScrollHandler handler = new BindingXScrollHandler(null, manager);
+        handler.onBindExpression(BindingXEventType.TYPE_SCROLL, null, null,
+                Collections.singletonList(prop("translationY", "y")), null);
+
+        BindingXInputRecorder recorder = new BindingXInputRecorder();
+        recorder.start();
+        recorder.recordAt(BindingXInputRecorder.TYPE_SCROLL, 0, 10, 0, 1000000L);
+        recorder.recordAt(BindingXInputRecorder.TYPE_SCROLL, 0, 10, 0, 17000000L);
+        recorder.recordAt(BindingXInputRecorder.TYPE_SCROLL, 0, 40, 0, 33000000L);
+        recorder.stop();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.writeTo(out);
+
+        BindingXInputReplayer replayer = new BindingXInputReplayer(counter);
+        replayer.setScrollTarget(handler);
+        BindingXInputReplayer.Report report = replayer.replay(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(3, report.frames);
+        // the offset did not change on the second frame, nothing is evaluated
+        assertEquals(2, report.totalUpdates);
+        assertEquals(1, report.maxUpdates);
+        assertEquals(10d, written.get(0));
+        assertEquals(40d, written.get(1));
+    }
+
+    private static Map<String, Object> prop(String property, String variable) {
+        Map<String, Object> transformed = new HashMap<>();
+        transformed.put("type", "Identifier");
+        transformed.put("value", variable);
+        Map<String, Object> expression = new HashMap<>();
+        expression.put("origin", variable);
+        expression.put("transformed", transformed);
+        Map<String, Object> prop = new HashMap<>();
+        prop.put("element", "12");
+        prop.put("property", property);
+        prop.put("expression", expression);
+        return prop;
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectUnknownFormat() throws Exception {
+        new BindingXInputReplayer(null).replay(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6}));
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.BindingXCore;
+import com.alibaba.android.bindingx.core.BindingXEventType;
+import com.alibaba.android.bindingx.core.PlatformManager;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BindingXPanHandlerTest {
+
+    private static final float THRESHOLD = 10;
+
+    @Test
+    public void recognizesAlongTheAxis() throws Exception {
+        // both axes: any direction past the threshold
+        assertEquals(0, BindingXPanHandler.recognize(BindingXPanHandler.AXIS_BOTH, THRESHOLD, 6, 6));
+        assertEquals(1, BindingXPanHandler.recognize(BindingXPanHandler.AXIS_BOTH, THRESHOLD, 8, -8));
+
+        assertEquals(0, BindingXPanHandler.recognize(BindingXPanHandler.AXIS_X, THRESHOLD, 10, 0));
+        assertEquals(1, BindingXPanHandler.recognize(BindingXPanHandler.AXIS_X, THRESHOLD, -11, 5));
+        // diagonal past the threshold, not mostly along x: left to the other axis
+        assertEquals(-1, BindingXPanHandler.recognize(BindingXPanHandler.AXIS_X, THRESHOLD, 11, 11));
+        assertEquals(-1, BindingXPanHandler.recognize(BindingXPanHandler.AXIS_X, THRESHOLD, 3, 11));
+
+        assertEquals(1, BindingXPanHandler.recognize(BindingXPanHandler.AXIS_Y, THRESHOLD, 5, 11));
+        assertEquals(-1, BindingXPanHandler.recognize(BindingXPanHandler.AXIS_Y, THRESHOLD, -11, 3));
+    }
+
+    @Test
+    public void claimsOnceRecognizedAndEndsOnCancel() throws Exception {
+        View view = new View(null);
+        List<Map<String, Object>> events = new ArrayList<>();
+        BindingXPanHandler handler = bind(view, "x", events);
+
+        assertTrue(handler.onGesture(view, null, MotionEvent.ACTION_DOWN, 100, 100, 0));
+        assertTrue(handler.onGesture(view, null, MotionEvent.ACTION_MOVE, 105, 100, 16));
+        assertTrue(events.isEmpty());
+        assertTrue(handler.onGesture(view, null, MotionEvent.ACTION_MOVE, 120, 102, 32));
+        assertEquals(1, events.size());
+        assertEquals("start", events.get(0).get("state"));
+        assertEquals(20d, events.get(0).get("deltaX"));
+
+        assertTrue(handler.onGesture(view, null, MotionEvent.ACTION_CANCEL, 130, 102, 48));
+        assertEquals(2, events.size());
+        assertEquals("end", events.get(1).get("state"));
+        assertEquals(30d, events.get(1).get("deltaX"));
+        assertEquals(2d, events.get(1).get("deltaY"));
+    }
+
+    @Test
+    public void leavesGesturesAlongTheOtherAxis() throws Exception {
+        View view = new View(null);
+        List<Map<String, Object>> events = new ArrayList<>();
+        BindingXPanHandler handler = bind(view, "x", events);
+
+        assertTrue(handler.onGesture(view, null, MotionEvent.ACTION_DOWN, 100, 100, 0));
+        assertFalse(handler.onGesture(view, null, MotionEvent.ACTION_MOVE, 102, 120, 16));
+        // given up for the rest of the gesture
+        assertFalse(handler.onGesture(view, null, MotionEvent.ACTION_MOVE, 140, 120, 32));
+        handler.onGesture(view, null, MotionEvent.ACTION_UP, 140, 120, 48);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void panBindingsShareTheAnchor() throws Exception {
+        RecordingView view = new RecordingView();
+        BindingXPanHandler first = bind(view, "both", new ArrayList<Map<String, Object>>());
+        View.OnTouchListener listener = view.listener;
+        assertNotNull(listener);
+        BindingXPanHandler second = bind(view, "both", new ArrayList<Map<String, Object>>());
+        assertSame(listener, view.listener);
+
+        first.onDisable("12", BindingXEventType.TYPE_PAN);
+        assertSame(listener, view.listener);
+        second.onDisable("12", BindingXEventType.TYPE_PAN);
+        assertNull(view.listener);
+    }
+
+    private static BindingXPanHandler bind(final View view, String axis, final List<Map<String, Object>> events) {
+        PlatformManager manager = new PlatformManager.Builder()
+                .withViewFinder(new PlatformManager.IViewFinder() {
+                    @Override
+                    public View findViewBy(String ref, Object... extension) {
+                        return view;
+                    }
+                })
+                .withDeviceResolutionTranslator(new PlatformManager.IDeviceResolutionTranslator() {
+                    @Override
+                    public double webToNative(double rawSize, Object... extension) {
+                        return rawSize;
+                    }
+
+                    @Override
+                    public double nativeToWeb(double rawSize, Object... extension) {
+                        return rawSize;
+                    }
+                })
+                .build();
+        BindingXPanHandler handler = new BindingXPanHandler(null, manager);
+        Map<String, Object> options = new HashMap<>();
+        options.put("axis", axis);
+        options.put("threshold", (double) THRESHOLD);
+        handler.setBindingOptions(options);
+        assertTrue(handler.onCreate("12", BindingXEventType.TYPE_PAN));
+        handler.onBindExpression(BindingXEventType.TYPE_PAN, null, null,
+                Collections.<Map<String, Object>>emptyList(), new BindingXCore.JavaScriptCallback() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void callback(Object params) {
+                        events.add((Map<String, Object>) params);
+                    }
+                });
+        return handler;
+    }
+
+    private static final class RecordingView extends View {
+        View.OnTouchListener listener;
+
+        RecordingView() {
+            super(null);
+        }
+
+        @Override
+        public void setOnTouchListener(View.OnTouchListener listener) {
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.bridge.ReactContext;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BindingXRuntimeTest {
+
+    private final Object mFirstModule = new Object();
+    private final Object mSecondModule = new Object();
+
+    @After
+    public void tearDown() throws Exception {
+        BindingXRuntime.get().release(mFirstModule);
+        BindingXRuntime.get().release(mSecondModule);
+        BindingXRuntime.get().setAnimatedContext(null);
+    }
+
+    @Test
+    public void leasesTheCoreToOneModuleAtATime() throws Exception {
+        BindingXRuntime runtime = BindingXRuntime.get();
+        assertTrue(runtime.acquire(mFirstModule, finderOf(null), NOP_UPDATER));
+        assertFalse(runtime.acquire(mSecondModule, finderOf(null), NOP_UPDATER));
+
+        // only the holder gives it back
+        runtime.release(mSecondModule);
+        assertFalse(runtime.acquire(mSecondModule, finderOf(null), NOP_UPDATER));
+
+        runtime.release(mFirstModule);
+        assertTrue(runtime.acquire(mSecondModule, finderOf(null), NOP_UPDATER));
+    }
+
+    @Test
+    public void forwardsToTheHolderOnly() throws Exception {
+        BindingXRuntime runtime = BindingXRuntime.get();
+        PlatformManager.IViewFinder viewFinder = runtime.getPlatformManager().getViewFinder();
+        View view = new View(null);
+
+        assertTrue(runtime.acquire(mFirstModule, finderOf(view), NOP_UPDATER));
+        assertSame(view, viewFinder.findViewBy("1"));
+
+        // views of a destroyed context can't be reached through the warm core
+        runtime.release(mFirstModule);
+        assertNull(viewFinder.findViewBy("1"));
+    }
+
+    @Test
+    public void animatedValueReadsTheContextPreparedLast() throws Exception {
+        BindingXRuntime runtime = BindingXRuntime.get();
+        ReactContext first = new ReactContext(null);
+        ReactContext second = new ReactContext(null);
+
+        runtime.setAnimatedContext(first);
+        runtime.setAnimatedContext(second);
+        // the context released last is not the one in use
+        runtime.clearAnimatedContext(first);
+        assertSame(second, runtime.getAnimatedContext());
+
+        runtime.clearAnimatedContext(second);
+        assertNull(runtime.getAnimatedContext());
+    }
+
+    private static final PlatformManager.IViewUpdater NOP_UPDATER = new PlatformManager.IViewUpdater() {
+        @Override
+        public void synchronouslyUpdateViewOnUIThread(@NonNull View targetView, @NonNull String propertyName,
+                                                      @NonNull Object propertyValue,
+                                                      @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                                                      @NonNull Map<String, Object> config, Object... extension) {
+        }
+    };
+
+    @NonNull
+    private static PlatformManager.IViewFinder finderOf(final View view) {
+        return new PlatformManager.IViewFinder() {
+            @Override
+            public View findViewBy(String ref, Object... extension) {
+                return view;
+            }
+        };
+    }
+}
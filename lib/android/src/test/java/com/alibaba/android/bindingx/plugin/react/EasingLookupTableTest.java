@@ -0,0 +1,62 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class EasingLookupTableTest {
+
+    @Test
+    public void followsAnalyticBezier() throws Exception {
+        EasingLookupTable.CubicBezierCurve curve = new EasingLookupTable.CubicBezierCurve(0.25, 0.1, 0.25, 1);
+        EasingLookupTable table = EasingLookupTable.cubicBezier(0.25, 0.1, 0.25, 1);
+        for (int i = 0; i <= 1000; i++) {
+            double x = i / 1000d;
+            assertEquals(curve.valueAt(x), table.valueAt(x), 1e-4);
+        }
+        assertEquals(0, table.valueAt(0), 1e-6);
+        assertEquals(1, table.valueAt(1), 1e-6);
+    }
+
+    @Test
+    public void cachesBezierByControlPoints() throws Exception {
+        EasingLookupTable table = EasingLookupTable.cubicBezier(0.42, 0, 0.58, 1);
+        EasingLookupTable.cubicBezier(0.42, 0, 1, 1);
+        assertSame(table, EasingLookupTable.cubicBezier(0.42, 0, 0.58, 1));
+    }
+
+    @Test
+    public void followsAnalyticElasticAndBounce() throws Exception {
+        for (int i = 0; i <= 1000; i++) {
+            double x = i / 1000d;
+            assertEquals(EasingLookupTable.elasticInValue(x, 0.3), EasingLookupTable.elasticIn().valueAt(x), 2e-3);
+            assertEquals(EasingLookupTable.bounceOutValue(x), EasingLookupTable.bounceOut().valueAt(x), 2e-3);
+        }
+        assertEquals(1, EasingLookupTable.elasticOut().valueAt(1), 1e-6);
+        assertEquals(0.5, EasingLookupTable.bounceInOut().valueAt(0.5), 1e-3);
+    }
+
+    @Test
+    public void easesAndClamps() throws Exception {
+        EasingLookupTable table = EasingLookupTable.bounceOut();
+        assertEquals(100, table.ease(-10, 100, 50, 1000), 1e-6);
+        assertEquals(150, table.ease(2000, 100, 50, 1000), 1e-6);
+        assertEquals(150, table.ease(5, 100, 50, 0), 1e-6);
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ExpressionProgramTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void evaluatesLikeTheTreeWalk() throws Exception {
+        ExpressionProgram.Builder builder = new ExpressionProgram.Builder();
+        // y > 10 ? -y : max(y, 1, 2)
+        int branch = builder.addNumber(node("?", null,
+                node(">", null, id("y"), num(10)),
+                node("-", null, id("y")),
+                call("max", id("y"), num(1), num(2))));
+        int exit = builder.addCondition(node(">=", null, id("y"), num(100)));
+        ExpressionProgram program = builder.build();
+
+        Map<String, Object> scope = new HashMap<>();
+        scope.put("y", 200d);
+        assertTrue(program.run(scope));
+        assertEquals(-200, program.valueOf(branch), DELTA);
+        assertEquals(1, program.valueOf(exit), DELTA);
+
+        scope.put("y", 1.5d);
+        assertTrue(program.run(scope));
+        assertEquals(2, program.valueOf(branch), DELTA);
+        assertEquals(0, program.valueOf(exit), DELTA);
+
+        scope.remove("y");
+        assertFalse(program.run(scope));
+    }
+
+    @Test
+    public void foldsConstantsAndSharesSubexpressions() throws Exception {
+        ExpressionProgram.Builder builder = new ExpressionProgram.Builder();
+        // y * 0.5 + 2 * 3 and (0.5 * y) * sin(PI / 2)
+        int sum = builder.addNumber(node("+", null, node("*", null, id("y"), num(0.5)), node("*", null, num(2), num(3))));
+        int product = builder.addNumber(node("*", null, node("*", null, num(0.5), id("y")),
+                call("sin", node("/", null, id("PI"), num(2)))));
+        ExpressionProgram program = builder.build();
+        // y * 0.5 is computed once, 2 * 3 and sin(PI / 2) not at all
+        assertEquals(3, program.getInstructionCount());
+
+        Map<String, Object> scope = new HashMap<>();
+        scope.put("y", 20d);
+        assertTrue(program.run(scope));
+        assertEquals(16, program.valueOf(sum), DELTA);
+        assertEquals(10, program.valueOf(product), DELTA);
+    }
+
+    @Test
+    public void rejectsUnsupportedExpressions() throws Exception {
+        ExpressionProgram.Builder builder = new ExpressionProgram.Builder();
+        assertEquals(-1, builder.addNumber(node("+", null, id("y"), node("StringLiteral", "px"))));
+        assertEquals(-1, builder.addNumber(call("evaluateColor", id("y"))));
+        assertEquals(-1, builder.addNumber(null));
+        // nothing of a rejected expression is left behind
+        assertEquals(0, builder.build().getInstructionCount());
+    }
+
+    @Test
+    public void runsWithoutAllocation() throws Exception {
+        assumeTrue(AllocationCounter.isSupported());
+        ExpressionProgram.Builder builder = new ExpressionProgram.Builder();
+        builder.addNumber(node("*", null, id("y"), call("sin", node("/", null, id("t"), num(1000)))));
+        builder.addCondition(node("&&", null, node(">", null, id("t"), num(500)), node("<", null, id("y"), num(0))));
+        ExpressionProgram program = builder.build();
+        Map<String, Object> scope = new HashMap<>();
+        scope.put("y", 120d);
+        scope.put("t", 16d);
+        for (int i = 0; i < 20000; i++) {
+            program.run(scope);
+        }
+        long start = AllocationCounter.current();
+        long overhead = AllocationCounter.current() - start;
+        start = AllocationCounter.current();
+        for (int i = 0; i < 1000; i++) {
+            program.run(scope);
+        }
+        assertEquals(0, Math.max(0, AllocationCounter.current() - start - overhead) / 1000);
+    }
+
+    // syntax trees shaped like the "transformed" field the JS side sends
+
+    private static Map<String, Object> node(String type, Object value, Object... children) {
+        Map<String, Object> node = new HashMap<>();
+        node.put("type", type);
+        if (value != null) {
+            node.put("value", value);
+        }
+        if (children.length > 0) {
+            node.put("children", new ArrayList<>(Arrays.asList(children)));
+        }
+        return node;
+    }
+
+    private static Map<String, Object> id(String name) {
+        return node("Identifier", name);
+    }
+
+    private static Map<String, Object> num(double value) {
+        return node("NumericLiteral", value);
+    }
+
+    private static Map<String, Object> call(String function, Object... arguments) {
+        return node("CallExpression", null, id(function), node("Arguments", null, arguments));
+    }
+}
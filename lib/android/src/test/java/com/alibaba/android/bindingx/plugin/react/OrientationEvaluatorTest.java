@@ -0,0 +1,57 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrientationEvaluatorTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void lyingFlatLooksDown() throws Exception {
+        OrientationEvaluator evaluator = new OrientationEvaluator(Double.NaN, Double.NaN, Double.NaN);
+        evaluator.calculate(0, 0, 0);
+        assertEquals(Math.sqrt(0.5), evaluator.getX(), DELTA);
+        assertEquals(0, evaluator.getY(), DELTA);
+        assertEquals(0, evaluator.getZ(), DELTA);
+        assertEquals(Math.sqrt(0.5), evaluator.getW(), DELTA);
+
+        double[] vector = new double[3];
+        evaluator.rotate(0, 0, 1, vector);
+        assertEquals(0, vector[0], DELTA);
+        assertEquals(-1, vector[1], DELTA);
+        assertEquals(0, vector[2], DELTA);
+    }
+
+    @Test
+    public void pinnedAxesIsolateTheTiltOfTheOthers() throws Exception {
+        // the evaluators of the 2d scene
+        OrientationEvaluator evaluatorX = new OrientationEvaluator(Double.NaN, 90, Double.NaN);
+        OrientationEvaluator evaluatorY = new OrientationEvaluator(0, Double.NaN, 90);
+        double[] vector = new double[3];
+
+        evaluatorX.calculate(0, 60, 30);
+        evaluatorX.rotate(0, 0, 1, vector);
+        assertEquals(-30, 90 - Math.toDegrees(Math.acos(vector[0])), 1e-6);
+
+        evaluatorY.calculate(0, 60, 30);
+        evaluatorY.rotate(0, 1, 1, vector);
+        assertEquals(-60, 90 - Math.toDegrees(Math.acos(vector[1])), 1e-6);
+    }
+}
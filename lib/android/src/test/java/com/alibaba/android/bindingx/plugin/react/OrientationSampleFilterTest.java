@@ -0,0 +1,54 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrientationSampleFilterTest {
+
+    @Test
+    public void dropsSamplesAboveRate() throws Exception {
+        OrientationSampleFilter filter = new OrientationSampleFilter(30, 1, 0);
+        assertTrue(filter.offer(0, 10, 10, 10));
+        assertFalse(filter.offer(10, 20, 20, 20));
+        assertTrue(filter.offer(30, 20, 20, 20));
+        assertEquals(20, filter.getBeta(), 1e-9);
+    }
+
+    @Test
+    public void skipsChangesWithinDeadZone() throws Exception {
+        OrientationSampleFilter filter = new OrientationSampleFilter(0, 1, 1);
+        assertTrue(filter.offer(0, 10, 10, 10));
+        assertFalse(filter.offer(1, 10.5, 10.5, 10.5));
+        assertTrue(filter.offer(2, 10, 11.5, 10));
+    }
+
+    @Test
+    public void smoothsAcrossWrapAround() throws Exception {
+        OrientationSampleFilter filter = new OrientationSampleFilter(0, 0.5, 0);
+        filter.offer(0, 350, 0, 0);
+        filter.offer(1, 10, 0, 0);
+        assertEquals(0, filter.getAlpha(), 1e-9);
+
+        filter.reset();
+        filter.offer(2, 10, 0, 0);
+        assertEquals(10, filter.getAlpha(), 1e-9);
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.uimanager.UIImplementation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Budgets of the per-frame binding path, run against stub views (android.jar default values) and a
+ * counting shadow sync instead of a real {@link UIImplementation}.
+ * */
+public class PerFrameBudgetTest {
+
+    private static final int WARM_UP_FRAMES = 20000;
+    private static final int FRAMES = 1000;
+    private static final int SAMPLES = 64;
+
+    // MatrixMathHelper allocates its scratch arrays on every decomposition
+    private static final long MATRIX_DECOMPOSITION_BYTES = 4096;
+
+    private static final PlatformManager.IDeviceResolutionTranslator TRANSLATOR =
+            new PlatformManager.IDeviceResolutionTranslator() {
+                @Override
+                public double webToNative(double rawSize, Object... extension) {
+                    return rawSize;
+                }
+
+                @Override
+                public double nativeToWeb(double rawSize, Object... extension) {
+                    return rawSize;
+                }
+            };
+
+    private static final Runnable EMPTY_FRAME = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final Map<String, Object> mConfig = new HashMap<>();
+    private int mShadowSyncs = 0;
+
+    @Before
+    public void setUp() throws Exception {
+        RNViewUpdateService.setShadowSync(new RNViewUpdateService.ShadowSync() {
+            @Override
+            public void sync(int tag, @NonNull UIImplementation implementation) {
+                mShadowSyncs++;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        RNViewUpdateService.setShadowSync(null);
+    }
+
+    @Test
+    public void scrollMathDoesNotAllocate() throws Exception {
+        assumeTrue(AllocationCounter.isSupported());
+        final ScrollDeltaTracker tracker = new ScrollDeltaTracker();
+        final int[] frame = {0};
+        Runnable scroll = new Runnable() {
+            @Override
+            public void run() {
+                int i = frame[0]++;
+                // turns around every 50 frames
+                int y = (i / 50) % 2 == 0 ? (i % 50) * 7 : (50 - i % 50) * 7;
+                tracker.offer(i, y);
+            }
+        };
+        assertEquals(0, measureBytesPerFrame(scroll));
+    }
+
+    @Test
+    public void scrollMathTracksTurningPoints() throws Exception {
+        ScrollDeltaTracker tracker = new ScrollDeltaTracker();
+        assertTrue(tracker.offer(0, 10));
+        assertTrue(tracker.isTurning());
+        assertTrue(tracker.offer(0, 30));
+        assertEquals(20, tracker.getDy());
+        assertEquals(20, tracker.getTdy());
+        assertTrue(tracker.offer(0, 25));
+        assertTrue(tracker.isTurning());
+        assertEquals(0, tracker.getTdy());
+        assertTrue(!tracker.offer(0, 25));
+    }
+
+    @Test
+    public void updatersStayWithinBudget() throws Exception {
+        View view = new StubView();
+        assertUpdaterBudget("opacity", view, doubles(0, 1), 0);
+        assertUpdaterBudget("transform.translate", view, pairs(), 0);
+        assertUpdaterBudget("transform.translateX", view, doubles(-100, 100), 0);
+        assertUpdaterBudget("transform.translateY", view, doubles(-100, 100), 0);
+        assertUpdaterBudget("transform.scale", view, doubles(0.5, 2), 0);
+        assertUpdaterBudget("transform.scaleX", view, doubles(0.5, 2), 0);
+        assertUpdaterBudget("transform.scaleY", view, doubles(0.5, 2), 0);
+        assertUpdaterBudget("transform.rotate", view, doubles(0, 360), 0);
+        assertUpdaterBudget("transform.rotateZ", view, doubles(0, 360), 0);
+        assertUpdaterBudget("transform.rotateX", view, doubles(0, 360), 0);
+        assertUpdaterBudget("transform.rotateY", view, doubles(0, 360), 0);
+        assertUpdaterBudget("transform", view, transformComponents(), 0);
+        assertUpdaterBudget("transform", view, transformMatrices(), MATRIX_DECOMPOSITION_BYTES);
+        assertUpdaterBudget("width", view, doubles(0, 300), 0);
+        assertUpdaterBudget("height", view, doubles(0, 300), 0);
+        assertUpdaterBudget("background-color", view, colors(), 0);
+        assertUpdaterBudget("color", new TextView(null), colors(), 0);
+        assertUpdaterBudget("scroll.contentOffset", new ScrollView(null), doubles(0, 1000), 0);
+        assertUpdaterBudget("scroll.contentOffsetX", new ScrollView(null), doubles(0, 1000), 0);
+        assertUpdaterBudget("scroll.contentOffsetY", new ScrollView(null), doubles(0, 1000), 0);
+    }
+
+    private void assertUpdaterBudget(@NonNull final String property,
+                                     @NonNull final View view,
+                                     @NonNull final Object[] samples,
+                                     long maxBytesPerFrame) {
+        final IRNViewUpdater updater = RNViewUpdateService.findUpdater(property);
+        final int[] frame = {0};
+        Runnable update = new Runnable() {
+            @Override
+            public void run() {
+                updater.update(1, view, samples[frame[0]++ % SAMPLES], TRANSLATOR, mConfig, null);
+            }
+        };
+
+        mShadowSyncs = 0;
+        update.run();
+        assertEquals("shadow syncs per frame of " + property, 1, mShadowSyncs);
+
+        if (AllocationCounter.isSupported()) {
+            long bytes = measureBytesPerFrame(update);
+            assertTrue("allocated " + bytes + " bytes per frame updating " + property, bytes <= maxBytesPerFrame);
+        }
+    }
+
+    private static long measureBytesPerFrame(@NonNull Runnable frame) {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            frame.run();
+            EMPTY_FRAME.run();
+        }
+        // what the loop and the counter cost without a frame
+        long overhead = measureBytes(EMPTY_FRAME);
+        return Math.max(0, measureBytes(frame) - overhead) / FRAMES;
+    }
+
+    private static long measureBytes(@NonNull Runnable frame) {
+        long start = AllocationCounter.current();
+        for (int i = 0; i < FRAMES; i++) {
+            frame.run();
+        }
+        return AllocationCounter.current() - start;
+    }
+
+    // inputs are boxed once up front, like the core hands them over
+
+    @NonNull
+    private static Object[] doubles(double from, double to) {
+        Object[] samples = new Object[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = from + (to - from) * i / SAMPLES;
+        }
+        return samples;
+    }
+
+    @NonNull
+    private static Object[] pairs() {
+        Object[] samples = new Object[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = new ArrayList<Object>(Arrays.<Object>asList((double) i, (double) -i));
+        }
+        return samples;
+    }
+
+    @NonNull
+    private static Object[] transformComponents() {
+        Object[] samples = new Object[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = new ArrayList<Object>(Arrays.<Object>asList((double) i, (double) -i, 1d, 1d, (double) i * 5));
+        }
+        return samples;
+    }
+
+    @NonNull
+    private static Object[] transformMatrices() {
+        Object[] samples = new Object[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            ArrayList<Object> matrix = new ArrayList<>(16);
+            for (int j = 0; j < 16; j++) {
+                matrix.add(j % 5 == 0 ? 1d : 0d);
+            }
+            matrix.set(12, (double) i);
+            samples[i] = matrix;
+        }
+        return samples;
+    }
+
+    @NonNull
+    private static Object[] colors() {
+        Object[] samples = new Object[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = 0xFF000000 | (i * 0x030303);
+        }
+        return samples;
+    }
+
+    private static final class StubView extends View {
+        private final ViewGroup.LayoutParams mLayoutParams = new ViewGroup.LayoutParams(0, 0);
+
+        StubView() {
+            super(null);
+        }
+
+        @Override
+        public ViewGroup.LayoutParams getLayoutParams() {
+            return mLayoutParams;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PhysicsMotionTest {
+
+    @Test
+    public void springStartsAtInitialState() throws Exception {
+        double[][] params = {{100, 10, 1}, {100, 20, 1}, {100, 40, 1}}; // under, critically and over damped
+        for (double[] p : params) {
+            PhysicsMotion spring = new PhysicsMotion.Spring(0, 100, 500, p[0], p[1], p[2], 0.001, 0.001);
+            assertFalse(spring.computeAt(0));
+            assertEquals(0, spring.value, 1e-9);
+            assertEquals(500, spring.velocity, 1e-9);
+        }
+    }
+
+    @Test
+    public void springComesToRest() throws Exception {
+        double[][] params = {{100, 10, 1}, {100, 20, 1}, {100, 40, 1}};
+        for (double[] p : params) {
+            PhysicsMotion spring = new PhysicsMotion.Spring(0, 100, 0, p[0], p[1], p[2], 0.001, 0.001);
+            assertTrue(spring.computeAt(60000));
+            assertEquals(100, spring.value, 0);
+            assertEquals(0, spring.velocity, 0);
+        }
+    }
+
+    @Test
+    public void decayConvergesToProjectedOffset() throws Exception {
+        PhysicsMotion decay = new PhysicsMotion.Decay(10, 1000, 0.998, 0.001);
+        decay.computeAt(0);
+        assertEquals(10, decay.value, 1e-9);
+        assertEquals(1000, decay.velocity, 1e-9);
+
+        assertTrue(decay.computeAt(60000));
+        assertEquals(10 + 1d / 0.002, decay.value, 1e-3);
+    }
+
+    @Test
+    public void decayRestsAboutAsSoonAsReactNatives() throws Exception {
+        PhysicsMotion decay = new PhysicsMotion.Decay(0, 1000, 0.998, PhysicsMotion.Decay.DEFAULT_REST_SPEED);
+        assertFalse(decay.computeAt(2000));
+        // moving less than 0.1 per frame by then
+        assertTrue(decay.computeAt(3000));
+        assertEquals(1d / 0.002, decay.value, 5);
+    }
+
+    @Test
+    public void rejectsDecelerationsWhichNeverSlowDown() throws Exception {
+        assertTrue(PhysicsMotion.Decay.isValidDeceleration(0.998));
+        assertFalse(PhysicsMotion.Decay.isValidDeceleration(1));
+        assertFalse(PhysicsMotion.Decay.isValidDeceleration(0));
+        assertFalse(PhysicsMotion.Decay.isValidDeceleration(Double.NaN));
+    }
+
+    @Test
+    public void gestureVelocityExpires() throws Exception {
+        GestureVelocityStore store = new GestureVelocityStore();
+        assertEquals(0, store.getVelocityY(1000), 0);
+
+        store.onRelease(0, 1500, 1000);
+        assertEquals(1500, store.getVelocityY(1000 + GestureVelocityStore.MAX_AGE_MILLIS), 0);
+        assertEquals(0, store.getVelocityY(1001 + GestureVelocityStore.MAX_AGE_MILLIS), 0);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RNBindingDescriptorTest {
+
+    @Test
+    public void keepsPluginOptionsFromTheCore() throws Exception {
+        JavaOnlyMap params = new JavaOnlyMap();
+        params.putString("eventType", "pan");
+        params.putString("group", "cards");
+        params.putDouble("priority", 2);
+        params.putString("blend", "add");
+        JavaOnlyMap bindingParams = new JavaOnlyMap();
+        bindingParams.putDouble("offset", 10);
+        params.putMap("params", bindingParams);
+        params.putArray("props", new JavaOnlyArray());
+
+        RNBindingDescriptor descriptor = RNBindingDescriptor.decode(params);
+        assertEquals("cards", descriptor.group);
+        assertEquals(10d, descriptor.params.get("offset"));
+        assertEquals("pan", descriptor.coreOptions.get("eventType"));
+        assertTrue(descriptor.coreOptions.containsKey("props"));
+        assertFalse(descriptor.coreOptions.containsKey("group"));
+        assertFalse(descriptor.coreOptions.containsKey("priority"));
+        assertFalse(descriptor.coreOptions.containsKey("blend"));
+        assertFalse(descriptor.coreOptions.containsKey("params"));
+    }
+
+    @Test
+    public void handsTheTargetConfigToTheCore() throws Exception {
+        JavaOnlyMap config = new JavaOnlyMap();
+        config.putDouble("perspective", 850.5);
+        config.putString("transformOrigin", "left top");
+        JavaOnlyMap prop = new JavaOnlyMap();
+        prop.putString("element", "12");
+        prop.putString("property", "transform.rotateX");
+        prop.putMap("config", config);
+        JavaOnlyArray props = new JavaOnlyArray();
+        props.pushMap(prop);
+        JavaOnlyMap params = new JavaOnlyMap();
+        params.putString("eventType", "pan");
+        params.putArray("props", props);
+
+        RNBindingDescriptor descriptor = RNBindingDescriptor.decode(params);
+        RNBindingDescriptor.TargetConfig targetConfig = descriptor.targetConfigs[0];
+        assertEquals(12, descriptor.targetTags[0]);
+        assertEquals(850.5, targetConfig.perspective, 1e-9);
+        assertEquals("left top", targetConfig.transformOrigin);
+        assertEquals(targetConfig.id, targetConfig.get(RNBindingDescriptor.KEY_TARGET_ID));
+
+        Map<?, ?> coreProp = (Map<?, ?>) ((List<?>) descriptor.coreOptions.get("props")).get(0);
+        assertSame(targetConfig, coreProp.get("config"));
+    }
+}
@@ -15,12 +15,57 @@
  */
 package com.alibaba.android.bindingx.plugin.react;
 
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.uimanager.UIImplementation;
+
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 public class RNViewUpdateServiceTest {
 
+    private static final float DELTA = 1e-3f;
+
+    // dp to px on a 2x screen
+    private static final PlatformManager.IDeviceResolutionTranslator TRANSLATOR =
+            new PlatformManager.IDeviceResolutionTranslator() {
+                @Override
+                public double webToNative(double rawSize, Object... extension) {
+                    return rawSize * 2;
+                }
+
+                @Override
+                public double nativeToWeb(double rawSize, Object... extension) {
+                    return rawSize / 2;
+                }
+            };
+
+    @Before
+    public void setUp() throws Exception {
+        RNViewUpdateService.setShadowSync(new RNViewUpdateService.ShadowSync() {
+            @Override
+            public void sync(int tag, @NonNull UIImplementation implementation) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        RNViewUpdateService.setShadowSync(null);
+    }
+
     @Test
     public void findInvoker() throws Exception {
         assertNotNull(RNViewUpdateService.findUpdater("opacity"));
@@ -41,6 +86,132 @@ public class RNViewUpdateServiceTest {
         assertNotNull(RNViewUpdateService.findUpdater("scroll.contentOffset"));
         assertNotNull(RNViewUpdateService.findUpdater("scroll.contentOffsetX"));
         assertNotNull(RNViewUpdateService.findUpdater("scroll.contentOffsetY"));
+        assertNotNull(RNViewUpdateService.findUpdater("transform"));
+    }
+
+    @Test
+    public void registerCustomUpdater() throws Exception {
+        IRNViewUpdater custom = new IRNViewUpdater() {
+            @Override
+            public void update(int tag,
+                               @NonNull View targetView,
+                               @NonNull Object cmd,
+                               @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                               @NonNull Map<String, Object> config,
+                               @NonNull UIImplementation implementation) {
+            }
+        };
+        IRNViewUpdater builtIn = RNViewUpdateService.findUpdater("opacity");
+        assertSame(builtIn, RNViewUpdateService.findUpdater("opacity"));
+
+        RNViewUpdaterRegistry.register("opacity", custom);
+        IRNViewUpdater replaced = RNViewUpdateService.findUpdater("opacity");
+        assertNotSame(builtIn, replaced);
+        assertSame(replaced, RNViewUpdateService.findUpdater("opacity"));
+
+        RNViewUpdaterRegistry.unregister("opacity");
+        assertNotSame(replaced, RNViewUpdateService.findUpdater("opacity"));
+    }
+
+    @Test
+    public void transformComponents() throws Exception {
+        IRNViewUpdater updater = RNViewUpdateService.findUpdater("transform");
+        RecordingView view = new RecordingView();
+        updater.update(1, view, doubles(10, 20, 1.5, 0.5, 45, 30, 60), TRANSLATOR, new HashMap<String, Object>(), null);
+        assertEquals(20, view.translationX, DELTA);
+        assertEquals(40, view.translationY, DELTA);
+        assertEquals(1.5f, view.scaleX, DELTA);
+        assertEquals(0.5f, view.scaleY, DELTA);
+        assertEquals(45, view.rotation, DELTA);
+        assertEquals(30, view.rotationX, DELTA);
+        assertEquals(60, view.rotationY, DELTA);
+
+        // omitted components are reset
+        updater.update(1, view, doubles(10), TRANSLATOR, new HashMap<String, Object>(), null);
+        assertEquals(20, view.translationX, DELTA);
+        assertEquals(0, view.translationY, DELTA);
+        assertEquals(1, view.scaleX, DELTA);
+        assertEquals(1, view.scaleY, DELTA);
+        assertEquals(0, view.rotation, DELTA);
+        assertEquals(0, view.rotationX, DELTA);
+        assertEquals(0, view.rotationY, DELTA);
+    }
+
+    @Test
+    public void transformMatrix() throws Exception {
+        IRNViewUpdater updater = RNViewUpdateService.findUpdater("transform");
+        RecordingView view = new RecordingView();
+        // translate(30, 40) rotate(90deg) scale(2), column-major
+        updater.update(1, view, doubles(
+                0, 2, 0, 0,
+                -2, 0, 0, 0,
+                0, 0, 1, 0,
+                30, 40, 0, 1), TRANSLATOR, new HashMap<String, Object>(), null);
+        assertEquals(60, view.translationX, DELTA);
+        assertEquals(80, view.translationY, DELTA);
+        assertEquals(2, view.scaleX, DELTA);
+        assertEquals(2, view.scaleY, DELTA);
+        assertEquals(90, view.rotation, DELTA);
+        assertEquals(0, view.rotationX, DELTA);
+        assertEquals(0, view.rotationY, DELTA);
+        // no perspective in the matrix, the camera stays where it was
+        assertEquals(0, view.cameraDistance, DELTA);
     }
 
-}
\ No newline at end of file
+    @NonNull
+    private static ArrayList<Object> doubles(double... values) {
+        ArrayList<Object> list = new ArrayList<>(values.length);
+        for (double value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static final class RecordingView extends View {
+        float translationX, translationY, scaleX, scaleY, rotation, rotationX, rotationY, cameraDistance;
+
+        RecordingView() {
+            super(null);
+        }
+
+        @Override
+        public void setTranslationX(float translationX) {
+            this.translationX = translationX;
+        }
+
+        @Override
+        public void setTranslationY(float translationY) {
+            this.translationY = translationY;
+        }
+
+        @Override
+        public void setScaleX(float scaleX) {
+            this.scaleX = scaleX;
+        }
+
+        @Override
+        public void setScaleY(float scaleY) {
+            this.scaleY = scaleY;
+        }
+
+        @Override
+        public void setRotation(float rotation) {
+            this.rotation = rotation;
+        }
+
+        @Override
+        public void setRotationX(float rotationX) {
+            this.rotationX = rotationX;
+        }
+
+        @Override
+        public void setRotationY(float rotationY) {
+            this.rotationY = rotationY;
+        }
+
+        @Override
+        public void setCameraDistance(float distance) {
+            this.cameraDistance = distance;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.uimanager.UIImplementation;
+import com.facebook.react.uimanager.UIViewOperationQueue;
+import com.facebook.react.uimanager.ViewManagerRegistry;
+import com.facebook.react.uimanager.events.EventDispatcher;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RNWriteMergerTest {
+
+    private static final int TAG = 12;
+    private static final String OPACITY = "opacity";
+
+    private static final PlatformManager.IDeviceResolutionTranslator TRANSLATOR =
+            new PlatformManager.IDeviceResolutionTranslator() {
+                @Override
+                public double webToNative(double rawSize, Object... extension) {
+                    return rawSize;
+                }
+
+                @Override
+                public double nativeToWeb(double rawSize, Object... extension) {
+                    return rawSize;
+                }
+            };
+
+    // never called into, the merger only hands it over
+    private static final UIImplementation IMPLEMENTATION = new UIImplementation((ReactApplicationContext) null,
+            (ViewManagerRegistry) null, (UIViewOperationQueue) null, (EventDispatcher) null) {
+    };
+
+    private final View mView = new View(null);
+    private final RNWriteMerger mMerger = new RNWriteMerger();
+    private final RecordingSink mSink = new RecordingSink();
+
+    @Test
+    public void highestPriorityOverrideWins() throws Exception {
+        Map<String, Object> low = config();
+        Map<String, Object> high = config();
+        assertTrue(offer(high, 0.8, 2, RNWriteMerger.BLEND_OVERRIDE));
+        assertFalse(offer(low, 0.2, 1, RNWriteMerger.BLEND_OVERRIDE));
+        mMerger.flush(mSink);
+        assertEquals(1, mSink.values.size());
+        assertEquals(0.8, mSink.values.get(0));
+        // written through the winning target
+        assertSame(high, mSink.configs.get(0));
+    }
+
+    @Test
+    public void latestOverrideWinsOnTies() throws Exception {
+        Map<String, Object> first = config();
+        Map<String, Object> second = config();
+        offer(first, 0.3, 0, RNWriteMerger.BLEND_OVERRIDE);
+        offer(second, 0.6, 0, RNWriteMerger.BLEND_OVERRIDE);
+        mMerger.flush(mSink);
+        offer(first, 0.4, 0, RNWriteMerger.BLEND_OVERRIDE);
+        mMerger.flush(mSink);
+        assertEquals(0.6, mSink.values.get(0));
+        assertEquals(0.4, mSink.values.get(1));
+    }
+
+    @Test
+    public void blendsAddAndMultiplyIntoTheOverride() throws Exception {
+        offer(config(), 10d, 0, RNWriteMerger.BLEND_OVERRIDE);
+        offer(config(), 3d, 0, RNWriteMerger.BLEND_ADD);
+        offer(config(), 2d, 0, RNWriteMerger.BLEND_MULTIPLY);
+        offer(config(), 0.5, 0, RNWriteMerger.BLEND_MULTIPLY);
+        mMerger.flush(mSink);
+        // base * product + sum
+        assertEquals(10d * 2 * 0.5 + 3, mSink.values.get(0));
+    }
+
+    @Test
+    public void idleContributorsStillCount() throws Exception {
+        Map<String, Object> base = config();
+        Map<String, Object> offset = config();
+        offer(base, 100d, 0, RNWriteMerger.BLEND_OVERRIDE);
+        offer(offset, 5d, 0, RNWriteMerger.BLEND_ADD);
+        mMerger.flush(mSink);
+        // only the offset moves on the next frame
+        offer(offset, 7d, 0, RNWriteMerger.BLEND_ADD);
+        mMerger.flush(mSink);
+        assertEquals(105d, mSink.values.get(0));
+        assertEquals(107d, mSink.values.get(1));
+    }
+
+    @Test
+    public void keepsTheLastOverrideAsBaseOnceReleased() throws Exception {
+        RNBindingDescriptor.TargetConfig override = target();
+        Map<String, Object> scale = config();
+        offer(override, 4d, 0, RNWriteMerger.BLEND_OVERRIDE);
+        offer(scale, 2d, 0, RNWriteMerger.BLEND_MULTIPLY);
+        mMerger.flush(mSink);
+
+        override.isReleased = true;
+        offer(scale, 3d, 0, RNWriteMerger.BLEND_MULTIPLY);
+        mMerger.flush(mSink);
+        assertEquals(8d, mSink.values.get(0));
+        assertEquals(12d, mSink.values.get(1));
+        assertSame(scale, mSink.configs.get(1));
+    }
+
+    @Test
+    public void blendsWithoutOverrideFromNeutralBase() throws Exception {
+        offer(config(), 2d, 0, RNWriteMerger.BLEND_MULTIPLY);
+        mMerger.flush(mSink);
+        assertEquals(2d, mSink.values.get(0));
+
+        RNWriteMerger merger = new RNWriteMerger();
+        merger.offer(TAG, mView, OPACITY, 3d, TRANSLATOR, config(), IMPLEMENTATION, 0, RNWriteMerger.BLEND_ADD);
+        merger.flush(mSink);
+        assertEquals(3d, mSink.values.get(1));
+    }
+
+    @Test
+    public void writesOtherValuesAsOverridden() throws Exception {
+        offer(config(), "red", 0, RNWriteMerger.BLEND_OVERRIDE);
+        offer(config(), "blue", 0, RNWriteMerger.BLEND_ADD);
+        mMerger.flush(mSink);
+        assertEquals("blue", mSink.values.get(0));
+    }
+
+    @Test
+    public void writesEveryPropertyOncePerFlush() throws Exception {
+        Map<String, Object> config = config();
+        assertTrue(offer(config, 0.1, 0, RNWriteMerger.BLEND_OVERRIDE));
+        assertFalse(offer(config, 0.2, 0, RNWriteMerger.BLEND_OVERRIDE));
+        assertFalse(mMerger.offer(TAG, mView, "transform.scale", 2d, TRANSLATOR, config, IMPLEMENTATION,
+                0, RNWriteMerger.BLEND_OVERRIDE));
+        mMerger.flush(mSink);
+        assertEquals(2, mSink.values.size());
+        assertEquals(0.2, mSink.values.get(mSink.properties.indexOf(OPACITY)));
+        assertFalse(mMerger.hasPending());
+
+        mMerger.flush(mSink);
+        assertEquals(2, mSink.values.size());
+    }
+
+    private boolean offer(@NonNull Map<String, Object> config, @NonNull Object value, int priority, int blendMode) {
+        return mMerger.offer(TAG, mView, OPACITY, value, TRANSLATOR, config, IMPLEMENTATION, priority, blendMode);
+    }
+
+    // contributors are told apart by identity
+    @NonNull
+    private static Map<String, Object> config() {
+        return new HashMap<>();
+    }
+
+    @NonNull
+    private static RNBindingDescriptor.TargetConfig target() {
+        return new RNBindingDescriptor.TargetConfig(null, "target", TAG, null, 0, RNWriteMerger.BLEND_OVERRIDE,
+                false, null);
+    }
+
+    private static final class RecordingSink implements RNWriteMerger.Sink {
+        final List<String> properties = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+        final List<Map<String, Object>> configs = new ArrayList<>();
+
+        @Override
+        public void write(int tag,
+                          @NonNull View targetView,
+                          @NonNull String propertyName,
+                          @NonNull Object propertyValue,
+                          @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                          @NonNull Map<String, Object> config,
+                          @NonNull UIImplementation implementation) {
+            properties.add(propertyName);
+            values.add(propertyValue);
+            configs.add(config);
+        }
+    }
+}
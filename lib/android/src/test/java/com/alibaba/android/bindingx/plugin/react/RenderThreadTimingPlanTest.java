@@ -0,0 +1,203 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.view.View;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RenderThreadTimingPlanTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void resolvesTheExitExpressionIntoTheDuration() throws Exception {
+        assertEquals(301, findDuration(node(">", null, id("t"), num(300))));
+        assertEquals(300, findDuration(node(">=", null, id("t"), num(299.5))));
+        assertEquals(301, findDuration(node("<", null, num(300), id("t"))));
+        assertEquals(-1, findDuration(node(">", null, id("t"), num(RenderThreadTimingPlan.MAX_DURATION_MILLIS))));
+    }
+
+    @Test
+    public void searchesOtherExitExpressions() throws Exception {
+        // t * 2 > 601, not a plain comparison of t
+        assertEquals(301, findDuration(node(">", null, node("*", null, id("t"), num(2)), num(601))));
+        // true from the start
+        assertEquals(0, findDuration(node(">=", null, node("+", null, id("t"), num(1)), num(1))));
+        // turns true at the very end of the range
+        assertEquals(RenderThreadTimingPlan.MAX_DURATION_MILLIS, findDuration(node(">=", null,
+                node("-", null, id("t"), num(1)), num(RenderThreadTimingPlan.MAX_DURATION_MILLIS - 1))));
+        assertEquals(-1, findDuration(node("<", null, id("t"), num(-1))));
+    }
+
+    @Test
+    public void samplesFromStartToEnd() throws Exception {
+        ExpressionProgram.Builder builder = new ExpressionProgram.Builder();
+        // opacity: t / 100, translateY: 200 - t
+        int opacity = builder.addNumber(node("/", null, id("t"), num(100)));
+        int translate = builder.addNumber(node("-", null, num(200), id("t")));
+        double[][] samples = RenderThreadTimingPlan.sample(builder.build(), new int[]{opacity, translate}, 100);
+
+        int count = (int) ((100 + RenderThreadTimingPlan.SAMPLE_INTERVAL_MILLIS - 1)
+                / RenderThreadTimingPlan.SAMPLE_INTERVAL_MILLIS) + 1;
+        assertEquals(count, samples[0].length);
+        assertEquals(0, samples[0][0], DELTA);
+        assertEquals(1, samples[0][count - 1], DELTA);
+        assertEquals(200, samples[1][0], DELTA);
+        assertEquals(100, samples[1][count - 1], DELTA);
+        // evenly spaced, the last interval isn't cut short
+        assertEquals(200 - 100.0 * 5 / (count - 1), samples[1][5], DELTA);
+    }
+
+    @Test
+    public void rejectsContendedTargets() throws Exception {
+        BindingLifecycleTracker tracker = new BindingLifecycleTracker(new BindingLifecycleTracker.OnViewDetachedListener() {
+            @Override
+            public void onViewDetached() {
+            }
+
+            @Override
+            public boolean isViewDropped(View view) {
+                return false;
+            }
+        });
+        assertNotNull(RenderThreadTimingPlan.create(timing(prop("12", "opacity")), tracker));
+        // written twice by the binding itself
+        assertNull(RenderThreadTimingPlan.create(timing(prop("12", "opacity"), prop("12", "opacity")), tracker));
+
+        RNBindingDescriptor live = timing(prop("12", "opacity"));
+        tracker.track("live", "timing", null, -1, null, Collections.<View>emptyList(),
+                live.targetTags, live.targetProperties, live.targetConfigs, null);
+        assertNull(RenderThreadTimingPlan.create(timing(prop("12", "opacity")), tracker));
+        assertNull(RenderThreadTimingPlan.create(timing(prop("13", "opacity"), prop("12", "opacity")), tracker));
+        assertNotNull(RenderThreadTimingPlan.create(timing(prop("12", "transform.translateX")), tracker));
+        assertNotNull(RenderThreadTimingPlan.create(timing(prop("13", "opacity")), tracker));
+
+        tracker.untrack("live");
+        assertNotNull(RenderThreadTimingPlan.create(timing(prop("12", "opacity")), tracker));
+    }
+
+    @Test
+    public void steppedValuesFollowTheSamples() throws Exception {
+        double[] samples = {0, 10, 30};
+        assertEquals(0, BindingXRenderThreadTimingHandler.sampleAt(samples, 0, 100), DELTA);
+        assertEquals(5, BindingXRenderThreadTimingHandler.sampleAt(samples, 25, 100), DELTA);
+        assertEquals(20, BindingXRenderThreadTimingHandler.sampleAt(samples, 75, 100), DELTA);
+        assertEquals(30, BindingXRenderThreadTimingHandler.sampleAt(samples, 100, 100), DELTA);
+        assertEquals(30, BindingXRenderThreadTimingHandler.sampleAt(samples, 120, 100), DELTA);
+    }
+
+    private static long findDuration(Map<String, Object> exit) {
+        ExpressionProgram.Builder builder = new ExpressionProgram.Builder();
+        int output = builder.addCondition(exit);
+        return RenderThreadTimingPlan.findDuration(builder.build(), output, exit);
+    }
+
+    // a timing binding of the given props, running for 300ms
+    @SafeVarargs
+    private static RNBindingDescriptor timing(Map<String, Object>... props) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("eventType", "timing");
+        params.put("exitExpression", expression(node(">", null, id("t"), num(300))));
+        params.put("props", new ArrayList<Object>(Arrays.asList(props)));
+        return RNBindingDescriptor.decode((JavaOnlyMap) readable(params));
+    }
+
+    private static Map<String, Object> prop(String element, String property) {
+        Map<String, Object> prop = new HashMap<>();
+        prop.put("element", element);
+        prop.put("property", property);
+        prop.put("expression", expression(node("/", null, id("t"), num(300))));
+        return prop;
+    }
+
+    private static Map<String, Object> expression(Map<String, Object> transformed) {
+        return Collections.<String, Object>singletonMap("transformed", transformed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readable(Object value) {
+        if (value instanceof Map) {
+            JavaOnlyMap map = new JavaOnlyMap();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                Object child = readable(entry.getValue());
+                if (child instanceof JavaOnlyMap) {
+                    map.putMap(entry.getKey(), (JavaOnlyMap) child);
+                } else if (child instanceof JavaOnlyArray) {
+                    map.putArray(entry.getKey(), (JavaOnlyArray) child);
+                } else if (child instanceof Double) {
+                    map.putDouble(entry.getKey(), (Double) child);
+                } else {
+                    map.putString(entry.getKey(), (String) child);
+                }
+            }
+            return map;
+        }
+        if (value instanceof List) {
+            JavaOnlyArray array = new JavaOnlyArray();
+            for (Object item : (List<Object>) value) {
+                Object child = readable(item);
+                if (child instanceof JavaOnlyMap) {
+                    array.pushMap((JavaOnlyMap) child);
+                } else if (child instanceof JavaOnlyArray) {
+                    array.pushArray((JavaOnlyArray) child);
+                } else if (child instanceof Double) {
+                    array.pushDouble((Double) child);
+                } else {
+                    array.pushString((String) child);
+                }
+            }
+            return array;
+        }
+        return value;
+    }
+
+    // syntax trees shaped like the "transformed" field the JS side sends
+
+    private static Map<String, Object> node(String type, Object value, Object... children) {
+        Map<String, Object> node = new HashMap<>();
+        node.put("type", type);
+        if (value != null) {
+            node.put("value", value);
+        }
+        if (children.length > 0) {
+            node.put("children", new ArrayList<>(Arrays.asList(children)));
+        }
+        return node;
+    }
+
+    private static Map<String, Object> id(String name) {
+        return node("Identifier", name);
+    }
+
+    private static Map<String, Object> num(double value) {
+        return node("NumericLiteral", value);
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScrollFlingPredictorTest {
+
+    private static final double FRAME_SECONDS = 1d / 60;
+    // px/s², the constant deceleration OverScroller applies past an edge
+    private static final double DECELERATION = 2000;
+
+    @Test
+    public void predictsTheNextFrameOfADeceleratingFling() throws Exception {
+        for (int direction : new int[]{1, -1}) {
+            double velocity = 3000;
+            int finalOffset = direction * (int) Math.round(velocity * velocity / (2 * DECELERATION));
+            ScrollFlingPredictor predictor = new ScrollFlingPredictor();
+            double duration = velocity / DECELERATION;
+            for (double t = 0; t < duration; t += FRAME_SECONDS) {
+                assertTrue(predictor.update(true, 0, finalOffset, (float) velocityAt(velocity, t)));
+                int current = (int) Math.round(direction * offsetAt(velocity, t));
+                int next = (int) Math.round(direction * offsetAt(velocity, Math.min(t + FRAME_SECONDS, duration)));
+                int predicted = predictor.predictNextFrame(current, finalOffset);
+                // current velocity times a frame, ahead by half the deceleration of a frame at most
+                assertEquals("at " + t + "s", next, predicted, 1);
+                assertTrue(direction > 0 ? predicted <= finalOffset : predicted >= finalOffset);
+            }
+            assertEquals(finalOffset, predictor.predictNextFrame(finalOffset, finalOffset));
+        }
+    }
+
+    @Test
+    public void neverOvershootsTheFinalOffset() throws Exception {
+        ScrollFlingPredictor predictor = new ScrollFlingPredictor();
+        predictor.update(true, 0, 100, 12000);
+        assertEquals(100, predictor.predictNextFrame(95, 100));
+        assertEquals(-100, predictor.predictNextFrame(-95, -100));
+    }
+
+    @Test
+    public void keepsOffsetsOutsideOfFlings() throws Exception {
+        ScrollFlingPredictor predictor = new ScrollFlingPredictor();
+        assertFalse(predictor.update(false, 0, 0, 0));
+        assertFalse(predictor.isFlinging());
+        assertEquals(40, predictor.predictNextFrame(40, 400));
+    }
+
+    @Test
+    public void reportsScrollEndOncePerFinalOffset() throws Exception {
+        ScrollFlingPredictor predictor = new ScrollFlingPredictor();
+        assertFalse(predictor.takeFinalChange());
+
+        predictor.update(true, 0, 500, 3000);
+        assertTrue(predictor.takeFinalChange());
+        predictor.update(true, 0, 500, 2000);
+        assertFalse(predictor.takeFinalChange());
+
+        // flung again before coming to rest
+        predictor.update(true, 0, 900, 4000);
+        assertTrue(predictor.takeFinalChange());
+        assertEquals(900, predictor.getFinalY());
+
+        predictor.update(false, 0, 0, 0);
+        assertFalse(predictor.takeFinalChange());
+        predictor.update(true, 0, 900, 3000);
+        assertTrue(predictor.takeFinalChange());
+    }
+
+    private static double velocityAt(double velocity, double t) {
+        return Math.max(0, velocity - DECELERATION * t);
+    }
+
+    private static double offsetAt(double velocity, double t) {
+        t = Math.min(t, velocity / DECELERATION);
+        return velocity * t - DECELERATION * t * t / 2;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2018 Alibaba Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.android.bindingx.plugin.react;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.alibaba.android.bindingx.core.PlatformManager;
+import com.facebook.react.uimanager.UIImplementation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The publish/consume handoff of {@link BindingXAsyncEvaluator}, the writer standing in for the evaluator
+ * thread and the reader for the UI thread at vsync.
+ * */
+public class UpdateTripleBufferTest {
+
+    private static final String OPACITY = "opacity";
+
+    private final View mView = new View(null);
+    private final Map<String, Object> mConfig = new HashMap<>();
+    private final UpdateTripleBuffer mBuffer = new UpdateTripleBuffer();
+    private final RecordingApplier mApplier = new RecordingApplier();
+
+    @Test
+    public void handsAPublishedSnapshotOverOnce() throws Exception {
+        assertFalse(mBuffer.publish());
+        mBuffer.applyLatest(mApplier);
+        assertTrue(mApplier.values.isEmpty());
+
+        write(1);
+        write(2);
+        assertTrue(mBuffer.publish());
+        mBuffer.applyLatest(mApplier);
+        mBuffer.applyLatest(mApplier);
+        assertEquals(Arrays.<Object>asList(1d, 2d), mApplier.values);
+    }
+
+    @Test
+    public void keepsSnapshotsTheReaderSkipped() throws Exception {
+        write(1);
+        mBuffer.publish();
+        write(2);
+        mBuffer.publish();
+        write(3);
+        mBuffer.publish();
+        mBuffer.applyLatest(mApplier);
+        // in the order written, the latest value last
+        assertEquals(Arrays.<Object>asList(1d, 2d, 3d), mApplier.values);
+    }
+
+    @Test
+    public void reusesConsumedBuffers() throws Exception {
+        for (int frame = 0; frame < 10; frame++) {
+            write(frame);
+            mBuffer.publish();
+            mApplier.values.clear();
+            mBuffer.applyLatest(mApplier);
+            assertEquals(Collections.<Object>singletonList((double) frame), mApplier.values);
+        }
+    }
+
+    @Test
+    public void readerEndsUpWithTheLatestValue() throws Exception {
+        final int count = 20000;
+        final RecordingApplier applier = new RecordingApplier();
+        final boolean[] done = {false};
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    boolean last;
+                    synchronized (done) {
+                        last = done[0];
+                    }
+                    mBuffer.applyLatest(applier);
+                    if (last) {
+                        return;
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 1; i <= count; i++) {
+            write(i);
+            mBuffer.publish();
+        }
+        synchronized (done) {
+            done[0] = true;
+        }
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+        assertEquals((double) count, applier.values.get(applier.values.size() - 1));
+    }
+
+    private void write(double value) {
+        mBuffer.write(1, mView, OPACITY, value, null, mConfig, null);
+    }
+
+    private static final class RecordingApplier implements BindingXAsyncEvaluator.UpdateApplier {
+        final List<Object> values = new ArrayList<>();
+
+        @Override
+        public void apply(int tag,
+                          @NonNull View targetView,
+                          @NonNull String propertyName,
+                          @NonNull Object propertyValue,
+                          @NonNull PlatformManager.IDeviceResolutionTranslator translator,
+                          @NonNull Map<String, Object> config,
+                          @NonNull UIImplementation implementation) {
+            values.add(propertyValue);
+        }
+    }
+}
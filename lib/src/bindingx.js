@@ -17,6 +17,7 @@
 'use strict';
 
 import {parse} from 'bindingx-parser';
+import {version as parserVersion} from 'bindingx-parser/package.json';
 import {NativeModules, NativeEventEmitter, DeviceEventEmitter, Platform} from 'react-native';
 
 
@@ -30,6 +31,14 @@ let bindingx = {
    {
      anchor:blockRef,
      eventType:'pan',
+     group:'detailScreen', // optional, android only
+     priority:1, // optional, android only. the highest one wins among bindings writing the same property
+     blend:'override', // optional, android only. 'override', 'add' or 'multiply'
+     lowPriority:true, // optional, android only. updates may be skipped when over the frame budget, see setFrameBudget
+     options:{axis:'x', threshold:8}, // optional, android only. pan recognition rules, axis is 'x', 'y' or 'both'
+     recyclable:true, // optional, android only. the binding may be re-pointed at other elements, see retarget
+     params:{top:120}, // optional, android only. extra variables of the expressions, e.g. "y-top"
+
      props: [
      {
        element:blockRef,
@@ -44,13 +53,9 @@ let bindingx = {
     if (!options) {
       throw new Error('should pass options for binding');
     }
-    options.exitExpression = formatExpression(options.exitExpression);
+    let cachedExpressions = getCachedExpressions();
+    formatExpressions(options, cachedExpressions);
     console.log('options:',options)
-    if (options.props) {
-      options.props.forEach((prop) => {
-        prop.expression = formatExpression(prop.expression);
-      });
-    }
     let res;
 
     if (nativeBindingX) {
@@ -58,6 +63,12 @@ let bindingx = {
 
 
       res = nativeBindingX.bind(options);
+      if (res && res.unresolved && res.unresolved.length) {
+        // the native side lost the parsed form of these, parse them here and bind again
+        res.unresolved.forEach((origin) => cachedExpressions.delete(origin));
+        formatExpressions(options, cachedExpressions);
+        res = nativeBindingX.bind(options);
+      }
       let token = res && res.token;
       this.__instances__[token] = {
         callback
@@ -80,12 +91,159 @@ let bindingx = {
   unbindAll() {
     return nativeBindingX.unbindAll();
   },
+  /**
+   * android only. release every binding created with the given `group` option
+   * @param {string} group
+   */
+  unbindGroup(group) {
+    if (nativeBindingX.unbindGroup) {
+      nativeBindingX.unbindGroup(group);
+    }
+  },
+  /**
+   * android only. release every binding anchored on the given element
+   * @param anchor
+   */
+  unbindAnchor(anchor) {
+    if (nativeBindingX.unbindAnchor) {
+      nativeBindingX.unbindAnchor(anchor);
+    }
+  },
+  /**
+   * android only. re-point a binding created with `recyclable:true` at other elements and/or give it
+   * new params, e.g. once the list cell it belongs to is recycled. much cheaper than unbind and bind.
+   * @param {string} token
+   * @param {object} options
+   * @example
+   {
+     elements: {[oldCellRef]: newCellRef},
+     params: {top: 480}
+   }
+   */
+  retarget(token, options) {
+    if (nativeBindingX.retarget) {
+      nativeBindingX.retarget(token, options);
+    }
+  },
+  /**
+   * android only. stop applying the bindings of the given group until resumed
+   * @param {string} group
+   */
+  pauseGroup(group) {
+    if (nativeBindingX.pauseGroup) {
+      nativeBindingX.pauseGroup(group);
+    }
+  },
+  resumeGroup(group) {
+    if (nativeBindingX.resumeGroup) {
+      nativeBindingX.resumeGroup(group);
+    }
+  },
+  /**
+   * android only. evaluate expressions of scroll bindings created afterwards off the main thread
+   * @param {boolean} enabled
+   */
+  setAsyncEvaluationEnabled(enabled) {
+    if (nativeBindingX.setAsyncEvaluationEnabled) {
+      nativeBindingX.setAsyncEvaluationEnabled(!!enabled);
+    }
+  },
+  /**
+   * android only. let scroll bindings created afterwards follow the predicted fling trajectory,
+   * a 'scrollEnd' state carrying the predicted final offset is emitted when a fling starts
+   * @param {boolean} enabled
+   */
+  setFlingPredictionEnabled(enabled) {
+    if (nativeBindingX.setFlingPredictionEnabled) {
+      nativeBindingX.setFlingPredictionEnabled(!!enabled);
+    }
+  },
+  /**
+   * android only. compile expressions of bindings created afterwards into flat programs instead of
+   * walking their syntax trees on every update, enabled by default
+   * @param {boolean} enabled
+   */
+  setExpressionCompilationEnabled(enabled) {
+    if (nativeBindingX.setExpressionCompilationEnabled) {
+      nativeBindingX.setExpressionCompilationEnabled(!!enabled);
+    }
+  },
+  /**
+   * android only. run timing bindings created afterwards on the RenderThread if they only read t and
+   * animate opacity, translate, scale or rotate of views no other binding animates, so they keep going
+   * while the UI thread is busy. they move back to the UI thread once another binding animates the same
+   * properties. disabled by default, it relies on a hidden platform API which may be blocked on any release
+   * @param {boolean} enabled
+   */
+  setRenderThreadTimingEnabled(enabled) {
+    if (nativeBindingX.setRenderThreadTimingEnabled) {
+      nativeBindingX.setRenderThreadTimingEnabled(!!enabled);
+    }
+  },
+  /**
+   * android only. emit trace sections and counters of the binding pipeline to systrace / perfetto
+   * @param {boolean} enabled
+   */
+  setTracingEnabled(enabled) {
+    if (nativeBindingX.setTracingEnabled) {
+      nativeBindingX.setTracingEnabled(!!enabled);
+    }
+  },
+  /**
+   * android only. time in ms BindingX may spend on the UI thread per frame before updates of
+   * lowPriority bindings get thinned out, 0 disables it
+   * @param {number} budget
+   */
+  setFrameBudget(budget) {
+    if (nativeBindingX.setFrameBudget) {
+      nativeBindingX.setFrameBudget(budget > 0 ? budget : 0);
+    }
+  },
+  /**
+   * android only. listen to changes of the degradation level, 0 meaning all bindings run at full rate
+   * @param {function} callback receives {level, frameCost, budget}
+   * @returns the subscription, call remove() on it to stop listening
+   */
+  addDegradationListener(callback) {
+    return DeviceEventEmitter.addListener('bindingx:degradation', callback);
+  },
+  /**
+   * android only. number of bindings still alive on native side
+   */
+  getLiveBindingCount() {
+    return nativeBindingX.getLiveBindingCount ? nativeBindingX.getLiveBindingCount() : -1;
+  },
+  /**
+   * android only. time spent in ms releasing the bindings of the previous context on a reload, and preparing
+   * BindingX again for the current one
+   * @returns {releaseTime, rebuildTime, warm} where warm tells whether the previous core was reused, or null
+   */
+  getReloadStats() {
+    return nativeBindingX.getReloadStats ? nativeBindingX.getReloadStats() : null;
+  },
   prepare(options) {
     return nativeBindingX.prepare(options);
   },
   getComputedStyle(el) {
     return nativeBindingX.getComputedStyle(el);
   },
+  /**
+   * android only. start capturing raw input events for offline replay
+   */
+  startInputRecording() {
+    if (nativeBindingX.startInputRecording) {
+      nativeBindingX.startInputRecording();
+    }
+  },
+  /**
+   * android only. stop capturing and save the recording to the given absolute path
+   * @param {string} path
+   */
+  stopInputRecording(path) {
+    if (nativeBindingX.stopInputRecording) {
+      nativeBindingX.stopInputRecording(path);
+    }
+  },
   // { y: 0, state: 'start', x: 0, token: '592' }
   __triggerCallback: (event) => {
     let instances = bindingx.__instances__;
@@ -107,7 +265,27 @@ if (Platform.OS == 'ios') {
 }
 
 
-function formatExpression(expression) {
+let cachedExpressions;
+
+// origins of the expressions already parsed on a previous launch, android only
+function getCachedExpressions() {
+  if (!cachedExpressions) {
+    let origins = nativeBindingX && nativeBindingX.getCachedExpressions ? nativeBindingX.getCachedExpressions(parserVersion) : null;
+    cachedExpressions = new Set(origins || []);
+  }
+  return cachedExpressions;
+}
+
+function formatExpressions(options, cachedExpressions) {
+  options.exitExpression = formatExpression(options.exitExpression, cachedExpressions);
+  if (options.props) {
+    options.props.forEach((prop) => {
+      prop.expression = formatExpression(prop.expression, cachedExpressions);
+    });
+  }
+}
+
+function formatExpression(expression, cachedExpressions) {
   if (expression === undefined) return;
   try {
     expression = JSON.parse(expression);
@@ -122,6 +300,10 @@ function formatExpression(expression) {
     resultExpression.transformed = expression.transformed;
   }
   if (!resultExpression.transformed && !resultExpression.origin) return;
+  if (!resultExpression.transformed && cachedExpressions && cachedExpressions.has(resultExpression.origin)) {
+    // the native side fills in the parsed form
+    return resultExpression;
+  }
   resultExpression.transformed = resultExpression.transformed || parse(resultExpression.origin);
   return resultExpression;
 }